@@ -0,0 +1,146 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Synthetic YAML files used by the benchmarks
+ */
+public enum Corpus {
+
+    /**
+     * A single small configuration file
+     */
+    TINY {
+        @Override
+        Map<String, byte[]> createFiles() {
+            return single("config/application.yaml", tinyConfig(0));
+        }
+    },
+
+    /**
+     * A single Helm values file of about 5 MB
+     */
+    HELM {
+        @Override
+        Map<String, byte[]> createFiles() {
+            final StringBuilder content = new StringBuilder();
+            for (int i = 0; content.length() < 5 * 1024 * 1024; i++) {
+                content.append(helmService(i));
+            }
+            return single("charts/platform/values.yaml", content.toString());
+        }
+    },
+
+    /**
+     * A single file with deeply nested mappings and sequences
+     */
+    DEEP {
+        @Override
+        Map<String, byte[]> createFiles() {
+            final StringBuilder content = new StringBuilder();
+            for (int tree = 0; tree < 50; tree++) {
+                content.append("tree").append(tree).append(":\n");
+                for (int depth = 1; depth <= 100; depth++) {
+                    indent(content, depth);
+                    content.append("items").append(depth).append(": [a, {b: c}]\n");
+                    indent(content, depth);
+                    content.append("level").append(depth).append(":\n");
+                }
+                indent(content, 101);
+                content.append("leaf: true\n");
+            }
+            return single("generated/deep.yaml", content.toString());
+        }
+    },
+
+    /**
+     * A single file making heavy use of anchors and aliases
+     */
+    ANCHORS {
+        @Override
+        Map<String, byte[]> createFiles() {
+            final StringBuilder content = new StringBuilder("defaults: &defaults\n  replicas: 3\n  image: app:1.0\n");
+            for (int i = 0; i < 20000; i++) {
+                content.append("service").append(i).append(":\n")
+                    .append("  <<: *defaults\n")
+                    .append("  name: &name").append(i).append(" service-").append(i).append('\n')
+                    .append("  alias: *name").append(i).append('\n');
+            }
+            return single("config/anchors.yaml", content.toString());
+        }
+    },
+
+    /**
+     * A push of 400 small configuration files
+     */
+    MANY_FILES {
+        @Override
+        Map<String, byte[]> createFiles() {
+            final Map<String, byte[]> files = new LinkedHashMap<>();
+            for (int i = 0; i < 400; i++) {
+                files.put(
+                    String.format("services/service-%03d/config.yml", i),
+                    tinyConfig(i).getBytes(StandardCharsets.UTF_8)
+                );
+            }
+            return files;
+        }
+    };
+
+    /**
+     * Create the files of the corpus
+     *
+     * @return The contents by path
+     */
+    abstract Map<String, byte[]> createFiles();
+
+    static String tinyConfig(final int number) {
+        return "server:\n" +
+            "  port: " + (8080 + number) + "\n" +
+            "  context-path: /app\n" +
+            "logging:\n" +
+            "  level:\n" +
+            "    root: INFO\n" +
+            "    io.github.dodevops: DEBUG\n" +
+            "features:\n" +
+            "  - name: search\n" +
+            "    enabled: true\n" +
+            "  - name: 'export'\n" +
+            "    enabled: false\n";
+    }
+
+    static String helmService(final int number) {
+        return "service" + number + ":\n" +
+            "  image:\n" +
+            "    repository: registry.example.com/team/app\n" +
+            "    tag: \"1.2." + number + "\"\n" +
+            "    pullPolicy: IfNotPresent\n" +
+            "  replicas: 3\n" +
+            "  resources:\n" +
+            "    limits: {cpu: 500m, memory: 512Mi}\n" +
+            "    requests: {cpu: 100m, memory: 128Mi}\n" +
+            "  env:\n" +
+            "    - name: VAR_" + number + "\n" +
+            "      value: some value here\n" +
+            "    - name: OTHER\n" +
+            "      value: 'quoted'\n" +
+            "  annotations:\n" +
+            "    description: >\n" +
+            "      A folded block scalar spanning\n" +
+            "      several lines of text.\n";
+    }
+
+    private static void indent(final StringBuilder content, final int depth) {
+        for (int i = 0; i < depth; i++) {
+            content.append("  ");
+        }
+    }
+
+    private static Map<String, byte[]> single(final String path, final String content) {
+        final Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put(path, content.getBytes(StandardCharsets.UTF_8));
+        return files;
+    }
+}
@@ -0,0 +1,506 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.benchmark;
+
+import com.atlassian.bitbucket.hook.repository.PreRepositoryHookContext;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.repository.RefChangeType;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.MergeCheckResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.PullRequestCheckpointStore;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.PullRequestDecliner;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.PullRequestHook;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.PushHook;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ParserBackendFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.PullRequestValidator;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationServiceFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the push hook and the merge check end to end with many concurrent pushes and pull requests against a
+ * repository created with JGit, and reports the throughput, latencies and heap use.
+ *
+ * Unlike the JMH benchmarks, which measure the validation of single corpora, this covers everything the hooks do:
+ * enumerating the changes, filtering, fetching and validating the files, caching and declining pull requests.
+ *
+ * Options are given as --name=value: threads, operations, warmup, files-per-change, invalid-ratio,
+ * pull-request-ratio, git-batch and seed. System properties starting with plugin.yamlcheckhook. are passed to the
+ * plugin configuration.
+ */
+public final class HookLoadTest {
+
+    private static final String PLUGIN_PROPERTY_PREFIX = "plugin.yamlcheckhook.";
+
+    private static final String NO_COMMIT = "0000000000000000000000000000000000000000";
+
+    private static final int SERVICE_CONFIGS = 300;
+
+    private static final int HELM_CHARTS = 10;
+
+    private static final int HELM_VALUES_SIZE = 256 * 1024;
+
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+
+    private final Map<String, String> options = new HashMap<>();
+
+    private HookLoadTest() {
+        this.options.put("threads", String.valueOf(Runtime.getRuntime().availableProcessors() * 2));
+        this.options.put("operations", "2000");
+        this.options.put("warmup", "200");
+        this.options.put("files-per-change", "20");
+        this.options.put("invalid-ratio", "0.1");
+        this.options.put("pull-request-ratio", "0.5");
+        this.options.put("git-batch", "false");
+        this.options.put("seed", "42");
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final HookLoadTest loadTest = new HookLoadTest();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0 || !loadTest.options.containsKey(arg.substring(2, separator))) {
+                System.err.println(String.format("Unknown option %s. Known options: %s", arg, loadTest.options));
+                System.exit(2);
+            }
+            loadTest.options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        loadTest.run();
+    }
+
+    private void run() throws Exception {
+        final File directory = Files.createTempDirectory("hook-load-test").toFile();
+        try (final JGitBitbucket bitbucket = new JGitBitbucket(new File(directory, "repository.git"))) {
+            this.run(bitbucket);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private void run(final JGitBitbucket bitbucket) throws Exception {
+        final int threads = this.getInt("threads");
+        final int warmup = this.getInt("warmup");
+        final int operations = this.getInt("operations");
+
+        // The stand-ins have no home directory to keep the known valid blobs in
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(PluginConfiguration.BLOB_STORE, PluginConfiguration.BLOB_STORE_NONE);
+        for (final String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PLUGIN_PROPERTY_PREFIX)) {
+                properties.put(name, System.getProperty(name));
+            }
+        }
+
+        final ValidationServiceFactory validationServiceFactory = new ValidationServiceFactory(
+            bitbucket.getContentService(),
+            Boolean.parseBoolean(this.options.get("git-batch")) ? bitbucket.getScmService() : StandIns.scmService(),
+            properties
+        );
+        final PluginConfiguration pluginConfiguration = validationServiceFactory.getPluginConfiguration();
+        final MetricsRegistry metricsRegistry = validationServiceFactory.getMetricsRegistry();
+        final PathFilterFactory pathFilterFactory = new PathFilterFactory();
+        final ParserBackendFactory parserBackendFactory = new ParserBackendFactory(pluginConfiguration);
+        final AdmissionController admissionController = new AdmissionController(pluginConfiguration, metricsRegistry);
+
+        final PushHook pushHook = new PushHook(
+            validationServiceFactory.getValidationService(),
+            bitbucket.getCommitService(),
+            bitbucket.getRefService(),
+            metricsRegistry,
+            pathFilterFactory,
+            parserBackendFactory,
+            pluginConfiguration,
+            admissionController
+        );
+        final PullRequestHook pullRequestHook = new PullRequestHook(
+            new PullRequestDecliner(
+                bitbucket.getPullRequestService(),
+                StandIns.securityService(),
+                StandIns.anonymousContext(),
+                validationServiceFactory.getValidationExecutor(),
+                metricsRegistry
+            ),
+            new PullRequestValidator(
+                bitbucket.getCommitService(),
+                validationServiceFactory.getValidationService(),
+                pathFilterFactory,
+                parserBackendFactory,
+                new PullRequestCheckpointStore(StandIns.pluginSettingsFactory()),
+                pluginConfiguration
+            ),
+            new MergeCheckResultCache(pluginConfiguration, metricsRegistry),
+            metricsRegistry,
+            pathFilterFactory,
+            parserBackendFactory,
+            admissionController
+        );
+        final PreRepositoryHookContext context = StandIns.hookContext(StandIns.settings(Collections.emptyMap()));
+
+        System.out.println(String.format("Creating %d commits", warmup + operations));
+        final List<Operation> workload = this.createWorkload(bitbucket, warmup + operations);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            System.out.println(String.format("Warming up with %d operations on %d threads", warmup, threads));
+            this.execute(executor, workload.subList(0, warmup), pushHook, pullRequestHook, context);
+
+            final HeapSampler heapSampler = new HeapSampler();
+            final long[] gcBefore = getGarbageCollections();
+            final long filesBefore = bitbucket.getStreamedFiles();
+            final long commandsBefore = bitbucket.getStartedCommands();
+            final long timeoutsBefore = metricsRegistry.counter(MetricsRegistry.ADMISSION_TIMEOUTS).getCount();
+            final long batchFetchedBefore = metricsRegistry.counter(MetricsRegistry.FILES_BATCH_FETCHED).getCount();
+
+            System.out.println(String.format("Running %d operations on %d threads", operations, threads));
+            final long start = System.nanoTime();
+            final List<Operation> measured = workload.subList(warmup, workload.size());
+            this.execute(executor, measured, pushHook, pullRequestHook, context);
+            final long elapsed = System.nanoTime() - start;
+
+            heapSampler.stop();
+            final long[] gcAfter = getGarbageCollections();
+
+            System.out.println();
+            System.out.println(
+                String.format(
+                    "Throughput: %.1f operations/s (%d operations in %.2f s)",
+                    operations / (elapsed / 1e9),
+                    operations,
+                    elapsed / 1e9
+                )
+            );
+            report("Push", measured, false);
+            report("Pull request", measured, true);
+            System.out.println(
+                String.format(
+                    "Heap: peak %d MiB, average %d MiB, %d collections taking %d ms",
+                    heapSampler.getPeak() / (1024 * 1024),
+                    heapSampler.getAverage() / (1024 * 1024),
+                    gcAfter[0] - gcBefore[0],
+                    gcAfter[1] - gcBefore[1]
+                )
+            );
+            System.out.println(
+                String.format(
+                    "Files: %d read from the content service, %d read in batches by %d cat-file commands",
+                    bitbucket.getStreamedFiles() - filesBefore,
+                    metricsRegistry.counter(MetricsRegistry.FILES_BATCH_FETCHED).getCount() - batchFetchedBefore,
+                    bitbucket.getStartedCommands() - commandsBefore
+                )
+            );
+            System.out.println(
+                String.format(
+                    "Admission: at most %d concurrent validations, %d timed out, waited %.1f ms on average",
+                    pluginConfiguration.getAdmissionMaxConcurrent(),
+                    metricsRegistry.counter(MetricsRegistry.ADMISSION_TIMEOUTS).getCount() - timeoutsBefore,
+                    metricsRegistry.histogram(MetricsRegistry.ADMISSION_WAIT).getMeanMillis()
+                )
+            );
+            System.out.println(
+                String.format(
+                    "Rejected: %d of %d invalid operations, %d pull requests declined",
+                    measured.stream().filter(operation -> operation.result.isRejected()).count(),
+                    measured.stream().filter(operation -> operation.invalid).count(),
+                    bitbucket.getDeclinedPullRequests()
+                )
+            );
+        } finally {
+            executor.shutdownNow();
+            validationServiceFactory.destroy();
+        }
+    }
+
+    /**
+     * Create a base commit on the default branch and one commit on top of it for every operation, each changing
+     * its own set of files
+     *
+     * @param bitbucket  The repository
+     * @param operations The number of operations
+     * @return The operations
+     * @throws IOException The commits can't be stored
+     */
+    private List<Operation> createWorkload(final JGitBitbucket bitbucket, final int operations) throws IOException {
+        final Random random = new Random(Long.parseLong(this.options.get("seed")));
+        final int filesPerChange = Math.min(this.getInt("files-per-change"), SERVICE_CONFIGS);
+        final double invalidRatio = Double.parseDouble(this.options.get("invalid-ratio"));
+        final double pullRequestRatio = Double.parseDouble(this.options.get("pull-request-ratio"));
+
+        final Map<String, String> baseFiles = new LinkedHashMap<>();
+        for (int i = 0; i < SERVICE_CONFIGS; i++) {
+            baseFiles.put(serviceConfigPath(i), bitbucket.blob(bytes(Corpus.tinyConfig(i))));
+        }
+        for (int i = 0; i < HELM_CHARTS; i++) {
+            baseFiles.put(helmValuesPath(i), bitbucket.blob(bytes(helmValues(i * 1000))));
+        }
+        final String base = bitbucket.commit(null, baseFiles);
+        bitbucket.setDefaultBranch(base);
+
+        final List<Operation> workload = new ArrayList<>();
+        for (int number = 0; number < operations; number++) {
+            final Map<String, String> files = new LinkedHashMap<>(baseFiles);
+            final List<Integer> services = new ArrayList<>();
+            for (int i = 0; i < SERVICE_CONFIGS; i++) {
+                services.add(i);
+            }
+            Collections.shuffle(services, random);
+            for (final int service : services.subList(0, filesPerChange)) {
+                files.put(
+                    serviceConfigPath(service),
+                    bitbucket.blob(bytes(Corpus.tinyConfig(number * SERVICE_CONFIGS + service)))
+                );
+            }
+            // Every tenth change also touches a large file
+            if (random.nextInt(10) == 0) {
+                final int chart = random.nextInt(HELM_CHARTS);
+                files.put(helmValuesPath(chart), bitbucket.blob(bytes(helmValues(number * 1000 + chart))));
+            }
+            final boolean invalid = random.nextDouble() < invalidRatio;
+            if (invalid) {
+                files.put(
+                    serviceConfigPath(services.get(0)),
+                    bitbucket.blob(bytes("server:\n  port: [" + number + "\nlogging: {}\n"))
+                );
+            }
+
+            final String commit = bitbucket.commit(base, files);
+            final Operation operation;
+            if (random.nextDouble() < pullRequestRatio) {
+                final PullRequest pullRequest = StandIns.pullRequest(bitbucket.getRepository(), number, commit, base);
+                bitbucket.addPullRequest(pullRequest);
+                operation = new Operation(true, invalid, hook -> hook.pullRequestHook.preUpdate(
+                    hook.context,
+                    StandIns.mergeRequest(pullRequest)
+                ));
+            } else {
+                // Most pushes update a known branch, some create a new one
+                final boolean newBranch = random.nextInt(4) == 0;
+                final String branch = "feature/" + number;
+                operation = new Operation(false, invalid, hook -> hook.pushHook.preUpdate(
+                    hook.context,
+                    StandIns.pushRequest(
+                        bitbucket.getRepository(),
+                        Collections.singletonList(
+                            StandIns.refChange(
+                                branch,
+                                newBranch ? NO_COMMIT : base,
+                                commit,
+                                newBranch ? RefChangeType.ADD : RefChangeType.UPDATE
+                            )
+                        )
+                    )
+                ));
+            }
+            workload.add(operation);
+        }
+        return workload;
+    }
+
+    /**
+     * Run the operations concurrently and wait for all of them
+     */
+    private void execute(
+        final ExecutorService executor,
+        final List<Operation> operations,
+        final PushHook pushHook,
+        final PullRequestHook pullRequestHook,
+        final PreRepositoryHookContext context
+    ) throws Exception
+    {
+        final Hooks hooks = new Hooks(pushHook, pullRequestHook, context);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (final Operation operation : operations) {
+            futures.add(executor.submit(() -> {
+                final long start = System.nanoTime();
+                operation.result = operation.invocation.invoke(hooks);
+                operation.latency = System.nanoTime() - start;
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private static void report(final String name, final List<Operation> operations, final boolean pullRequests) {
+        final long[] latencies = operations.stream()
+            .filter(operation -> operation.pullRequest == pullRequests)
+            .mapToLong(operation -> operation.latency)
+            .sorted()
+            .toArray();
+        if (latencies.length == 0) {
+            return;
+        }
+        System.out.println(
+            String.format(
+                "%s: %d operations, p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                name,
+                latencies.length,
+                percentile(latencies, 0.5) / 1e6,
+                percentile(latencies, 0.99) / 1e6,
+                latencies[latencies.length - 1] / 1e6
+            )
+        );
+    }
+
+    private static long percentile(final long[] sorted, final double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * @return The number and the total time in milliseconds of all garbage collections so far
+     */
+    private static long[] getGarbageCollections() {
+        final long[] collections = new long[2];
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections[0] += Math.max(0, collector.getCollectionCount());
+            collections[1] += Math.max(0, collector.getCollectionTime());
+        }
+        return collections;
+    }
+
+    private int getInt(final String option) {
+        return Integer.parseInt(this.options.get(option));
+    }
+
+    private static String serviceConfigPath(final int service) {
+        return String.format("services/service-%03d/config.yml", service);
+    }
+
+    private static String helmValuesPath(final int chart) {
+        return String.format("charts/chart-%02d/values.yaml", chart);
+    }
+
+    private static String helmValues(final int first) {
+        final StringBuilder content = new StringBuilder();
+        for (int i = first; content.length() < HELM_VALUES_SIZE; i++) {
+            content.append(Corpus.helmService(i));
+        }
+        return content.toString();
+    }
+
+    private static byte[] bytes(final String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.stream(children).forEach(HookLoadTest::delete);
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * The hooks and the context the operations are run with
+     */
+    private static final class Hooks {
+
+        private final PushHook pushHook;
+
+        private final PullRequestHook pullRequestHook;
+
+        private final PreRepositoryHookContext context;
+
+        private Hooks(
+            final PushHook pushHook,
+            final PullRequestHook pullRequestHook,
+            final PreRepositoryHookContext context
+        )
+        {
+            this.pushHook = pushHook;
+            this.pullRequestHook = pullRequestHook;
+            this.context = context;
+        }
+    }
+
+    /**
+     * One push or merge check of the workload and its measured outcome
+     */
+    private static final class Operation {
+
+        private final boolean pullRequest;
+
+        private final boolean invalid;
+
+        private final Invocation invocation;
+
+        private volatile RepositoryHookResult result;
+
+        private volatile long latency;
+
+        private Operation(final boolean pullRequest, final boolean invalid, final Invocation invocation) {
+            this.pullRequest = pullRequest;
+            this.invalid = invalid;
+            this.invocation = invocation;
+        }
+    }
+
+    private interface Invocation {
+        RepositoryHookResult invoke(Hooks hooks);
+    }
+
+    /**
+     * Samples the used heap in the background
+     */
+    private static final class HeapSampler {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        private final AtomicLong peak = new AtomicLong();
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLong samples = new AtomicLong();
+
+        private HeapSampler() {
+            this.scheduler.scheduleAtFixedRate(this::sample, 0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            final long used = this.memory.getHeapMemoryUsage().getUsed();
+            this.peak.accumulateAndGet(used, Math::max);
+            this.total.addAndGet(used);
+            this.samples.incrementAndGet();
+        }
+
+        private void stop() throws InterruptedException {
+            this.scheduler.shutdown();
+            this.scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        private long getPeak() {
+            return this.peak.get();
+        }
+
+        private long getAverage() {
+            final long count = this.samples.get();
+            return count > 0 ? this.total.get() / count : 0;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.benchmark;
+
+import com.atlassian.bitbucket.commit.Commit;
+import com.atlassian.bitbucket.commit.CommitService;
+import com.atlassian.bitbucket.commit.CommonAncestorCommitRequest;
+import com.atlassian.bitbucket.content.Change;
+import com.atlassian.bitbucket.content.ChangeType;
+import com.atlassian.bitbucket.content.ChangesRequest;
+import com.atlassian.bitbucket.content.ContentService;
+import com.atlassian.bitbucket.io.TypeAwareOutputSupplier;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestService;
+import com.atlassian.bitbucket.repository.RefService;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.scm.Command;
+import com.atlassian.bitbucket.scm.CommandInputHandler;
+import com.atlassian.bitbucket.scm.CommandOutputHandler;
+import com.atlassian.bitbucket.scm.ScmCommandBuilder;
+import com.atlassian.bitbucket.scm.ScmService;
+import com.atlassian.bitbucket.util.PageImpl;
+import com.atlassian.bitbucket.util.PageRequest;
+import com.atlassian.utils.process.ProcessException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-ins of the Bitbucket services the hooks use, backed by a bare git repository created with JGit.
+ *
+ * Changes are computed by diffing the trees of the commits and file contents are read from the object database,
+ * so the hooks do the same work as in Bitbucket, except that nothing is read over the SCM process boundary. If
+ * enabled, the SCM runs real "git cat-file --batch" processes in the repository for the batch fetch.
+ */
+public class JGitBitbucket implements AutoCloseable {
+
+    private static final PersonIdent AUTHOR = new PersonIdent("Load Test", "load-test@example.com");
+
+    private final org.eclipse.jgit.lib.Repository gitRepository;
+
+    private final Repository repository = StandIns.repository(1, "load-test");
+
+    private final Map<Long, PullRequest> pullRequests = new ConcurrentHashMap<>();
+
+    private final AtomicLong streamedFiles = new AtomicLong();
+
+    private final AtomicLong declinedPullRequests = new AtomicLong();
+
+    private final AtomicLong startedCommands = new AtomicLong();
+
+    private volatile String defaultBranchCommit = null;
+
+    private final CommitService commitService = StandIns.proxy(
+        CommitService.class,
+        "commitService",
+        (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getChanges":
+                    return this.getChanges((ChangesRequest) args[0], (PageRequest) args[1]);
+                case "getCommonAncestor":
+                    final CommonAncestorCommitRequest request = (CommonAncestorCommitRequest) args[0];
+                    return this.getMergeBase(request.getCommitId(), request.getOtherCommitId());
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        }
+    );
+
+    private final ContentService contentService = StandIns.proxy(
+        ContentService.class,
+        "contentService",
+        (proxy, method, args) -> {
+            if (!method.getName().equals("streamFile")) {
+                throw StandIns.unsupported(method);
+            }
+            this.streamFile((String) args[1], (String) args[2], (TypeAwareOutputSupplier) args[3]);
+            return null;
+        }
+    );
+
+    private final RefService refService = StandIns.proxy(
+        RefService.class,
+        "refService",
+        (proxy, method, args) -> {
+            if (!method.getName().equals("getDefaultBranch")) {
+                throw StandIns.unsupported(method);
+            }
+            return this.defaultBranchCommit != null ? StandIns.branch("master", this.defaultBranchCommit) : null;
+        }
+    );
+
+    private final PullRequestService pullRequestService = StandIns.proxy(
+        PullRequestService.class,
+        "pullRequestService",
+        (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getById":
+                    return this.pullRequests.get((Long) args[1]);
+                case "decline":
+                    this.declinedPullRequests.incrementAndGet();
+                    return null;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        }
+    );
+
+    /**
+     * Create a new bare repository
+     *
+     * @param directory The directory of the repository. It must not exist yet.
+     * @throws IOException The repository can't be created
+     */
+    public JGitBitbucket(final File directory) throws IOException {
+        this.gitRepository = FileRepositoryBuilder.create(directory);
+        this.gitRepository.create(true);
+    }
+
+    /**
+     * Store the content of a file
+     *
+     * @param content The content
+     * @return The id of the blob
+     * @throws IOException The blob can't be stored
+     */
+    public String blob(final byte[] content) throws IOException {
+        final ObjectInserter inserter = this.gitRepository.newObjectInserter();
+        try {
+            final ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, content);
+            inserter.flush();
+            return blobId.name();
+        } finally {
+            inserter.release();
+        }
+    }
+
+    /**
+     * Store a commit with the given files
+     *
+     * @param parent The parent commit or null for a root commit
+     * @param files  The blob ids of all files of the commit by path
+     * @return The id of the commit
+     * @throws IOException The commit can't be stored
+     */
+    public String commit(final String parent, final Map<String, String> files) throws IOException {
+        final ObjectInserter inserter = this.gitRepository.newObjectInserter();
+        try {
+            final DirCache index = DirCache.newInCore();
+            final DirCacheBuilder indexBuilder = index.builder();
+            for (final Map.Entry<String, String> file : new TreeMap<>(files).entrySet()) {
+                final DirCacheEntry entry = new DirCacheEntry(file.getKey());
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(ObjectId.fromString(file.getValue()));
+                indexBuilder.add(entry);
+            }
+            indexBuilder.finish();
+
+            final CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(index.writeTree(inserter));
+            if (parent != null) {
+                commit.setParentId(ObjectId.fromString(parent));
+            }
+            commit.setAuthor(AUTHOR);
+            commit.setCommitter(AUTHOR);
+            commit.setMessage(String.format("Commit %d files", files.size()));
+            final ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+            return commitId.name();
+        } finally {
+            inserter.release();
+        }
+    }
+
+    /**
+     * Let the default branch point to the given commit
+     *
+     * @param commitId The commit
+     */
+    public void setDefaultBranch(final String commitId) {
+        this.defaultBranchCommit = commitId;
+    }
+
+    /**
+     * Open a pull request, so it can be found by the pull request service
+     *
+     * @param pullRequest The pull request
+     */
+    public void addPullRequest(final PullRequest pullRequest) {
+        this.pullRequests.put(pullRequest.getId(), pullRequest);
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    public CommitService getCommitService() {
+        return commitService;
+    }
+
+    public ContentService getContentService() {
+        return contentService;
+    }
+
+    public RefService getRefService() {
+        return refService;
+    }
+
+    public PullRequestService getPullRequestService() {
+        return pullRequestService;
+    }
+
+    /**
+     * An SCM running git commands in the repository, like the SCM of Bitbucket does
+     *
+     * @return The SCM service
+     */
+    public ScmService getScmService() {
+        return StandIns.proxy(ScmService.class, "scm", (proxy, method, args) -> {
+            if (method.getName().equals("createBuilder")) {
+                return this.createBuilder();
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+
+    public long getStreamedFiles() {
+        return streamedFiles.get();
+    }
+
+    public long getDeclinedPullRequests() {
+        return declinedPullRequests.get();
+    }
+
+    public long getStartedCommands() {
+        return startedCommands.get();
+    }
+
+    @Override
+    public void close() {
+        this.gitRepository.close();
+    }
+
+    /**
+     * Diff the trees of two commits, like Bitbucket lists the changes of a push or pull request
+     *
+     * @param changesRequest The request
+     * @param pageRequest    The requested page
+     * @return The page of changes
+     * @throws IOException The commits can't be read
+     */
+    private PageImpl<Change> getChanges(
+        final ChangesRequest changesRequest,
+        final PageRequest pageRequest
+    ) throws IOException
+    {
+        final List<Change> changes = new ArrayList<>();
+        final ObjectReader reader = this.gitRepository.newObjectReader();
+        try {
+            final RevWalk revWalk = new RevWalk(reader);
+            final RevCommit until = revWalk.parseCommit(ObjectId.fromString(changesRequest.getUntilId()));
+            final TreeWalk treeWalk = new TreeWalk(reader);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            if (changesRequest.getSinceId() != null) {
+                treeWalk.addTree(revWalk.parseCommit(ObjectId.fromString(changesRequest.getSinceId())).getTree());
+            } else if (until.getParentCount() > 0) {
+                treeWalk.addTree(revWalk.parseCommit(until.getParent(0)).getTree());
+            } else {
+                treeWalk.addTree(new EmptyTreeIterator());
+            }
+            treeWalk.addTree(until.getTree());
+
+            int index = 0;
+            while (changes.size() < pageRequest.getLimit() && treeWalk.next()) {
+                if (index++ < pageRequest.getStart()) {
+                    continue;
+                }
+                final ChangeType type;
+                if (treeWalk.getRawMode(1) == 0) {
+                    type = ChangeType.DELETE;
+                } else if (treeWalk.getRawMode(0) == 0) {
+                    type = ChangeType.ADD;
+                } else {
+                    type = ChangeType.MODIFY;
+                }
+                changes.add(
+                    StandIns.change(
+                        treeWalk.getPathString(),
+                        treeWalk.getObjectId(type == ChangeType.DELETE ? 0 : 1).name(),
+                        type
+                    )
+                );
+            }
+            return new PageImpl<>(pageRequest, changes, !treeWalk.next());
+        } finally {
+            reader.release();
+        }
+    }
+
+    /**
+     * Find the merge base of two commits
+     *
+     * @param commitId      The one commit
+     * @param otherCommitId The other commit
+     * @return The merge base or null, if the commits share no history
+     * @throws IOException The commits can't be read
+     */
+    private Commit getMergeBase(final String commitId, final String otherCommitId) throws IOException {
+        final ObjectReader reader = this.gitRepository.newObjectReader();
+        try {
+            final RevWalk revWalk = new RevWalk(reader);
+            revWalk.setRevFilter(RevFilter.MERGE_BASE);
+            revWalk.markStart(revWalk.parseCommit(ObjectId.fromString(commitId)));
+            revWalk.markStart(revWalk.parseCommit(ObjectId.fromString(otherCommitId)));
+            final RevCommit mergeBase = revWalk.next();
+            return mergeBase != null ? StandIns.commit(mergeBase.name()) : null;
+        } finally {
+            reader.release();
+        }
+    }
+
+    /**
+     * Copy a file of a commit to the given output
+     *
+     * @param commitId       The commit
+     * @param path           The path of the file
+     * @param outputSupplier The output
+     * @throws IOException The file can't be read
+     */
+    private void streamFile(
+        final String commitId,
+        final String path,
+        final TypeAwareOutputSupplier outputSupplier
+    ) throws IOException
+    {
+        final ObjectReader reader = this.gitRepository.newObjectReader();
+        try {
+            final RevCommit commit = new RevWalk(reader).parseCommit(ObjectId.fromString(commitId));
+            final TreeWalk treeWalk = TreeWalk.forPath(reader, path, commit.getTree());
+            if (treeWalk == null) {
+                throw new IllegalArgumentException(String.format("Unknown file %s in %s", path, commitId));
+            }
+            this.streamedFiles.incrementAndGet();
+            try (final OutputStream outputStream = outputSupplier.getStream("text/plain")) {
+                reader.open(treeWalk.getObjectId(0)).copyTo(outputStream);
+            }
+        } finally {
+            reader.release();
+        }
+    }
+
+    /**
+     * Create a builder of a git command, which runs as a local process in the repository
+     *
+     * @return The builder
+     */
+    private ScmCommandBuilder<?> createBuilder() {
+        final List<String> commandLine = new ArrayList<>(
+            Arrays.asList("git", "--git-dir=" + this.gitRepository.getDirectory().getAbsolutePath())
+        );
+        final CommandInputHandler[] inputHandler = new CommandInputHandler[1];
+
+        return StandIns.proxy(ScmCommandBuilder.class, "builder", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "command":
+                case "argument":
+                    commandLine.add((String) args[0]);
+                    return proxy;
+                case "inputHandler":
+                    inputHandler[0] = (CommandInputHandler) args[0];
+                    return proxy;
+                case "build":
+                    final CommandOutputHandler<?> outputHandler = (CommandOutputHandler<?>) args[0];
+                    return StandIns.proxy(Command.class, String.join(" ", commandLine), (command, call, none) -> {
+                        if (!call.getName().equals("call")) {
+                            throw StandIns.unsupported(call);
+                        }
+                        return this.run(commandLine, inputHandler[0], outputHandler);
+                    });
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    /**
+     * Run a git process, feeding its standard input and output to the handlers on separate threads
+     *
+     * @param commandLine   The command line
+     * @param inputHandler  The handler writing the standard input, if any
+     * @param outputHandler The handler reading the standard output
+     * @return The output of the handler
+     * @throws IOException          The process can't be started
+     * @throws InterruptedException Interrupted while waiting for the process
+     */
+    private Object run(
+        final List<String> commandLine,
+        final CommandInputHandler inputHandler,
+        final CommandOutputHandler<?> outputHandler
+    ) throws IOException, InterruptedException
+    {
+        final Process process = new ProcessBuilder(commandLine).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        this.startedCommands.incrementAndGet();
+
+        final Thread input = new Thread(() -> {
+            if (inputHandler != null) {
+                inputHandler.process(process.getOutputStream());
+            }
+            try {
+                process.getOutputStream().close();
+            } catch (final IOException e) {
+                // The process ended already
+            }
+        }, "git-input");
+        input.start();
+
+        try {
+            outputHandler.process(process.getInputStream());
+        } catch (final ProcessException e) {
+            throw new UncheckedIOException(new IOException(e));
+        } finally {
+            input.join();
+            process.waitFor();
+        }
+        return outputHandler.getOutput();
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.benchmark;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.EventStreamValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.Prescanner;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link Prescanner} with parsing the block-style files of the {@link Corpus}.
+ *
+ * <pre>java -jar benchmarks/target/benchmarks.jar PrescannerBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrescannerBenchmark {
+
+    @Param({"TINY", "MANY_FILES"})
+    public Corpus corpus;
+
+    private final Prescanner prescanner = new Prescanner();
+
+    private final ValidationEngine engine = new EventStreamValidationEngine(LintRules.NONE);
+
+    private List<byte[]> files;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.files = new ArrayList<>(this.corpus.createFiles().values());
+        for (final byte[] file : this.files) {
+            if (!this.prescanner.isValid(file, 0, file.length, 0)) {
+                throw new IllegalStateException("The corpus contains files the pre-scanner doesn't accept");
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean prescan() {
+        boolean valid = true;
+        for (final byte[] file : this.files) {
+            valid &= this.prescanner.isValid(file, 0, file.length, 0);
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public void parse() {
+        for (final byte[] file : this.files) {
+            this.engine.validate(new UnicodeReader(new ByteArrayInputStream(file)), ValidationBudget.unlimited());
+        }
+    }
+}
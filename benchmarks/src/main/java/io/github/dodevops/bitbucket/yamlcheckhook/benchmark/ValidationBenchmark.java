@@ -0,0 +1,100 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.benchmark;
+
+import com.atlassian.bitbucket.content.Change;
+import com.atlassian.bitbucket.content.ChangeType;
+import com.atlassian.bitbucket.repository.Repository;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.PooledSnakeYamlBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlEngineBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.DefaultValidationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.InMemoryContentService;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationServiceFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link DefaultValidationService#areChangesValid} over the synthetic {@link Corpus}.
+ *
+ * Run with the gc profiler to see the allocation rate:
+ * <pre>java -jar benchmarks/target/benchmarks.jar ValidationBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+    @Param({"TINY", "HELM", "DEEP", "ANCHORS", "MANY_FILES"})
+    public Corpus corpus;
+
+    @Param({PluginConfiguration.ENGINE_EVENTS, PluginConfiguration.ENGINE_LOAD})
+    public String engine;
+
+    @Param({SnakeYamlBackend.NAME, PooledSnakeYamlBackend.NAME, SnakeYamlEngineBackend.NAME})
+    public String parser;
+
+    private ValidationServiceFactory validationServiceFactory;
+
+    private Repository repository;
+
+    private List<Change> changes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final InMemoryContentService contentService = new InMemoryContentService();
+        this.changes = new ArrayList<>();
+
+        int contentId = 0;
+        for (final Map.Entry<String, byte[]> file : this.corpus.createFiles().entrySet()) {
+            contentService.putFile(file.getKey(), file.getValue());
+            this.changes.add(
+                StandIns.change(file.getKey(), String.format("%040x", contentId++), ChangeType.MODIFY)
+            );
+        }
+
+        // The result cache would turn every measured invocation into a lookup
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(PluginConfiguration.CACHE_SIZE, "0");
+        properties.put(PluginConfiguration.ENGINE, this.engine);
+        properties.put(PluginConfiguration.PARSER, this.parser);
+        // The merge keys of the ANCHORS corpus use far more aliases than the default limit allows
+        properties.put(PluginConfiguration.LIMITS_MAX_ALIASES, "0");
+
+        this.validationServiceFactory = new ValidationServiceFactory(contentService, properties);
+        this.repository = StandIns.repository(1, "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.validationServiceFactory.destroy();
+    }
+
+    @Benchmark
+    public void areChangesValid() throws InvalidYamlFileException {
+        this.validationServiceFactory.getValidationService().areChangesValid(this.changes, this.repository, COMMIT);
+    }
+}
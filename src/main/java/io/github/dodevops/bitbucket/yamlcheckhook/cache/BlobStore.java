@@ -0,0 +1,39 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+/**
+ * A bounded set of 20 byte keys of blobs known to be valid. Implementations may forget keys to stay in bounds.
+ */
+public interface BlobStore {
+
+    /**
+     * The length of the keys in bytes
+     */
+    int KEY_LENGTH = 20;
+
+    /**
+     * Check whether a key was added
+     *
+     * @param key The key
+     * @return true, if the key was added and not forgotten since
+     */
+    boolean contains(byte[] key);
+
+    /**
+     * Add a key
+     *
+     * @param key The key
+     */
+    void add(byte[] key);
+
+    /**
+     * Get the number of stored keys
+     *
+     * @return The number of keys or -1, if unknown
+     */
+    long size();
+
+    /**
+     * Release the resources of the store
+     */
+    void close();
+}
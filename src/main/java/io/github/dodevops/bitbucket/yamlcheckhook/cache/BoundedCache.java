@@ -0,0 +1,121 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe, size bounded cache evicting the least recently used entries
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class BoundedCache<K, V> {
+
+    private final int maximumSize;
+
+    private final Map<K, V> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a new cache
+     *
+     * @param maximumSize The maximum number of entries to keep. A size of 0 disables the cache.
+     */
+    public BoundedCache(final int maximumSize) {
+        this.maximumSize = Math.max(0, maximumSize);
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2385402467651335826L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                if (this.size() > BoundedCache.this.maximumSize) {
+                    BoundedCache.this.evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Look up a cached value
+     *
+     * @param key The key to look up
+     * @return The cached value or null, if the key is unknown
+     */
+    public V get(final K key) {
+        final V value;
+        synchronized (this.entries) {
+            value = this.entries.get(key);
+        }
+        if (value == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Store a value, possibly evicting the least recently used entry
+     *
+     * @param key   The key to store the value under
+     * @param value The value to store
+     */
+    public void put(final K key, final V value) {
+        if (this.maximumSize == 0) {
+            return;
+        }
+        synchronized (this.entries) {
+            this.entries.put(key, value);
+        }
+    }
+
+    /**
+     * Remove a single entry from the cache
+     *
+     * @param key The key to remove
+     */
+    public void remove(final K key) {
+        synchronized (this.entries) {
+            this.entries.remove(key);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache. The statistics are kept.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
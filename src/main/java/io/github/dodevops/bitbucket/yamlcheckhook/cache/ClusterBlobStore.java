@@ -0,0 +1,62 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import com.atlassian.cache.Cache;
+import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheSettingsBuilder;
+
+/**
+ * A blob store in a cache replicated to all nodes of the cluster
+ */
+public class ClusterBlobStore implements BlobStore {
+
+    private static final String CACHE_NAME = ClusterBlobStore.class.getName();
+
+    private final Cache<String, Boolean> cache;
+
+    /**
+     * Create the store
+     *
+     * @param cacheManager The cache manager of the application
+     * @param maxEntries   The maximum number of keys to keep
+     */
+    public ClusterBlobStore(final CacheManager cacheManager, final int maxEntries) {
+        this.cache = cacheManager.getCache(
+            CACHE_NAME,
+            null,
+            new CacheSettingsBuilder()
+                .remote()
+                .replicateViaCopy()
+                .replicateAsynchronously()
+                .maxEntries(maxEntries)
+                .build()
+        );
+    }
+
+    @Override
+    public boolean contains(final byte[] key) {
+        return this.cache.get(toHex(key)) != null;
+    }
+
+    @Override
+    public void add(final byte[] key) {
+        this.cache.put(toHex(key), Boolean.TRUE);
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        // The cache is owned by the cache manager
+    }
+
+    private static String toHex(final byte[] key) {
+        final StringBuilder hex = new StringBuilder(key.length * 2);
+        for (final byte b : key) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import com.atlassian.bitbucket.server.ApplicationPropertiesService;
+import com.atlassian.cache.CacheManager;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the blobs known to be valid beyond the lifetime of the plugin.
+ *
+ * Unlike the {@link ValidationResultCache}, the store survives restarts (in a memory mapped file in the home
+ * directory) or is shared by all nodes of a cluster (in a replicated cache), depending on the configuration. A blob
+ * is stored by the digest of its content id and the validation profile, so changing the rules invalidates the
+ * stored blobs.
+ */
+@Named
+public class KnownValidBlobStore implements DisposableBean {
+
+    private static final String FILE_NAME = "caches/yamlcheckhook/known-valid-blobs";
+
+    @ComponentImport
+    private final ApplicationPropertiesService applicationPropertiesService;
+
+    @ComponentImport
+    private final CacheManager cacheManager;
+
+    private final BlobStore blobStore;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final Logger log = Logger.getLogger(KnownValidBlobStore.class);
+
+    @Inject
+    public KnownValidBlobStore(
+        final PluginConfiguration pluginConfiguration,
+        final ApplicationPropertiesService applicationPropertiesService,
+        final CacheManager cacheManager,
+        final MetricsRegistry metricsRegistry
+    )
+    {
+        this.applicationPropertiesService = applicationPropertiesService;
+        this.cacheManager = cacheManager;
+        this.blobStore = this.createBlobStore(pluginConfiguration);
+
+        metricsRegistry.gauge("blob-store.size", this::size);
+        metricsRegistry.gauge("blob-store.hits", this.hits::get);
+        metricsRegistry.gauge("blob-store.misses", this.misses::get);
+    }
+
+    /**
+     * Check whether a blob is known to be valid
+     *
+     * @param contentId The content id of the blob
+     * @param profile   The validation profile
+     * @return true, if the blob is known to be valid
+     */
+    public boolean isKnownValid(final String contentId, final String profile) {
+        if (this.blobStore == null || contentId == null) {
+            return false;
+        }
+
+        if (this.blobStore.contains(getKey(contentId, profile))) {
+            this.hits.incrementAndGet();
+            return true;
+        }
+
+        this.misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Remember that a blob is valid
+     *
+     * @param contentId The content id of the blob
+     * @param profile   The validation profile
+     */
+    public void putValid(final String contentId, final String profile) {
+        if (this.blobStore != null && contentId != null) {
+            this.blobStore.add(getKey(contentId, profile));
+        }
+    }
+
+    public long size() {
+        return this.blobStore != null ? this.blobStore.size() : 0;
+    }
+
+    @Override
+    public void destroy() {
+        if (this.blobStore != null) {
+            this.blobStore.close();
+        }
+    }
+
+    private BlobStore createBlobStore(final PluginConfiguration pluginConfiguration) {
+        final String type = pluginConfiguration.getBlobStore();
+        final int size = pluginConfiguration.getBlobStoreSize();
+
+        if (PluginConfiguration.BLOB_STORE_CLUSTER.equals(type)) {
+            return new ClusterBlobStore(this.cacheManager, size);
+        }
+
+        if (PluginConfiguration.BLOB_STORE_FILE.equals(type)) {
+            final File file = new File(this.applicationPropertiesService.getHomeDir(), FILE_NAME);
+            try {
+                return new MappedBlobStore(file, size);
+            } catch (final IOException | IllegalArgumentException e) {
+                this.log.warn(String.format("Can not open the blob store %s. Disabling it.", file), e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the key of a blob in the store
+     *
+     * @param contentId The content id of the blob
+     * @param profile   The validation profile
+     * @return The SHA-1 digest of both
+     */
+    static byte[] getKey(final String contentId, final String profile) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(profile.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(contentId.getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
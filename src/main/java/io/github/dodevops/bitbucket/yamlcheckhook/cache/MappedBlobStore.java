@@ -0,0 +1,179 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A blob store in a memory mapped file.
+ *
+ * The file holds a header and a fixed number of slots of 20 bytes each, which are used as an open addressing hash
+ * table with linear probing. If no free slot is found within a few probes, the key replaces the one in its home
+ * slot, so the file never grows and recently added keys are kept. An all zero slot is free.
+ */
+public class MappedBlobStore implements BlobStore {
+
+    private static final int MAGIC = 0x59434842;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 16;
+
+    private static final int MAX_PROBES = 8;
+
+    private final RandomAccessFile file;
+
+    private final MappedByteBuffer buffer;
+
+    private final int slots;
+
+    private long size;
+
+    /**
+     * Open or create a store
+     *
+     * @param path  The file of the store. If it was created with another number of slots, it's cleared.
+     * @param slots The number of keys the store can hold
+     * @throws IOException The file can't be opened
+     */
+    public MappedBlobStore(final File path, final int slots) throws IOException {
+        if (slots <= 0 || HEADER_LENGTH + (long) slots * KEY_LENGTH > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("%d slots can not be mapped", slots));
+        }
+
+        if (path.getParentFile() != null && !path.getParentFile().isDirectory() && !path.getParentFile().mkdirs()) {
+            throw new IOException(String.format("Can not create the directory of %s", path));
+        }
+
+        this.slots = slots;
+        this.file = new RandomAccessFile(path, "rw");
+
+        try {
+            final long length = HEADER_LENGTH + (long) slots * KEY_LENGTH;
+            final boolean compatible = this.file.length() == length &&
+                this.file.readInt() == MAGIC &&
+                this.file.readInt() == VERSION &&
+                this.file.readInt() == slots;
+
+            if (!compatible) {
+                this.file.setLength(0);
+                this.file.setLength(length);
+            }
+
+            this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+
+            if (compatible) {
+                this.size = this.buffer.getInt(12) & 0xffffffffL;
+            } else {
+                this.buffer.putInt(0, MAGIC);
+                this.buffer.putInt(4, VERSION);
+                this.buffer.putInt(8, slots);
+                this.buffer.putInt(12, 0);
+            }
+        } catch (final IOException | RuntimeException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(final byte[] key) {
+        final int home = this.getHomeSlot(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            final int slot = (home + probe) % this.slots;
+            if (this.isFree(slot)) {
+                return false;
+            }
+            if (this.equals(slot, key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void add(final byte[] key) {
+        if (isZero(key)) {
+            return;
+        }
+
+        final int home = this.getHomeSlot(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            final int slot = (home + probe) % this.slots;
+            if (this.isFree(slot)) {
+                this.write(slot, key);
+                this.size++;
+                this.buffer.putInt(12, (int) this.size);
+                return;
+            }
+            if (this.equals(slot, key)) {
+                return;
+            }
+        }
+
+        // All probed slots are taken: forget the key in the home slot
+        this.write(home, key);
+    }
+
+    @Override
+    public synchronized long size() {
+        return this.size;
+    }
+
+    @Override
+    public synchronized void close() {
+        this.buffer.force();
+        try {
+            this.file.close();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can not close the blob store", e);
+        }
+    }
+
+    private int getHomeSlot(final byte[] key) {
+        if (key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException(String.format("Keys have to be %d bytes long", KEY_LENGTH));
+        }
+        // The keys are digests, so any 4 of their bytes are evenly distributed
+        final int hash = (key[0] & 0xff) << 24 | (key[1] & 0xff) << 16 | (key[2] & 0xff) << 8 | key[3] & 0xff;
+        return (int) ((hash & 0xffffffffL) % this.slots);
+    }
+
+    private boolean isFree(final int slot) {
+        final int offset = HEADER_LENGTH + slot * KEY_LENGTH;
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            if (this.buffer.get(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equals(final int slot, final byte[] key) {
+        final int offset = HEADER_LENGTH + slot * KEY_LENGTH;
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            if (this.buffer.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(final int slot, final byte[] key) {
+        final int offset = HEADER_LENGTH + slot * KEY_LENGTH;
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            this.buffer.put(offset + i, key[i]);
+        }
+    }
+
+    private static boolean isZero(final byte[] key) {
+        for (final byte b : key) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
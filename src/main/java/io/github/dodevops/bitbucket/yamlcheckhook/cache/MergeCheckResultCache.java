@@ -0,0 +1,86 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.setting.Settings;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.HookSettings;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Remembers the merge check results of pull requests.
+ *
+ * The results are keyed by the latest commits of both refs of the pull request and the hook settings, so a result
+ * is automatically outdated as soon as one of the refs moves or the settings are changed.
+ */
+@Named
+public class MergeCheckResultCache {
+
+    private final BoundedCache<String, RepositoryHookResult> cache;
+
+    @Inject
+    public MergeCheckResultCache(
+        final PluginConfiguration pluginConfiguration,
+        final MetricsRegistry metricsRegistry
+    )
+    {
+        this.cache = new BoundedCache<>(pluginConfiguration.getMergeCheckCacheSize());
+
+        metricsRegistry.gauge("merge-check-cache.size", this::size);
+        metricsRegistry.gauge("merge-check-cache.hits", this::getHits);
+        metricsRegistry.gauge("merge-check-cache.misses", this::getMisses);
+        metricsRegistry.gauge("merge-check-cache.evictions", this::getEvictions);
+    }
+
+    /**
+     * Look up the result of an earlier merge check
+     *
+     * @param pullRequest The pull request
+     * @param settings    The hook settings
+     * @return The result or null, if the pull request wasn't checked in this state yet
+     */
+    public RepositoryHookResult get(final PullRequest pullRequest, final Settings settings) {
+        return this.cache.get(getKey(pullRequest, settings));
+    }
+
+    /**
+     * Remember the result of a merge check
+     *
+     * @param pullRequest The pull request
+     * @param settings    The hook settings
+     * @param result      The result of the check
+     */
+    public void put(final PullRequest pullRequest, final Settings settings, final RepositoryHookResult result) {
+        this.cache.put(getKey(pullRequest, settings), result);
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHits() {
+        return this.cache.getHits();
+    }
+
+    public long getMisses() {
+        return this.cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return this.cache.getEvictions();
+    }
+
+    private static String getKey(final PullRequest pullRequest, final Settings settings) {
+        return String.format(
+            "%d/%d/%s..%s/%s",
+            pullRequest.getToRef().getRepository().getId(),
+            pullRequest.getId(),
+            pullRequest.getToRef().getLatestCommit(),
+            pullRequest.getFromRef().getLatestCommit(),
+            HookSettings.getFingerprint(settings)
+        );
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.HookSettings;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Persists the state of each pull request at its last passing merge check, so a later check only has to validate
+ * the commits added since then.
+ *
+ * The checkpoints are stored in the plugin settings and so survive restarts and are shared within a cluster.
+ */
+@Named
+public class PullRequestCheckpointStore {
+
+    private static final String KEY_PREFIX = "io.github.dodevops.bitbucket.yamlcheckhook.checkpoint.";
+
+    @ComponentImport
+    private final PluginSettingsFactory pluginSettingsFactory;
+
+    @Inject
+    public PullRequestCheckpointStore(final PluginSettingsFactory pluginSettingsFactory) {
+        this.pluginSettingsFactory = pluginSettingsFactory;
+    }
+
+    /**
+     * Get the commit of the source branch, that passed the last check of the pull request
+     *
+     * A checkpoint is only returned, if the target branch didn't move and neither the hook settings nor the
+     * validation profile were changed since then. Whether the source branch was rewritten has to be checked by the
+     * caller.
+     *
+     * @param pullRequest The pull request
+     * @param settings    The current hook settings
+     * @param profile     The current validation profile
+     * @return The commit id or null, if there's no usable checkpoint
+     */
+    public String getPassedCommit(final PullRequest pullRequest, final Settings settings, final String profile) {
+        final Object value = this.getPluginSettings().get(getKey(pullRequest));
+
+        if (!(value instanceof List)) {
+            return null;
+        }
+
+        final List<?> checkpoint = (List<?>) value;
+
+        if (
+            checkpoint.size() != 4 ||
+                !pullRequest.getToRef().getLatestCommit().equals(checkpoint.get(0)) ||
+                !HookSettings.getFingerprint(settings).equals(checkpoint.get(2)) ||
+                !profile.equals(checkpoint.get(3))
+        ) {
+            return null;
+        }
+
+        return (String) checkpoint.get(1);
+    }
+
+    /**
+     * Remember that the current state of the pull request passed the check
+     *
+     * The plugin settings are only written, if the checkpoint changed.
+     *
+     * @param pullRequest The pull request
+     * @param settings    The current hook settings
+     * @param profile     The current validation profile
+     */
+    public void putPassed(final PullRequest pullRequest, final Settings settings, final String profile) {
+        final PluginSettings pluginSettings = this.getPluginSettings();
+        final String key = getKey(pullRequest);
+        final List<String> checkpoint = Arrays.asList(
+            pullRequest.getToRef().getLatestCommit(),
+            pullRequest.getFromRef().getLatestCommit(),
+            HookSettings.getFingerprint(settings),
+            profile
+        );
+
+        if (checkpoint.equals(pluginSettings.get(key))) {
+            return;
+        }
+
+        pluginSettings.put(key, checkpoint);
+    }
+
+    /**
+     * Forget the checkpoint of a pull request
+     *
+     * @param pullRequest The pull request
+     */
+    public void remove(final PullRequest pullRequest) {
+        this.getPluginSettings().remove(getKey(pullRequest));
+    }
+
+    private PluginSettings getPluginSettings() {
+        return this.pluginSettingsFactory.createGlobalSettings();
+    }
+
+    private static String getKey(final PullRequest pullRequest) {
+        return String.format(
+            "%s%d.%d",
+            KEY_PREFIX,
+            pullRequest.getToRef().getRepository().getId(),
+            pullRequest.getId()
+        );
+    }
+}
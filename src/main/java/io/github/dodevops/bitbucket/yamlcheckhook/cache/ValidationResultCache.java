@@ -0,0 +1,112 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Remembers the validation results of blobs by their content id, so the same content doesn't have to be fetched
+ * and parsed again when it shows up in another branch or pull request.
+ *
+ * The keys combine the content id with the validation profile, as a blob valid with one parser backend, engine or
+ * set of lint rules may be invalid with another.
+ */
+@Named
+public class ValidationResultCache {
+
+    private final BoundedCache<String, Result> cache;
+
+    @Inject
+    public ValidationResultCache(
+        final PluginConfiguration pluginConfiguration,
+        final MetricsRegistry metricsRegistry
+    )
+    {
+        this.cache = new BoundedCache<>(pluginConfiguration.getCacheSize());
+
+        metricsRegistry.gauge("validation-cache.size", this::size);
+        metricsRegistry.gauge("validation-cache.hits", this::getHits);
+        metricsRegistry.gauge("validation-cache.misses", this::getMisses);
+        metricsRegistry.gauge("validation-cache.evictions", this::getEvictions);
+    }
+
+    /**
+     * Look up the validation result of a blob
+     *
+     * @param key The validation profile and the content id of the blob
+     * @return The known result or null, if the blob wasn't validated yet
+     */
+    public Result get(final String key) {
+        if (key == null) {
+            return null;
+        }
+        return this.cache.get(key);
+    }
+
+    /**
+     * Remember that a blob is valid
+     *
+     * @param key The validation profile and the content id of the blob
+     */
+    public void putValid(final String key) {
+        if (key != null) {
+            this.cache.put(key, Result.VALID);
+        }
+    }
+
+    /**
+     * Remember that a blob is invalid
+     *
+     * @param key     The validation profile and the content id of the blob
+     * @param failure The problem found in the blob
+     */
+    public void putInvalid(final String key, final ValidationFailure failure) {
+        if (key != null) {
+            this.cache.put(key, new Result(false, failure));
+        }
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHits() {
+        return this.cache.getHits();
+    }
+
+    public long getMisses() {
+        return this.cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return this.cache.getEvictions();
+    }
+
+    /**
+     * The remembered validation result of a blob
+     */
+    public static final class Result {
+
+        static final Result VALID = new Result(true, null);
+
+        private final boolean valid;
+
+        private final ValidationFailure failure;
+
+        Result(final boolean valid, final ValidationFailure failure) {
+            this.valid = valid;
+            this.failure = failure;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public ValidationFailure getFailure() {
+            return failure;
+        }
+    }
+}
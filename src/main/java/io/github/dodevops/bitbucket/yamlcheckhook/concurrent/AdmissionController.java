@@ -0,0 +1,275 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.concurrent;
+
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.repository.Repository;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import org.apache.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of pushes and pull requests validated at the same time on this node, so a burst of pushes
+ * (like a migration of many repositories) can't take the CPU from the other threads of Bitbucket.
+ *
+ * Validations exceeding the limit wait in a queue per repository. Free slots are handed to the repositories in
+ * turns, so a repository receiving many pushes can't starve the others. Validations waiting longer than the
+ * configured timeout give up and are handled according to the configured policy.
+ *
+ * Background validations don't queue. They only take a slot, that no push or merge check is waiting for.
+ */
+@Named
+public class AdmissionController {
+
+    private final int maxConcurrent;
+
+    private final long queueTimeoutNanos;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The waiting validations by repository id. The repository, whose turn is next, comes first.
+     */
+    private final LinkedHashMap<Integer, ArrayDeque<Waiter>> waiting = new LinkedHashMap<>();
+
+    private int active = 0;
+
+    private int queued = 0;
+
+    private final Logger log = Logger.getLogger(AdmissionController.class);
+
+    @Inject
+    public AdmissionController(
+        final PluginConfiguration pluginConfiguration,
+        final MetricsRegistry metricsRegistry
+    )
+    {
+        this.maxConcurrent = pluginConfiguration.getAdmissionMaxConcurrent();
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(pluginConfiguration.getAdmissionQueueTimeout());
+        this.pluginConfiguration = pluginConfiguration;
+        this.metricsRegistry = metricsRegistry;
+
+        metricsRegistry.gauge("admission.active", this::getActive);
+        metricsRegistry.gauge("admission.queued", this::getQueued);
+        metricsRegistry.gauge("admission.queued-repositories", this::getQueuedRepositories);
+    }
+
+    /**
+     * Wait until a validation in the given repository may run
+     *
+     * @param repository The repository
+     * @return The permit, which has to be closed when the validation is done, or null, if the validation wasn't
+     * admitted in time
+     */
+    public Permit tryAcquire(final Repository repository) {
+        if (this.maxConcurrent <= 0) {
+            return new Permit(false);
+        }
+
+        final long start = System.nanoTime();
+        this.lock.lock();
+        try {
+            if (this.active < this.maxConcurrent && this.waiting.isEmpty()) {
+                this.active++;
+                this.metricsRegistry.histogram(MetricsRegistry.ADMISSION_WAIT).record(0);
+                return new Permit(true);
+            }
+
+            final Waiter waiter = new Waiter(this.lock.newCondition());
+            final ArrayDeque<Waiter> queue = this.waiting.computeIfAbsent(
+                repository.getId(),
+                id -> new ArrayDeque<>()
+            );
+            queue.add(waiter);
+            this.queued++;
+
+            long remaining = this.queueTimeoutNanos;
+            try {
+                while (!waiter.admitted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.metricsRegistry.histogram(MetricsRegistry.ADMISSION_WAIT).record(System.nanoTime() - start);
+
+            if (!waiter.admitted) {
+                queue.remove(waiter);
+                if (queue.isEmpty()) {
+                    this.waiting.remove(repository.getId(), queue);
+                }
+                this.queued--;
+                this.metricsRegistry.counter(MetricsRegistry.ADMISSION_TIMEOUTS).increment();
+                return null;
+            }
+            return new Permit(true);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Take a free slot without waiting, if no other validation is waiting for one
+     *
+     * @return The permit, which has to be closed when the validation is done, or null, if no slot is free
+     */
+    public Permit tryAcquireIdle() {
+        if (this.maxConcurrent <= 0) {
+            return new Permit(false);
+        }
+
+        this.lock.lock();
+        try {
+            if (this.active < this.maxConcurrent && this.waiting.isEmpty()) {
+                this.active++;
+                return new Permit(true);
+            }
+            return null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Get the result of a hook for a push or pull request, that wasn't admitted in time
+     *
+     * @param subject The push or pull request, as shown to the user
+     * @return The result according to the configured policy
+     */
+    public RepositoryHookResult getTimeoutResult(final String subject) {
+        if (this.pluginConfiguration.isAdmissionPolicyAccept()) {
+            this.log.warn(
+                String.format(
+                    "Too many validations are running. Accepting %s without validating its YAML files.",
+                    subject
+                )
+            );
+            return RepositoryHookResult.accepted();
+        }
+
+        return RepositoryHookResult.rejected(
+            "YAML validation is busy",
+            String.format(
+                "Too many pushes and pull requests are being validated right now, so the YAML files of %s weren't " +
+                    "validated. Please try again in a few minutes.",
+                subject
+            )
+        );
+    }
+
+    public int getActive() {
+        this.lock.lock();
+        try {
+            return this.active;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        this.lock.lock();
+        try {
+            return this.queued;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getQueuedRepositories() {
+        this.lock.lock();
+        try {
+            return this.waiting.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Free the slot of a finished validation and hand it to the next waiting one
+     */
+    private void release() {
+        this.lock.lock();
+        try {
+            this.active--;
+            this.admitWaiting();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Admit waiting validations while there are free slots, taking the repositories in turns
+     */
+    private void admitWaiting() {
+        while (this.active < this.maxConcurrent && !this.waiting.isEmpty()) {
+            final Iterator<Map.Entry<Integer, ArrayDeque<Waiter>>> repositories = this.waiting.entrySet().iterator();
+            final Map.Entry<Integer, ArrayDeque<Waiter>> next = repositories.next();
+            repositories.remove();
+
+            final Waiter waiter = next.getValue().poll();
+            if (!next.getValue().isEmpty()) {
+                // The repository takes its next turn after all other waiting repositories
+                this.waiting.put(next.getKey(), next.getValue());
+            }
+
+            this.queued--;
+            this.active++;
+            waiter.admitted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    /**
+     * The permission to run a validation. Closing it frees the slot for the next validation.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final boolean limited;
+
+        private boolean closed = false;
+
+        private Permit(final boolean limited) {
+            this.limited = limited;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (this.closed) {
+                    return;
+                }
+                this.closed = true;
+            }
+            if (this.limited) {
+                AdmissionController.this.release();
+            }
+        }
+    }
+
+    /**
+     * A validation waiting for admission. Guarded by the lock.
+     */
+    private static final class Waiter {
+
+        private final Condition condition;
+
+        private boolean admitted = false;
+
+        private Waiter(final Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
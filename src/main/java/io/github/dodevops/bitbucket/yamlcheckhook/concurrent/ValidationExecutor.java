@@ -0,0 +1,237 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.concurrent;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The thread pools owned by the plugin. They are shut down when the plugin is disabled.
+ */
+@Named
+public class ValidationExecutor implements DisposableBean {
+
+    private static final int ACTION_QUEUE_SIZE = 1000;
+
+    private final ThreadPoolExecutor parserExecutor;
+
+    private final ThreadPoolExecutor workerExecutor;
+
+    private final ThreadPoolExecutor commandExecutor;
+
+    private final ThreadPoolExecutor backgroundExecutor;
+
+    private final ThreadPoolExecutor actionExecutor;
+
+    private final ForkJoinPool segmentPool;
+
+    private final Logger log = Logger.getLogger(ValidationExecutor.class);
+
+    @Inject
+    public ValidationExecutor(final PluginConfiguration pluginConfiguration) {
+        this.parserExecutor = createExecutor("parser", pluginConfiguration.getParserThreads());
+        this.workerExecutor = createQueueingExecutor("worker", pluginConfiguration.getParallelThreads());
+        this.commandExecutor = createExecutor("command", pluginConfiguration.getBatchFetchCommands());
+        this.backgroundExecutor = createBoundedExecutor(
+            "background",
+            pluginConfiguration.getPrewarmThreads(),
+            pluginConfiguration.getPrewarmQueueSize()
+        );
+        this.actionExecutor = createBoundedExecutor("action", 1, ACTION_QUEUE_SIZE);
+        this.segmentPool = createForkJoinPool("segment", pluginConfiguration.getSplitThreads());
+    }
+
+    /**
+     * Create a completion service running its tasks on the worker threads used to validate several files in
+     * parallel. Tasks are queued, if all workers are busy.
+     *
+     * @param <T> The result type of the tasks
+     * @return The completion service
+     */
+    public <T> CompletionService<T> createWorkerCompletionService() {
+        return new ExecutorCompletionService<>(this.workerExecutor);
+    }
+
+    /**
+     * Run a parser consuming streamed content on a separate thread.
+     *
+     * The parser pool doesn't queue: if all parser threads are busy, the task is rejected and the caller has to
+     * fall back to parsing on its own thread.
+     *
+     * @param task The parser task
+     * @param <T>  The result type of the task
+     * @return The future of the task
+     * @throws RejectedExecutionException All parser threads are busy
+     */
+    public <T> Future<T> submitParser(final Callable<T> task) throws RejectedExecutionException {
+        return this.parserExecutor.submit(task);
+    }
+
+    /**
+     * Run a long-running SCM command (like a "git cat-file --batch" command serving a validation run) until it ends.
+     *
+     * The command pool doesn't queue: if all command threads are busy, the task is rejected.
+     *
+     * @param task The task running the command
+     * @param <T>  The result type of the task
+     * @return The future of the task
+     * @throws RejectedExecutionException All command threads are busy
+     */
+    public <T> Future<T> submitCommand(final Callable<T> task) throws RejectedExecutionException {
+        return this.commandExecutor.submit(task);
+    }
+
+    /**
+     * Run a task in the background, e.g. to prepare results before they are needed.
+     *
+     * The background pool only queues a limited number of tasks. If the queue is full, the task is rejected.
+     *
+     * @param task The task
+     * @throws RejectedExecutionException The queue is full
+     */
+    public void submitBackground(final Runnable task) throws RejectedExecutionException {
+        this.backgroundExecutor.execute(task);
+    }
+
+    /**
+     * Run an action with side effects (like declining a pull request) outside of the hooks.
+     *
+     * Actions run one after the other on a single thread. Only a limited number of actions is queued. If the queue
+     * is full, the action is rejected.
+     *
+     * @param action The action
+     * @throws RejectedExecutionException The queue is full
+     */
+    public void submitAction(final Runnable action) throws RejectedExecutionException {
+        this.actionExecutor.execute(action);
+    }
+
+    /**
+     * Get the pool validating the parts of large files split at their document boundaries
+     *
+     * @return The pool
+     */
+    public ForkJoinPool getSegmentPool() {
+        return this.segmentPool;
+    }
+
+    @Override
+    public void destroy() {
+        this.log.debug("Shutting down the validation thread pools");
+        this.parserExecutor.shutdownNow();
+        this.workerExecutor.shutdownNow();
+        this.commandExecutor.shutdownNow();
+        this.backgroundExecutor.shutdownNow();
+        this.actionExecutor.shutdownNow();
+        this.segmentPool.shutdownNow();
+    }
+
+    /**
+     * Create a non-queueing pool of daemon threads
+     *
+     * @param name       The name used for the threads
+     * @param maxThreads The maximum number of threads
+     * @return The executor
+     */
+    private static ThreadPoolExecutor createExecutor(final String name, final int maxThreads) {
+        return new ThreadPoolExecutor(
+            0,
+            Math.max(1, maxThreads),
+            60L,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            createThreadFactory(name)
+        );
+    }
+
+    /**
+     * Create a pool of a fixed number of daemon threads queueing tasks while all threads are busy
+     *
+     * @param name    The name used for the threads
+     * @param threads The number of threads
+     * @return The executor
+     */
+    private static ThreadPoolExecutor createQueueingExecutor(final String name, final int threads) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            Math.max(1, threads),
+            Math.max(1, threads),
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            createThreadFactory(name)
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create a pool of a fixed number of daemon threads queueing a limited number of tasks
+     *
+     * @param name      The name used for the threads
+     * @param threads   The number of threads
+     * @param queueSize The maximum number of waiting tasks
+     * @return The executor
+     */
+    private static ThreadPoolExecutor createBoundedExecutor(final String name, final int threads, final int queueSize) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            Math.max(1, threads),
+            Math.max(1, threads),
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+            createThreadFactory(name)
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create a fork-join pool of daemon threads
+     *
+     * @param name        The name used for the threads
+     * @param parallelism The number of threads
+     * @return The pool
+     */
+    private static ForkJoinPool createForkJoinPool(final String name, final int parallelism) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return new ForkJoinPool(
+            Math.max(1, parallelism),
+            pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(String.format("yamlcheckhook-%s-%d", name, threadNumber.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+            },
+            null,
+            false
+        );
+    }
+
+    private static ThreadFactory createThreadFactory(final String name) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(
+                runnable,
+                String.format("yamlcheckhook-%s-%d", name, threadNumber.incrementAndGet())
+            );
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
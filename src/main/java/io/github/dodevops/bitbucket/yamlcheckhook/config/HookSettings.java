@@ -0,0 +1,89 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.config;
+
+import com.atlassian.bitbucket.setting.Settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The keys of the settings configured for the hooks on a project or repository
+ */
+public final class HookSettings {
+
+    /**
+     * Globs of the files to validate, one per line. Empty to validate all files with a yaml extension.
+     */
+    public static final String INCLUDES = "includes";
+
+    /**
+     * Globs of the files not to validate, one per line
+     */
+    public static final String EXCLUDES = "excludes";
+
+    /**
+     * Extensions to validate in addition to .yaml and .yml, separated by commas or new lines
+     */
+    public static final String EXTENSIONS = "extensions";
+
+    /**
+     * Schemas of the validated files, one "glob=path of the schema in the repository" per line
+     */
+    public static final String SCHEMAS = "schemas";
+
+    /**
+     * Name of the parser backend to validate the files with. Empty to use the one of the plugin configuration.
+     */
+    public static final String PARSER = "parser";
+
+    private HookSettings() {
+    }
+
+    /**
+     * Get a string representing all values of the settings. Equal settings have equal fingerprints.
+     *
+     * @param settings The settings or null, if the hook has none
+     * @return The fingerprint
+     */
+    public static String getFingerprint(final Settings settings) {
+        final Map<String, Object> sortedSettings = new TreeMap<>();
+        if (settings != null) {
+            sortedSettings.putAll(settings.asMap());
+        }
+        return sortedSettings.toString();
+    }
+
+    /**
+     * Get a setting holding a list of values separated by commas or new lines. Empty values and lines starting with
+     * "#" are ignored.
+     *
+     * @param settings The settings or null, if the hook has none
+     * @param key      The key of the setting
+     * @return The values
+     */
+    public static List<String> getList(final Settings settings, final String key) {
+        if (settings == null) {
+            return Collections.emptyList();
+        }
+
+        final String value = settings.getString(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+
+        final List<String> values = new ArrayList<>();
+        for (final String line : value.split("\\r?\\n")) {
+            if (line.trim().startsWith("#")) {
+                continue;
+            }
+            for (final String item : line.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    values.add(item.trim());
+                }
+            }
+        }
+        return values;
+    }
+}
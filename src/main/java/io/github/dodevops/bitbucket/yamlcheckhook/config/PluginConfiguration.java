@@ -0,0 +1,469 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.config;
+
+import com.atlassian.bitbucket.server.ApplicationPropertiesService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ParserBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import org.apache.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plugin wide configuration read from the plugin properties in bitbucket.properties
+ */
+@Named
+public class PluginConfiguration {
+
+    /**
+     * Maximum number of blob validation results to remember
+     */
+    public static final String CACHE_SIZE = "plugin.yamlcheckhook.cache.size";
+
+    /**
+     * Maximum number of pull request merge check results to remember
+     */
+    public static final String MERGE_CHECK_CACHE_SIZE = "plugin.yamlcheckhook.merge-check-cache.size";
+
+    /**
+     * Where to remember the blobs known to be valid beyond restarts: "file" (a memory mapped file in the home
+     * directory of the node), "cluster" (a cache replicated to all nodes) or "none"
+     */
+    public static final String BLOB_STORE = "plugin.yamlcheckhook.blob-store";
+
+    public static final String BLOB_STORE_FILE = "file";
+
+    public static final String BLOB_STORE_CLUSTER = "cluster";
+
+    public static final String BLOB_STORE_NONE = "none";
+
+    /**
+     * Maximum number of blobs in the blob store
+     */
+    public static final String BLOB_STORE_SIZE = "plugin.yamlcheckhook.blob-store.size";
+
+    /**
+     * The engine used to validate YAML content: "events" (parse only) or "load" (build the object graph)
+     */
+    public static final String ENGINE = "plugin.yamlcheckhook.engine";
+
+    public static final String ENGINE_EVENTS = "events";
+
+    public static final String ENGINE_LOAD = "load";
+
+    /**
+     * The parser backend used, if the hook settings of a repository select none (see {@link ParserBackend})
+     */
+    public static final String PARSER = "plugin.yamlcheckhook.parser";
+
+    /**
+     * Accept simple block-style files recognized by the pre-scanner without parsing them. Only used with the "events"
+     * engine, if no lint rules or schemas apply.
+     */
+    public static final String PRESCAN = "plugin.yamlcheckhook.prescan";
+
+    /**
+     * Lint rules checked in addition to the syntax, separated by commas (see {@link LintRules})
+     */
+    public static final String LINT_RULES = "plugin.yamlcheckhook.lint.rules";
+
+    /**
+     * Size of the buffers used to stream file contents into the parser
+     */
+    public static final String STREAM_BUFFER_SIZE = "plugin.yamlcheckhook.stream.buffer-size";
+
+    /**
+     * Number of filled buffers per file that may wait for the parser
+     */
+    public static final String STREAM_BUFFERS_IN_FLIGHT = "plugin.yamlcheckhook.stream.buffers-in-flight";
+
+    /**
+     * Number of idle buffers kept for reuse
+     */
+    public static final String STREAM_POOLED_BUFFERS = "plugin.yamlcheckhook.stream.pooled-buffers";
+
+    /**
+     * Maximum number of "git cat-file --batch" commands reading the files of validation runs at the same time. 0
+     * reads every file with a separate request to the content service.
+     */
+    public static final String BATCH_FETCH_COMMANDS = "plugin.yamlcheckhook.batch-fetch.commands";
+
+    /**
+     * Maximum number of threads parsing streamed content
+     */
+    public static final String PARSER_THREADS = "plugin.yamlcheckhook.parser.threads";
+
+    /**
+     * Number of worker threads validating the files of one change set in parallel. 1 disables parallel validation.
+     */
+    public static final String PARALLEL_THREADS = "plugin.yamlcheckhook.parallel.threads";
+
+    /**
+     * Minimum number of yaml files in a change set to validate them in parallel
+     */
+    public static final String PARALLEL_THRESHOLD = "plugin.yamlcheckhook.parallel.threshold";
+
+    /**
+     * Minimum size of a file in bytes to split it at its document boundaries and validate the parts in parallel.
+     * Only files with a size known before their content (read through the batch fetch) are split. 0 disables
+     * splitting files.
+     */
+    public static final String SPLIT_THRESHOLD = "plugin.yamlcheckhook.split.threshold";
+
+    /**
+     * Minimum size in characters of the parts a split file is validated in
+     */
+    public static final String SPLIT_SEGMENT_SIZE = "plugin.yamlcheckhook.split.segment-size";
+
+    /**
+     * Number of threads validating the parts of split files
+     */
+    public static final String SPLIT_THREADS = "plugin.yamlcheckhook.split.threads";
+
+    /**
+     * Validate all files of a push or pull request and report every invalid one instead of stopping at the first
+     */
+    public static final String COLLECT_ALL = "plugin.yamlcheckhook.collect-all";
+
+    /**
+     * Number of threads validating pull requests in the background when they are opened or updated. 0 disables
+     * pre-warming the merge check results.
+     */
+    public static final String PREWARM_THREADS = "plugin.yamlcheckhook.prewarm.threads";
+
+    /**
+     * Maximum number of pull requests waiting to be validated in the background
+     */
+    public static final String PREWARM_QUEUE_SIZE = "plugin.yamlcheckhook.prewarm.queue-size";
+
+    /**
+     * Only validate the files changed since the last passing merge check of a pull request
+     */
+    public static final String INCREMENTAL = "plugin.yamlcheckhook.incremental";
+
+    /**
+     * Maximum size of a single file in bytes. 0 disables the limit.
+     */
+    public static final String LIMITS_MAX_FILE_SIZE = "plugin.yamlcheckhook.limits.max-file-size";
+
+    /**
+     * Maximum size of all files validated for one push or pull request in bytes. 0 disables the limit.
+     */
+    public static final String LIMITS_MAX_TOTAL_SIZE = "plugin.yamlcheckhook.limits.max-total-size";
+
+    /**
+     * Maximum nesting depth of mappings and sequences. 0 disables the limit.
+     */
+    public static final String LIMITS_MAX_DEPTH = "plugin.yamlcheckhook.limits.max-depth";
+
+    /**
+     * Maximum number of aliases referring to mappings or sequences per file. 0 disables the limit.
+     */
+    public static final String LIMITS_MAX_ALIASES = "plugin.yamlcheckhook.limits.max-aliases";
+
+    /**
+     * Maximum duration of the validation of one push or pull request in milliseconds. 0 disables the limit.
+     */
+    public static final String LIMITS_DEADLINE = "plugin.yamlcheckhook.limits.deadline";
+
+    /**
+     * Maximum number of YAML files of a new branch sharing no history with the default branch. 0 disables the limit.
+     */
+    public static final String LIMITS_MAX_ORPHAN_CHANGES = "plugin.yamlcheckhook.limits.max-orphan-changes";
+
+    /**
+     * What to do with a new branch sharing no history with the default branch and exceeding the limit of its YAML
+     * files: "reject" it or "skip" its validation
+     */
+    public static final String LIMITS_ORPHAN_POLICY = "plugin.yamlcheckhook.limits.orphan-policy";
+
+    /**
+     * What to do with a file exceeding a limit: "reject" it or "skip" its validation
+     */
+    public static final String LIMITS_POLICY = "plugin.yamlcheckhook.limits.policy";
+
+    public static final String LIMITS_POLICY_REJECT = "reject";
+
+    public static final String LIMITS_POLICY_SKIP = "skip";
+
+    /**
+     * Maximum number of pushes and pull requests validated at the same time on a node. Further validations wait in a
+     * queue, which takes turns between the repositories. 0 (the default) disables the limit.
+     */
+    public static final String ADMISSION_MAX_CONCURRENT = "plugin.yamlcheckhook.admission.max-concurrent";
+
+    /**
+     * Maximum time in milliseconds a validation waits in the queue
+     */
+    public static final String ADMISSION_QUEUE_TIMEOUT = "plugin.yamlcheckhook.admission.queue-timeout";
+
+    /**
+     * What to do with a push or pull request, that waited too long: "reject" it, asking to retry later, or "accept"
+     * it without validation
+     */
+    public static final String ADMISSION_POLICY = "plugin.yamlcheckhook.admission.policy";
+
+    public static final String ADMISSION_POLICY_REJECT = "reject";
+
+    public static final String ADMISSION_POLICY_ACCEPT = "accept";
+
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 8;
+
+    private static final int DEFAULT_SPLIT_THRESHOLD = 8 * 1024 * 1024;
+
+    private static final int DEFAULT_SPLIT_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final int DEFAULT_MERGE_CHECK_CACHE_SIZE = 1000;
+
+    private static final int DEFAULT_BLOB_STORE_SIZE = 1024 * 1024;
+
+    private static final int DEFAULT_PREWARM_THREADS = 2;
+
+    private static final int DEFAULT_PREWARM_QUEUE_SIZE = 100;
+
+    private static final int DEFAULT_STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final int DEFAULT_STREAM_BUFFERS_IN_FLIGHT = 4;
+
+    private static final int DEFAULT_STREAM_POOLED_BUFFERS = 64;
+
+    private static final long DEFAULT_LIMITS_MAX_FILE_SIZE = 0;
+
+    private static final long DEFAULT_LIMITS_MAX_TOTAL_SIZE = 0;
+
+    private static final int DEFAULT_LIMITS_MAX_DEPTH = 1000;
+
+    private static final int DEFAULT_LIMITS_MAX_ALIASES = 1000;
+
+    private static final long DEFAULT_LIMITS_DEADLINE = 0;
+
+    private static final int DEFAULT_LIMITS_MAX_ORPHAN_CHANGES = 10000;
+
+    private static final int DEFAULT_ADMISSION_MAX_CONCURRENT = 0;
+
+    private static final long DEFAULT_ADMISSION_QUEUE_TIMEOUT = 10000;
+
+    @ComponentImport
+    private final ApplicationPropertiesService applicationPropertiesService;
+
+    private final Logger log = Logger.getLogger(PluginConfiguration.class);
+
+    @Inject
+    public PluginConfiguration(final ApplicationPropertiesService applicationPropertiesService) {
+        this.applicationPropertiesService = applicationPropertiesService;
+    }
+
+    public int getCacheSize() {
+        return this.applicationPropertiesService.getPluginProperty(CACHE_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    public int getMergeCheckCacheSize() {
+        return this.applicationPropertiesService.getPluginProperty(
+            MERGE_CHECK_CACHE_SIZE,
+            DEFAULT_MERGE_CHECK_CACHE_SIZE
+        );
+    }
+
+    public String getBlobStore() {
+        return this.applicationPropertiesService.getPluginProperty(BLOB_STORE, BLOB_STORE_FILE);
+    }
+
+    public int getBlobStoreSize() {
+        return this.applicationPropertiesService.getPluginProperty(BLOB_STORE_SIZE, DEFAULT_BLOB_STORE_SIZE);
+    }
+
+    public String getEngine() {
+        return this.applicationPropertiesService.getPluginProperty(ENGINE, ENGINE_EVENTS);
+    }
+
+    public String getParser() {
+        return this.applicationPropertiesService.getPluginProperty(PARSER, SnakeYamlBackend.NAME);
+    }
+
+    public String getLintRules() {
+        return this.applicationPropertiesService.getPluginProperty(LINT_RULES, "");
+    }
+
+    public int getStreamBufferSize() {
+        return this.applicationPropertiesService.getPluginProperty(STREAM_BUFFER_SIZE, DEFAULT_STREAM_BUFFER_SIZE);
+    }
+
+    public int getStreamBuffersInFlight() {
+        return this.applicationPropertiesService.getPluginProperty(
+            STREAM_BUFFERS_IN_FLIGHT,
+            DEFAULT_STREAM_BUFFERS_IN_FLIGHT
+        );
+    }
+
+    public int getStreamPooledBuffers() {
+        return this.applicationPropertiesService.getPluginProperty(
+            STREAM_POOLED_BUFFERS,
+            DEFAULT_STREAM_POOLED_BUFFERS
+        );
+    }
+
+    public int getBatchFetchCommands() {
+        return this.applicationPropertiesService.getPluginProperty(
+            BATCH_FETCH_COMMANDS,
+            Runtime.getRuntime().availableProcessors() * 2
+        );
+    }
+
+    public int getParserThreads() {
+        return this.applicationPropertiesService.getPluginProperty(
+            PARSER_THREADS,
+            Runtime.getRuntime().availableProcessors() * 2
+        );
+    }
+
+    public int getParallelThreads() {
+        return this.applicationPropertiesService.getPluginProperty(
+            PARALLEL_THREADS,
+            Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    public int getParallelThreshold() {
+        return this.applicationPropertiesService.getPluginProperty(PARALLEL_THRESHOLD, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public boolean isPrescan() {
+        return this.applicationPropertiesService.getPluginProperty(PRESCAN, true);
+    }
+
+    public int getSplitThreshold() {
+        return this.applicationPropertiesService.getPluginProperty(SPLIT_THRESHOLD, DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    public int getSplitSegmentSize() {
+        return this.applicationPropertiesService.getPluginProperty(SPLIT_SEGMENT_SIZE, DEFAULT_SPLIT_SEGMENT_SIZE);
+    }
+
+    public int getSplitThreads() {
+        return this.applicationPropertiesService.getPluginProperty(
+            SPLIT_THREADS,
+            Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    public boolean isCollectAll() {
+        return this.applicationPropertiesService.getPluginProperty(COLLECT_ALL, false);
+    }
+
+    public int getPrewarmThreads() {
+        return this.applicationPropertiesService.getPluginProperty(PREWARM_THREADS, DEFAULT_PREWARM_THREADS);
+    }
+
+    public int getPrewarmQueueSize() {
+        return this.applicationPropertiesService.getPluginProperty(PREWARM_QUEUE_SIZE, DEFAULT_PREWARM_QUEUE_SIZE);
+    }
+
+    public boolean isIncremental() {
+        return this.applicationPropertiesService.getPluginProperty(INCREMENTAL, true);
+    }
+
+    public long getMaxFileSize() {
+        return this.applicationPropertiesService.getPluginProperty(LIMITS_MAX_FILE_SIZE, DEFAULT_LIMITS_MAX_FILE_SIZE);
+    }
+
+    public long getMaxTotalSize() {
+        return this.applicationPropertiesService.getPluginProperty(
+            LIMITS_MAX_TOTAL_SIZE,
+            DEFAULT_LIMITS_MAX_TOTAL_SIZE
+        );
+    }
+
+    public int getMaxDepth() {
+        return this.applicationPropertiesService.getPluginProperty(LIMITS_MAX_DEPTH, DEFAULT_LIMITS_MAX_DEPTH);
+    }
+
+    public int getMaxAliases() {
+        return this.applicationPropertiesService.getPluginProperty(LIMITS_MAX_ALIASES, DEFAULT_LIMITS_MAX_ALIASES);
+    }
+
+    public long getDeadline() {
+        return this.applicationPropertiesService.getPluginProperty(LIMITS_DEADLINE, DEFAULT_LIMITS_DEADLINE);
+    }
+
+    public int getMaxOrphanChanges() {
+        return this.applicationPropertiesService.getPluginProperty(
+            LIMITS_MAX_ORPHAN_CHANGES,
+            DEFAULT_LIMITS_MAX_ORPHAN_CHANGES
+        );
+    }
+
+    public boolean isBudgetPolicySkip() {
+        return LIMITS_POLICY_SKIP.equals(
+            this.applicationPropertiesService.getPluginProperty(LIMITS_POLICY, LIMITS_POLICY_REJECT)
+        );
+    }
+
+    public boolean isOrphanPolicySkip() {
+        return !LIMITS_POLICY_REJECT.equals(
+            this.applicationPropertiesService.getPluginProperty(LIMITS_ORPHAN_POLICY, LIMITS_POLICY_SKIP)
+        );
+    }
+
+    public int getAdmissionMaxConcurrent() {
+        return this.applicationPropertiesService.getPluginProperty(
+            ADMISSION_MAX_CONCURRENT,
+            DEFAULT_ADMISSION_MAX_CONCURRENT
+        );
+    }
+
+    public long getAdmissionQueueTimeout() {
+        return this.applicationPropertiesService.getPluginProperty(
+            ADMISSION_QUEUE_TIMEOUT,
+            DEFAULT_ADMISSION_QUEUE_TIMEOUT
+        );
+    }
+
+    public boolean isAdmissionPolicyAccept() {
+        return ADMISSION_POLICY_ACCEPT.equals(
+            this.applicationPropertiesService.getPluginProperty(ADMISSION_POLICY, ADMISSION_POLICY_REJECT)
+        );
+    }
+
+    /**
+     * Create the budget for a new validation run from the configured limits
+     *
+     * @return The budget, starting now
+     */
+    public ValidationBudget createValidationBudget() {
+        return new ValidationBudget(
+            this.getMaxFileSize(),
+            this.getMaxTotalSize(),
+            this.getMaxDepth(),
+            this.getMaxAliases(),
+            this.getDeadline()
+        );
+    }
+
+    /**
+     * Compile the configured lint rules. Invalid rules are logged and ignored.
+     *
+     * @return The lint rules
+     */
+    public LintRules createLintRules() {
+        final List<String> rules = new ArrayList<>();
+        for (final String rule : this.getLintRules().split(",")) {
+            if (rule.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                new LintRules(Collections.singletonList(rule));
+                rules.add(rule);
+            } catch (final IllegalArgumentException e) {
+                this.log.warn(String.format("Ignoring an invalid lint rule in %s: %s", LINT_RULES, e.getMessage()));
+            }
+        }
+        return rules.isEmpty() ? LintRules.NONE : new LintRules(rules);
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.parser.Parser;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Wraps a parser and enforces the depth, alias and deadline limits of a {@link ValidationBudget} on every event,
+ * before the composer or any other consumer sees it. Also counts the documents of the stream, so errors can be
+ * reported with the document they occurred in.
+ */
+public class BudgetedParser implements Parser {
+
+    /**
+     * Number of events between two deadline checks
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private final Parser parser;
+
+    private final ValidationBudget budget;
+
+    private final Set<String> collectionAnchors = new HashSet<>();
+
+    private int depth = 0;
+
+    private int collectionAliases = 0;
+
+    private int events = 0;
+
+    private int documents = 0;
+
+    public BudgetedParser(final Parser parser, final ValidationBudget budget) {
+        this.parser = parser;
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean checkEvent(final Event.ID choice) {
+        return this.parser.checkEvent(choice);
+    }
+
+    @Override
+    public Event peekEvent() {
+        return this.parser.peekEvent();
+    }
+
+    @Override
+    public Event getEvent() {
+        final Event event = this.parser.getEvent();
+
+        if (++this.events % DEADLINE_CHECK_INTERVAL == 0) {
+            this.budget.checkDeadline();
+        }
+
+        if (event.is(Event.ID.DocumentStart)) {
+            this.documents++;
+        }
+
+        if (event.is(Event.ID.MappingStart) || event.is(Event.ID.SequenceStart)) {
+            this.depth++;
+            if (this.budget.getMaxDepth() > 0 && this.depth > this.budget.getMaxDepth()) {
+                throw new BudgetExceededException(
+                    String.format(
+                        "Collections are nested deeper than the allowed %d levels at %s",
+                        this.budget.getMaxDepth(),
+                        event.getStartMark()
+                    )
+                );
+            }
+            final String anchor = ((NodeEvent) event).getAnchor();
+            if (anchor != null) {
+                this.collectionAnchors.add(anchor);
+            }
+        } else if (event.is(Event.ID.MappingEnd) || event.is(Event.ID.SequenceEnd)) {
+            this.depth--;
+        } else if (event.is(Event.ID.Alias)) {
+            if (this.collectionAnchors.contains(((NodeEvent) event).getAnchor())) {
+                this.collectionAliases++;
+                if (this.budget.getMaxAliases() > 0 && this.collectionAliases > this.budget.getMaxAliases()) {
+                    throw new BudgetExceededException(
+                        String.format(
+                            "More than the allowed %d aliases refer to collections at %s",
+                            this.budget.getMaxAliases(),
+                            event.getStartMark()
+                        )
+                    );
+                }
+            }
+        } else if (event.is(Event.ID.Scalar) && ((NodeEvent) event).getAnchor() != null) {
+            this.collectionAnchors.remove(((NodeEvent) event).getAnchor());
+        }
+
+        return event;
+    }
+
+    /**
+     * Get the number of documents started so far
+     *
+     * @return The number of the current document (starting at 1) or 0, if no document started yet
+     */
+    public int getDocuments() {
+        return documents;
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import org.yaml.snakeyaml.composer.ComposerException;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+
+import java.io.Reader;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Validates YAML content by only driving the parser event stream.
+ *
+ * No nodes or objects are built. Besides the syntax, aliases are checked to refer to an anchor defined earlier
+ * in the same document, which is the only check the composer would add.
+ */
+public class EventStreamValidationEngine implements ValidationEngine {
+
+    private final LintRules lintRules;
+
+    private final ParserBackend parserBackend;
+
+    public EventStreamValidationEngine(final LintRules lintRules) {
+        this(lintRules, new SnakeYamlBackend());
+    }
+
+    public EventStreamValidationEngine(final LintRules lintRules, final ParserBackend parserBackend) {
+        this.lintRules = lintRules;
+        this.parserBackend = parserBackend;
+    }
+
+    @Override
+    public void validate(final Reader reader, final ValidationBudget budget) throws InvalidDocumentException {
+        final BudgetedParser parser = Parsers.create(reader, budget, this.lintRules, this.parserBackend);
+        final Set<String> anchors = new HashSet<>();
+
+        try {
+            while (!parser.checkEvent(Event.ID.StreamEnd)) {
+                final Event event = parser.getEvent();
+
+                if (event.is(Event.ID.DocumentStart)) {
+                    anchors.clear();
+                } else if (event.is(Event.ID.Alias)) {
+                    final String anchor = ((NodeEvent) event).getAnchor();
+                    if (!anchors.contains(anchor)) {
+                        throw new UndefinedAliasException(anchor, event.getStartMark());
+                    }
+                } else if (event instanceof NodeEvent && ((NodeEvent) event).getAnchor() != null) {
+                    anchors.add(((NodeEvent) event).getAnchor());
+                }
+            }
+        } catch (final YAMLException e) {
+            throw new InvalidDocumentException(parser.getDocuments(), e);
+        }
+    }
+
+    /**
+     * An alias refers to an unknown anchor. Raised with the same message the composer uses.
+     */
+    static class UndefinedAliasException extends ComposerException {
+        private static final long serialVersionUID = -1297046125413627467L;
+
+        UndefinedAliasException(final String anchor, final Mark mark) {
+            super(null, null, "found undefined alias " + anchor, mark);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The lint rules checked in addition to the syntax of a file.
+ *
+ * All rules are checked on the same pass over the file as its syntax: the character rules while the parser reads
+ * the content, the structure rules on the parser events.
+ */
+public final class LintRules {
+
+    /**
+     * Forbid the same key twice in a mapping
+     */
+    public static final String DUPLICATE_KEYS = "duplicate-keys";
+
+    /**
+     * Forbid tab characters anywhere in the file
+     */
+    public static final String NO_TABS = "no-tabs";
+
+    /**
+     * Forbid spaces and tabs at the end of a line
+     */
+    public static final String NO_TRAILING_SPACES = "no-trailing-spaces";
+
+    /**
+     * Forbid anchors (&amp;name)
+     */
+    public static final String NO_ANCHORS = "no-anchors";
+
+    /**
+     * Forbid aliases (*name)
+     */
+    public static final String NO_ALIASES = "no-aliases";
+
+    /**
+     * Limit the nesting depth of mappings and sequences (max-depth=n)
+     */
+    public static final String MAX_DEPTH = "max-depth";
+
+    /**
+     * Limit the number of documents in a file (max-documents=n)
+     */
+    public static final String MAX_DOCUMENTS = "max-documents";
+
+    /**
+     * No lint rules at all
+     */
+    public static final LintRules NONE = new LintRules(new TreeSet<>());
+
+    private final boolean duplicateKeys;
+
+    private final boolean noTabs;
+
+    private final boolean noTrailingSpaces;
+
+    private final boolean noAnchors;
+
+    private final boolean noAliases;
+
+    private final int maxDepth;
+
+    private final int maxDocuments;
+
+    private final String description;
+
+    /**
+     * Compile the lint rules
+     *
+     * @param rules The names of the rules, with their limit if needed (like max-depth=10)
+     * @throws IllegalArgumentException A rule is unknown or has an invalid limit
+     */
+    public LintRules(final Collection<String> rules) throws IllegalArgumentException {
+        boolean duplicateKeys = false;
+        boolean noTabs = false;
+        boolean noTrailingSpaces = false;
+        boolean noAnchors = false;
+        boolean noAliases = false;
+        int maxDepth = 0;
+        int maxDocuments = 0;
+
+        final Set<String> normalizedRules = new TreeSet<>();
+
+        for (final String rule : rules) {
+            final String normalized = rule.trim().toLowerCase(Locale.ROOT).replace(" ", "");
+            final int separator = normalized.indexOf('=');
+            final String name = separator < 0 ? normalized : normalized.substring(0, separator);
+
+            if (MAX_DEPTH.equals(name)) {
+                maxDepth = getLimit(rule, normalized, separator);
+            } else if (MAX_DOCUMENTS.equals(name)) {
+                maxDocuments = getLimit(rule, normalized, separator);
+            } else if (separator >= 0) {
+                throw new IllegalArgumentException(String.format("The lint rule \"%s\" takes no limit", rule));
+            } else if (DUPLICATE_KEYS.equals(name)) {
+                duplicateKeys = true;
+            } else if (NO_TABS.equals(name)) {
+                noTabs = true;
+            } else if (NO_TRAILING_SPACES.equals(name)) {
+                noTrailingSpaces = true;
+            } else if (NO_ANCHORS.equals(name)) {
+                noAnchors = true;
+            } else if (NO_ALIASES.equals(name)) {
+                noAliases = true;
+            } else {
+                throw new IllegalArgumentException(String.format("\"%s\" is not a known lint rule", rule));
+            }
+
+            normalizedRules.add(normalized);
+        }
+
+        this.duplicateKeys = duplicateKeys;
+        this.noTabs = noTabs;
+        this.noTrailingSpaces = noTrailingSpaces;
+        this.noAnchors = noAnchors;
+        this.noAliases = noAliases;
+        this.maxDepth = maxDepth;
+        this.maxDocuments = maxDocuments;
+        this.description = String.join(",", normalizedRules);
+    }
+
+    private static int getLimit(final String rule, final String normalized, final int separator)
+        throws IllegalArgumentException
+    {
+        try {
+            final int limit = separator < 0 ? -1 : Integer.parseInt(normalized.substring(separator + 1));
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (final NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(String.format("The lint rule \"%s\" needs a limit greater than 0", rule));
+    }
+
+    public boolean isEmpty() {
+        return this.description.isEmpty();
+    }
+
+    /**
+     * Whether any rule needs to see the characters of the file
+     *
+     * @return true, if the characters should be inspected
+     */
+    boolean hasCharacterRules() {
+        return this.noTabs || this.noTrailingSpaces;
+    }
+
+    /**
+     * Whether any rule needs to see the parser events
+     *
+     * @return true, if the events should be inspected
+     */
+    boolean hasEventRules() {
+        return this.duplicateKeys || this.noAnchors || this.noAliases || this.maxDepth > 0 || this.maxDocuments > 0;
+    }
+
+    boolean isDuplicateKeys() {
+        return duplicateKeys;
+    }
+
+    boolean isNoTabs() {
+        return noTabs;
+    }
+
+    boolean isNoTrailingSpaces() {
+        return noTrailingSpaces;
+    }
+
+    boolean isNoAnchors() {
+        return noAnchors;
+    }
+
+    boolean isNoAliases() {
+        return noAliases;
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    int getMaxDocuments() {
+        return maxDocuments;
+    }
+
+    /**
+     * Get the rules in a canonical form. Equal rules have equal descriptions.
+     *
+     * @return The sorted rules separated by commas
+     */
+    @Override
+    public String toString() {
+        return this.description;
+    }
+}
@@ -0,0 +1,206 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.LintViolationException;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Wraps a parser and checks the structure lint rules on every event, before the composer or any other consumer
+ * sees it.
+ *
+ * The state of the open collections is kept in arrays reused for the whole file, so checking an event allocates
+ * nothing besides remembering the keys of a mapping.
+ *
+ * Keys are compared like the constructor would: by their resolved tag and value. So 1 and "1" are different keys,
+ * while 1 and 0x1 are the same.
+ */
+class LintingParser implements Parser {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final Parser parser;
+
+    private final LintRules lintRules;
+
+    private final Resolver resolver;
+
+    private KeyConstructor keyConstructor = null;
+
+    private int depth = 0;
+
+    private int documents = 0;
+
+    private boolean[] mapping = new boolean[INITIAL_DEPTH];
+
+    private boolean[] expectingKey = new boolean[INITIAL_DEPTH];
+
+    private Set<?>[] keys = new Set<?>[INITIAL_DEPTH];
+
+    /**
+     * Create a new linting parser
+     *
+     * @param parser    The parser to check the events of
+     * @param lintRules The lint rules to check
+     * @param resolver  The resolver of the parser backend, resolving the tags of plain keys
+     */
+    LintingParser(final Parser parser, final LintRules lintRules, final Resolver resolver) {
+        this.parser = parser;
+        this.lintRules = lintRules;
+        this.resolver = resolver;
+    }
+
+    @Override
+    public boolean checkEvent(final Event.ID choice) {
+        return this.parser.checkEvent(choice);
+    }
+
+    @Override
+    public Event peekEvent() {
+        return this.parser.peekEvent();
+    }
+
+    @Override
+    public Event getEvent() {
+        final Event event = this.parser.getEvent();
+
+        if (event.is(Event.ID.Scalar)) {
+            this.startNode(event);
+            this.endNode();
+        } else if (event.is(Event.ID.Alias)) {
+            if (this.lintRules.isNoAliases()) {
+                throw new LintViolationException(LintRules.NO_ALIASES, "found an alias", event.getStartMark());
+            }
+            this.startNode(event);
+            this.endNode();
+        } else if (event.is(Event.ID.MappingStart) || event.is(Event.ID.SequenceStart)) {
+            this.startNode(event);
+            this.push(event);
+        } else if (event.is(Event.ID.MappingEnd) || event.is(Event.ID.SequenceEnd)) {
+            this.depth--;
+            this.endNode();
+        } else if (event.is(Event.ID.DocumentStart)) {
+            this.documents++;
+            if (this.lintRules.getMaxDocuments() > 0 && this.documents > this.lintRules.getMaxDocuments()) {
+                throw new LintViolationException(
+                    LintRules.MAX_DOCUMENTS,
+                    String.format("found more than %d documents", this.lintRules.getMaxDocuments()),
+                    event.getStartMark()
+                );
+            }
+        }
+
+        return event;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void startNode(final Event event) {
+        if (this.lintRules.isNoAnchors() && !event.is(Event.ID.Alias) && ((NodeEvent) event).getAnchor() != null) {
+            throw new LintViolationException(LintRules.NO_ANCHORS, "found an anchor", event.getStartMark());
+        }
+
+        if (
+            !this.lintRules.isDuplicateKeys() || this.depth == 0 || !this.mapping[this.depth - 1] ||
+                !this.expectingKey[this.depth - 1] || !event.is(Event.ID.Scalar)
+        ) {
+            return;
+        }
+
+        Set<Object> mappingKeys = (Set<Object>) this.keys[this.depth - 1];
+        if (mappingKeys == null) {
+            mappingKeys = new HashSet<>();
+            this.keys[this.depth - 1] = mappingKeys;
+        }
+
+        final ScalarEvent scalar = (ScalarEvent) event;
+        if (!mappingKeys.add(this.getKey(scalar))) {
+            throw new LintViolationException(
+                LintRules.DUPLICATE_KEYS,
+                String.format("found duplicate key %s", scalar.getValue()),
+                event.getStartMark()
+            );
+        }
+    }
+
+    /**
+     * Get the value identifying a key within its mapping
+     *
+     * @param scalar The key
+     * @return The text of string keys, the tag and the constructed value of other keys
+     */
+    private Object getKey(final ScalarEvent scalar) {
+        // Resolve the tag like the composer
+        final Tag tag = scalar.getTag() == null || scalar.getTag().equals("!") ?
+            this.resolver.resolve(NodeId.scalar, scalar.getValue(), scalar.getImplicit().canOmitTagInPlainScalar()) :
+            new Tag(scalar.getTag());
+
+        if (Tag.STR.equals(tag)) {
+            return scalar.getValue();
+        }
+
+        if (this.keyConstructor == null) {
+            this.keyConstructor = new KeyConstructor();
+        }
+
+        Object value;
+        try {
+            value = this.keyConstructor.construct(
+                new ScalarNode(tag, scalar.getValue(), scalar.getStartMark(), scalar.getEndMark(), scalar.getStyle())
+            );
+        } catch (final YAMLException | IllegalArgumentException e) {
+            // Unknown tags (like the merge key) are compared by their text
+            value = scalar.getValue();
+        }
+        return Arrays.asList(tag, value);
+    }
+
+    private void endNode() {
+        if (this.depth > 0 && this.mapping[this.depth - 1]) {
+            this.expectingKey[this.depth - 1] = !this.expectingKey[this.depth - 1];
+        }
+    }
+
+    private void push(final Event event) {
+        if (this.lintRules.getMaxDepth() > 0 && this.depth >= this.lintRules.getMaxDepth()) {
+            throw new LintViolationException(
+                LintRules.MAX_DEPTH,
+                String.format("found collections nested deeper than %d levels", this.lintRules.getMaxDepth()),
+                event.getStartMark()
+            );
+        }
+
+        if (this.depth == this.mapping.length) {
+            this.mapping = Arrays.copyOf(this.mapping, this.depth * 2);
+            this.expectingKey = Arrays.copyOf(this.expectingKey, this.depth * 2);
+            this.keys = Arrays.copyOf(this.keys, this.depth * 2);
+        }
+
+        this.mapping[this.depth] = event.is(Event.ID.MappingStart);
+        this.expectingKey[this.depth] = true;
+        if (this.keys[this.depth] != null) {
+            this.keys[this.depth].clear();
+        }
+        this.depth++;
+    }
+
+    /**
+     * Constructs the values of single keys without remembering them like a constructor building a document
+     */
+    private static final class KeyConstructor extends SafeConstructor {
+
+        Object construct(final ScalarNode node) {
+            return this.getConstructor(node).construct(node);
+        }
+    }
+}
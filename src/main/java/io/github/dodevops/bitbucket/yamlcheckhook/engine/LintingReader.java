@@ -0,0 +1,102 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.LintViolationException;
+import org.yaml.snakeyaml.error.Mark;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Checks the character lint rules on the characters the parser reads, without reading the file again.
+ */
+class LintingReader extends FilterReader {
+
+    private final LintRules lintRules;
+
+    private int index = 0;
+
+    private int line = 0;
+
+    private int column = 0;
+
+    private boolean afterCarriageReturn = false;
+
+    /**
+     * Where the spaces at the current position started or -1, if the current position follows no spaces
+     */
+    private int spacesIndex = -1;
+
+    private int spacesLine = 0;
+
+    private int spacesColumn = 0;
+
+    LintingReader(final Reader in, final LintRules lintRules) {
+        super(in);
+        this.lintRules = lintRules;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final char[] c = new char[1];
+        return this.read(c, 0, 1) < 0 ? -1 : c[0];
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        final int read = super.read(cbuf, off, len);
+
+        if (read < 0) {
+            if (this.spacesIndex >= 0 && this.lintRules.isNoTrailingSpaces()) {
+                throw this.trailingSpaces();
+            }
+            return read;
+        }
+
+        for (int i = off; i < off + read; i++) {
+            final char c = cbuf[i];
+
+            if (c == '\t' && this.lintRules.isNoTabs()) {
+                throw new LintViolationException(
+                    LintRules.NO_TABS,
+                    "found a tab character",
+                    new Mark("reader", this.index, this.line, this.column, null, 0)
+                );
+            }
+
+            if (c == ' ' || c == '\t') {
+                if (this.spacesIndex < 0) {
+                    this.spacesIndex = this.index;
+                    this.spacesLine = this.line;
+                    this.spacesColumn = this.column;
+                }
+                this.column++;
+            } else if (c == '\n' || c == '\r') {
+                if (this.spacesIndex >= 0 && this.lintRules.isNoTrailingSpaces()) {
+                    throw this.trailingSpaces();
+                }
+                this.spacesIndex = -1;
+                if (c == '\r' || !this.afterCarriageReturn) {
+                    this.line++;
+                    this.column = 0;
+                }
+            } else {
+                this.spacesIndex = -1;
+                this.column++;
+            }
+
+            this.afterCarriageReturn = c == '\r';
+            this.index++;
+        }
+
+        return read;
+    }
+
+    private LintViolationException trailingSpaces() {
+        return new LintViolationException(
+            LintRules.NO_TRAILING_SPACES,
+            "found trailing spaces",
+            new Mark("reader", this.spacesIndex, this.spacesLine, this.spacesColumn, null, 0)
+        );
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.BaseConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.Reader;
+
+/**
+ * Validates YAML content by loading it into Java objects.
+ *
+ * This builds the complete object graph of every document and is therefore more expensive than the
+ * {@link EventStreamValidationEngine}, but it also catches errors raised while constructing the objects
+ * (e.g. unknown tags). Like Yaml.loadAll, the documents are loaded one after the other, so only one of them is held
+ * in memory at a time.
+ */
+public class LoadValidationEngine implements ValidationEngine {
+
+    private final LintRules lintRules;
+
+    private final ParserBackend parserBackend;
+
+    public LoadValidationEngine(final LintRules lintRules) {
+        this(lintRules, new SnakeYamlBackend());
+    }
+
+    public LoadValidationEngine(final LintRules lintRules, final ParserBackend parserBackend) {
+        this.lintRules = lintRules;
+        this.parserBackend = parserBackend;
+    }
+
+    @Override
+    public void validate(final Reader reader, final ValidationBudget budget) throws InvalidDocumentException {
+        // The same as Yaml.loadAll, but with the budget and lint rules enforced on the events before they are composed
+        final BudgetedParser parser = Parsers.create(reader, budget, this.lintRules, this.parserBackend);
+        final BaseConstructor constructor = this.parserBackend.acquireConstructor();
+        constructor.setComposer(new Composer(parser, this.parserBackend.getResolver()));
+
+        try {
+            while (constructor.checkData()) {
+                constructor.getData();
+            }
+        } catch (final YAMLException e) {
+            throw new InvalidDocumentException(parser.getDocuments(), e);
+        } catch (final IllegalArgumentException | ClassCastException e) {
+            // Some constructors of SnakeYAML fail on invalid values (like "!!int x") without a YAMLException
+            throw new InvalidDocumentException(
+                parser.getDocuments(),
+                new YAMLException(String.format("Can not construct a value: %s", e.getMessage()), e)
+            );
+        } finally {
+            this.parserBackend.releaseConstructor(constructor);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import org.yaml.snakeyaml.constructor.BaseConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Reader;
+
+/**
+ * Provides the parser and the objects building the documents used by the validation engines.
+ *
+ * The engines only depend on the SnakeYAML parser interface, so a backend may use any parser, as long as it
+ * delivers SnakeYAML events and raises SnakeYAML exceptions. Backends are used by several threads at once.
+ */
+public interface ParserBackend {
+
+    /**
+     * Get the name selecting the backend in the plugin configuration and hook settings
+     *
+     * @return The name
+     */
+    String getName();
+
+    /**
+     * Get the YAML version the backend implements. Backends implementing the same version accept the same files.
+     *
+     * @return The version, like "1.1"
+     */
+    String getYamlVersion();
+
+    /**
+     * Create a parser reading the given content
+     *
+     * @param reader The YAML content
+     * @return The parser
+     * @throws YAMLException The beginning of the content is not valid
+     */
+    Parser createParser(final Reader reader) throws YAMLException;
+
+    /**
+     * Get the resolver the load engine resolves the tags of plain scalars with
+     *
+     * @return The resolver
+     */
+    Resolver getResolver();
+
+    /**
+     * Get a constructor for the load engine to build the documents of one file with
+     *
+     * @return The constructor
+     */
+    BaseConstructor acquireConstructor();
+
+    /**
+     * Return a constructor after it built the documents of a file, whether they were valid or not. A constructor,
+     * which failed, only forgets the objects of the failed document when it built the next one.
+     *
+     * @param constructor The constructor
+     */
+    void releaseConstructor(final BaseConstructor constructor);
+}
@@ -0,0 +1,49 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.parser.Parser;
+
+import java.io.Reader;
+
+/**
+ * Creates the parsers of the validation engines
+ */
+final class Parsers {
+
+    private Parsers() {
+    }
+
+    /**
+     * Create a parser enforcing the budget and checking the lint rules on a single pass over the content
+     *
+     * @param reader        The YAML content
+     * @param budget        The resources the validation may use
+     * @param lintRules     The lint rules to check
+     * @param parserBackend The backend to create the parser with
+     * @return The parser
+     * @throws InvalidDocumentException The beginning of the content is not valid
+     */
+    static BudgetedParser create(
+        final Reader reader,
+        final ValidationBudget budget,
+        final LintRules lintRules,
+        final ParserBackend parserBackend
+    ) throws InvalidDocumentException
+    {
+        final Reader lintedReader = lintRules.hasCharacterRules() ? new LintingReader(reader, lintRules) : reader;
+
+        // The stream reader of SnakeYAML already reads (and checks) the first characters
+        Parser parser;
+        try {
+            parser = parserBackend.createParser(lintedReader);
+        } catch (final YAMLException e) {
+            throw new InvalidDocumentException(0, e);
+        }
+
+        if (lintRules.hasEventRules()) {
+            parser = new LintingParser(parser, lintRules, parserBackend.getResolver());
+        }
+        return new BudgetedParser(parser, budget);
+    }
+}
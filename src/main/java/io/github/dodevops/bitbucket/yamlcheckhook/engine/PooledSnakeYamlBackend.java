@@ -0,0 +1,50 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import org.yaml.snakeyaml.constructor.BaseConstructor;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Parses YAML 1.1 with SnakeYAML like the {@link SnakeYamlBackend}, but shares one resolver and keeps a pool of
+ * constructors, so loading a file doesn't set them up again.
+ *
+ * The parser itself keeps its state in final fields and can't be reused, so it is still created for every file.
+ */
+public class PooledSnakeYamlBackend extends SnakeYamlBackend {
+
+    public static final String NAME = "snakeyaml-pooled";
+
+    private static final int POOLED_CONSTRUCTORS = 64;
+
+    // The resolver is only read after it was set up, so all threads can use it at once
+    private final Resolver resolver = new Resolver();
+
+    private final BlockingQueue<BaseConstructor> constructors = new ArrayBlockingQueue<>(POOLED_CONSTRUCTORS);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Resolver getResolver() {
+        return this.resolver;
+    }
+
+    @Override
+    public BaseConstructor acquireConstructor() {
+        final BaseConstructor constructor = this.constructors.poll();
+        if (constructor == null) {
+            return new Constructor();
+        }
+        return constructor;
+    }
+
+    @Override
+    public void releaseConstructor(final BaseConstructor constructor) {
+        this.constructors.offer(constructor);
+    }
+}
@@ -0,0 +1,483 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+/**
+ * Recognizes simple block-style YAML files on their raw bytes, without decoding or parsing them.
+ *
+ * Only a conservative subset of YAML is accepted: block mappings and sequences, single-line plain and quoted
+ * scalars and comments in UTF-8 (optionally with a byte order mark). Everything else, like flow collections, block
+ * scalars, anchors, tags, multi-line scalars, documents markers or tabs, is left to the parser, as is everything the
+ * parser might reject. The pre-scanner never rejects a file: it only tells, if a file is known to be valid.
+ *
+ * Scanning a file allocates nothing. An instance keeps the state of the open collections and is therefore not
+ * thread-safe.
+ */
+public final class Prescanner {
+
+    /**
+     * Maximum nesting depth of collections the pre-scanner follows
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * Maximum length of a key in bytes (the parser allows simple keys of up to 1024 characters)
+     */
+    private static final int MAX_KEY_LENGTH = 1000;
+
+    private static final int NONE = -1;
+
+    private static final int KEY = 0;
+
+    private static final int SCALAR = 1;
+
+    private static final int INVALID = 2;
+
+    private final int[] indents = new int[MAX_DEPTH];
+
+    private final boolean[] sequences = new boolean[MAX_DEPTH];
+
+    private final boolean[] indentless = new boolean[MAX_DEPTH];
+
+    private byte[] content;
+
+    private int position;
+
+    private int end;
+
+    private int depth;
+
+    private int maxDepth;
+
+    private boolean started;
+
+    /**
+     * Indentation of the key or sequence entry still waiting for its value on the next lines or {@link #NONE}
+     */
+    private int pendingIndent;
+
+    private boolean pendingKey;
+
+    /**
+     * Check if YAML content is known to be valid
+     *
+     * @param content  The content
+     * @param offset   The start of the content in the array
+     * @param length   The length of the content
+     * @param maxDepth The maximum nesting depth of collections allowed by the budget (0 for no limit)
+     * @return true, if the content is valid, false, if it has to be validated by the parser
+     */
+    public boolean isValid(final byte[] content, final int offset, final int length, final int maxDepth) {
+        this.content = content;
+        this.position = offset;
+        this.end = offset + length;
+        this.depth = 0;
+        this.maxDepth = maxDepth > 0 ? Math.min(maxDepth, MAX_DEPTH) : MAX_DEPTH;
+        this.started = false;
+        this.pendingIndent = NONE;
+
+        try {
+            if (
+                length >= 3 && (content[offset] & 0xff) == 0xef && (content[offset + 1] & 0xff) == 0xbb &&
+                    (content[offset + 2] & 0xff) == 0xbf
+            ) {
+                this.position += 3;
+            }
+
+            while (this.position < this.end) {
+                if (!this.line()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            this.content = null;
+        }
+    }
+
+    /**
+     * Scan a line
+     *
+     * @return false, if the line is not in the accepted subset
+     */
+    private boolean line() {
+        int indent = 0;
+        while (this.position < this.end && this.content[this.position] == ' ') {
+            this.position++;
+            indent++;
+        }
+
+        if (this.isLineEnd() || this.content[this.position] == '#') {
+            return this.finishLine(true);
+        }
+
+        // Directives and document markers
+        final byte first = this.content[this.position];
+        if (
+            indent == 0 && (first == '%' || (first == '-' || first == '.') && this.position + 2 < this.end &&
+                this.content[this.position + 1] == first && this.content[this.position + 2] == first)
+        ) {
+            return false;
+        }
+
+        return this.node(indent);
+    }
+
+    /**
+     * Scan the node starting at the current position of the line
+     *
+     * @param column The column of the node
+     * @return false, if the node is not in the accepted subset
+     */
+    private boolean node(final int column) {
+        if (this.content[this.position] == '-' && this.isBlank(this.position + 1)) {
+            if (!this.enter(column, true)) {
+                return false;
+            }
+            this.position++;
+            final int valueColumn = column + 1 + this.skipSpaces();
+            this.pendingIndent = column;
+            this.pendingKey = false;
+            if (this.isLineEnd() || this.content[this.position] == '#') {
+                return this.finishLine(true);
+            }
+            return this.node(valueColumn);
+        }
+
+        final int start = this.position;
+        final int kind = this.scalar(true);
+        if (kind == INVALID) {
+            return false;
+        }
+
+        if (kind == SCALAR) {
+            // A scalar is only accepted as the value of a key or sequence entry on the previous line
+            if (this.pendingIndent == NONE || column <= this.pendingIndent) {
+                return false;
+            }
+            this.pendingIndent = NONE;
+            return this.finishLine(this.position > start && this.content[this.position - 1] == ' ');
+        }
+
+        if (!this.enter(column, false)) {
+            return false;
+        }
+
+        // Skip the ":" after the key
+        this.position++;
+        final int spaces = this.skipSpaces();
+        if (this.isLineEnd() || this.content[this.position] == '#') {
+            this.pendingIndent = column;
+            this.pendingKey = true;
+            return this.finishLine(spaces > 0 || this.isLineEnd());
+        }
+
+        final int valueStart = this.position;
+        if (this.scalar(false) != SCALAR) {
+            return false;
+        }
+        return this.finishLine(this.position > valueStart && this.content[this.position - 1] == ' ');
+    }
+
+    /**
+     * Enter a mapping key or sequence entry, opening or closing collections as the indentation requires
+     *
+     * @param column   The column of the key or entry
+     * @param sequence Whether it's a sequence entry
+     * @return false, if the indentation doesn't fit the open collections
+     */
+    private boolean enter(final int column, final boolean sequence) {
+        if (this.pendingIndent != NONE) {
+            final int pending = this.pendingIndent;
+            this.pendingIndent = NONE;
+            if (column > pending || this.pendingKey && column == pending && sequence) {
+                // A sequence may be indented like the key it belongs to
+                return this.push(column, sequence, column == pending);
+            }
+        }
+
+        while (this.depth > 0 && this.indents[this.depth - 1] > column) {
+            this.depth--;
+        }
+        if (
+            this.depth > 0 && this.indents[this.depth - 1] == column && this.indentless[this.depth - 1] && !sequence
+        ) {
+            this.depth--;
+        }
+
+        if (this.depth == 0) {
+            // Only a single root collection is accepted
+            if (this.started) {
+                return false;
+            }
+            this.started = true;
+            return this.push(column, sequence, false);
+        }
+
+        return this.indents[this.depth - 1] == column && this.sequences[this.depth - 1] == sequence;
+    }
+
+    private boolean push(final int column, final boolean sequence, final boolean isIndentless) {
+        if (this.depth == this.maxDepth) {
+            return false;
+        }
+        this.indents[this.depth] = column;
+        this.sequences[this.depth] = sequence;
+        this.indentless[this.depth] = isIndentless;
+        this.depth++;
+        return true;
+    }
+
+    /**
+     * Scan a single-line scalar
+     *
+     * @param keyAllowed Whether the scalar may be a key
+     * @return {@link #KEY}, if the scalar is a key followed by ":", {@link #SCALAR}, if it's a value, or
+     *     {@link #INVALID}, if it's not in the accepted subset
+     */
+    private int scalar(final boolean keyAllowed) {
+        final int start = this.position;
+        final byte first = this.content[this.position];
+
+        if (first == '\'' || first == '"') {
+            if (!(first == '\'' ? this.singleQuoted() : this.doubleQuoted())) {
+                return INVALID;
+            }
+            final int quotedEnd = this.position;
+            final int spaces = this.skipSpaces();
+            if (this.isColon(this.position)) {
+                return keyAllowed && quotedEnd - start <= MAX_KEY_LENGTH ? KEY : INVALID;
+            }
+            if (this.isLineEnd() || spaces > 0 && this.content[this.position] == '#') {
+                return SCALAR;
+            }
+            return INVALID;
+        }
+
+        if (!this.isPlainStart()) {
+            return INVALID;
+        }
+
+        while (!this.isLineEnd()) {
+            final byte b = this.content[this.position];
+            if (b == ':' && this.isBlank(this.position + 1)) {
+                return keyAllowed && this.position - start <= MAX_KEY_LENGTH ? KEY : INVALID;
+            }
+            if (b == '#' && this.content[this.position - 1] == ' ') {
+                return SCALAR;
+            }
+            if (!this.character()) {
+                return INVALID;
+            }
+        }
+        return SCALAR;
+    }
+
+    private boolean isPlainStart() {
+        final byte b = this.content[this.position];
+        switch (b) {
+            case '-':
+                // Negative numbers
+                return this.position + 1 < this.end && this.content[this.position + 1] >= '0' &&
+                    this.content[this.position + 1] <= '9';
+            case '?':
+            case ':':
+            case ',':
+            case '[':
+            case ']':
+            case '{':
+            case '}':
+            case '#':
+            case '&':
+            case '*':
+            case '!':
+            case '|':
+            case '>':
+            case '%':
+            case '@':
+            case '`':
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private boolean singleQuoted() {
+        this.position++;
+        while (!this.isLineEnd()) {
+            if (this.content[this.position] == '\'') {
+                this.position++;
+                if (this.position < this.end && this.content[this.position] == '\'') {
+                    this.position++;
+                    continue;
+                }
+                return true;
+            }
+            if (!this.character()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean doubleQuoted() {
+        this.position++;
+        while (!this.isLineEnd()) {
+            final byte b = this.content[this.position];
+            if (b == '"') {
+                this.position++;
+                return true;
+            }
+            if (b == '\\') {
+                if (!this.escape()) {
+                    return false;
+                }
+                continue;
+            }
+            if (!this.character()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean escape() {
+        this.position++;
+        if (this.position >= this.end) {
+            return false;
+        }
+        switch (this.content[this.position]) {
+            case '0':
+            case 'a':
+            case 'b':
+            case 't':
+            case 'n':
+            case 'v':
+            case 'f':
+            case 'r':
+            case 'e':
+            case ' ':
+            case '"':
+            case '\\':
+            case 'N':
+            case '_':
+            case 'L':
+            case 'P':
+                this.position++;
+                return true;
+            case 'x':
+                return this.hexDigits(2);
+            case 'u':
+                return this.hexDigits(4);
+            default:
+                return false;
+        }
+    }
+
+    private boolean hexDigits(final int count) {
+        this.position++;
+        for (int i = 0; i < count; i++, this.position++) {
+            if (this.position >= this.end) {
+                return false;
+            }
+            final byte b = this.content[this.position];
+            if (!(b >= '0' && b <= '9' || b >= 'a' && b <= 'f' || b >= 'A' && b <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skip a printable character within a line
+     *
+     * @return false, if the character is not printable, a tab or a line break only accepted by the parser
+     */
+    private boolean character() {
+        final int b = this.content[this.position] & 0xff;
+        if (b >= 0x20 && b < 0x7f) {
+            this.position++;
+            return true;
+        }
+        if (b < 0xc2 || b > 0xef) {
+            // Control characters, tabs, invalid UTF-8 and characters outside of the basic multilingual plane
+            return false;
+        }
+
+        if (b < 0xe0) {
+            if (!this.isContinuation(this.position + 1)) {
+                return false;
+            }
+            // U+0080 - U+009F are not printable, U+0085 breaks lines
+            final int codePoint = (b & 0x1f) << 6 | this.content[this.position + 1] & 0x3f;
+            this.position += 2;
+            return codePoint >= 0xa0;
+        }
+
+        if (!this.isContinuation(this.position + 1) || !this.isContinuation(this.position + 2)) {
+            return false;
+        }
+        final int codePoint = (b & 0x0f) << 12 | (this.content[this.position + 1] & 0x3f) << 6 |
+            this.content[this.position + 2] & 0x3f;
+        this.position += 3;
+        // Overlong encodings, surrogates, the line and paragraph separators, byte order marks and non-characters
+        return codePoint >= 0x800 && (codePoint < 0xd800 || codePoint > 0xdfff) && codePoint != 0x2028 &&
+            codePoint != 0x2029 && codePoint != 0xfeff && codePoint <= 0xfffd;
+    }
+
+    private boolean isContinuation(final int index) {
+        return index < this.end && (this.content[index] & 0xc0) == 0x80;
+    }
+
+    /**
+     * Finish the current line after its content
+     *
+     * @param commentAllowed Whether a comment may start at the current position
+     * @return false, if the rest of the line is not blank or a comment
+     */
+    private boolean finishLine(final boolean commentAllowed) {
+        final int spaces = this.skipSpaces();
+        if (this.position < this.end && this.content[this.position] == '#' && (commentAllowed || spaces > 0)) {
+            while (!this.isLineEnd()) {
+                if (!this.character()) {
+                    return false;
+                }
+            }
+        }
+
+        if (this.position == this.end) {
+            return true;
+        }
+        if (this.content[this.position] == '\n') {
+            this.position++;
+            return true;
+        }
+        if (
+            this.content[this.position] == '\r' && this.position + 1 < this.end &&
+                this.content[this.position + 1] == '\n'
+        ) {
+            this.position += 2;
+            return true;
+        }
+        return false;
+    }
+
+    private int skipSpaces() {
+        final int start = this.position;
+        while (this.position < this.end && this.content[this.position] == ' ') {
+            this.position++;
+        }
+        return this.position - start;
+    }
+
+    private boolean isLineEnd() {
+        return this.position == this.end || this.content[this.position] == '\n' || this.content[this.position] == '\r';
+    }
+
+    private boolean isBlank(final int index) {
+        return index == this.end || this.content[index] == ' ' || this.content[index] == '\n' ||
+            this.content[index] == '\r';
+    }
+
+    private boolean isColon(final int index) {
+        return index < this.end && this.content[index] == ':' && this.isBlank(index + 1);
+    }
+}
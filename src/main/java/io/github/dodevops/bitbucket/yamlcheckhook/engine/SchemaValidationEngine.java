@@ -0,0 +1,53 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.CompiledSchema;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.Reader;
+
+/**
+ * Validates YAML content against a schema in the same pass as its syntax.
+ *
+ * Every document of the stream is composed into a node tree, checked against the schema and dropped before the next
+ * document is read. Composing catches the same errors as the {@link EventStreamValidationEngine}, but no Java
+ * objects are constructed.
+ */
+public class SchemaValidationEngine implements ValidationEngine {
+
+    private final CompiledSchema schema;
+
+    private final LintRules lintRules;
+
+    private final ParserBackend parserBackend;
+
+    public SchemaValidationEngine(final CompiledSchema schema, final LintRules lintRules) {
+        this(schema, lintRules, new SnakeYamlBackend());
+    }
+
+    public SchemaValidationEngine(
+        final CompiledSchema schema,
+        final LintRules lintRules,
+        final ParserBackend parserBackend
+    )
+    {
+        this.schema = schema;
+        this.lintRules = lintRules;
+        this.parserBackend = parserBackend;
+    }
+
+    @Override
+    public void validate(final Reader reader, final ValidationBudget budget) throws InvalidDocumentException {
+        final BudgetedParser parser = Parsers.create(reader, budget, this.lintRules, this.parserBackend);
+        final Composer composer = new Composer(parser, this.parserBackend.getResolver());
+
+        try {
+            while (composer.checkNode()) {
+                this.schema.validate(composer.getNode());
+            }
+        } catch (final YAMLException e) {
+            throw new InvalidDocumentException(parser.getDocuments(), e);
+        }
+    }
+}
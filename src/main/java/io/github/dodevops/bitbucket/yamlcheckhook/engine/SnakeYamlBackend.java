@@ -0,0 +1,47 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import org.yaml.snakeyaml.constructor.BaseConstructor;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Reader;
+
+/**
+ * Parses YAML 1.1 with SnakeYAML and creates new objects for every file, like a new Yaml instance would.
+ */
+public class SnakeYamlBackend implements ParserBackend {
+
+    public static final String NAME = "snakeyaml";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getYamlVersion() {
+        return "1.1";
+    }
+
+    @Override
+    public Parser createParser(final Reader reader) {
+        return new ParserImpl(new StreamReader(reader));
+    }
+
+    @Override
+    public Resolver getResolver() {
+        return new Resolver();
+    }
+
+    @Override
+    public BaseConstructor acquireConstructor() {
+        return new Constructor();
+    }
+
+    @Override
+    public void releaseConstructor(final BaseConstructor constructor) {
+    }
+}
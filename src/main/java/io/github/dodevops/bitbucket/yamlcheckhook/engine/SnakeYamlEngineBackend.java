@@ -0,0 +1,85 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import org.snakeyaml.engine.v2.api.LoadSettings;
+import org.yaml.snakeyaml.constructor.BaseConstructor;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Reader;
+import java.util.regex.Pattern;
+
+/**
+ * Parses YAML 1.2 with snakeyaml-engine.
+ *
+ * The events of snakeyaml-engine are translated to SnakeYAML events, so the budget, the lint rules and the load
+ * engine work the same as with the other backends. The load engine resolves plain scalars with the core schema of
+ * YAML 1.2 (so e.g. "yes" is a string) and builds the objects with the SnakeYAML constructor.
+ */
+public class SnakeYamlEngineBackend implements ParserBackend {
+
+    public static final String NAME = "snakeyaml-engine";
+
+    private final LoadSettings loadSettings = LoadSettings.builder().setLabel("reader").build();
+
+    private final Resolver resolver = new CoreSchemaResolver();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getYamlVersion() {
+        return "1.2";
+    }
+
+    @Override
+    public Parser createParser(final Reader reader) {
+        return new SnakeYamlEngineParser(reader, this.loadSettings);
+    }
+
+    @Override
+    public Resolver getResolver() {
+        return this.resolver;
+    }
+
+    @Override
+    public BaseConstructor acquireConstructor() {
+        return new Constructor();
+    }
+
+    @Override
+    public void releaseConstructor(final BaseConstructor constructor) {
+    }
+
+    /**
+     * Resolves plain scalars with the core schema of YAML 1.2.
+     *
+     * Integers are only resolved in the decimal and hexadecimal notations the SnakeYAML constructor reads the same
+     * way, octal numbers (0o17) stay strings. No scalar is resolved to a timestamp or a merge key.
+     */
+    static class CoreSchemaResolver extends Resolver {
+
+        private static final Pattern CORE_BOOL = Pattern.compile("^(?:true|True|TRUE|false|False|FALSE)$");
+
+        private static final Pattern CORE_INT = Pattern.compile("^(?:[-+]?(?:0|[1-9][0-9]*)|0x[0-9a-fA-F]+)$");
+
+        private static final Pattern CORE_FLOAT = Pattern.compile(
+            "^(?:[-+]?(?:\\.[0-9]+|[0-9]+(?:\\.[0-9]*)?)(?:[eE][-+]?[0-9]+)?"
+                + "|[-+]?\\.(?:inf|Inf|INF)|\\.(?:nan|NaN|NAN))$"
+        );
+
+        private static final Pattern CORE_NULL = Pattern.compile("^(?:~|null|Null|NULL|)$");
+
+        @Override
+        protected void addImplicitResolvers() {
+            this.addImplicitResolver(Tag.BOOL, CORE_BOOL, "tfTF");
+            this.addImplicitResolver(Tag.INT, CORE_INT, "-+0123456789");
+            this.addImplicitResolver(Tag.FLOAT, CORE_FLOAT, "-+.0123456789");
+            this.addImplicitResolver(Tag.NULL, CORE_NULL, "~nN\0");
+            this.addImplicitResolver(Tag.NULL, EMPTY, null);
+        }
+    }
+}
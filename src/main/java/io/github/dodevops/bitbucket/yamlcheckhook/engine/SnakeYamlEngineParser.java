@@ -0,0 +1,279 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import org.snakeyaml.engine.v2.api.LoadSettings;
+import org.snakeyaml.engine.v2.common.Anchor;
+import org.snakeyaml.engine.v2.common.FlowStyle;
+import org.snakeyaml.engine.v2.common.SpecVersion;
+import org.snakeyaml.engine.v2.exceptions.MarkedYamlEngineException;
+import org.snakeyaml.engine.v2.exceptions.ReaderException;
+import org.snakeyaml.engine.v2.exceptions.YamlEngineException;
+import org.snakeyaml.engine.v2.parser.ParserImpl;
+import org.snakeyaml.engine.v2.scanner.StreamReader;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.parser.Parser;
+
+import java.io.Reader;
+import java.util.Optional;
+
+/**
+ * Parses YAML 1.2 with snakeyaml-engine and delivers the events and errors as SnakeYAML events and exceptions
+ */
+class SnakeYamlEngineParser implements Parser {
+
+    private final org.snakeyaml.engine.v2.parser.Parser parser;
+
+    private Event peekedEvent = null;
+
+    private int[] lastBuffer = null;
+
+    private String lastBufferString = null;
+
+    SnakeYamlEngineParser(final Reader reader, final LoadSettings loadSettings) {
+        this.parser = new ParserImpl(loadSettings, new StreamReader(loadSettings, reader));
+    }
+
+    @Override
+    public boolean checkEvent(final Event.ID choice) {
+        final Event event = this.peekEvent();
+        return event != null && event.is(choice);
+    }
+
+    @Override
+    public Event peekEvent() {
+        if (this.peekedEvent == null) {
+            try {
+                if (this.parser.hasNext()) {
+                    this.peekedEvent = translate(this.parser.next());
+                }
+            } catch (final YamlEngineException e) {
+                throw translate(e);
+            }
+        }
+        return this.peekedEvent;
+    }
+
+    @Override
+    public Event getEvent() {
+        final Event event = this.peekEvent();
+        this.peekedEvent = null;
+        return event;
+    }
+
+    /**
+     * Translate an event of snakeyaml-engine
+     *
+     * @param event The event
+     * @return The same event for SnakeYAML
+     */
+    private Event translate(final org.snakeyaml.engine.v2.events.Event event) {
+        final Mark startMark = translate(event.getStartMark());
+        final Mark endMark = translate(event.getEndMark());
+
+        switch (event.getEventId()) {
+            case StreamStart:
+                return new StreamStartEvent(startMark, endMark);
+            case StreamEnd:
+                return new StreamEndEvent(startMark, endMark);
+            case DocumentStart:
+                final org.snakeyaml.engine.v2.events.DocumentStartEvent documentStart =
+                    (org.snakeyaml.engine.v2.events.DocumentStartEvent) event;
+                return new DocumentStartEvent(
+                    startMark,
+                    endMark,
+                    documentStart.isExplicit(),
+                    documentStart.getSpecVersion().map(SnakeYamlEngineParser::translate).orElse(null),
+                    documentStart.getTags()
+                );
+            case DocumentEnd:
+                return new DocumentEndEvent(
+                    startMark,
+                    endMark,
+                    ((org.snakeyaml.engine.v2.events.DocumentEndEvent) event).isExplicit()
+                );
+            case MappingStart:
+                final org.snakeyaml.engine.v2.events.MappingStartEvent mappingStart =
+                    (org.snakeyaml.engine.v2.events.MappingStartEvent) event;
+                return new MappingStartEvent(
+                    mappingStart.getAnchor().map(Anchor::getValue).orElse(null),
+                    mappingStart.getTag().orElse(null),
+                    mappingStart.isImplicit(),
+                    startMark,
+                    endMark,
+                    mappingStart.getFlowStyle() == FlowStyle.FLOW
+                );
+            case MappingEnd:
+                return new MappingEndEvent(startMark, endMark);
+            case SequenceStart:
+                final org.snakeyaml.engine.v2.events.SequenceStartEvent sequenceStart =
+                    (org.snakeyaml.engine.v2.events.SequenceStartEvent) event;
+                return new SequenceStartEvent(
+                    sequenceStart.getAnchor().map(Anchor::getValue).orElse(null),
+                    sequenceStart.getTag().orElse(null),
+                    sequenceStart.isImplicit(),
+                    startMark,
+                    endMark,
+                    sequenceStart.getFlowStyle() == FlowStyle.FLOW
+                );
+            case SequenceEnd:
+                return new SequenceEndEvent(startMark, endMark);
+            case Scalar:
+                final org.snakeyaml.engine.v2.events.ScalarEvent scalar =
+                    (org.snakeyaml.engine.v2.events.ScalarEvent) event;
+                return new ScalarEvent(
+                    scalar.getAnchor().map(Anchor::getValue).orElse(null),
+                    scalar.getTag().orElse(null),
+                    new ImplicitTuple(
+                        scalar.getImplicit().canOmitTagInPlainScalar(),
+                        scalar.getImplicit().canOmitTagInNonPlainScalar()
+                    ),
+                    scalar.getValue(),
+                    startMark,
+                    endMark,
+                    getStyle(scalar)
+                );
+            case Alias:
+                return new AliasEvent(
+                    ((org.snakeyaml.engine.v2.events.AliasEvent) event).getAlias().getValue(),
+                    startMark,
+                    endMark
+                );
+            default:
+                throw new YAMLException(String.format("Unexpected event %s", event));
+        }
+    }
+
+    /**
+     * Get the style character SnakeYAML uses for the style of a scalar
+     *
+     * @param scalar The scalar
+     * @return The style character or null, if the scalar is plain
+     */
+    private static Character getStyle(final org.snakeyaml.engine.v2.events.ScalarEvent scalar) {
+        switch (scalar.getScalarStyle()) {
+            case SINGLE_QUOTED:
+                return '\'';
+            case DOUBLE_QUOTED:
+                return '"';
+            case LITERAL:
+                return '|';
+            case FOLDED:
+                return '>';
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Translate the version of a document
+     *
+     * @param specVersion The version
+     * @return The same version or null, if SnakeYAML doesn't know it
+     */
+    private static DumperOptions.Version translate(final SpecVersion specVersion) {
+        for (final DumperOptions.Version version : DumperOptions.Version.values()) {
+            if (version.major() == specVersion.getMajor() && version.minor() == specVersion.getMinor()) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Translate a mark of snakeyaml-engine.
+     *
+     * The marks share the buffer of the reader until it is refilled, so the buffer is only converted once for all
+     * marks in it.
+     *
+     * @param mark The mark, if any
+     * @return The same mark for SnakeYAML or null
+     */
+    private Mark translate(final Optional<org.snakeyaml.engine.v2.exceptions.Mark> mark) {
+        if (!mark.isPresent()) {
+            return null;
+        }
+        final org.snakeyaml.engine.v2.exceptions.Mark engineMark = mark.get();
+
+        // The buffer holds code points, but SnakeYAML expects characters
+        final int[] codePoints = engineMark.getBuffer();
+        if (codePoints != this.lastBuffer) {
+            this.lastBuffer = codePoints;
+            this.lastBufferString = new String(codePoints, 0, codePoints.length);
+        }
+
+        int pointer = Math.min(engineMark.getPointer(), codePoints.length);
+        if (this.lastBufferString.length() != codePoints.length) {
+            pointer = this.lastBufferString.offsetByCodePoints(0, pointer);
+        }
+
+        return new Mark(
+            engineMark.getName(),
+            engineMark.getIndex(),
+            engineMark.getLine(),
+            engineMark.getColumn(),
+            this.lastBufferString,
+            pointer
+        );
+    }
+
+    /**
+     * Translate an error of snakeyaml-engine
+     *
+     * @param e The error
+     * @return The same error for SnakeYAML
+     */
+    private YAMLException translate(final YamlEngineException e) {
+        if (e instanceof MarkedYamlEngineException) {
+            final MarkedYamlEngineException marked = (MarkedYamlEngineException) e;
+            return new SnakeYamlEngineException(
+                marked.getContext(),
+                translate(marked.getContextMark()),
+                marked.getProblem(),
+                translate(marked.getProblemMark()),
+                e
+            );
+        }
+        if (e instanceof ReaderException) {
+            final ReaderException readerException = (ReaderException) e;
+            return new org.yaml.snakeyaml.reader.ReaderException(
+                readerException.getName(),
+                readerException.getPosition(),
+                (char) readerException.getCodePoint(),
+                e.getMessage()
+            );
+        }
+        return new YAMLException(e.getMessage(), e);
+    }
+
+    /**
+     * An error of snakeyaml-engine with the position of the problem
+     */
+    static class SnakeYamlEngineException extends MarkedYAMLException {
+        private static final long serialVersionUID = 2734561280443290148L;
+
+        SnakeYamlEngineException(
+            final String context,
+            final Mark contextMark,
+            final String problem,
+            final Mark problemMark,
+            final Throwable cause
+        )
+        {
+            super(context, contextMark, problem, problemMark, cause);
+        }
+    }
+}
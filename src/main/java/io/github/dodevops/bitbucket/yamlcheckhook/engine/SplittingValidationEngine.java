@@ -0,0 +1,509 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.ReaderException;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Validates large files by splitting them at their document boundaries and validating the parts (segments) in
+ * parallel with another engine.
+ *
+ * A line starting with "---" followed by a space, a tab or the end of the line always starts a new document: block
+ * scalars end before it and quoted scalars containing it are invalid anyway. Anchors and directives don't reach
+ * beyond their document, so every segment can be validated on its own. Only the document following a directive is
+ * kept together with it.
+ *
+ * Files are split while they are read, so only a few segments per file are held in memory. A file without document
+ * markers is a single segment, which is held completely. Callers should therefore only use this engine for files
+ * known to be large. The positions of failures are translated back to the complete file and the failure of the
+ * first invalid segment is reported, as if the file was validated in one piece. The alias limit of the budget is
+ * applied per segment instead of per file.
+ *
+ * Files are never split, if the number of documents is limited by a lint rule, as all documents of the file have to
+ * be counted on the same pass.
+ */
+public class SplittingValidationEngine implements ValidationEngine {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final ValidationEngine validationEngine;
+
+    private final LintRules lintRules;
+
+    private final int segmentSize;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a new engine
+     *
+     * @param validationEngine The engine validating the segments
+     * @param lintRules        The lint rules checked by the engine
+     * @param segmentSize      The minimum size of a segment in characters
+     * @param pool             The pool validating the segments
+     */
+    public SplittingValidationEngine(
+        final ValidationEngine validationEngine,
+        final LintRules lintRules,
+        final int segmentSize,
+        final ForkJoinPool pool
+    )
+    {
+        this.validationEngine = validationEngine;
+        this.lintRules = lintRules;
+        this.segmentSize = Math.max(1, segmentSize);
+        this.pool = pool;
+    }
+
+    @Override
+    public void validate(final Reader reader, final ValidationBudget budget)
+        throws InvalidDocumentException, BudgetExceededException
+    {
+        if (this.lintRules.getMaxDocuments() > 0) {
+            this.validationEngine.validate(reader, budget);
+            return;
+        }
+        new Splitter(budget).validate(reader);
+    }
+
+    /**
+     * Validate a segment
+     *
+     * @param segment  The segment
+     * @param budget   The resources the validation may use
+     * @param splitter The splitter of the file, which may cancel the validation
+     * @return The failure of the segment (relocated to the complete file) or null, if the segment is valid
+     */
+    private RuntimeException validateSegment(
+        final Segment segment,
+        final ValidationBudget budget,
+        final Splitter splitter
+    )
+    {
+        try {
+            this.validationEngine.validate(splitter.read(segment.content), budget);
+            return null;
+        } catch (final InvalidDocumentException e) {
+            if (segment.next.isEmpty() || !isAtEnd(e, segment)) {
+                return relocate(e, segment);
+            }
+            // A construct is still open at the end of the segment. Validating the file in one piece would fail at
+            // the start of the next segment instead, so fail there as well.
+            try {
+                this.validationEngine.validate(splitter.read(segment.content + segment.next), budget);
+            } catch (final InvalidDocumentException continued) {
+                return relocate(continued, segment);
+            }
+            return relocate(e, segment);
+        } catch (final RuntimeException e) {
+            // Rethrown as it is by the reading thread, the pool would only rethrow a copy
+            return e;
+        }
+    }
+
+    private static boolean isAtEnd(final InvalidDocumentException e, final Segment segment) {
+        return e.getCause() instanceof MarkedYAMLException &&
+            ((MarkedYAMLException) e.getCause()).getProblemMark() != null &&
+            ((MarkedYAMLException) e.getCause()).getProblemMark().getIndex() >= segment.content.length();
+    }
+
+    /**
+     * Translate the position of a failure in a segment to the complete file
+     *
+     * @param e       The failure in the segment
+     * @param segment The segment
+     * @return The failure in the file
+     */
+    private static InvalidDocumentException relocate(final InvalidDocumentException e, final Segment segment) {
+        if (segment.number == 0) {
+            return e;
+        }
+
+        // Every segment but the first one starts with its first document
+        final int document = segment.documentsBefore + Math.max(1, e.getDocument());
+
+        final YAMLException cause = e.getCause();
+        if (cause instanceof MarkedYAMLException) {
+            final MarkedYAMLException marked = (MarkedYAMLException) cause;
+            return new InvalidDocumentException(
+                document,
+                new RelocatedYAMLException(
+                    marked.getContext(),
+                    relocate(marked.getContextMark(), segment),
+                    marked.getProblem(),
+                    relocate(marked.getProblemMark(), segment),
+                    marked
+                )
+            );
+        }
+        if (cause instanceof ReaderException) {
+            final ReaderException readerException = (ReaderException) cause;
+            return new InvalidDocumentException(
+                document,
+                new ReaderException(
+                    readerException.getName(),
+                    readerException.getPosition() + segment.startIndex,
+                    readerException.getCharacter(),
+                    readerException.getMessage()
+                )
+            );
+        }
+        return new InvalidDocumentException(document, cause);
+    }
+
+    private static Mark relocate(final Mark mark, final Segment segment) {
+        if (mark == null) {
+            return null;
+        }
+        // The segment is the buffer of the mark, so the snippet of the relocated mark stays the same
+        return new Mark(
+            mark.getName(),
+            mark.getIndex() + segment.startIndex,
+            mark.getLine() + segment.startLine,
+            mark.getColumn(),
+            mark.get_snippet() != null ? segment.content + segment.next : null,
+            mark.getIndex()
+        );
+    }
+
+    /**
+     * Check if a character breaks a line like in the stream reader of the parser. "\r" only breaks a line, if it
+     * isn't followed by "\n".
+     */
+    private static boolean isLineBreak(final char c) {
+        return c == '\n' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * A part of a file starting at a line
+     */
+    private static final class Segment {
+
+        private final int number;
+
+        private final int startIndex;
+
+        private final int startLine;
+
+        private final int documentsBefore;
+
+        private final String content;
+
+        /**
+         * The line starting the next segment, empty for the last segment
+         */
+        private final String next;
+
+        private Segment(
+            final int number,
+            final int startIndex,
+            final int startLine,
+            final int documentsBefore,
+            final String content,
+            final String next
+        )
+        {
+            this.number = number;
+            this.startIndex = startIndex;
+            this.startLine = startLine;
+            this.documentsBefore = documentsBefore;
+            this.content = content;
+            this.next = next;
+        }
+    }
+
+    /**
+     * The failure of a segment with its marks moved to the complete file
+     */
+    private static final class RelocatedYAMLException extends MarkedYAMLException {
+        private static final long serialVersionUID = -2208151737606418093L;
+
+        private RelocatedYAMLException(
+            final String context,
+            final Mark contextMark,
+            final String problem,
+            final Mark problemMark,
+            final Throwable cause
+        )
+        {
+            super(context, contextMark, problem, problemMark, cause);
+        }
+    }
+
+    /**
+     * Splits and validates a single file
+     */
+    private final class Splitter {
+
+        private final ValidationBudget budget;
+
+        private final StringBuilder content = new StringBuilder();
+
+        private final Deque<ForkJoinTask<RuntimeException>> pending = new ArrayDeque<>();
+
+        /**
+         * Whether the validation of the pending segments should stop. Segments already running don't react to
+         * cancelling their tasks, so they check this while reading.
+         */
+        private volatile boolean cancelled = false;
+
+        private int segments = 0;
+
+        private int segmentStartIndex = 0;
+
+        private int segmentStartLine = 0;
+
+        private int segmentDocumentsBefore = 0;
+
+        /**
+         * Position of the current line in the content
+         */
+        private int lineStart = 0;
+
+        /**
+         * Number of the current line in the file
+         */
+        private int line = 0;
+
+        /**
+         * Number of documents started before the current line
+         */
+        private int documents = 0;
+
+        /**
+         * Whether a directive was found, which belongs to the next document
+         */
+        private boolean directive = false;
+
+        private Splitter(final ValidationBudget budget) {
+            this.budget = budget;
+        }
+
+        private void validate(final Reader reader) throws InvalidDocumentException {
+            final char[] chunk = new char[CHUNK_SIZE];
+            int read = 0;
+            int scanned = 0;
+
+            try {
+                while (read >= 0) {
+                    read = reader.read(chunk);
+                    if (read > 0) {
+                        this.content.append(chunk, 0, read);
+                    }
+
+                    // Keep the last character for the next chunk, as "\r" may be followed by "\n"
+                    final int keep = read < 0 ? 0 : 1;
+                    for (; scanned < this.content.length() - keep; scanned++) {
+                        final char c = this.content.charAt(scanned);
+                        if (
+                            isLineBreak(c) || c == '\r' &&
+                                (scanned + 1 == this.content.length() || this.content.charAt(scanned + 1) != '\n')
+                        )
+                        {
+                            scanned -= this.endLine(scanned + 1);
+                        }
+                    }
+
+                    this.budget.checkDeadline();
+                    this.awaitSegments(pool.getParallelism() * 2);
+                }
+            } catch (final IOException e) {
+                this.cancelSegments();
+                throw new InvalidDocumentException(this.documents, new YAMLException(e));
+            } catch (final RuntimeException e) {
+                this.cancelSegments();
+                throw e;
+            }
+
+            this.submit(this.content.length(), this.content.length());
+            this.awaitSegments(0);
+        }
+
+        /**
+         * Handle the end of the current line
+         *
+         * @param nextLineStart The position of the next line in the content
+         * @return The number of characters removed from the content
+         */
+        private int endLine(final int nextLineStart) throws InvalidDocumentException {
+            final int start = this.lineStart;
+            this.lineStart = nextLineStart;
+            this.line++;
+
+            if (this.content.length() > start && this.content.charAt(start) == '%') {
+                this.directive = true;
+                return 0;
+            }
+
+            if (!this.isDocumentMarker(start, nextLineStart, '-')) {
+                if (this.documents == 0 && this.startsImplicitDocument(start, nextLineStart)) {
+                    this.documents++;
+                }
+                return 0;
+            }
+
+            final int documentsBefore = this.documents;
+            this.documents++;
+
+            if (this.directive) {
+                this.directive = false;
+                return 0;
+            }
+
+            if (start >= segmentSize) {
+                return this.cut(start, nextLineStart, this.line - 1, documentsBefore);
+            }
+            return 0;
+        }
+
+        /**
+         * Validate the content before a line starting a document as a segment
+         *
+         * @param position        The position of the line in the content
+         * @param end             The end of the line in the content
+         * @param line            The number of the line in the file
+         * @param documentsBefore The number of documents started before the line
+         * @return The number of characters removed from the content
+         */
+        private int cut(
+            final int position,
+            final int end,
+            final int line,
+            final int documentsBefore
+        ) throws InvalidDocumentException
+        {
+            this.submit(position, end);
+            this.content.delete(0, position);
+            this.lineStart -= position;
+            this.segmentStartIndex += position;
+            this.segmentStartLine = line;
+            this.segmentDocumentsBefore = documentsBefore;
+
+            // Stop reading as soon as a segment is known to be invalid
+            final boolean failed = this.pending.stream().anyMatch(
+                task -> task.isDone() && (task.isCompletedAbnormally() || task.getRawResult() != null)
+            );
+            this.awaitSegments(failed ? 0 : pool.getParallelism() * 2);
+            return position;
+        }
+
+        /**
+         * Validate the content before a position as a segment
+         *
+         * @param end     The end of the segment in the content
+         * @param nextEnd The end of the line starting the next segment
+         */
+        private void submit(final int end, final int nextEnd) {
+            final Segment segment = new Segment(
+                this.segments++,
+                this.segmentStartIndex,
+                this.segmentStartLine,
+                this.segmentDocumentsBefore,
+                this.content.substring(0, end),
+                this.content.substring(end, nextEnd)
+            );
+            this.pending.add(pool.submit(() -> validateSegment(segment, this.budget, this)));
+        }
+
+        /**
+         * Wait for the oldest segments until only the given number is pending. The failure of the first invalid
+         * segment is thrown and all later segments are cancelled.
+         *
+         * @param maxPending The number of segments that may still be pending
+         * @throws InvalidDocumentException A segment is not valid
+         */
+        private void awaitSegments(final int maxPending) throws InvalidDocumentException {
+            while (this.pending.size() > maxPending) {
+                final RuntimeException failure;
+                try {
+                    failure = this.pending.peekFirst().get();
+                } catch (final InterruptedException e) {
+                    this.cancelSegments();
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("The validation was cancelled");
+                } catch (final ExecutionException e) {
+                    this.cancelSegments();
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new IllegalStateException("Can not validate a segment", e.getCause());
+                }
+                this.pending.removeFirst();
+                if (failure != null) {
+                    this.cancelSegments();
+                    throw failure;
+                }
+            }
+        }
+
+        private void cancelSegments() {
+            this.cancelled = true;
+            this.pending.forEach(task -> task.cancel(false));
+            this.pending.clear();
+        }
+
+        /**
+         * Create a reader of segment content, which stops as soon as the segments are cancelled
+         *
+         * @param segmentContent The content
+         * @return The reader
+         */
+        private Reader read(final String segmentContent) {
+            return new FilterReader(new StringReader(segmentContent)) {
+                @Override
+                public int read(final char[] buffer, final int offset, final int length) throws IOException {
+                    if (Splitter.this.cancelled) {
+                        throw new CancellationException("The validation of the segment was cancelled");
+                    }
+                    return super.read(buffer, offset, length);
+                }
+            };
+        }
+
+        private boolean isDocumentMarker(final int start, final int end, final char marker) {
+            if (end - start < 3) {
+                return false;
+            }
+            for (int i = start; i < start + 3; i++) {
+                if (this.content.charAt(i) != marker) {
+                    return false;
+                }
+            }
+            final char next = start + 3 < this.content.length() ? this.content.charAt(start + 3) : '\n';
+            return next == ' ' || next == '\t' || next == '\r' || isLineBreak(next);
+        }
+
+        /**
+         * Check if a line before the first document marker has content, which starts a document without a marker
+         */
+        private boolean startsImplicitDocument(final int start, final int end) {
+            if (this.isDocumentMarker(start, end, '.')) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                final char c = this.content.charAt(i);
+                if (c != ' ' && c != '\t' && c != '\r' && !isLineBreak(c)) {
+                    return c != '#';
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The resources a validation run (e.g. all files of a push) may use.
+ *
+ * A limit of 0 or less disables the corresponding check. The budget is shared by all threads validating files of
+ * the same run.
+ */
+public class ValidationBudget {
+
+    private final long maxFileBytes;
+
+    private final long maxTotalBytes;
+
+    private final int maxDepth;
+
+    private final int maxAliases;
+
+    private final long deadline;
+
+    private final boolean hasDeadline;
+
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    /**
+     * Create a new budget starting now
+     *
+     * @param maxFileBytes   Maximum size of a single file in bytes
+     * @param maxTotalBytes  Maximum size of all files of the run in bytes
+     * @param maxDepth       Maximum nesting depth of collections
+     * @param maxAliases     Maximum number of aliases referring to collections per file
+     * @param deadlineMillis Maximum duration of the run in milliseconds
+     */
+    public ValidationBudget(
+        final long maxFileBytes,
+        final long maxTotalBytes,
+        final int maxDepth,
+        final int maxAliases,
+        final long deadlineMillis
+    )
+    {
+        this.maxFileBytes = maxFileBytes;
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxDepth = maxDepth;
+        this.maxAliases = maxAliases;
+        this.hasDeadline = deadlineMillis > 0;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    }
+
+    /**
+     * A budget without any limits
+     *
+     * @return The budget
+     */
+    public static ValidationBudget unlimited() {
+        return new ValidationBudget(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Account for bytes read from a file
+     *
+     * @param fileBytes The bytes read from the current file so far
+     * @param delta     The bytes read since the last call
+     * @throws BudgetExceededException The file or the run got too large
+     */
+    public void addBytes(final long fileBytes, final long delta) throws BudgetExceededException {
+        if (this.maxFileBytes > 0 && fileBytes > this.maxFileBytes) {
+            throw new BudgetExceededException(
+                String.format("The file is larger than the allowed %d bytes", this.maxFileBytes)
+            );
+        }
+        final long total = this.totalBytes.addAndGet(delta);
+        if (this.maxTotalBytes > 0 && total > this.maxTotalBytes) {
+            throw new BudgetExceededException(
+                String.format("All files together are larger than the allowed %d bytes", this.maxTotalBytes)
+            );
+        }
+    }
+
+    /**
+     * Check that the deadline didn't pass and the current thread wasn't asked to stop
+     *
+     * @throws BudgetExceededException The deadline passed
+     * @throws CancellationException   The current thread was interrupted
+     */
+    public void checkDeadline() throws BudgetExceededException, CancellationException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The validation was cancelled");
+        }
+        if (this.hasDeadline && System.nanoTime() - this.deadline > 0) {
+            throw new BudgetExceededException("The validation took longer than allowed");
+        }
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxAliases() {
+        return maxAliases;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+}
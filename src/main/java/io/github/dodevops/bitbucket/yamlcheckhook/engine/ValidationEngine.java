@@ -0,0 +1,22 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+
+import java.io.Reader;
+
+/**
+ * An engine checking a YAML stream for validity
+ */
+public interface ValidationEngine {
+    /**
+     * Read the given stream document by document and check it. The validation stops at the first invalid document.
+     *
+     * @param reader The YAML content
+     * @param budget The resources the validation may use
+     * @throws InvalidDocumentException A document is not valid
+     * @throws BudgetExceededException The content exceeded the budget
+     */
+    void validate(final Reader reader, final ValidationBudget budget)
+        throws InvalidDocumentException, BudgetExceededException;
+}
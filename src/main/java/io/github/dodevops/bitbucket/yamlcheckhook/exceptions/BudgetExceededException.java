@@ -0,0 +1,13 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.exceptions;
+
+/**
+ * Validating a file exceeded one of the configured resource budgets.
+ */
+
+public class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = -6520184407512650977L;
+
+    public BudgetExceededException(final String message) {
+        super(message);
+    }
+}
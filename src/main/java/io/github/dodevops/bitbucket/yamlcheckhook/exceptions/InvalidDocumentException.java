@@ -0,0 +1,34 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.exceptions;
+
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * A document of a YAML stream is not valid. Wraps the exception of the parser, composer or constructor together with
+ * the position of the document in the stream.
+ */
+public class InvalidDocumentException extends YAMLException {
+    private static final long serialVersionUID = 7952280123358117427L;
+
+    private final int document;
+
+    /**
+     * Create a new exception
+     *
+     * @param document The number of the document in the stream (starting at 1) or 0, if the stream failed before
+     *                 the first document started
+     * @param cause    The exception raised while validating the document
+     */
+    public InvalidDocumentException(final int document, final YAMLException cause) {
+        super(cause.getMessage(), cause);
+        this.document = document;
+    }
+
+    public int getDocument() {
+        return document;
+    }
+
+    @Override
+    public synchronized YAMLException getCause() {
+        return (YAMLException) super.getCause();
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.exceptions;
+
+/**
+ * A schema configured for the validated files can not be read or compiled.
+ */
+public class InvalidSchemaException extends Exception {
+    private static final long serialVersionUID = -2017563842211894061L;
+
+    public InvalidSchemaException(final String message) {
+        super(message);
+    }
+
+    public InvalidSchemaException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,25 +1,63 @@
 package io.github.dodevops.bitbucket.yamlcheckhook.exceptions;
 
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * The added or modified YAML file is not valid.
+ *
+ * When all files were validated, the exception holds the failures of all invalid files. The file path and the
+ * scanner message always refer to the first one.
  */
 
 public class InvalidYamlFileException extends Exception {
     private static final long serialVersionUID = 4476325871497661043L;
     private final String filePath;
 
+    private final String contentId;
+
     private final String scannerMessage;
 
+    private final List<ValidationFailure> failures;
+
     public InvalidYamlFileException(final String s, final String scannerMessage) {
-        this.filePath = s;
-        this.scannerMessage = scannerMessage;
+        this(s, null, scannerMessage);
+    }
+
+    public InvalidYamlFileException(final String s, final String contentId, final String scannerMessage) {
+        this(new ValidationFailure(s, contentId, scannerMessage));
+    }
+
+    public InvalidYamlFileException(final ValidationFailure failure) {
+        this(Collections.singletonList(failure));
+    }
+
+    public InvalidYamlFileException(final List<ValidationFailure> failures) {
+        if (failures.isEmpty()) {
+            throw new IllegalArgumentException("At least one failure is required");
+        }
+        this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+        this.filePath = failures.get(0).getFilePath();
+        this.contentId = failures.get(0).getContentId();
+        this.scannerMessage = failures.get(0).getMessage();
     }
 
     public String getFilePath() {
         return filePath;
     }
 
+    public String getContentId() {
+        return contentId;
+    }
+
     public String getScannerMessage() {
         return scannerMessage;
     }
+
+    public List<ValidationFailure> getFailures() {
+        return failures;
+    }
 }
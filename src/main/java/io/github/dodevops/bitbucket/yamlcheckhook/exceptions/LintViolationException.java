@@ -0,0 +1,15 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.exceptions;
+
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+
+/**
+ * A YAML file is well-formed, but breaks one of the configured lint rules.
+ */
+public class LintViolationException extends MarkedYAMLException {
+    private static final long serialVersionUID = -4310575836000469291L;
+
+    public LintViolationException(final String rule, final String problem, final Mark problemMark) {
+        super(null, null, String.format("%s (%s)", problem, rule), problemMark);
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.exceptions;
+
+/**
+ * Too many validations are running, so the YAML files weren't validated.
+ */
+public class NotAdmittedException extends Exception {
+    private static final long serialVersionUID = 3620961467412285034L;
+
+    public NotAdmittedException(final String message) {
+        super(message);
+    }
+}
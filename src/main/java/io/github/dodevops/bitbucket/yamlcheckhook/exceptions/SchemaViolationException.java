@@ -0,0 +1,15 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.exceptions;
+
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+
+/**
+ * A YAML document is well-formed, but doesn't match the schema of its file.
+ */
+public class SchemaViolationException extends MarkedYAMLException {
+    private static final long serialVersionUID = 4401263596392810775L;
+
+    public SchemaViolationException(final String schema, final String problem, final Mark problemMark) {
+        super(String.format("while validating against the schema %s", schema), null, problem, problemMark);
+    }
+}
@@ -0,0 +1,251 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A set of path globs compiled into a trie of path segments.
+ *
+ * Globs are matched like in a .gitignore file: "*" and "?" match within one path segment, "**" matches any number
+ * of segments, a glob without a "/" matches at any depth and a glob matching a directory matches everything below
+ * it. Literal segments are looked up by hash, so matching a path costs about one lookup per segment, regardless of
+ * the number of globs. The states of a match are kept in arrays indexed by node, so matching allocates no collections.
+ */
+class GlobTrie {
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private int nodeCount = 0;
+
+    private final Node root = new Node();
+
+    private boolean empty = true;
+
+    /**
+     * Add a glob to the trie
+     *
+     * @param glob The glob
+     * @throws IllegalArgumentException The glob is not valid
+     */
+    void add(final String glob) throws IllegalArgumentException {
+        String normalized = glob.trim();
+
+        final boolean anchored = normalized.startsWith("/");
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException(String.format("The pattern \"%s\" matches nothing", glob));
+        }
+
+        if (!anchored && !normalized.contains("/")) {
+            normalized = ANY_SEGMENTS + "/" + normalized;
+        }
+
+        Node node = this.root;
+        for (final String segment : normalized.split("/+")) {
+            node = node.getOrAddChild(segment, glob);
+        }
+        node.terminal = true;
+        this.empty = false;
+    }
+
+    boolean isEmpty() {
+        return this.empty;
+    }
+
+    /**
+     * Check whether a glob matches the path or one of its parent directories
+     *
+     * @param segments The segments of the path
+     * @return true, if one of the globs matches
+     */
+    boolean matches(final String[] segments) {
+        Node[] states = new Node[this.nodeCount];
+        Node[] nextStates = new Node[this.nodeCount];
+        // The step each node was last added in, so every node is added only once per step
+        final int[] addedInStep = new int[this.nodeCount];
+
+        int count = this.root.addClosure(states, 0, addedInStep, 1);
+
+        for (int i = 0; i < segments.length; i++) {
+            int nextCount = 0;
+
+            for (int state = 0; state < count; state++) {
+                nextCount = states[state].step(segments[i], nextStates, nextCount, addedInStep, i + 2);
+            }
+
+            for (int state = 0; state < nextCount; state++) {
+                if (nextStates[state].terminal) {
+                    return true;
+                }
+            }
+
+            if (nextCount == 0) {
+                return false;
+            }
+
+            final Node[] swap = states;
+            states = nextStates;
+            nextStates = swap;
+            count = nextCount;
+        }
+
+        return false;
+    }
+
+    /**
+     * A node of the trie. The path to a node matches the segments seen so far.
+     */
+    private final class Node {
+
+        private final int index = GlobTrie.this.nodeCount++;
+
+        private final Map<String, Node> literalChildren = new HashMap<>();
+
+        private final List<WildcardChild> wildcardChildren = new ArrayList<>();
+
+        /**
+         * The child matching any number of segments, reached by "**"
+         */
+        private Node anySegmentsChild;
+
+        /**
+         * Whether this node was reached by "**" and so may consume any further segment
+         */
+        private boolean anySegments;
+
+        private boolean terminal;
+
+        Node getOrAddChild(final String segment, final String glob) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                if (this.anySegmentsChild == null) {
+                    this.anySegmentsChild = new Node();
+                    this.anySegmentsChild.anySegments = true;
+                }
+                return this.anySegmentsChild;
+            }
+
+            if (segment.contains(ANY_SEGMENTS)) {
+                throw new IllegalArgumentException(
+                    String.format("\"**\" has to be a complete path segment in \"%s\"", glob)
+                );
+            }
+
+            if (segment.indexOf('*') < 0 && segment.indexOf('?') < 0) {
+                return this.literalChildren.computeIfAbsent(segment, key -> new Node());
+            }
+
+            for (final WildcardChild wildcardChild : this.wildcardChildren) {
+                if (wildcardChild.segment.equals(segment)) {
+                    return wildcardChild.node;
+                }
+            }
+
+            final WildcardChild wildcardChild = new WildcardChild(segment);
+            this.wildcardChildren.add(wildcardChild);
+            return wildcardChild.node;
+        }
+
+        /**
+         * Add this node and all nodes reachable without consuming a segment
+         *
+         * @param states      The states to add the nodes to
+         * @param count       The number of states so far
+         * @param addedInStep The step each node was last added in
+         * @param step        The current step
+         * @return The number of states
+         */
+        int addClosure(final Node[] states, final int count, final int[] addedInStep, final int step) {
+            if (addedInStep[this.index] == step) {
+                return count;
+            }
+            addedInStep[this.index] = step;
+            states[count] = this;
+            if (this.anySegmentsChild != null) {
+                return this.anySegmentsChild.addClosure(states, count + 1, addedInStep, step);
+            }
+            return count + 1;
+        }
+
+        /**
+         * Add all nodes reachable by consuming a segment
+         *
+         * @param segment     The segment
+         * @param nextStates  The states to add the nodes to
+         * @param count       The number of next states so far
+         * @param addedInStep The step each node was last added in
+         * @param step        The current step
+         * @return The number of next states
+         */
+        int step(
+            final String segment,
+            final Node[] nextStates,
+            final int count,
+            final int[] addedInStep,
+            final int step
+        )
+        {
+            int nextCount = count;
+
+            if (this.anySegments) {
+                nextCount = this.addClosure(nextStates, nextCount, addedInStep, step);
+            }
+
+            final Node literalChild = this.literalChildren.get(segment);
+            if (literalChild != null) {
+                nextCount = literalChild.addClosure(nextStates, nextCount, addedInStep, step);
+            }
+
+            for (final WildcardChild wildcardChild : this.wildcardChildren) {
+                if (wildcardChild.pattern.matcher(segment).matches()) {
+                    nextCount = wildcardChild.node.addClosure(nextStates, nextCount, addedInStep, step);
+                }
+            }
+
+            return nextCount;
+        }
+    }
+
+    /**
+     * A child reached by a segment containing "*" or "?"
+     */
+    private final class WildcardChild {
+
+        private final String segment;
+
+        private final Pattern pattern;
+
+        private final Node node = new Node();
+
+        WildcardChild(final String segment) {
+            this.segment = segment;
+
+            final StringBuilder regex = new StringBuilder();
+            final StringBuilder literal = new StringBuilder();
+            for (final char c : segment.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+
+            this.pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+    }
+}
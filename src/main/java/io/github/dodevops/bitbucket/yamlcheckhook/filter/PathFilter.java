@@ -0,0 +1,107 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Selects the files of a repository, that should be validated.
+ *
+ * A file is validated, if its name ends with one of the extensions, one of the include globs matches it (or no
+ * include globs are given) and none of the exclude globs matches it.
+ */
+public class PathFilter {
+
+    /**
+     * The extensions of yaml files, that are always validated
+     */
+    public static final List<String> DEFAULT_EXTENSIONS = Collections.unmodifiableList(
+        Arrays.asList("yaml", "yml")
+    );
+
+    /**
+     * The filter used without any hook settings
+     */
+    public static final PathFilter DEFAULT = new PathFilter(
+        Collections.emptyList(),
+        Collections.emptyList(),
+        Collections.emptyList()
+    );
+
+    private final String[] suffixes;
+
+    private final GlobTrie includes = new GlobTrie();
+
+    private final GlobTrie excludes = new GlobTrie();
+
+    /**
+     * Compile a new filter
+     *
+     * @param includes   Globs of the files to validate. Empty to validate all files.
+     * @param excludes   Globs of the files not to validate
+     * @param extensions Extensions to validate in addition to the default ones
+     * @throws IllegalArgumentException A glob or extension is not valid
+     */
+    public PathFilter(
+        final Collection<String> includes,
+        final Collection<String> excludes,
+        final Collection<String> extensions
+    ) throws IllegalArgumentException
+    {
+        includes.forEach(this.includes::add);
+        excludes.forEach(this.excludes::add);
+
+        final List<String> suffixes = new ArrayList<>();
+        for (final String extension : DEFAULT_EXTENSIONS) {
+            suffixes.add("." + extension);
+        }
+        for (final String extension : extensions) {
+            String normalized = extension.trim().toLowerCase(Locale.ROOT);
+            while (normalized.startsWith(".")) {
+                normalized = normalized.substring(1);
+            }
+            if (normalized.isEmpty() || normalized.contains("/")) {
+                throw new IllegalArgumentException(String.format("\"%s\" is not a valid extension", extension));
+            }
+            suffixes.add("." + normalized);
+        }
+        this.suffixes = suffixes.toArray(new String[0]);
+    }
+
+    /**
+     * Check whether a file should be validated
+     *
+     * @param path The path of the file in the repository
+     * @return true, if the file should be validated
+     */
+    public boolean matches(final String path) {
+        final String fileName = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+
+        boolean hasExtension = false;
+        for (final String suffix : this.suffixes) {
+            if (fileName.endsWith(suffix)) {
+                hasExtension = true;
+                break;
+            }
+        }
+
+        if (!hasExtension) {
+            return false;
+        }
+
+        if (this.includes.isEmpty() && this.excludes.isEmpty()) {
+            return true;
+        }
+
+        final String[] segments = path.split("/");
+
+        if (!this.includes.isEmpty() && !this.includes.matches(segments)) {
+            return false;
+        }
+
+        return this.excludes.isEmpty() || !this.excludes.matches(segments);
+    }
+}
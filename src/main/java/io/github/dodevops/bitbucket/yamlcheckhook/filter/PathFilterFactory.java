@@ -0,0 +1,111 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.filter;
+
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.setting.SettingsValidationErrors;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.BoundedCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.HookSettings;
+
+import javax.inject.Named;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles the path filters and schema mappings of the hook settings.
+ *
+ * The compiled filters and mappings are remembered by the settings values, so every version of the settings of a
+ * project or repository is compiled only once.
+ */
+@Named
+public class PathFilterFactory {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final BoundedCache<List<List<String>>, PathFilter> cache = new BoundedCache<>(CACHE_SIZE);
+
+    private final BoundedCache<List<String>, SchemaMapping> schemaMappingCache = new BoundedCache<>(CACHE_SIZE);
+
+    /**
+     * Get the compiled filter of the hook settings
+     *
+     * @param settings The hook settings or null, if the hook has none
+     * @return The filter
+     * @throws IllegalArgumentException The settings hold an invalid glob or extension
+     */
+    public PathFilter getPathFilter(final Settings settings) throws IllegalArgumentException {
+        final List<String> includes = HookSettings.getList(settings, HookSettings.INCLUDES);
+        final List<String> excludes = HookSettings.getList(settings, HookSettings.EXCLUDES);
+        final List<String> extensions = HookSettings.getList(settings, HookSettings.EXTENSIONS);
+
+        if (includes.isEmpty() && excludes.isEmpty() && extensions.isEmpty()) {
+            return PathFilter.DEFAULT;
+        }
+
+        final List<List<String>> key = Arrays.asList(includes, excludes, extensions);
+
+        PathFilter pathFilter = this.cache.get(key);
+        if (pathFilter == null) {
+            pathFilter = new PathFilter(includes, excludes, extensions);
+            this.cache.put(key, pathFilter);
+        }
+        return pathFilter;
+    }
+
+    /**
+     * Get the compiled schema mapping of the hook settings
+     *
+     * @param settings The hook settings or null, if the hook has none
+     * @return The schema mapping
+     * @throws IllegalArgumentException The settings hold an invalid mapping
+     */
+    public SchemaMapping getSchemaMapping(final Settings settings) throws IllegalArgumentException {
+        final List<String> mappings = HookSettings.getList(settings, HookSettings.SCHEMAS);
+
+        if (mappings.isEmpty()) {
+            return SchemaMapping.NONE;
+        }
+
+        SchemaMapping schemaMapping = this.schemaMappingCache.get(mappings);
+        if (schemaMapping == null) {
+            schemaMapping = new SchemaMapping(mappings);
+            this.schemaMappingCache.put(mappings, schemaMapping);
+        }
+        return schemaMapping;
+    }
+
+    /**
+     * Validate the path filter and schema settings, when they are saved
+     *
+     * @param settings The hook settings
+     * @param errors   The errors to report problems to
+     */
+    public void validate(final Settings settings, final SettingsValidationErrors errors) {
+        for (final String key : new String[]{HookSettings.INCLUDES, HookSettings.EXCLUDES}) {
+            for (final String glob : HookSettings.getList(settings, key)) {
+                try {
+                    new GlobTrie().add(glob);
+                } catch (final IllegalArgumentException e) {
+                    errors.addFieldError(key, e.getMessage());
+                }
+            }
+        }
+
+        try {
+            new PathFilter(
+                Collections.emptyList(),
+                Collections.emptyList(),
+                HookSettings.getList(settings, HookSettings.EXTENSIONS)
+            );
+        } catch (final IllegalArgumentException e) {
+            errors.addFieldError(HookSettings.EXTENSIONS, e.getMessage());
+        }
+
+        for (final String mapping : HookSettings.getList(settings, HookSettings.SCHEMAS)) {
+            try {
+                new SchemaMapping(Collections.singletonList(mapping));
+            } catch (final IllegalArgumentException e) {
+                errors.addFieldError(HookSettings.SCHEMAS, e.getMessage());
+            }
+        }
+    }
+}
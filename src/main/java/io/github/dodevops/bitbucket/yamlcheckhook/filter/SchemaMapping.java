@@ -0,0 +1,84 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Selects the schema a validated file has to match.
+ *
+ * Every mapping has the form "glob=schema", where the schema is the path of a JSON schema (in JSON or YAML syntax)
+ * in the repository. The first mapping matching a file applies.
+ */
+public class SchemaMapping {
+
+    /**
+     * The mapping used without any hook settings: no file has a schema
+     */
+    public static final SchemaMapping NONE = new SchemaMapping(Collections.emptyList());
+
+    private final List<GlobTrie> globs = new ArrayList<>();
+
+    private final List<String> schemaPaths = new ArrayList<>();
+
+    /**
+     * Compile a new mapping
+     *
+     * @param mappings The mappings in the form "glob=schema"
+     * @throws IllegalArgumentException A mapping is not valid
+     */
+    public SchemaMapping(final Collection<String> mappings) throws IllegalArgumentException {
+        for (final String mapping : mappings) {
+            final int separator = mapping.lastIndexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException(
+                    String.format("\"%s\" is not a valid schema mapping. Use glob=schema.", mapping)
+                );
+            }
+
+            String schemaPath = mapping.substring(separator + 1).trim();
+            while (schemaPath.startsWith("/")) {
+                schemaPath = schemaPath.substring(1);
+            }
+            if (schemaPath.isEmpty()) {
+                throw new IllegalArgumentException(String.format("\"%s\" names no schema", mapping));
+            }
+
+            final GlobTrie glob = new GlobTrie();
+            glob.add(mapping.substring(0, separator).trim());
+
+            this.globs.add(glob);
+            this.schemaPaths.add(schemaPath);
+        }
+    }
+
+    /**
+     * Get the schema of a file
+     *
+     * @param path The path of the file in the repository
+     * @return The path of the schema in the repository or null, if the file has no schema
+     */
+    public String getSchemaPath(final String path) {
+        if (this.globs.isEmpty()) {
+            return null;
+        }
+
+        final String[] segments = path.split("/");
+        for (int i = 0; i < this.globs.size(); i++) {
+            if (this.globs.get(i).matches(segments)) {
+                return this.schemaPaths.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the schemas of all mappings
+     *
+     * @return The paths of the schemas in the repository in the order of the mappings
+     */
+    public List<String> getSchemaPaths() {
+        return Collections.unmodifiableList(this.schemaPaths);
+    }
+}
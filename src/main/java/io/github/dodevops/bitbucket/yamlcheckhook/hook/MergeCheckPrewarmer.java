@@ -0,0 +1,222 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.hook;
+
+import com.atlassian.bitbucket.event.pull.PullRequestOpenedEvent;
+import com.atlassian.bitbucket.event.pull.PullRequestRescopedEvent;
+import com.atlassian.bitbucket.hook.repository.GetRepositoryHookSettingsRequest;
+import com.atlassian.bitbucket.hook.repository.RepositoryHook;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookService;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookSettings;
+import com.atlassian.bitbucket.permission.Permission;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.scope.Scope;
+import com.atlassian.bitbucket.scope.Scopes;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.user.EscalatedSecurityContext;
+import com.atlassian.bitbucket.user.SecurityService;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.MergeCheckResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.ValidationExecutor;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.NotAdmittedException;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.PullRequestValidator;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Validates pull requests in the background when they are opened or their branches are updated, so the merge
+ * check usually finds a prepared result.
+ *
+ * Only passing results are prepared. If a pull request is invalid, the merge check still declines it itself, but
+ * the results of the single files are already known by then.
+ */
+@Named
+public class MergeCheckPrewarmer implements InitializingBean, DisposableBean {
+
+    @ComponentImport
+    private final EventPublisher eventPublisher;
+
+    @ComponentImport
+    private final RepositoryHookService repositoryHookService;
+
+    @ComponentImport
+    private final SecurityService securityService;
+
+    private final PullRequestValidator pullRequestValidator;
+
+    private final MergeCheckResultCache mergeCheckResultCache;
+
+    private final ValidationExecutor validationExecutor;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final AdmissionController admissionController;
+
+    private final Logger log = Logger.getLogger(MergeCheckPrewarmer.class);
+
+    @Inject
+    public MergeCheckPrewarmer(
+        final EventPublisher eventPublisher,
+        final RepositoryHookService repositoryHookService,
+        final SecurityService securityService,
+        final PullRequestValidator pullRequestValidator,
+        final MergeCheckResultCache mergeCheckResultCache,
+        final ValidationExecutor validationExecutor,
+        final PluginConfiguration pluginConfiguration,
+        final MetricsRegistry metricsRegistry,
+        final AdmissionController admissionController
+    )
+    {
+        this.eventPublisher = eventPublisher;
+        this.repositoryHookService = repositoryHookService;
+        this.securityService = securityService;
+        this.pullRequestValidator = pullRequestValidator;
+        this.mergeCheckResultCache = mergeCheckResultCache;
+        this.validationExecutor = validationExecutor;
+        this.pluginConfiguration = pluginConfiguration;
+        this.metricsRegistry = metricsRegistry;
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() {
+        this.eventPublisher.unregister(this);
+    }
+
+    @EventListener
+    public void onPullRequestOpened(final PullRequestOpenedEvent event) {
+        this.schedule(event.getPullRequest());
+    }
+
+    @EventListener
+    public void onPullRequestRescoped(final PullRequestRescopedEvent event) {
+        this.schedule(event.getPullRequest());
+    }
+
+    /**
+     * Schedule the validation of a pull request in the background
+     *
+     * @param pullRequest The pull request
+     */
+    private void schedule(final PullRequest pullRequest) {
+        if (this.pluginConfiguration.getPrewarmThreads() <= 0) {
+            return;
+        }
+
+        try {
+            this.validationExecutor.submitBackground(() -> this.prewarm(pullRequest));
+            this.metricsRegistry.counter(MetricsRegistry.PREWARM_SCHEDULED).increment();
+        } catch (final RejectedExecutionException e) {
+            this.log.debug(
+                String.format(
+                    "Too many pull requests waiting for validation. Leaving %s to the merge check.",
+                    pullRequest.getTitle()
+                )
+            );
+            this.metricsRegistry.counter(MetricsRegistry.PREWARM_DROPPED).increment();
+        }
+    }
+
+    /**
+     * Validate a pull request and remember the result, if it passed
+     *
+     * @param pullRequest The pull request
+     */
+    private void prewarm(final PullRequest pullRequest) {
+        final Repository repository = pullRequest.getToRef().getRepository();
+        final Scope scope = Scopes.repository(repository);
+
+        // Reading the hook settings needs administration rights, but only on the target repository
+        final EscalatedSecurityContext settingsContext = this.securityService.withPermission(
+            repository,
+            Permission.REPO_ADMIN,
+            "Reading the YAML check settings of a pull request"
+        );
+
+        final RepositoryHook hook = settingsContext.call(
+            () -> this.repositoryHookService.getByKey(scope, PullRequestHook.HOOK_KEY)
+        );
+        if (hook == null || !hook.isEnabled()) {
+            return;
+        }
+
+        final RepositoryHookSettings hookSettings = settingsContext.call(
+            () -> this.repositoryHookService.getSettings(
+                new GetRepositoryHookSettingsRequest.Builder(scope, PullRequestHook.HOOK_KEY).build()
+            )
+        );
+        final Settings settings = hookSettings != null ? hookSettings.getSettings() : null;
+
+        if (this.mergeCheckResultCache.get(pullRequest, settings) != null) {
+            return;
+        }
+
+        try {
+            final boolean admitted = this.securityService.withPermission(
+                pullRequest.getFromRef().getRepository(),
+                Permission.REPO_READ,
+                "Validating YAML files of a pull request in the background"
+            ).withPermission(
+                repository,
+                Permission.REPO_READ
+            ).call(() -> {
+                try {
+                    // Only take a slot, that no push or merge check is waiting for
+                    this.pullRequestValidator.validate(
+                        pullRequest,
+                        settings,
+                        targetRepository -> this.admissionController.tryAcquireIdle()
+                    );
+                    return true;
+                } catch (final NotAdmittedException e) {
+                    return false;
+                }
+            });
+            if (!admitted) {
+                this.log.debug(
+                    String.format(
+                        "Too many validations are running. Leaving %s to the merge check.",
+                        pullRequest.getTitle()
+                    )
+                );
+                this.metricsRegistry.counter(MetricsRegistry.PREWARM_DROPPED).increment();
+                return;
+            }
+            this.mergeCheckResultCache.put(pullRequest, settings, RepositoryHookResult.accepted());
+            this.metricsRegistry.counter(MetricsRegistry.PREWARM_COMPLETED).increment();
+        } catch (final InvalidYamlFileException e) {
+            this.log.debug(
+                String.format(
+                    "Pull request %s is invalid. Leaving it to the merge check.",
+                    pullRequest.getTitle()
+                )
+            );
+        } catch (final RuntimeException e) {
+            this.log.warn(
+                String.format(
+                    "Can not validate pull request %s in the background",
+                    pullRequest.getTitle()
+                ),
+                e
+            );
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.hook;
+
+import com.atlassian.bitbucket.event.pull.PullRequestDeclinedEvent;
+import com.atlassian.bitbucket.event.pull.PullRequestDeletedEvent;
+import com.atlassian.bitbucket.event.pull.PullRequestEvent;
+import com.atlassian.bitbucket.event.pull.PullRequestMergedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.PullRequestCheckpointStore;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Removes the checkpoint of a pull request, when it is merged, declined or deleted, so the plugin settings don't
+ * keep a checkpoint for every pull request that ever passed the merge check.
+ */
+@Named
+public class PullRequestCheckpointCleaner implements InitializingBean, DisposableBean {
+
+    @ComponentImport
+    private final EventPublisher eventPublisher;
+
+    private final PullRequestCheckpointStore pullRequestCheckpointStore;
+
+    private final Logger log = Logger.getLogger(PullRequestCheckpointCleaner.class);
+
+    @Inject
+    public PullRequestCheckpointCleaner(
+        final EventPublisher eventPublisher,
+        final PullRequestCheckpointStore pullRequestCheckpointStore
+    )
+    {
+        this.eventPublisher = eventPublisher;
+        this.pullRequestCheckpointStore = pullRequestCheckpointStore;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() {
+        this.eventPublisher.unregister(this);
+    }
+
+    @EventListener
+    public void onPullRequestMerged(final PullRequestMergedEvent event) {
+        this.removeCheckpoint(event);
+    }
+
+    @EventListener
+    public void onPullRequestDeclined(final PullRequestDeclinedEvent event) {
+        this.removeCheckpoint(event);
+    }
+
+    @EventListener
+    public void onPullRequestDeleted(final PullRequestDeletedEvent event) {
+        this.removeCheckpoint(event);
+    }
+
+    private void removeCheckpoint(final PullRequestEvent event) {
+        this.log.debug(
+            String.format(
+                "Removing the checkpoint of the closed pull request %s",
+                event.getPullRequest().getTitle()
+            )
+        );
+        this.pullRequestCheckpointStore.remove(event.getPullRequest());
+    }
+}
@@ -0,0 +1,208 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.hook;
+
+import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.permission.Permission;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestDeclineRequest;
+import com.atlassian.bitbucket.pull.PullRequestService;
+import com.atlassian.bitbucket.pull.PullRequestState;
+import com.atlassian.bitbucket.user.ApplicationUser;
+import com.atlassian.bitbucket.user.EscalatedSecurityContext;
+import com.atlassian.bitbucket.user.SecurityService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.BoundedCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.ValidationExecutor;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+import org.apache.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Declines invalid pull requests with a comment outside of the merge check.
+ *
+ * A pull request is declined at most once per version and set of invalid files, no matter how often the merge
+ * check is evaluated. The decline is skipped, if the pull request was updated or closed in the meantime.
+ */
+@Named
+public class PullRequestDecliner {
+
+    private static final int DISPATCHED_SIZE = 1000;
+
+    @ComponentImport
+    private final PullRequestService pullRequestService;
+
+    @ComponentImport
+    private final SecurityService securityService;
+
+    @ComponentImport
+    private final AuthenticationContext authenticationContext;
+
+    private final ValidationExecutor validationExecutor;
+
+    private final MetricsRegistry metricsRegistry;
+
+    /**
+     * The keys of the declines already dispatched
+     */
+    private final BoundedCache<String, Boolean> dispatched = new BoundedCache<>(DISPATCHED_SIZE);
+
+    private final Logger log = Logger.getLogger(PullRequestDecliner.class);
+
+    @Inject
+    public PullRequestDecliner(
+        final PullRequestService pullRequestService,
+        final SecurityService securityService,
+        final AuthenticationContext authenticationContext,
+        final ValidationExecutor validationExecutor,
+        final MetricsRegistry metricsRegistry
+    )
+    {
+        this.pullRequestService = pullRequestService;
+        this.securityService = securityService;
+        this.authenticationContext = authenticationContext;
+        this.validationExecutor = validationExecutor;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Decline a pull request in the background
+     *
+     * @param pullRequest The pull request
+     * @param e           The failures found in the pull request
+     * @param comment     The comment to decline the pull request with
+     */
+    public void decline(final PullRequest pullRequest, final InvalidYamlFileException e, final String comment) {
+        final String key = getKey(pullRequest, e);
+
+        synchronized (this.dispatched) {
+            if (this.dispatched.get(key) != null) {
+                this.log.debug(
+                    String.format(
+                        "Pull request %s was already declined for the same files",
+                        pullRequest.getTitle()
+                    )
+                );
+                this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_DECLINES_DEDUPLICATED).increment();
+                return;
+            }
+            this.dispatched.put(key, Boolean.TRUE);
+        }
+
+        final ApplicationUser user = this.authenticationContext.getCurrentUser();
+        final int repositoryId = pullRequest.getToRef().getRepository().getId();
+        final long pullRequestId = pullRequest.getId();
+        final int version = pullRequest.getVersion();
+
+        try {
+            this.validationExecutor.submitAction(
+                () -> this.getSecurityContext(user, pullRequest).call(() -> {
+                    this.declineNow(key, repositoryId, pullRequestId, version, comment);
+                    return null;
+                })
+            );
+        } catch (final RejectedExecutionException rejected) {
+            this.log.warn(
+                String.format(
+                    "Too many actions waiting. Pull request %s will be declined on its next check.",
+                    pullRequest.getTitle()
+                )
+            );
+            synchronized (this.dispatched) {
+                this.dispatched.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Decline the pull request, if it's still open and wasn't updated since the check
+     *
+     * If declining fails, the key is forgotten again, so the next check of the pull request retries it.
+     *
+     * @param key           The key of the dispatched decline
+     * @param repositoryId  The id of the target repository
+     * @param pullRequestId The id of the pull request
+     * @param version       The checked version of the pull request
+     * @param comment       The comment to decline the pull request with
+     */
+    private void declineNow(
+        final String key,
+        final int repositoryId,
+        final long pullRequestId,
+        final int version,
+        final String comment
+    )
+    {
+        final PullRequest pullRequest = this.pullRequestService.getById(repositoryId, pullRequestId);
+
+        if (pullRequest == null || pullRequest.getState() != PullRequestState.OPEN) {
+            this.log.debug(String.format("Pull request %d is closed already", pullRequestId));
+            return;
+        }
+
+        if (pullRequest.getVersion() != version) {
+            this.log.debug(
+                String.format(
+                    "Pull request %s was updated since it was checked. Not declining it.",
+                    pullRequest.getTitle()
+                )
+            );
+            return;
+        }
+
+        try {
+            this.pullRequestService.decline(
+                new PullRequestDeclineRequest.Builder(
+                    pullRequest,
+                    version
+                ).comment(
+                    comment
+                ).build()
+            );
+            this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_DECLINES).increment();
+        } catch (final RuntimeException e) {
+            this.log.warn(String.format("Can not decline pull request %s", pullRequest.getTitle()), e);
+            synchronized (this.dispatched) {
+                this.dispatched.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get the security context to decline the pull request in: the user running the merge check or, if there's
+     * none, a context allowed to write to the repository.
+     *
+     * @param user        The user running the merge check
+     * @param pullRequest The pull request
+     * @return The security context
+     */
+    private EscalatedSecurityContext getSecurityContext(final ApplicationUser user, final PullRequest pullRequest) {
+        if (user != null) {
+            return this.securityService.impersonating(user, "Declining a pull request with invalid YAML files");
+        }
+        return this.securityService.withPermission(
+            pullRequest.getToRef().getRepository(),
+            Permission.REPO_WRITE,
+            "Declining a pull request with invalid YAML files"
+        );
+    }
+
+    private static String getKey(final PullRequest pullRequest, final InvalidYamlFileException e) {
+        final Set<String> failingFiles = new TreeSet<>();
+        for (final ValidationFailure failure : e.getFailures()) {
+            failingFiles.add(String.format("%s@%s", failure.getFilePath(), failure.getContentId()));
+        }
+        return String.format(
+            "%d/%d/%d/%s",
+            pullRequest.getToRef().getRepository().getId(),
+            pullRequest.getId(),
+            pullRequest.getVersion(),
+            failingFiles
+        );
+    }
+}
@@ -1,20 +1,23 @@
 package io.github.dodevops.bitbucket.yamlcheckhook.hook;
 
-import com.atlassian.bitbucket.commit.CommitService;
-import com.atlassian.bitbucket.content.Change;
-import com.atlassian.bitbucket.content.ChangesRequest;
 import com.atlassian.bitbucket.hook.repository.PreRepositoryHookContext;
 import com.atlassian.bitbucket.hook.repository.PullRequestMergeHookRequest;
 import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
 import com.atlassian.bitbucket.hook.repository.RepositoryMergeCheck;
-import com.atlassian.bitbucket.pull.PullRequestDeclineRequest;
-import com.atlassian.bitbucket.pull.PullRequestRef;
-import com.atlassian.bitbucket.pull.PullRequestService;
-import com.atlassian.bitbucket.util.PageRequest;
-import com.atlassian.bitbucket.util.PagedIterable;
-import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.scope.Scope;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.setting.SettingsValidationErrors;
+import com.atlassian.bitbucket.setting.SettingsValidator;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.MergeCheckResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
 import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
-import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationServiceInterface;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.NotAdmittedException;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ParserBackendFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.PullRequestValidator;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
 import org.apache.log4j.Logger;
 
 import javax.annotation.Nonnull;
@@ -25,37 +28,59 @@ import javax.inject.Named;
  * A PreReceiveHook checking all changed yaml files of a pull request, if they are still valid.
  */
 @Named
-public class PullRequestHook implements RepositoryMergeCheck {
+public class PullRequestHook implements RepositoryMergeCheck, SettingsValidator {
 
+    /**
+     * The complete key of the merge check module
+     */
+    public static final String HOOK_KEY = "io.github.dodevops.bitbucket.yamlcheckhook:yaml-check-merge-hook";
+
+    private final PullRequestDecliner pullRequestDecliner;
+
+    private final PullRequestValidator pullRequestValidator;
 
-    @ComponentImport
-    private final CommitService commitService;
+    private final MergeCheckResultCache mergeCheckResultCache;
 
-    @ComponentImport
-    private final PullRequestService pullRequestService;
+    private final MetricsRegistry metricsRegistry;
 
-    private final ValidationServiceInterface validationService;
+    private final PathFilterFactory pathFilterFactory;
+
+    private final ParserBackendFactory parserBackendFactory;
+
+    private final AdmissionController admissionController;
 
     private final Logger log = Logger.getLogger(PullRequestHook.class);
 
     /**
      * Instantiate the yaml check hook
      *
-     * @param commitService  Commit service injection
-     * @param pullRequestService Pull request service for communication
-     * @param validationService Validation service
+     * @param pullRequestDecliner Declines invalid pull requests in the background
+     * @param pullRequestValidator Validator of the changed files of a pull request
+     * @param mergeCheckResultCache Cache of earlier merge check results
+     * @param metricsRegistry Registry of the plugin metrics
+     * @param pathFilterFactory Compiles the path filters of the hook settings
+     * @param parserBackendFactory Selects the parser backend of the hook settings
+     * @param admissionController Limits the number of validations running at the same time
      */
 
     @Inject
     public PullRequestHook(
-        final CommitService commitService,
-        final PullRequestService pullRequestService,
-        final ValidationServiceInterface validationService
+        final PullRequestDecliner pullRequestDecliner,
+        final PullRequestValidator pullRequestValidator,
+        final MergeCheckResultCache mergeCheckResultCache,
+        final MetricsRegistry metricsRegistry,
+        final PathFilterFactory pathFilterFactory,
+        final ParserBackendFactory parserBackendFactory,
+        final AdmissionController admissionController
     )
     {
-        this.commitService = commitService;
-        this.pullRequestService = pullRequestService;
-        this.validationService = validationService;
+        this.pullRequestDecliner = pullRequestDecliner;
+        this.pullRequestValidator = pullRequestValidator;
+        this.mergeCheckResultCache = mergeCheckResultCache;
+        this.metricsRegistry = metricsRegistry;
+        this.pathFilterFactory = pathFilterFactory;
+        this.parserBackendFactory = parserBackendFactory;
+        this.admissionController = admissionController;
     }
 
     @Nonnull
@@ -63,58 +88,103 @@ public class PullRequestHook implements RepositoryMergeCheck {
     public RepositoryHookResult preUpdate(@Nonnull final PreRepositoryHookContext preRepositoryHookContext,
                                           @Nonnull final PullRequestMergeHookRequest pullRequestMergeHookRequest)
     {
-        this.log.debug(
-            String.format(
-                "Fetching all changes from pull request %s by %s",
-                pullRequestMergeHookRequest.getPullRequest().getTitle(),
-                pullRequestMergeHookRequest.getPullRequest().getAuthor().getUser().getDisplayName()
-            )
-        );
+        final long start = System.nanoTime();
+        this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_INVOCATIONS).increment();
 
-        final PullRequestRef fromRef = pullRequestMergeHookRequest.getPullRequest()
-            .getFromRef();
-        final PullRequestRef toRef = pullRequestMergeHookRequest.getPullRequest()
-            .getToRef();
-        final ChangesRequest changesRequest =
-            new ChangesRequest.Builder(
-                fromRef.getRepository(),
-                fromRef.getLatestCommit()
-            )
-                .sinceId(toRef.getLatestCommit())
-                .build();
-
-        final Iterable<Change> changes = new PagedIterable<>(
-            pageRequest -> this.commitService.getChanges(
-                changesRequest,
-                pageRequest
-            ),
-            PageRequest.MAX_PAGE_LIMIT
+        try {
+            final RepositoryHookResult result = this.getResult(preRepositoryHookContext, pullRequestMergeHookRequest);
+            if (result.isRejected()) {
+                this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_REJECTIONS).increment();
+            }
+            return result;
+        } finally {
+            this.metricsRegistry.histogram(MetricsRegistry.PULL_REQUEST_LATENCY).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void validate(
+        @Nonnull final Settings settings,
+        @Nonnull final SettingsValidationErrors settingsValidationErrors,
+        @Nonnull final Scope scope
+    )
+    {
+        this.pathFilterFactory.validate(settings, settingsValidationErrors);
+        this.parserBackendFactory.validate(settings, settingsValidationErrors);
+    }
+
+    /**
+     * Get the known result of the pull request or check it
+     *
+     * @param preRepositoryHookContext    The hook context
+     * @param pullRequestMergeHookRequest The merge check request
+     * @return The result of the check
+     */
+    private RepositoryHookResult getResult(
+        final PreRepositoryHookContext preRepositoryHookContext,
+        final PullRequestMergeHookRequest pullRequestMergeHookRequest
+    )
+    {
+        final PullRequest pullRequest = pullRequestMergeHookRequest.getPullRequest();
+
+        final RepositoryHookResult knownResult = this.mergeCheckResultCache.get(
+            pullRequest,
+            preRepositoryHookContext.getSettings()
         );
 
+        if (knownResult != null) {
+            this.log.debug(
+                String.format(
+                    "Pull request %s wasn't changed since the last check. Using the known result.",
+                    pullRequest.getTitle()
+                )
+            );
+            return knownResult;
+        }
+
+        final RepositoryHookResult result;
         try {
-            this.validationService.areChangesValid(
-                changes,
-                fromRef.getRepository(),
-                fromRef.getLatestCommit()
+            result = this.checkPullRequest(
+                pullRequestMergeHookRequest,
+                preRepositoryHookContext.getSettings()
+            );
+        } catch (final NotAdmittedException e) {
+            // Not cached, the pull request is validated on its next check
+            return this.admissionController.getTimeoutResult(
+                String.format("pull request %s", pullRequest.getTitle())
+            );
+        }
+
+        this.mergeCheckResultCache.put(pullRequest, preRepositoryHookContext.getSettings(), result);
+
+        return result;
+    }
+
+    /**
+     * Validate all changed yaml files of the pull request and decline it, if one is invalid
+     *
+     * @param pullRequestMergeHookRequest The merge check request
+     * @param settings                    The hook settings
+     * @return The result of the check
+     * @throws NotAdmittedException Too many validations are running to validate the pull request
+     */
+    private RepositoryHookResult checkPullRequest(
+        final PullRequestMergeHookRequest pullRequestMergeHookRequest,
+        final Settings settings
+    ) throws NotAdmittedException
+    {
+        try {
+            this.pullRequestValidator.validate(
+                pullRequestMergeHookRequest.getPullRequest(),
+                settings,
+                this.admissionController::tryAcquire
             );
         } catch (final InvalidYamlFileException e) {
             log.debug("Vetoing because of an invalid yaml file", e);
 
-            final String comment = String.format(
-                "Invalid YAML content detected when reading file %s: \n" +
-                    "```\n%s```",
-                e.getFilePath(),
-                e.getScannerMessage()
-            );
+            final String comment = this.getComment(e);
 
-            this.pullRequestService.decline(
-                new PullRequestDeclineRequest.Builder(
-                    pullRequestMergeHookRequest.getPullRequest(),
-                    pullRequestMergeHookRequest.getPullRequest().getVersion()
-                ).comment(
-                    comment
-                ).build()
-            );
+            this.pullRequestDecliner.decline(pullRequestMergeHookRequest.getPullRequest(), e, comment);
 
             return RepositoryHookResult.rejected(
                 "Invalid YAML content detected",
@@ -126,4 +196,29 @@ public class PullRequestHook implements RepositoryMergeCheck {
         return RepositoryHookResult.accepted();
     }
 
+    /**
+     * Render the failures of the pull request as a comment
+     *
+     * @param e The exception holding the failures
+     * @return The comment
+     */
+    private String getComment(final InvalidYamlFileException e) {
+        if (e.getFailures().size() == 1) {
+            return String.format(
+                "Invalid YAML content detected when reading file %s: \n" +
+                    "```\n%s```",
+                e.getFilePath(),
+                e.getScannerMessage()
+            );
+        }
+
+        final StringBuilder comment = new StringBuilder(
+            String.format("Invalid YAML content detected in %d files: \n```\n", e.getFailures().size())
+        );
+        for (final ValidationFailure failure : e.getFailures()) {
+            comment.append(failure.toString()).append("\n");
+        }
+        return comment.append("```").toString();
+    }
+
 }
@@ -1,36 +1,75 @@
 package io.github.dodevops.bitbucket.yamlcheckhook.hook;
 
+import com.atlassian.bitbucket.commit.Commit;
 import com.atlassian.bitbucket.commit.CommitService;
+import com.atlassian.bitbucket.commit.CommonAncestorCommitRequest;
 import com.atlassian.bitbucket.content.Change;
 import com.atlassian.bitbucket.content.ChangesRequest;
 import com.atlassian.bitbucket.hook.repository.PreRepositoryHook;
 import com.atlassian.bitbucket.hook.repository.PreRepositoryHookContext;
 import com.atlassian.bitbucket.hook.repository.RepositoryHookRequest;
 import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.repository.Branch;
+import com.atlassian.bitbucket.repository.NoDefaultBranchException;
 import com.atlassian.bitbucket.repository.RefChange;
+import com.atlassian.bitbucket.repository.RefChangeType;
+import com.atlassian.bitbucket.repository.RefService;
 import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.repository.StandardRefType;
+import com.atlassian.bitbucket.scope.Scope;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.setting.SettingsValidationErrors;
+import com.atlassian.bitbucket.setting.SettingsValidator;
 import com.atlassian.bitbucket.util.PageRequest;
 import com.atlassian.bitbucket.util.PagedIterable;
 import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
 import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ParserBackendFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationOptions;
 import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationServiceInterface;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.YamlFile;
 import org.apache.log4j.Logger;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A PreReceiveHook checking all changed yaml files in a push, if they are still valid.
  */
 @Named
-public class PushHook implements PreRepositoryHook {
+public class PushHook implements PreRepositoryHook, SettingsValidator {
 
     @ComponentImport
     private final CommitService commitService;
 
+    @ComponentImport
+    private final RefService refService;
+
     private final ValidationServiceInterface validationService;
 
+    private final MetricsRegistry metricsRegistry;
+
+    private final PathFilterFactory pathFilterFactory;
+
+    private final ParserBackendFactory parserBackendFactory;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final AdmissionController admissionController;
+
     private final Logger log = Logger.getLogger(PushHook.class);
 
     /**
@@ -38,36 +77,136 @@ public class PushHook implements PreRepositoryHook {
      *
      * @param validationService the ValidationService
      * @param commitService     Commit service injection
+     * @param refService        Ref service injection
+     * @param metricsRegistry   Registry of the plugin metrics
+     * @param pathFilterFactory Compiles the path filters of the hook settings
+     * @param parserBackendFactory Selects the parser backend of the hook settings
+     * @param pluginConfiguration The plugin configuration
+     * @param admissionController Limits the number of validations running at the same time
      */
 
     @Inject
     public PushHook(
         final ValidationServiceInterface validationService,
-        final CommitService commitService
+        final CommitService commitService,
+        final RefService refService,
+        final MetricsRegistry metricsRegistry,
+        final PathFilterFactory pathFilterFactory,
+        final ParserBackendFactory parserBackendFactory,
+        final PluginConfiguration pluginConfiguration,
+        final AdmissionController admissionController
     )
     {
         this.validationService = validationService;
         this.commitService = commitService;
+        this.refService = refService;
+        this.metricsRegistry = metricsRegistry;
+        this.pathFilterFactory = pathFilterFactory;
+        this.parserBackendFactory = parserBackendFactory;
+        this.pluginConfiguration = pluginConfiguration;
+        this.admissionController = admissionController;
     }
 
     @Nonnull
     @Override
     public RepositoryHookResult preUpdate(@Nonnull final PreRepositoryHookContext preRepositoryHookContext,
                                           @Nonnull final RepositoryHookRequest repositoryHookRequest)
+    {
+        final long start = System.nanoTime();
+        this.metricsRegistry.counter(MetricsRegistry.PUSH_INVOCATIONS).increment();
+
+        try {
+            final RepositoryHookResult result = this.checkPush(
+                repositoryHookRequest,
+                new ValidationOptions(
+                    this.pathFilterFactory.getPathFilter(preRepositoryHookContext.getSettings()),
+                    this.pathFilterFactory.getSchemaMapping(preRepositoryHookContext.getSettings()),
+                    this.parserBackendFactory.getParserBackend(preRepositoryHookContext.getSettings())
+                )
+            );
+            if (result.isRejected()) {
+                this.metricsRegistry.counter(MetricsRegistry.PUSH_REJECTIONS).increment();
+            }
+            return result;
+        } finally {
+            this.metricsRegistry.histogram(MetricsRegistry.PUSH_LATENCY).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void validate(
+        @Nonnull final Settings settings,
+        @Nonnull final SettingsValidationErrors settingsValidationErrors,
+        @Nonnull final Scope scope
+    )
+    {
+        this.pathFilterFactory.validate(settings, settingsValidationErrors);
+        this.parserBackendFactory.validate(settings, settingsValidationErrors);
+    }
+
+    /**
+     * Validate all yaml files changed by the ref changes of the push
+     *
+     * @param repositoryHookRequest The hook request
+     * @param options               The options of the validation
+     * @return The result of the check
+     */
+    private RepositoryHookResult checkPush(
+        final RepositoryHookRequest repositoryHookRequest,
+        final ValidationOptions options
+    )
     {
 
         this.log.debug("Fetching all changes from the push");
 
+        final Repository repository = repositoryHookRequest.getRepository();
+
+        // The same file content may be introduced by several refs (e.g. a branch and its tag). Validate every
+        // content only once and remember, which refs introduced it.
+        final Map<String, YamlFile> uniqueFiles = new LinkedHashMap<>();
+        final Map<String, List<String>> refsByFile = new HashMap<>();
+
         for (final RefChange refChange : repositoryHookRequest.getRefChanges()) {
 
+            if (refChange.getType() == RefChangeType.DELETE) {
+                this.log.debug(String.format("Ignoring the deletion of %s", refChange.getRef().getDisplayId()));
+                continue;
+            }
+
+            if (refChange.getRef().getType() == StandardRefType.TAG) {
+                this.log.debug(String.format("Ignoring the tag %s", refChange.getRef().getDisplayId()));
+                continue;
+            }
+
+            String sinceId = refChange.getFromHash();
+            boolean orphan = false;
+
+            if (refChange.getType() == RefChangeType.ADD) {
+                final String mergeBase = this.getMergeBase(repository, refChange);
+                if (refChange.getToHash().equals(mergeBase)) {
+                    this.log.debug(
+                        String.format(
+                            "The new branch %s holds no new commits",
+                            refChange.getRef().getDisplayId()
+                        )
+                    );
+                    continue;
+                }
+                if (mergeBase != null) {
+                    sinceId = mergeBase;
+                } else {
+                    orphan = true;
+                }
+            }
+
             this.log.debug("Fetching changes from a refchange");
 
             final ChangesRequest changesRequest =
                 new ChangesRequest.Builder(
-                    repositoryHookRequest.getRepository(),
+                    repository,
                     refChange.getToHash()
                 )
-                    .sinceId(refChange.getFromHash())
+                    .sinceId(sinceId)
                     .build();
 
             final Iterable<Change> changes = new PagedIterable<>(
@@ -78,27 +217,150 @@ public class PushHook implements PreRepositoryHook {
                 PageRequest.MAX_PAGE_LIMIT
             );
 
-            final Repository repository = repositoryHookRequest.getRepository();
-            final String currentHash = refChange.getToHash();
+            final List<YamlFile> yamlFiles = this.validationService.getYamlFiles(
+                changes,
+                refChange.getToHash(),
+                options
+            );
+
+            // All files of a branch without a merge base are new (e.g. the initial push of a repository). Only the
+            // YAML files count towards the limit, so a large repository with a few YAML files is still validated.
+            final int maxOrphanChanges = this.pluginConfiguration.getMaxOrphanChanges();
+            if (orphan && maxOrphanChanges > 0 && yamlFiles.size() > maxOrphanChanges) {
+                final String message = String.format(
+                    "The branch %s shares no history with the default branch and adds %d YAML files (more than %d)",
+                    refChange.getRef().getDisplayId(),
+                    yamlFiles.size(),
+                    maxOrphanChanges
+                );
+                if (!this.pluginConfiguration.isOrphanPolicySkip()) {
+                    return RepositoryHookResult.rejected("Too many YAML files to validate", message);
+                }
+                this.log.warn(String.format("%s. Skipping its validation.", message));
+                continue;
+            }
+
+            for (final YamlFile yamlFile : yamlFiles) {
+                uniqueFiles.putIfAbsent(yamlFile.getKey(), yamlFile);
+                refsByFile.computeIfAbsent(yamlFile.getKey(), key -> new ArrayList<>())
+                    .add(refChange.getRef().getDisplayId());
+            }
+
+        }
+
+        if (uniqueFiles.isEmpty()) {
+            return RepositoryHookResult.accepted();
+        }
 
-            try {
-                this.validationService.areChangesValid(changes, repository, currentHash);
-            } catch (final InvalidYamlFileException e) {
-                log.debug("Rejecting invalid file", e);
+        this.log.debug(String.format("Validating %d unique yaml files", uniqueFiles.size()));
+
+        // Only the validation of the files takes the CPU, fetching the changes doesn't
+        try (final AdmissionController.Permit permit = this.admissionController.tryAcquire(repository)) {
+            if (permit == null) {
+                return this.admissionController.getTimeoutResult(
+                    String.format("the push to %s", repository.getName())
+                );
+            }
+            this.validationService.areFilesValid(uniqueFiles.values(), repository, options);
+        } catch (final InvalidYamlFileException e) {
+            log.debug("Rejecting invalid file", e);
+
+            if (e.getFailures().size() == 1) {
                 return RepositoryHookResult.rejected(
                     "Invalid YAML content detected",
                     String.format(
                         "Invalid YAML content detected when " +
-                            "reading file %s: %s",
+                            "reading file %s (in %s): %s",
                         e.getFilePath(),
+                        this.getRefs(e.getFailures().get(0), uniqueFiles, refsByFile),
                         e.getScannerMessage()
                     )
                 );
+            }
 
+            final StringBuilder details = new StringBuilder(
+                String.format("Invalid YAML content detected in %d files:", e.getFailures().size())
+            );
+            for (final ValidationFailure failure : e.getFailures()) {
+                details.append(
+                    String.format(
+                        failure.getDocument() > 1 ? "\n%s (in %s, document %d): %s" : "\n%s (in %s): %4$s",
+                        failure.getLocation(),
+                        this.getRefs(failure, uniqueFiles, refsByFile),
+                        failure.getDocument(),
+                        failure.getProblem()
+                    )
+                );
             }
 
+            return RepositoryHookResult.rejected(
+                "Invalid YAML content detected",
+                details.toString()
+            );
+
         }
 
         return RepositoryHookResult.accepted();
     }
+
+    /**
+     * Get the merge base of a new branch with the default branch of the repository
+     *
+     * @param repository The repository
+     * @param refChange  The ref change creating the branch
+     * @return The id of the merge base or null, if the branch shares no history with the default branch
+     */
+    private String getMergeBase(final Repository repository, final RefChange refChange) {
+        final Branch defaultBranch;
+        try {
+            defaultBranch = this.refService.getDefaultBranch(repository);
+        } catch (final NoDefaultBranchException e) {
+            this.log.debug("The repository has no default branch yet");
+            return null;
+        }
+
+        if (defaultBranch == null || defaultBranch.getId().equals(refChange.getRef().getId())) {
+            return null;
+        }
+
+        final Commit mergeBase = this.commitService.getCommonAncestor(
+            new CommonAncestorCommitRequest.Builder(repository)
+                .commitId(refChange.getToHash())
+                .otherCommitId(defaultBranch.getLatestCommit())
+                .build()
+        );
+
+        return mergeBase != null ? mergeBase.getId() : null;
+    }
+
+    /**
+     * Get the refs of the push, that introduced the invalid file
+     *
+     * @param failure     The failure of the file
+     * @param uniqueFiles The validated files
+     * @param refsByFile  The refs that introduced each file
+     * @return The display ids of the refs
+     */
+    private String getRefs(
+        final ValidationFailure failure,
+        final Map<String, YamlFile> uniqueFiles,
+        final Map<String, List<String>> refsByFile
+    )
+    {
+        if (failure.getContentId() != null) {
+            final List<String> refs = refsByFile.get(
+                new YamlFile(failure.getFilePath(), failure.getContentId(), null).getKey()
+            );
+            return refs != null ? String.join(", ", refs) : "";
+        }
+
+        // Files without a content id are keyed by their commit, which the failure doesn't know
+        final Set<String> refs = new LinkedHashSet<>();
+        for (final YamlFile yamlFile : uniqueFiles.values()) {
+            if (yamlFile.getPath().equals(failure.getFilePath()) && yamlFile.getContentId() == null) {
+                refs.addAll(refsByFile.get(yamlFile.getKey()));
+            }
+        }
+        return String.join(", ", refs);
+    }
 }
@@ -0,0 +1,23 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count
+ */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        this.count.increment();
+    }
+
+    public void add(final long delta) {
+        this.count.add(delta);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import javax.inject.Named;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps all metrics in memory. They are published by the {@link JmxMetricsExporter}.
+ */
+@Named
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+    private static final int SLOWEST_FILES = 10;
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private final SlowestFiles slowestFiles = new SlowestFiles(SLOWEST_FILES);
+
+    @Override
+    public Counter counter(final String name) {
+        return this.counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    @Override
+    public Histogram histogram(final String name) {
+        return this.histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    @Override
+    public void gauge(final String name, final LongSupplier value) {
+        this.gauges.put(name, value);
+    }
+
+    @Override
+    public void recordFile(final String path, final long nanos) {
+        this.histogram(FILE_LATENCY).record(nanos);
+        this.slowestFiles.record(path, nanos);
+    }
+
+    @Override
+    public Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(new TreeMap<>(this.counters));
+    }
+
+    @Override
+    public Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(this.histograms));
+    }
+
+    @Override
+    public Map<String, LongSupplier> getGauges() {
+        return Collections.unmodifiableMap(new TreeMap<>(this.gauges));
+    }
+
+    @Override
+    public SlowestFiles getSlowestFiles() {
+        return this.slowestFiles;
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations.
+ *
+ * Durations are counted in buckets of powers of two microseconds, so percentiles are estimated by the upper bound
+ * of their bucket (at most twice the real value).
+ */
+public class Histogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        final int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        this.buckets.incrementAndGet(bucket);
+        this.count.increment();
+        this.sum.add(micros);
+        this.max.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public double getMeanMillis() {
+        final long count = this.getCount();
+        return count == 0 ? 0 : this.sum.sum() / (double) count / 1000;
+    }
+
+    public double getMaxMillis() {
+        return this.max.get() / 1000.0;
+    }
+
+    /**
+     * Estimate a percentile
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The upper bound of the bucket containing the percentile in milliseconds
+     */
+    public double getPercentileMillis(final double percentile) {
+        final long count = this.getCount();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += this.buckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(this.getMaxMillis(), (1L << bucket) / 1000.0);
+            }
+        }
+        return this.getMaxMillis();
+    }
+}
@@ -0,0 +1,187 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the metrics of the {@link MetricsRegistry} as attributes of a JMX MBean named
+ * {@value #OBJECT_NAME}
+ */
+@Named
+public class JmxMetricsExporter implements DynamicMBean, InitializingBean, DisposableBean {
+
+    public static final String OBJECT_NAME = "io.github.dodevops.bitbucket.yamlcheckhook:type=Metrics";
+
+    private static final String[] KNOWN_COUNTERS = {
+        MetricsRegistry.PUSH_INVOCATIONS,
+        MetricsRegistry.PUSH_REJECTIONS,
+        MetricsRegistry.PULL_REQUEST_INVOCATIONS,
+        MetricsRegistry.PULL_REQUEST_REJECTIONS,
+        MetricsRegistry.PULL_REQUEST_DECLINES,
+        MetricsRegistry.PULL_REQUEST_DECLINES_DEDUPLICATED,
+        MetricsRegistry.PREWARM_SCHEDULED,
+        MetricsRegistry.PREWARM_DROPPED,
+        MetricsRegistry.PREWARM_COMPLETED,
+        MetricsRegistry.CHANGES_ENUMERATED,
+        MetricsRegistry.FILES_FETCHED,
+        MetricsRegistry.FILES_BATCH_FETCHED,
+        MetricsRegistry.BATCH_FETCH_COMMANDS,
+        MetricsRegistry.BYTES_READ,
+        MetricsRegistry.ADMISSION_TIMEOUTS
+    };
+
+    private static final String[] KNOWN_HISTOGRAMS = {
+        MetricsRegistry.PUSH_LATENCY,
+        MetricsRegistry.PULL_REQUEST_LATENCY,
+        MetricsRegistry.FILE_LATENCY,
+        MetricsRegistry.PARSE_TIME,
+        MetricsRegistry.ADMISSION_WAIT
+    };
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    private final Logger log = Logger.getLogger(JmxMetricsExporter.class);
+
+    @Inject
+    public JmxMetricsExporter(final MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+
+        // Create the well known metrics up front, so the attributes of the MBean are stable from the start
+        for (final String counter : KNOWN_COUNTERS) {
+            metricsRegistry.counter(counter);
+        }
+        for (final String histogram : KNOWN_HISTOGRAMS) {
+            metricsRegistry.histogram(histogram);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() throws JMException {
+        final ObjectName objectName = new ObjectName(OBJECT_NAME);
+        // A previous instance may still be registered, if the plugin wasn't disabled cleanly
+        if (this.mBeanServer.isRegistered(objectName)) {
+            this.mBeanServer.unregisterMBean(objectName);
+        }
+        this.mBeanServer.registerMBean(this, objectName);
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            this.mBeanServer.unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (final JMException e) {
+            this.log.warn("Can not unregister the metrics MBean", e);
+        }
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Supplier<Object> value = this.getAttributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final Map<String, Supplier<Object>> values = this.getAttributes();
+        final AttributeList attributeList = new AttributeList();
+        for (final String attribute : attributes) {
+            final Supplier<Object> value = values.get(attribute);
+            if (value != null) {
+                attributeList.add(new Attribute(attribute, value.get()));
+            }
+        }
+        return attributeList;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(String.format("%s is read only", attribute.getName()));
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributeInfos = new ArrayList<>();
+        for (final Map.Entry<String, Supplier<Object>> attribute : this.getAttributes().entrySet()) {
+            attributeInfos.add(
+                new MBeanAttributeInfo(
+                    attribute.getKey(),
+                    attribute.getValue().get().getClass().getName(),
+                    attribute.getKey(),
+                    true,
+                    false,
+                    false
+                )
+            );
+        }
+        return new MBeanInfo(
+            JmxMetricsExporter.class.getName(),
+            "Metrics of the YAML Checkhook",
+            attributeInfos.toArray(new MBeanAttributeInfo[0]),
+            null,
+            new MBeanOperationInfo[0],
+            null
+        );
+    }
+
+    /**
+     * Collect all attributes of the MBean
+     *
+     * @return The suppliers of the attribute values by name
+     */
+    private Map<String, Supplier<Object>> getAttributes() {
+        final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+
+        this.metricsRegistry.getCounters().forEach(
+            (name, counter) -> attributes.put(name, counter::getCount)
+        );
+        this.metricsRegistry.getGauges().forEach(
+            (name, gauge) -> attributes.put(name, gauge::getAsLong)
+        );
+        this.metricsRegistry.getHistograms().forEach((name, histogram) -> {
+            attributes.put(name + ".count", histogram::getCount);
+            attributes.put(name + ".meanMillis", histogram::getMeanMillis);
+            attributes.put(name + ".p50Millis", () -> histogram.getPercentileMillis(50));
+            attributes.put(name + ".p95Millis", () -> histogram.getPercentileMillis(95));
+            attributes.put(name + ".p99Millis", () -> histogram.getPercentileMillis(99));
+            attributes.put(name + ".maxMillis", histogram::getMaxMillis);
+        });
+        attributes.put("slowestFiles", () -> this.metricsRegistry.getSlowestFiles().getEntries());
+
+        return attributes;
+    }
+}
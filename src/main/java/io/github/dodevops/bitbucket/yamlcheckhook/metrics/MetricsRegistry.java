@@ -0,0 +1,157 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A registry of the metrics recorded by the hooks and the validation.
+ *
+ * Metrics are created on first use and identified by their name.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Invocations of the push hook
+     */
+    String PUSH_INVOCATIONS = "push.invocations";
+
+    /**
+     * End-to-end latency of the push hook
+     */
+    String PUSH_LATENCY = "push.latency";
+
+    /**
+     * Pushes rejected because of invalid files
+     */
+    String PUSH_REJECTIONS = "push.rejections";
+
+    /**
+     * Invocations of the merge check
+     */
+    String PULL_REQUEST_INVOCATIONS = "pull-request.invocations";
+
+    /**
+     * End-to-end latency of the merge check
+     */
+    String PULL_REQUEST_LATENCY = "pull-request.latency";
+
+    /**
+     * Merges rejected because of invalid files
+     */
+    String PULL_REQUEST_REJECTIONS = "pull-request.rejections";
+
+    /**
+     * Invalid pull requests declined with a comment
+     */
+    String PULL_REQUEST_DECLINES = "pull-request.declines";
+
+    /**
+     * Declines skipped, because the same pull request version was already declined for the same files
+     */
+    String PULL_REQUEST_DECLINES_DEDUPLICATED = "pull-request.declines-deduplicated";
+
+    /**
+     * Pull requests scheduled for validation in the background
+     */
+    String PREWARM_SCHEDULED = "prewarm.scheduled";
+
+    /**
+     * Pull requests not validated in the background, because the queue was full
+     */
+    String PREWARM_DROPPED = "prewarm.dropped";
+
+    /**
+     * Merge check results prepared in the background
+     */
+    String PREWARM_COMPLETED = "prewarm.completed";
+
+    /**
+     * Changes enumerated to find yaml files
+     */
+    String CHANGES_ENUMERATED = "changes.enumerated";
+
+    /**
+     * Files fetched from the repository and parsed
+     */
+    String FILES_FETCHED = "files.fetched";
+
+    /**
+     * Fetched files read through a "git cat-file --batch" command of their validation run
+     */
+    String FILES_BATCH_FETCHED = "files.batch-fetched";
+
+    /**
+     * "git cat-file --batch" commands started to read the files of a validation run
+     */
+    String BATCH_FETCH_COMMANDS = "batch-fetch.commands";
+
+    /**
+     * Fetched files known to be valid from the pre-scanner without parsing them
+     */
+    String FILES_PRESCANNED = "files.prescanned";
+
+    /**
+     * Bytes read from fetched files
+     */
+    String BYTES_READ = "bytes.read";
+
+    /**
+     * Time needed to fetch and parse one file
+     */
+    String FILE_LATENCY = "file.latency";
+
+    /**
+     * Time the parser spent on one file, including waiting for streamed content
+     */
+    String PARSE_TIME = "parse.time";
+
+    /**
+     * Time validations waited for admission
+     */
+    String ADMISSION_WAIT = "admission.wait";
+
+    /**
+     * Validations not admitted in time
+     */
+    String ADMISSION_TIMEOUTS = "admission.timeouts";
+
+    /**
+     * Get or create a counter
+     *
+     * @param name The name of the counter
+     * @return The counter
+     */
+    Counter counter(final String name);
+
+    /**
+     * Get or create a histogram of durations
+     *
+     * @param name The name of the histogram
+     * @return The histogram
+     */
+    Histogram histogram(final String name);
+
+    /**
+     * Register a value computed on demand, replacing an existing gauge with the same name
+     *
+     * @param name  The name of the gauge
+     * @param value The supplier of the current value
+     */
+    void gauge(final String name, final LongSupplier value);
+
+    /**
+     * Record the time needed to validate a file for the slowest file tracking
+     *
+     * @param path  The path of the file
+     * @param nanos The duration in nanoseconds
+     */
+    void recordFile(final String path, final long nanos);
+
+    Map<String, Counter> getCounters();
+
+    Map<String, Histogram> getHistograms();
+
+    Map<String, LongSupplier> getGauges();
+
+    SlowestFiles getSlowestFiles();
+}
@@ -0,0 +1,70 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the files that took the longest time to validate
+ */
+public class SlowestFiles {
+
+    private final int size;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private volatile long threshold = 0;
+
+    /**
+     * Create a new tracker
+     *
+     * @param size The number of files to keep
+     */
+    public SlowestFiles(final int size) {
+        this.size = size;
+    }
+
+    /**
+     * Record the validation time of a file
+     *
+     * @param path  The path of the file
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(final String path, final long nanos) {
+        // Cheap check without locking for the common case of a fast file
+        if (nanos <= this.threshold) {
+            return;
+        }
+        synchronized (this.entries) {
+            this.entries.add(new Entry(path, nanos));
+            this.entries.sort(Comparator.comparingLong((Entry entry) -> entry.nanos).reversed());
+            if (this.entries.size() > this.size) {
+                this.entries.remove(this.entries.size() - 1);
+                this.threshold = this.entries.get(this.entries.size() - 1).nanos;
+            }
+        }
+    }
+
+    /**
+     * @return The slowest files in descending order, formatted as "duration ms path"
+     */
+    public String[] getEntries() {
+        synchronized (this.entries) {
+            return this.entries.stream()
+                .map(entry -> String.format("%d ms %s", TimeUnit.NANOSECONDS.toMillis(entry.nanos), entry.path))
+                .toArray(String[]::new);
+        }
+    }
+
+    private static final class Entry {
+        private final String path;
+
+        private final long nanos;
+
+        private Entry(final String path, final long nanos) {
+            this.path = path;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.schema;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.SchemaViolationException;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.SchemaNode.InstancePath;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.SchemaNode.Traversal;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.SchemaNode.Violation;
+import org.yaml.snakeyaml.nodes.Node;
+
+/**
+ * A JSON schema compiled for validating composed YAML documents.
+ *
+ * Compiled schemas are immutable and can be used by several threads at once.
+ */
+public class CompiledSchema {
+
+    private final String id;
+
+    private final String path;
+
+    private final SchemaNode root;
+
+    private CompiledSchema(final String id, final String path, final SchemaNode root) {
+        this.id = id;
+        this.path = path;
+        this.root = root;
+    }
+
+    /**
+     * Compile a schema
+     *
+     * @param id       The id of the schema blob
+     * @param path     The path of the schema in the repository
+     * @param document The loaded schema
+     * @return The compiled schema
+     * @throws IllegalArgumentException The schema is not valid or uses unsupported features
+     */
+    public static CompiledSchema compile(final String id, final String path, final Object document)
+        throws IllegalArgumentException
+    {
+        return new CompiledSchema(id, path, SchemaCompiler.compile(document));
+    }
+
+    /**
+     * Get the id of the schema blob. Schemas with the same id are equal.
+     *
+     * @return The id
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Validate a document against the schema
+     *
+     * @param document The root node of the document
+     * @throws SchemaViolationException The document doesn't match the schema
+     */
+    public void validate(final Node document) throws SchemaViolationException {
+        final Violation violation = this.root.validate(document, new Traversal(), InstancePath.ROOT);
+        if (violation != null) {
+            throw new SchemaViolationException(this.path, violation.getProblem(), violation.getMark());
+        }
+    }
+}
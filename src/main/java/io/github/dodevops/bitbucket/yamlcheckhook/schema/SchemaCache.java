@@ -0,0 +1,210 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.schema;
+
+import com.atlassian.bitbucket.content.ContentService;
+import com.atlassian.bitbucket.content.NoSuchPathException;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.BoundedCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.BudgetedParser;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ParserBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidSchemaException;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import org.apache.log4j.Logger;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Loads and compiles the schemas stored in the repositories.
+ *
+ * Compiled schemas are remembered by the id of their blob, so a schema is compiled only once, however many files
+ * and pushes use it. The blob id of a schema at a commit is remembered as well, so a schema is usually only read
+ * once per commit.
+ */
+@Named
+public class SchemaCache {
+
+    private static final int SCHEMA_CACHE_SIZE = 128;
+
+    private static final int LOCATION_CACHE_SIZE = 4096;
+
+    private static final ParserBackend SCHEMA_PARSER_BACKEND = new SnakeYamlBackend();
+
+    @ComponentImport
+    private final ContentService contentService;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final BoundedCache<String, CompiledSchema> schemas = new BoundedCache<>(SCHEMA_CACHE_SIZE);
+
+    private final BoundedCache<String, String> blobIds = new BoundedCache<>(LOCATION_CACHE_SIZE);
+
+    private final Logger log = Logger.getLogger(SchemaCache.class);
+
+    @Inject
+    public SchemaCache(
+        final ContentService contentService,
+        final PluginConfiguration pluginConfiguration,
+        final MetricsRegistry metricsRegistry
+    )
+    {
+        this.contentService = contentService;
+        this.pluginConfiguration = pluginConfiguration;
+
+        metricsRegistry.gauge("schema-cache.size", this.schemas::size);
+        metricsRegistry.gauge("schema-cache.hits", this.schemas::getHits);
+        metricsRegistry.gauge("schema-cache.misses", this.schemas::getMisses);
+        metricsRegistry.gauge("schema-cache.evictions", this.schemas::getEvictions);
+    }
+
+    /**
+     * Get the compiled schema stored at a path of the repository
+     *
+     * @param repository The repository
+     * @param commitId   The commit to read the schema at
+     * @param path       The path of the schema
+     * @return The compiled schema
+     * @throws InvalidSchemaException The schema doesn't exist or is not valid
+     */
+    public CompiledSchema getSchema(
+        final Repository repository,
+        final String commitId,
+        final String path
+    ) throws InvalidSchemaException
+    {
+        final String location = String.format("%d:%s:%s", repository.getId(), commitId, path);
+
+        final String knownBlobId = this.blobIds.get(location);
+        if (knownBlobId != null) {
+            final CompiledSchema schema = this.schemas.get(knownBlobId);
+            if (schema != null) {
+                return schema;
+            }
+        }
+
+        final byte[] content = this.readSchema(repository, commitId, path);
+        final String blobId = getBlobId(content);
+        this.blobIds.put(location, blobId);
+
+        CompiledSchema schema = this.schemas.get(blobId);
+        if (schema == null) {
+            this.log.debug(String.format("Compiling the schema %s (%s)", path, blobId));
+            try {
+                schema = CompiledSchema.compile(blobId, path, this.loadSchema(content));
+            } catch (final YAMLException | IllegalArgumentException | BudgetExceededException e) {
+                throw new InvalidSchemaException(
+                    String.format("The schema %s is not valid: %s", path, e.getMessage()),
+                    e
+                );
+            }
+            this.schemas.put(blobId, schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Load the document of a schema within the budget of a validation, so a schema can't exhaust the node with
+     * deeply nested collections or aliases any more than a validated file can
+     *
+     * @param content The content of the schema
+     * @return The loaded document
+     * @throws YAMLException           The schema is not valid YAML
+     * @throws BudgetExceededException The schema exceeded the budget
+     */
+    private Object loadSchema(final byte[] content) throws YAMLException, BudgetExceededException {
+        final BudgetedParser parser = new BudgetedParser(
+            SCHEMA_PARSER_BACKEND.createParser(new UnicodeReader(new ByteArrayInputStream(content))),
+            this.pluginConfiguration.createValidationBudget()
+        );
+        final SafeConstructor constructor = new SafeConstructor();
+        constructor.setComposer(new Composer(parser, SCHEMA_PARSER_BACKEND.getResolver()));
+        return constructor.getSingleData(Object.class);
+    }
+
+    /**
+     * Read a schema from the repository
+     *
+     * @param repository The repository
+     * @param commitId   The commit to read the schema at
+     * @param path       The path of the schema
+     * @return The content of the schema
+     * @throws InvalidSchemaException The schema doesn't exist or is too large
+     */
+    private byte[] readSchema(
+        final Repository repository,
+        final String commitId,
+        final String path
+    ) throws InvalidSchemaException
+    {
+        final long maxFileSize = this.pluginConfiguration.getMaxFileSize();
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final boolean[] tooLarge = {false};
+
+        // Stop buffering at the size limit instead of failing the stream, which the content service would wrap
+        final OutputStream limitedStream = new OutputStream() {
+            @Override
+            public void write(final int b) {
+                this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                if (maxFileSize > 0 && content.size() + len > maxFileSize) {
+                    tooLarge[0] = true;
+                    return;
+                }
+                content.write(b, off, len);
+            }
+        };
+
+        try {
+            this.contentService.streamFile(repository, commitId, path, s -> limitedStream);
+        } catch (final NoSuchPathException e) {
+            throw new InvalidSchemaException(String.format("The schema %s does not exist", path), e);
+        }
+
+        if (tooLarge[0]) {
+            throw new InvalidSchemaException(
+                String.format("The schema %s is larger than the allowed %d bytes", path, maxFileSize)
+            );
+        }
+
+        return content.toByteArray();
+    }
+
+    /**
+     * Get the git blob id of a content
+     *
+     * @param content The content
+     * @return The SHA-1 id git would store the content under
+     */
+    static String getBlobId(final byte[] content) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(String.format("blob %d\0", content.length).getBytes(StandardCharsets.US_ASCII));
+            final byte[] id = digest.digest(content);
+
+            final StringBuilder hex = new StringBuilder(id.length * 2);
+            for (final byte b : id) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
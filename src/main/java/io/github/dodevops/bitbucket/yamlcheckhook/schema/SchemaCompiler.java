@@ -0,0 +1,666 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.schema;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.SchemaNode.Violation;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a loaded JSON schema into a tree of {@link SchemaNode}s.
+ *
+ * A subset of the JSON schema keywords (draft 4 to 2019-09) is supported: type, enum, const, the numeric, string,
+ * array and object keywords, allOf, anyOf, oneOf, not, if/then/else and local references ($ref to "#/..."). Other
+ * keywords (like format or title) are ignored. Patterns are compiled and references resolved once, when the schema
+ * is compiled.
+ */
+final class SchemaCompiler {
+
+    private static final Set<String> TYPES = new HashSet<>(
+        Arrays.asList("null", "boolean", "integer", "number", "string", "object", "array")
+    );
+
+    private final Object document;
+
+    private final Map<String, SchemaNode> references = new HashMap<>();
+
+    private final Deque<String> unresolvedReferences = new ArrayDeque<>();
+
+    private SchemaCompiler(final Object document) {
+        this.document = document;
+    }
+
+    /**
+     * Compile a schema
+     *
+     * @param document The loaded schema document
+     * @return The root of the compiled schema
+     * @throws IllegalArgumentException The schema is not valid or uses unsupported features
+     */
+    static SchemaNode compile(final Object document) throws IllegalArgumentException {
+        final SchemaCompiler compiler = new SchemaCompiler(document);
+        final SchemaNode root = compiler.getReference("#");
+
+        while (!compiler.unresolvedReferences.isEmpty()) {
+            final String pointer = compiler.unresolvedReferences.pop();
+            compiler.compileInto(compiler.references.get(pointer), compiler.resolve(pointer), pointer);
+        }
+
+        return root;
+    }
+
+    private SchemaNode getReference(final String pointer) {
+        SchemaNode node = this.references.get(pointer);
+        if (node == null) {
+            node = new SchemaNode();
+            this.references.put(pointer, node);
+            this.unresolvedReferences.push(pointer);
+        }
+        return node;
+    }
+
+    /**
+     * Find the schema a local reference points to
+     *
+     * @param pointer The reference (like #/definitions/port)
+     * @return The referenced schema
+     * @throws IllegalArgumentException The reference can't be resolved
+     */
+    private Object resolve(final String pointer) throws IllegalArgumentException {
+        if (!pointer.startsWith("#")) {
+            throw new IllegalArgumentException(
+                String.format("Only references within the schema are supported, not %s", pointer)
+            );
+        }
+
+        Object current = this.document;
+        final String path = pointer.substring(1);
+        if (path.isEmpty()) {
+            return current;
+        }
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException(String.format("%s is not a JSON pointer", pointer));
+        }
+
+        for (final String encodedToken : path.substring(1).split("/", -1)) {
+            final String token = encodedToken.replace("~1", "/").replace("~0", "~");
+            if (current instanceof Map && ((Map<?, ?>) current).containsKey(token)) {
+                current = ((Map<?, ?>) current).get(token);
+            } else if (current instanceof List && token.matches("\\d+") &&
+                Integer.parseInt(token) < ((List<?>) current).size()) {
+                current = ((List<?>) current).get(Integer.parseInt(token));
+            } else {
+                throw new IllegalArgumentException(String.format("The reference %s can't be resolved", pointer));
+            }
+        }
+        return current;
+    }
+
+    private SchemaNode compileSubschema(final Object schema, final String pointer) throws IllegalArgumentException {
+        final SchemaNode node = new SchemaNode();
+        this.compileInto(node, schema, pointer);
+        return node;
+    }
+
+    private List<SchemaNode> compileSubschemas(final Object schemas, final String pointer)
+        throws IllegalArgumentException
+    {
+        if (!(schemas instanceof List) || ((List<?>) schemas).isEmpty()) {
+            throw new IllegalArgumentException(String.format("%s must be a non-empty list of schemas", pointer));
+        }
+        final List<SchemaNode> nodes = new ArrayList<>();
+        for (final Object schema : (List<?>) schemas) {
+            nodes.add(this.compileSubschema(schema, String.format("%s/%d", pointer, nodes.size())));
+        }
+        return nodes;
+    }
+
+    private void compileInto(final SchemaNode node, final Object schema, final String pointer)
+        throws IllegalArgumentException
+    {
+        if (Boolean.FALSE.equals(schema)) {
+            node.addCheck((n, t, p) -> new Violation(n, p, "is not allowed"));
+            return;
+        }
+        if (Boolean.TRUE.equals(schema)) {
+            return;
+        }
+        if (!(schema instanceof Map)) {
+            throw new IllegalArgumentException(String.format("%s is not a schema", pointer));
+        }
+
+        final Map<?, ?> keywords = (Map<?, ?>) schema;
+
+        if (keywords.containsKey("$ref")) {
+            final SchemaNode reference = this.getReference(getString(keywords, "$ref", pointer));
+            node.addCheck(reference::validate);
+        }
+
+        this.compileGeneric(node, keywords, pointer);
+        this.compileNumeric(node, keywords, pointer);
+        this.compileString(node, keywords, pointer);
+        this.compileArray(node, keywords, pointer);
+        this.compileObject(node, keywords, pointer);
+        this.compileCombinators(node, keywords, pointer);
+    }
+
+    private void compileGeneric(final SchemaNode node, final Map<?, ?> keywords, final String pointer) {
+        if (keywords.containsKey("type")) {
+            final Object type = keywords.get("type");
+            final Set<String> types = new HashSet<>();
+            for (final Object value : type instanceof List ? (List<?>) type : Collections.singletonList(type)) {
+                if (!TYPES.contains(String.valueOf(value))) {
+                    throw new IllegalArgumentException(String.format("%s/type: unknown type %s", pointer, value));
+                }
+                types.add(String.valueOf(value));
+            }
+            final String expected = types.size() == 1 ? types.iterator().next() : "one of " + types;
+
+            node.addCheck((n, t, p) -> {
+                final String actual = YamlNodes.getType(n);
+                if (
+                    types.contains(actual) ||
+                        ("integer".equals(actual) && types.contains("number")) ||
+                        ("number".equals(actual) && types.contains("integer") && isIntegral(n))
+                ) {
+                    return null;
+                }
+                return new Violation(n, p, String.format("expected %s, but found %s", expected, actual));
+            });
+        }
+
+        if (keywords.containsKey("enum")) {
+            if (!(keywords.get("enum") instanceof List)) {
+                throw new IllegalArgumentException(String.format("%s/enum must be a list", pointer));
+            }
+            final Set<Object> values = new HashSet<>();
+            for (final Object value : (List<?>) keywords.get("enum")) {
+                values.add(YamlNodes.getSchemaValue(value));
+            }
+            final String problem = String.format("must be one of %s", keywords.get("enum"));
+
+            node.addCheck((n, t, p) -> values.contains(YamlNodes.getValue(n)) ? null : new Violation(n, p, problem));
+        }
+
+        if (keywords.containsKey("const")) {
+            final Object value = YamlNodes.getSchemaValue(keywords.get("const"));
+            final String problem = String.format("must be %s", keywords.get("const"));
+
+            node.addCheck((n, t, p) -> value.equals(YamlNodes.getValue(n)) ? null : new Violation(n, p, problem));
+        }
+    }
+
+    private void compileNumeric(final SchemaNode node, final Map<?, ?> keywords, final String pointer) {
+        final BigDecimal minimum = getNumber(keywords, "minimum", pointer);
+        final BigDecimal maximum = getNumber(keywords, "maximum", pointer);
+
+        // Draft 4 uses booleans modifying minimum and maximum, later drafts numbers
+        final boolean exclusiveMinimumFlag = Boolean.TRUE.equals(keywords.get("exclusiveMinimum"));
+        final boolean exclusiveMaximumFlag = Boolean.TRUE.equals(keywords.get("exclusiveMaximum"));
+        final BigDecimal exclusiveMinimum = keywords.get("exclusiveMinimum") instanceof Boolean ?
+            null : getNumber(keywords, "exclusiveMinimum", pointer);
+        final BigDecimal exclusiveMaximum = keywords.get("exclusiveMaximum") instanceof Boolean ?
+            null : getNumber(keywords, "exclusiveMaximum", pointer);
+        final BigDecimal multipleOf = getNumber(keywords, "multipleOf", pointer);
+
+        if (minimum != null) {
+            node.addCheck((n, t, p) -> {
+                final BigDecimal value = YamlNodes.getNumber(n);
+                if (value == null || value.compareTo(minimum) > (exclusiveMinimumFlag ? 0 : -1)) {
+                    return null;
+                }
+                return new Violation(
+                    n,
+                    p,
+                    String.format("must be %s %s", exclusiveMinimumFlag ? "greater than" : "at least", minimum)
+                );
+            });
+        }
+        if (maximum != null) {
+            node.addCheck((n, t, p) -> {
+                final BigDecimal value = YamlNodes.getNumber(n);
+                if (value == null || value.compareTo(maximum) < (exclusiveMaximumFlag ? 0 : 1)) {
+                    return null;
+                }
+                return new Violation(
+                    n,
+                    p,
+                    String.format("must be %s %s", exclusiveMaximumFlag ? "less than" : "at most", maximum)
+                );
+            });
+        }
+        if (exclusiveMinimum != null) {
+            node.addCheck((n, t, p) -> {
+                final BigDecimal value = YamlNodes.getNumber(n);
+                if (value == null || value.compareTo(exclusiveMinimum) > 0) {
+                    return null;
+                }
+                return new Violation(n, p, String.format("must be greater than %s", exclusiveMinimum));
+            });
+        }
+        if (exclusiveMaximum != null) {
+            node.addCheck((n, t, p) -> {
+                final BigDecimal value = YamlNodes.getNumber(n);
+                if (value == null || value.compareTo(exclusiveMaximum) < 0) {
+                    return null;
+                }
+                return new Violation(n, p, String.format("must be less than %s", exclusiveMaximum));
+            });
+        }
+        if (multipleOf != null) {
+            if (multipleOf.signum() <= 0) {
+                throw new IllegalArgumentException(String.format("%s/multipleOf must be greater than 0", pointer));
+            }
+            node.addCheck((n, t, p) -> {
+                final BigDecimal value = YamlNodes.getNumber(n);
+                if (value == null || value.remainder(multipleOf).signum() == 0) {
+                    return null;
+                }
+                return new Violation(n, p, String.format("must be a multiple of %s", multipleOf));
+            });
+        }
+    }
+
+    private void compileString(final SchemaNode node, final Map<?, ?> keywords, final String pointer) {
+        final BigDecimal minLength = getNumber(keywords, "minLength", pointer);
+        final BigDecimal maxLength = getNumber(keywords, "maxLength", pointer);
+
+        if (minLength != null || maxLength != null) {
+            final int minimum = minLength != null ? minLength.intValue() : 0;
+            final int maximum = maxLength != null ? maxLength.intValue() : Integer.MAX_VALUE;
+
+            node.addCheck((n, t, p) -> {
+                if (!isString(n)) {
+                    return null;
+                }
+                final String value = ((ScalarNode) n).getValue();
+                final int length = value.codePointCount(0, value.length());
+                if (length < minimum) {
+                    return new Violation(n, p, String.format("must be at least %d characters long", minimum));
+                }
+                if (length > maximum) {
+                    return new Violation(n, p, String.format("must be at most %d characters long", maximum));
+                }
+                return null;
+            });
+        }
+
+        if (keywords.containsKey("pattern")) {
+            final Pattern pattern = Pattern.compile(getString(keywords, "pattern", pointer));
+
+            node.addCheck((n, t, p) -> {
+                if (!isString(n) || pattern.matcher(((ScalarNode) n).getValue()).find()) {
+                    return null;
+                }
+                return new Violation(n, p, String.format("must match the pattern %s", pattern.pattern()));
+            });
+        }
+    }
+
+    private void compileArray(final SchemaNode node, final Map<?, ?> keywords, final String pointer) {
+        final Object items = keywords.get("items");
+
+        if (items instanceof List) {
+            final List<SchemaNode> itemSchemas = this.compileSubschemas(items, pointer + "/items");
+            final SchemaNode additionalItems = keywords.containsKey("additionalItems") ?
+                this.compileSubschema(keywords.get("additionalItems"), pointer + "/additionalItems") : null;
+
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof SequenceNode)) {
+                    return null;
+                }
+                final List<Node> values = ((SequenceNode) n).getValue();
+                for (int i = 0; i < values.size(); i++) {
+                    final SchemaNode itemSchema = i < itemSchemas.size() ? itemSchemas.get(i) : additionalItems;
+                    if (itemSchema == null) {
+                        break;
+                    }
+                    final Violation violation = itemSchema.validate(values.get(i), t, p.child(i));
+                    if (violation != null) {
+                        return violation;
+                    }
+                }
+                return null;
+            });
+        } else if (items != null) {
+            final SchemaNode itemSchema = this.compileSubschema(items, pointer + "/items");
+
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof SequenceNode)) {
+                    return null;
+                }
+                final List<Node> values = ((SequenceNode) n).getValue();
+                for (int i = 0; i < values.size(); i++) {
+                    final Violation violation = itemSchema.validate(values.get(i), t, p.child(i));
+                    if (violation != null) {
+                        return violation;
+                    }
+                }
+                return null;
+            });
+        }
+
+        if (keywords.containsKey("contains")) {
+            final SchemaNode containedSchema = this.compileSubschema(keywords.get("contains"), pointer + "/contains");
+
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof SequenceNode)) {
+                    return null;
+                }
+                final List<Node> values = ((SequenceNode) n).getValue();
+                for (int i = 0; i < values.size(); i++) {
+                    if (containedSchema.validate(values.get(i), t, p.child(i)) == null) {
+                        return null;
+                    }
+                }
+                return new Violation(n, p, "contains no matching item");
+            });
+        }
+
+        final BigDecimal minItems = getNumber(keywords, "minItems", pointer);
+        final BigDecimal maxItems = getNumber(keywords, "maxItems", pointer);
+        final boolean uniqueItems = Boolean.TRUE.equals(keywords.get("uniqueItems"));
+
+        if (minItems != null || maxItems != null || uniqueItems) {
+            final int minimum = minItems != null ? minItems.intValue() : 0;
+            final int maximum = maxItems != null ? maxItems.intValue() : Integer.MAX_VALUE;
+
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof SequenceNode)) {
+                    return null;
+                }
+                final List<Node> values = ((SequenceNode) n).getValue();
+                if (values.size() < minimum) {
+                    return new Violation(n, p, String.format("must have at least %d items", minimum));
+                }
+                if (values.size() > maximum) {
+                    return new Violation(n, p, String.format("must have at most %d items", maximum));
+                }
+                if (uniqueItems) {
+                    final Set<Object> seen = new HashSet<>();
+                    for (int i = 0; i < values.size(); i++) {
+                        final Object value = YamlNodes.getValue(values.get(i));
+                        if (value != null && !seen.add(value)) {
+                            return new Violation(values.get(i), p.child(i), "is a duplicate item");
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    private void compileObject(final SchemaNode node, final Map<?, ?> keywords, final String pointer) {
+        final Map<String, SchemaNode> properties = new HashMap<>();
+        if (keywords.containsKey("properties")) {
+            for (final Map.Entry<?, ?> property : getMap(keywords, "properties", pointer).entrySet()) {
+                properties.put(
+                    String.valueOf(property.getKey()),
+                    this.compileSubschema(property.getValue(), pointer + "/properties/" + property.getKey())
+                );
+            }
+        }
+
+        final Map<Pattern, SchemaNode> patternProperties = new LinkedHashMap<>();
+        if (keywords.containsKey("patternProperties")) {
+            for (final Map.Entry<?, ?> property : getMap(keywords, "patternProperties", pointer).entrySet()) {
+                patternProperties.put(
+                    Pattern.compile(String.valueOf(property.getKey())),
+                    this.compileSubschema(property.getValue(), pointer + "/patternProperties/" + property.getKey())
+                );
+            }
+        }
+
+        // Unknown properties are reported at their key, which is more helpful than the location of the value
+        final boolean forbidAdditionalProperties = Boolean.FALSE.equals(keywords.get("additionalProperties"));
+        final SchemaNode additionalProperties = keywords.containsKey("additionalProperties") &&
+            !forbidAdditionalProperties ?
+            this.compileSubschema(keywords.get("additionalProperties"), pointer + "/additionalProperties") : null;
+
+        if (
+            !properties.isEmpty() || !patternProperties.isEmpty() || forbidAdditionalProperties ||
+                additionalProperties != null
+        ) {
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof MappingNode)) {
+                    return null;
+                }
+                for (final NodeTuple entry : YamlNodes.getEntries((MappingNode) n)) {
+                    final String key = YamlNodes.getKey(entry);
+                    if (key == null) {
+                        continue;
+                    }
+                    boolean matched = false;
+
+                    final SchemaNode propertySchema = properties.get(key);
+                    if (propertySchema != null) {
+                        matched = true;
+                        final Violation violation = propertySchema.validate(entry.getValueNode(), t, p.child(key));
+                        if (violation != null) {
+                            return violation;
+                        }
+                    }
+
+                    for (final Map.Entry<Pattern, SchemaNode> patternProperty : patternProperties.entrySet()) {
+                        if (patternProperty.getKey().matcher(key).find()) {
+                            matched = true;
+                            final Violation violation = patternProperty.getValue().validate(
+                                entry.getValueNode(),
+                                t,
+                                p.child(key)
+                            );
+                            if (violation != null) {
+                                return violation;
+                            }
+                        }
+                    }
+
+                    if (!matched && forbidAdditionalProperties) {
+                        return new Violation(entry.getKeyNode(), p.child(key), "is not an allowed property");
+                    }
+
+                    if (!matched && additionalProperties != null) {
+                        final Violation violation = additionalProperties.validate(
+                            entry.getValueNode(),
+                            t,
+                            p.child(key)
+                        );
+                        if (violation != null) {
+                            return violation;
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+
+        if (keywords.containsKey("required")) {
+            if (!(keywords.get("required") instanceof List)) {
+                throw new IllegalArgumentException(String.format("%s/required must be a list", pointer));
+            }
+            final List<String> required = new ArrayList<>();
+            for (final Object key : (List<?>) keywords.get("required")) {
+                required.add(String.valueOf(key));
+            }
+
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof MappingNode)) {
+                    return null;
+                }
+                final List<NodeTuple> entries = YamlNodes.getEntries((MappingNode) n);
+                for (final String key : required) {
+                    boolean found = false;
+                    for (final NodeTuple entry : entries) {
+                        if (key.equals(YamlNodes.getKey(entry))) {
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        return new Violation(n, p, String.format("is missing the required property %s", key));
+                    }
+                }
+                return null;
+            });
+        }
+
+        if (keywords.containsKey("propertyNames")) {
+            final SchemaNode propertyNames = this.compileSubschema(
+                keywords.get("propertyNames"),
+                pointer + "/propertyNames"
+            );
+
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof MappingNode)) {
+                    return null;
+                }
+                for (final NodeTuple entry : YamlNodes.getEntries((MappingNode) n)) {
+                    final String key = YamlNodes.getKey(entry);
+                    final Violation violation = propertyNames.validate(
+                        entry.getKeyNode(),
+                        t,
+                        key != null ? p.child(key) : p
+                    );
+                    if (violation != null) {
+                        return violation;
+                    }
+                }
+                return null;
+            });
+        }
+
+        final BigDecimal minProperties = getNumber(keywords, "minProperties", pointer);
+        final BigDecimal maxProperties = getNumber(keywords, "maxProperties", pointer);
+
+        if (minProperties != null || maxProperties != null) {
+            final int minimum = minProperties != null ? minProperties.intValue() : 0;
+            final int maximum = maxProperties != null ? maxProperties.intValue() : Integer.MAX_VALUE;
+
+            node.addCheck((n, t, p) -> {
+                if (!(n instanceof MappingNode)) {
+                    return null;
+                }
+                final int size = YamlNodes.getEntries((MappingNode) n).size();
+                if (size < minimum) {
+                    return new Violation(n, p, String.format("must have at least %d properties", minimum));
+                }
+                if (size > maximum) {
+                    return new Violation(n, p, String.format("must have at most %d properties", maximum));
+                }
+                return null;
+            });
+        }
+    }
+
+    private void compileCombinators(final SchemaNode node, final Map<?, ?> keywords, final String pointer) {
+        if (keywords.containsKey("allOf")) {
+            for (final SchemaNode schema : this.compileSubschemas(keywords.get("allOf"), pointer + "/allOf")) {
+                node.addCheck(schema::validate);
+            }
+        }
+
+        if (keywords.containsKey("anyOf")) {
+            final List<SchemaNode> schemas = this.compileSubschemas(keywords.get("anyOf"), pointer + "/anyOf");
+
+            node.addCheck((n, t, p) -> {
+                for (final SchemaNode schema : schemas) {
+                    if (schema.validate(n, t, p) == null) {
+                        return null;
+                    }
+                }
+                return new Violation(n, p, "does not match any of the allowed schemas");
+            });
+        }
+
+        if (keywords.containsKey("oneOf")) {
+            final List<SchemaNode> schemas = this.compileSubschemas(keywords.get("oneOf"), pointer + "/oneOf");
+
+            node.addCheck((n, t, p) -> {
+                int matches = 0;
+                for (final SchemaNode schema : schemas) {
+                    if (schema.validate(n, t, p) == null) {
+                        matches++;
+                    }
+                }
+                if (matches == 1) {
+                    return null;
+                }
+                return new Violation(
+                    n,
+                    p,
+                    matches == 0 ? "does not match any of the allowed schemas" : "matches more than one schema"
+                );
+            });
+        }
+
+        if (keywords.containsKey("not")) {
+            final SchemaNode schema = this.compileSubschema(keywords.get("not"), pointer + "/not");
+
+            node.addCheck(
+                (n, t, p) -> schema.validate(n, t, p) == null ? new Violation(n, p, "matches a forbidden schema") : null
+            );
+        }
+
+        if (keywords.containsKey("if")) {
+            final SchemaNode condition = this.compileSubschema(keywords.get("if"), pointer + "/if");
+            final SchemaNode then = keywords.containsKey("then") ?
+                this.compileSubschema(keywords.get("then"), pointer + "/then") : null;
+            final SchemaNode otherwise = keywords.containsKey("else") ?
+                this.compileSubschema(keywords.get("else"), pointer + "/else") : null;
+
+            node.addCheck((n, t, p) -> {
+                final SchemaNode schema = condition.validate(n, t, p) == null ? then : otherwise;
+                return schema != null ? schema.validate(n, t, p) : null;
+            });
+        }
+    }
+
+    private static boolean isString(final Node node) {
+        return node instanceof ScalarNode && "string".equals(YamlNodes.getType(node));
+    }
+
+    private static boolean isIntegral(final Node node) {
+        final BigDecimal value = YamlNodes.getNumber(node);
+        return value != null && (value.signum() == 0 || value.stripTrailingZeros().scale() <= 0);
+    }
+
+    private static String getString(final Map<?, ?> keywords, final String keyword, final String pointer) {
+        if (!(keywords.get(keyword) instanceof String)) {
+            throw new IllegalArgumentException(String.format("%s/%s must be a string", pointer, keyword));
+        }
+        return (String) keywords.get(keyword);
+    }
+
+    private static Map<?, ?> getMap(final Map<?, ?> keywords, final String keyword, final String pointer) {
+        if (!(keywords.get(keyword) instanceof Map)) {
+            throw new IllegalArgumentException(String.format("%s/%s must be an object", pointer, keyword));
+        }
+        return (Map<?, ?>) keywords.get(keyword);
+    }
+
+    private static BigDecimal getNumber(final Map<?, ?> keywords, final String keyword, final String pointer) {
+        final Object value = keywords.get(keyword);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(String.format("%s/%s must be a number", pointer, keyword));
+        }
+        return new BigDecimal(value.toString());
+    }
+}
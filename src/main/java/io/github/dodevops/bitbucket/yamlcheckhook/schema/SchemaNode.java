@@ -0,0 +1,166 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.schema;
+
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled (sub-)schema: the checks of all its keywords, ready to be applied to a composed YAML node
+ */
+final class SchemaNode {
+
+    private final List<Check> checks = new ArrayList<>();
+
+    void addCheck(final Check check) {
+        this.checks.add(check);
+    }
+
+    /**
+     * Validate a node against this schema
+     *
+     * @param node      The node
+     * @param traversal The state of the current validation
+     * @param path      The path of the node in the document
+     * @return The first violation found or null, if the node matches the schema
+     */
+    Violation validate(final Node node, final Traversal traversal, final InstancePath path) {
+        if (node.getNodeId() == NodeId.scalar) {
+            return this.check(node, traversal, path);
+        }
+
+        // Collections may be reached several times through aliases (or even recursively), but are validated
+        // against the same schema only once
+        final Traversal.Key key = new Traversal.Key(node, this);
+        if (traversal.results.containsKey(key)) {
+            return traversal.results.get(key);
+        }
+        traversal.results.put(key, null);
+
+        final Violation violation = this.check(node, traversal, path);
+        traversal.results.put(key, violation);
+        return violation;
+    }
+
+    private Violation check(final Node node, final Traversal traversal, final InstancePath path) {
+        for (final Check check : this.checks) {
+            final Violation violation = check.check(node, traversal, path);
+            if (violation != null) {
+                return violation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The check of a single keyword
+     */
+    interface Check {
+        Violation check(Node node, Traversal traversal, InstancePath path);
+    }
+
+    /**
+     * A node not matching the schema
+     */
+    static final class Violation {
+
+        private final Node node;
+
+        private final InstancePath path;
+
+        private final String problem;
+
+        Violation(final Node node, final InstancePath path, final String problem) {
+            this.node = node;
+            this.path = path;
+            this.problem = problem;
+        }
+
+        Mark getMark() {
+            return this.node.getStartMark();
+        }
+
+        String getProblem() {
+            return String.format("%s: %s", this.path, this.problem);
+        }
+    }
+
+    /**
+     * The state of validating one document
+     */
+    static final class Traversal {
+
+        private final Map<Key, Violation> results = new HashMap<>();
+
+        private static final class Key {
+
+            private final Node node;
+
+            private final SchemaNode schemaNode;
+
+            private Key(final Node node, final SchemaNode schemaNode) {
+                this.node = node;
+                this.schemaNode = schemaNode;
+            }
+
+            @Override
+            public boolean equals(final Object o) {
+                return o instanceof Key && ((Key) o).node == this.node && ((Key) o).schemaNode == this.schemaNode;
+            }
+
+            @Override
+            public int hashCode() {
+                return 31 * System.identityHashCode(this.node) + System.identityHashCode(this.schemaNode);
+            }
+        }
+    }
+
+    /**
+     * The location of a node in the document (like $.spec.containers[0].image), only rendered for violations
+     */
+    static final class InstancePath {
+
+        static final InstancePath ROOT = new InstancePath(null, null, -1);
+
+        private static final Pattern SIMPLE_KEY = Pattern.compile("[A-Za-z_][A-Za-z0-9_-]*");
+
+        private final InstancePath parent;
+
+        private final String key;
+
+        private final int index;
+
+        private InstancePath(final InstancePath parent, final String key, final int index) {
+            this.parent = parent;
+            this.key = key;
+            this.index = index;
+        }
+
+        InstancePath child(final String key) {
+            return new InstancePath(this, key, -1);
+        }
+
+        InstancePath child(final int index) {
+            return new InstancePath(this, null, index);
+        }
+
+        @Override
+        public String toString() {
+            if (this.parent == null) {
+                return "$";
+            }
+            if (this.key == null) {
+                return String.format("%s[%d]", this.parent, this.index);
+            }
+            if (SIMPLE_KEY.matcher(this.key).matches()) {
+                return String.format("%s.%s", this.parent, this.key);
+            }
+            return String.format("%s['%s']", this.parent, this.key.replace("'", "\\'"));
+        }
+    }
+}
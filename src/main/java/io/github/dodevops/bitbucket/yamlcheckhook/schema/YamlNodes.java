@@ -0,0 +1,239 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.schema;
+
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Interprets composed YAML nodes the way a JSON schema sees them
+ */
+final class YamlNodes {
+
+    /**
+     * Maximum number of nested merge keys followed
+     */
+    private static final int MAX_MERGE_DEPTH = 32;
+
+    private YamlNodes() {
+    }
+
+    /**
+     * Get the JSON type of a node
+     *
+     * @param node The node
+     * @return One of "null", "boolean", "integer", "number", "string", "object" or "array"
+     */
+    static String getType(final Node node) {
+        if (node.getNodeId() == NodeId.mapping) {
+            return "object";
+        }
+        if (node.getNodeId() == NodeId.sequence) {
+            return "array";
+        }
+        final Tag tag = node.getTag();
+        if (Tag.NULL.equals(tag)) {
+            return "null";
+        }
+        if (Tag.BOOL.equals(tag)) {
+            return "boolean";
+        }
+        if (Tag.INT.equals(tag)) {
+            return "integer";
+        }
+        if (Tag.FLOAT.equals(tag)) {
+            return "number";
+        }
+        // Strings, timestamps and scalars with custom tags
+        return "string";
+    }
+
+    /**
+     * Get the numeric value of a scalar node
+     *
+     * @param node The node
+     * @return The value or null, if the node is no number or has no finite value
+     */
+    static BigDecimal getNumber(final Node node) {
+        if (!(node instanceof ScalarNode)) {
+            return null;
+        }
+        final Tag tag = node.getTag();
+        if (!Tag.INT.equals(tag) && !Tag.FLOAT.equals(tag)) {
+            return null;
+        }
+
+        String value = ((ScalarNode) node).getValue().replace("_", "");
+        boolean negative = false;
+        if (value.startsWith("-") || value.startsWith("+")) {
+            negative = value.startsWith("-");
+            value = value.substring(1);
+        }
+
+        try {
+            final BigDecimal number;
+            if (value.contains(":")) {
+                // Sexagesimal (base 60) numbers of YAML 1.1
+                BigDecimal sexagesimal = BigDecimal.ZERO;
+                for (final String digit : value.split(":")) {
+                    sexagesimal = sexagesimal.multiply(BigDecimal.valueOf(60)).add(new BigDecimal(digit));
+                }
+                number = sexagesimal;
+            } else if (Tag.FLOAT.equals(tag)) {
+                final String lowerCase = value.toLowerCase(Locale.ROOT);
+                if (lowerCase.contains("inf") || lowerCase.contains("nan")) {
+                    return null;
+                }
+                number = new BigDecimal(value);
+            } else if (value.startsWith("0x")) {
+                number = new BigDecimal(new BigInteger(value.substring(2), 16));
+            } else if (value.startsWith("0b")) {
+                number = new BigDecimal(new BigInteger(value.substring(2), 2));
+            } else if (value.length() > 1 && value.startsWith("0")) {
+                number = new BigDecimal(new BigInteger(value.substring(1), 8));
+            } else {
+                number = new BigDecimal(value);
+            }
+            return negative ? number.negate() : number;
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a comparable value of a scalar node, as used by "enum", "const" and "uniqueItems"
+     *
+     * @param node The node
+     * @return The value or null, if the node is no scalar
+     */
+    static Object getValue(final Node node) {
+        if (!(node instanceof ScalarNode)) {
+            return null;
+        }
+        final String type = getType(node);
+        if ("null".equals(type)) {
+            return Value.NULL;
+        }
+        if ("boolean".equals(type)) {
+            final String value = ((ScalarNode) node).getValue().toLowerCase(Locale.ROOT);
+            return "true".equals(value) || "yes".equals(value) || "on".equals(value) || "y".equals(value);
+        }
+        if ("integer".equals(type) || "number".equals(type)) {
+            final BigDecimal number = getNumber(node);
+            if (number != null) {
+                return normalize(number);
+            }
+        }
+        return ((ScalarNode) node).getValue();
+    }
+
+    /**
+     * Get a value of the schema comparable to the values of {@link #getValue}
+     *
+     * @param value A scalar value of the loaded schema
+     * @return The comparable value
+     * @throws IllegalArgumentException The value is no scalar
+     */
+    static Object getSchemaValue(final Object value) throws IllegalArgumentException {
+        if (value == null) {
+            return Value.NULL;
+        }
+        if (value instanceof Number) {
+            return normalize(new BigDecimal(value.toString()));
+        }
+        if (value instanceof Boolean || value instanceof String) {
+            return value;
+        }
+        throw new IllegalArgumentException(String.format("Only scalar values can be compared, not %s", value));
+    }
+
+    /**
+     * Get the entries of a mapping node with all merge keys ("&lt;&lt;") resolved
+     *
+     * @param node The mapping node
+     * @return The entries
+     */
+    static List<NodeTuple> getEntries(final MappingNode node) {
+        return getEntries(node, 0);
+    }
+
+    /**
+     * Get the value of a scalar key
+     *
+     * @param tuple The entry of a mapping
+     * @return The key or null, if the key is no scalar
+     */
+    static String getKey(final NodeTuple tuple) {
+        if (tuple.getKeyNode() instanceof ScalarNode) {
+            return ((ScalarNode) tuple.getKeyNode()).getValue();
+        }
+        return null;
+    }
+
+    private static List<NodeTuple> getEntries(final MappingNode node, final int depth) {
+        boolean merged = false;
+        for (final NodeTuple tuple : node.getValue()) {
+            if (Tag.MERGE.equals(tuple.getKeyNode().getTag())) {
+                merged = true;
+                break;
+            }
+        }
+        if (!merged || depth > MAX_MERGE_DEPTH) {
+            return node.getValue();
+        }
+
+        final Map<Object, NodeTuple> entries = new LinkedHashMap<>();
+        for (final NodeTuple tuple : node.getValue()) {
+            if (!Tag.MERGE.equals(tuple.getKeyNode().getTag())) {
+                continue;
+            }
+            final List<Node> sources = new ArrayList<>();
+            if (tuple.getValueNode() instanceof SequenceNode) {
+                sources.addAll(((SequenceNode) tuple.getValueNode()).getValue());
+            } else {
+                sources.add(tuple.getValueNode());
+            }
+            for (final Node source : sources) {
+                if (source instanceof MappingNode) {
+                    for (final NodeTuple mergedTuple : getEntries((MappingNode) source, depth + 1)) {
+                        entries.putIfAbsent(getEntryKey(mergedTuple), mergedTuple);
+                    }
+                }
+            }
+        }
+        // Explicit keys override merged ones
+        for (final NodeTuple tuple : node.getValue()) {
+            if (!Tag.MERGE.equals(tuple.getKeyNode().getTag())) {
+                entries.put(getEntryKey(tuple), tuple);
+            }
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    private static Object getEntryKey(final NodeTuple tuple) {
+        final String key = getKey(tuple);
+        return key != null ? key : tuple.getKeyNode();
+    }
+
+    private static BigDecimal normalize(final BigDecimal number) {
+        return number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros();
+    }
+
+    /**
+     * Placeholder for null values, which can't be stored in sets
+     */
+    enum Value {
+        NULL
+    }
+}
@@ -0,0 +1,262 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.scm.Command;
+import com.atlassian.bitbucket.scm.CommandInputHandler;
+import com.atlassian.bitbucket.scm.CommandOutputHandler;
+import com.atlassian.bitbucket.scm.ScmCommandBuilder;
+import com.atlassian.bitbucket.scm.ScmService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.utils.process.Watchdog;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.ValidationExecutor;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.CatFileBatch;
+import org.apache.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Creates the batches reading all files of a validation run through one "git cat-file --batch" command, which is
+ * run by the SCM of the repository.
+ *
+ * The command runs on a thread of the command pool. Its standard input and output are handed over to the batch and
+ * kept open until the batch is closed.
+ */
+@Named
+public class CatFileBatchFactory {
+
+    private static final long START_TIMEOUT_SECONDS = 30;
+
+    @ComponentImport
+    private final ScmService scmService;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final ValidationExecutor validationExecutor;
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final Logger log = Logger.getLogger(CatFileBatchFactory.class);
+
+    @Inject
+    public CatFileBatchFactory(
+        final ScmService scmService,
+        final PluginConfiguration pluginConfiguration,
+        final ValidationExecutor validationExecutor,
+        final MetricsRegistry metricsRegistry
+    )
+    {
+        this.scmService = scmService;
+        this.pluginConfiguration = pluginConfiguration;
+        this.validationExecutor = validationExecutor;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Create a batch for a validation run. The command is only started, when the first file is read.
+     *
+     * @param repository The repository of the run
+     * @return The batch or null, if files should not be read in batches
+     */
+    public CatFileBatch createBatch(final Repository repository) {
+        if (this.pluginConfiguration.getBatchFetchCommands() <= 0) {
+            return null;
+        }
+        return new CatFileBatch(() -> this.startCommand(repository));
+    }
+
+    /**
+     * Start a "git cat-file --batch" command in the given repository
+     *
+     * @param repository The repository
+     * @return The started command or null, if the SCM of the repository doesn't run commands
+     * @throws IOException The command can't be started
+     */
+    private CatFileBatch.Command startCommand(final Repository repository) throws IOException {
+        final ScmCommandBuilder<?> builder = this.scmService.createBuilder(repository);
+        if (builder == null) {
+            this.log.debug(
+                String.format(
+                    "The SCM of %s doesn't run commands. Reading files one by one.",
+                    repository
+                )
+            );
+            return null;
+        }
+
+        final StreamHandover streamHandover = new StreamHandover();
+        final Command<Void> command = builder
+            .command("cat-file")
+            .argument("--batch")
+            .inputHandler(streamHandover)
+            .build(streamHandover);
+
+        try {
+            this.validationExecutor.submitCommand(() -> {
+                try {
+                    return command.call();
+                } catch (final RuntimeException e) {
+                    streamHandover.fail(e);
+                    throw e;
+                } finally {
+                    streamHandover.fail(new IOException("The cat-file command ended"));
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            this.log.debug("All cat-file commands are busy. Reading files one by one.");
+            return null;
+        }
+        this.metricsRegistry.counter(MetricsRegistry.BATCH_FETCH_COMMANDS).increment();
+
+        try {
+            return streamHandover.await();
+        } catch (final IOException e) {
+            streamHandover.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands the standard input and output of the command over to the batch. The handlers only return, when the
+     * batch is closed, because the streams are closed after they return.
+     */
+    private static final class StreamHandover implements
+        CommandInputHandler, CommandOutputHandler<Void>, CatFileBatch.Command
+    {
+
+        private final CompletableFuture<OutputStream> requests = new CompletableFuture<>();
+
+        private final CompletableFuture<InputStream> responses = new CompletableFuture<>();
+
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private volatile Watchdog watchdog;
+
+        @Override
+        public void process(final OutputStream input) {
+            this.requests.complete(
+                new FilterOutputStream(input) {
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) throws IOException {
+                        this.out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        StreamHandover.this.resetWatchdog();
+                        this.out.flush();
+                    }
+                }
+            );
+            this.awaitClose();
+            try {
+                input.close();
+            } catch (final IOException e) {
+                // The command ended already
+            }
+        }
+
+        @Override
+        public void process(final InputStream output) {
+            this.responses.complete(
+                new FilterInputStream(output) {
+                    @Override
+                    public int read(final byte[] b, final int off, final int len) throws IOException {
+                        StreamHandover.this.resetWatchdog();
+                        return this.in.read(b, off, len);
+                    }
+                }
+            );
+            this.awaitClose();
+        }
+
+        @Override
+        public void complete() {
+        }
+
+        @Override
+        public void setWatchdog(final Watchdog watchdog) {
+            this.watchdog = watchdog;
+        }
+
+        @Override
+        public Void getOutput() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getRequests() {
+            return this.requests.join();
+        }
+
+        @Override
+        public InputStream getResponses() {
+            return this.responses.join();
+        }
+
+        @Override
+        public void close() {
+            this.closed.countDown();
+        }
+
+        /**
+         * Wait until both streams were handed over
+         *
+         * @return This command
+         * @throws IOException The command ended or didn't start in time
+         */
+        private CatFileBatch.Command await() throws IOException {
+            try {
+                this.requests.get(START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                this.responses.get(START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return this;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while starting the cat-file command");
+            } catch (final ExecutionException e) {
+                throw new IOException("The cat-file command failed", e.getCause());
+            } catch (final TimeoutException e) {
+                throw new IOException("The cat-file command didn't start in time", e);
+            }
+        }
+
+        /**
+         * Let a batch waiting for the streams know, that they will never be handed over
+         *
+         * @param cause The reason
+         */
+        private void fail(final Exception cause) {
+            this.requests.completeExceptionally(cause);
+            this.responses.completeExceptionally(cause);
+        }
+
+        private void awaitClose() {
+            try {
+                this.closed.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void resetWatchdog() {
+            final Watchdog current = this.watchdog;
+            if (current != null) {
+                current.resetWatchdog();
+            }
+        }
+    }
+}
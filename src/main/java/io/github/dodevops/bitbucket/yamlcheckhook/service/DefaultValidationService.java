@@ -3,19 +3,58 @@ package io.github.dodevops.bitbucket.yamlcheckhook.service;
 import com.atlassian.bitbucket.content.Change;
 import com.atlassian.bitbucket.content.ChangeType;
 import com.atlassian.bitbucket.content.ContentService;
+import com.atlassian.bitbucket.permission.Permission;
 import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.user.SecurityService;
 import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.KnownValidBlobStore;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.ValidationResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.ValidationExecutor;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.EventStreamValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LoadValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ParserBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.Prescanner;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SchemaValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SplittingValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidSchemaException;
 import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
 import io.github.dodevops.bitbucket.yamlcheckhook.hook.PullRequestHook;
-import org.apache.commons.lang3.StringUtils;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.CompiledSchema;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.SchemaCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.BudgetedInputStream;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.BufferPool;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.CatFileBatch;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.ContentPipe;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.log4j.Logger;
 import org.springframework.stereotype.Service;
-import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.scanner.ScannerException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
 
 import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.regex.Pattern;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
 
 @Service
 public class DefaultValidationService implements ValidationServiceInterface {
@@ -23,88 +62,785 @@ public class DefaultValidationService implements ValidationServiceInterface {
     @ComponentImport
     private final ContentService contentService;
 
+    @ComponentImport
+    private final SecurityService securityService;
+
+    private final ValidationResultCache validationResultCache;
+
+    private final KnownValidBlobStore knownValidBlobStore;
+
+    private final SchemaCache schemaCache;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final BufferPool bufferPool;
+
+    private final ValidationExecutor validationExecutor;
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final ParserBackendFactory parserBackendFactory;
+
+    private final CatFileBatchFactory catFileBatchFactory;
+
+    private final ThreadLocal<Prescanner> prescanners = ThreadLocal.withInitial(Prescanner::new);
+
     private final Logger log = Logger.getLogger(PullRequestHook.class);
 
     @Inject
-    public DefaultValidationService(final ContentService contentService) {
+    public DefaultValidationService(
+        final ContentService contentService,
+        final SecurityService securityService,
+        final ValidationResultCache validationResultCache,
+        final KnownValidBlobStore knownValidBlobStore,
+        final SchemaCache schemaCache,
+        final PluginConfiguration pluginConfiguration,
+        final BufferPool bufferPool,
+        final ValidationExecutor validationExecutor,
+        final MetricsRegistry metricsRegistry,
+        final ParserBackendFactory parserBackendFactory,
+        final CatFileBatchFactory catFileBatchFactory
+    )
+    {
         this.contentService = contentService;
+        this.securityService = securityService;
+        this.validationResultCache = validationResultCache;
+        this.knownValidBlobStore = knownValidBlobStore;
+        this.schemaCache = schemaCache;
+        this.pluginConfiguration = pluginConfiguration;
+        this.bufferPool = bufferPool;
+        this.validationExecutor = validationExecutor;
+        this.metricsRegistry = metricsRegistry;
+        this.parserBackendFactory = parserBackendFactory;
+        this.catFileBatchFactory = catFileBatchFactory;
     }
 
     public void areChangesValid(
         final Iterable<Change> changes,
         final Repository repository,
-        final String currentHash
+        final String currentHash,
+        final ValidationOptions options
     ) throws InvalidYamlFileException
+    {
+        this.areFilesValid(
+            this.getYamlFiles(changes, currentHash, options),
+            repository,
+            options
+        );
+    }
+
+    public List<YamlFile> getYamlFiles(
+        final Iterable<Change> changes,
+        final String currentHash,
+        final ValidationOptions options
+    )
     {
 
-        final Pattern validExtensions = Pattern.compile("ya?ml", Pattern.CASE_INSENSITIVE);
+        final List<YamlFile> yamlFiles = new ArrayList<>();
+        long enumeratedChanges = 0;
 
         for (final Change change : changes) {
 
+            enumeratedChanges++;
+
             if (change.getType() != ChangeType.ADD && change.getType() != ChangeType.MODIFY) {
                 this.log.debug("Ignoring changes other then ADD or MODIFY");
                 continue;
             }
 
-            if (StringUtils.isEmpty(change.getPath().getExtension())) {
-                this.log.debug("Ignoring changes for files without extensions.");
-                continue;
-            }
+            final String path = change.getPath().toString();
 
-            if (!validExtensions.matcher(change.getPath().getExtension()).matches()) {
-                this.log.debug("Ignoring changes from files other than yaml and yml.");
+            if (!options.getPathFilter().matches(path)) {
+                this.log.debug(
+                    String.format(
+                        "Ignoring %s, which isn't selected by the path filter.",
+                        path
+                    )
+                );
                 continue;
             }
 
             this.log.debug(
                 String.format(
                     "Found a yaml file at %s. Checking.",
-                    change.getPath().toString()
+                    path
                 )
             );
 
-            final ByteArrayOutputStream fileContentStream =
-                new ByteArrayOutputStream();
+            yamlFiles.add(
+                new YamlFile(path, change.getContentId(), currentHash, options.getSchemaMapping().getSchemaPath(path))
+            );
+        }
+
+        this.metricsRegistry.counter(MetricsRegistry.CHANGES_ENUMERATED).add(enumeratedChanges);
+
+        return yamlFiles;
+    }
+
+    public String getProfile(
+        final Repository repository,
+        final String currentHash,
+        final ValidationOptions options
+    )
+    {
+        final StringBuilder profile = new StringBuilder(
+            this.getEngineProfile(this.getParserBackend(options), this.pluginConfiguration.createLintRules())
+        );
+
+        for (final String schemaPath : options.getSchemaMapping().getSchemaPaths()) {
+            profile.append(":schema:").append(schemaPath).append('=');
+            try {
+                profile.append(this.schemaCache.getSchema(repository, currentHash, schemaPath).getId());
+            } catch (final InvalidSchemaException e) {
+                profile.append("invalid");
+            }
+        }
+
+        return profile.toString();
+    }
+
+    public void areFilesValid(
+        final Collection<YamlFile> yamlFiles,
+        final Repository repository,
+        final ValidationOptions options
+    ) throws InvalidYamlFileException
+    {
+        final LintRules lintRules = this.pluginConfiguration.createLintRules();
+        final ParserBackend selectedParserBackend = this.getParserBackend(options);
+
+        final ValidationContext context = new ValidationContext(
+            repository,
+            this.getValidationEngine(lintRules, selectedParserBackend),
+            selectedParserBackend,
+            lintRules,
+            this.getEngineProfile(selectedParserBackend, lintRules),
+            this.pluginConfiguration.createValidationBudget(),
+            this.pluginConfiguration.isCollectAll(),
+            this.catFileBatchFactory.createBatch(repository)
+        );
+
+        final List<ValidationFailure> failures;
+
+        try {
+            if (
+                this.pluginConfiguration.getParallelThreads() > 1 &&
+                    yamlFiles.size() >= this.pluginConfiguration.getParallelThreshold()
+            ) {
+                failures = this.validateParallel(yamlFiles, context);
+            } else {
+                failures = new ArrayList<>();
+                for (final YamlFile yamlFile : yamlFiles) {
+                    try {
+                        this.validateFile(yamlFile, context);
+                    } catch (final InvalidYamlFileException e) {
+                        if (!context.isCollectAll()) {
+                            throw e;
+                        }
+                        failures.addAll(e.getFailures());
+                    }
+                }
+            }
+        } finally {
+            if (context.getBlobBatch() != null) {
+                context.getBlobBatch().close();
+            }
+        }
 
-            this.contentService.streamFile(
-                repository,
-                currentHash,
-                change.getPath().toString(),
-                s -> fileContentStream
+        this.log.debug(
+            String.format(
+                "Validation result cache: %d entries, %d hits, %d misses, %d evictions",
+                this.validationResultCache.size(),
+                this.validationResultCache.getHits(),
+                this.validationResultCache.getMisses(),
+                this.validationResultCache.getEvictions()
+            )
+        );
+
+        if (!failures.isEmpty()) {
+            throw new InvalidYamlFileException(failures);
+        }
+    }
+
+    /**
+     * Validate the given changes on the worker threads.
+     *
+     * Unless all files should be validated, the validation of all files after an invalid one is cancelled as soon
+     * as it is found. The reported failures are always in the given order of the files, regardless of the order
+     * the workers finish.
+     *
+     * @param yamlFiles The yaml files
+     * @param context   The context of the validation run
+     * @return The failures of all invalid files, if all files should be validated
+     * @throws InvalidYamlFileException One YAML file had an invalid content
+     */
+    private List<ValidationFailure> validateParallel(
+        final Collection<YamlFile> yamlFiles,
+        final ValidationContext context
+    ) throws InvalidYamlFileException
+    {
+        this.log.debug(String.format("Validating %d files in parallel", yamlFiles.size()));
+
+        final CompletionService<InvalidYamlFileException> completionService =
+            this.validationExecutor.createWorkerCompletionService();
+        final List<Future<InvalidYamlFileException>> futures = new ArrayList<>(yamlFiles.size());
+        final Map<Future<InvalidYamlFileException>, Integer> indexes = new HashMap<>();
+
+        for (final YamlFile yamlFile : yamlFiles) {
+            final Future<InvalidYamlFileException> future = completionService.submit(
+                () -> this.securityService.withPermission(
+                    context.getRepository(),
+                    Permission.REPO_READ,
+                    "Validating YAML files"
+                ).call(() -> {
+                    try {
+                        this.validateFile(yamlFile, context);
+                        return null;
+                    } catch (final InvalidYamlFileException e) {
+                        return e;
+                    }
+                })
             );
+            indexes.put(future, futures.size());
+            futures.add(future);
+        }
 
-            final String fileContent = fileContentStream.toString();
+        int firstFailureIndex = futures.size();
+        InvalidYamlFileException firstFailure = null;
+        final InvalidYamlFileException[] failures = new InvalidYamlFileException[futures.size()];
 
-            if (StringUtils.isNotEmpty(fileContent)) {
+        try {
+            for (int pending = futures.size(); pending > 0; pending--) {
+                final Future<InvalidYamlFileException> done = completionService.take();
+                if (done.isCancelled()) {
+                    continue;
+                }
 
-                final Yaml yaml = new Yaml();
+                final InvalidYamlFileException failure = done.get();
+                final int index = indexes.get(done);
 
-                try {
+                if (failure != null && context.isCollectAll()) {
+                    failures[index] = failure;
+                } else if (failure != null && index < firstFailureIndex) {
+                    firstFailureIndex = index;
+                    firstFailure = failure;
+                    // Cancel the queued files first, so the interrupted workers don't start them in the meantime
+                    for (int i = futures.size() - 1; i > index; i--) {
+                        futures.get(i).cancel(true);
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating files", e);
+        } catch (final ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Can not validate files", e.getCause());
+        }
 
-                    yaml.load(fileContent);
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
 
-                } catch (final ScannerException e) {
+        final List<ValidationFailure> collectedFailures = new ArrayList<>();
+        for (final InvalidYamlFileException failure : failures) {
+            if (failure != null) {
+                collectedFailures.addAll(failure.getFailures());
+            }
+        }
+        return collectedFailures;
+    }
 
-                    this.log.error(
-                        String.format(
-                            "File %s is not a valid yaml file. " +
-                                "Rejecting.",
-                            change.getPath().toString()
-                        ),
-                        e
-                    );
+    /**
+     * Validate a single file, using the known result for its content if possible
+     *
+     * @param yamlFile The yaml file
+     * @param context  The context of the validation run
+     * @throws InvalidYamlFileException The YAML file had an invalid content
+     */
+    private void validateFile(
+        final YamlFile yamlFile,
+        final ValidationContext context
+    ) throws InvalidYamlFileException
+    {
+        final CompiledSchema schema = this.getSchema(yamlFile, context);
+
+        // The result of a file with a schema depends on the schema as well
+        final String profile;
+        final ValidationEngine validationEngine;
+
+        if (schema == null) {
+            profile = context.getProfile();
+            validationEngine = context.getValidationEngine();
+        } else {
+            profile = String.format("%s:schema:%s", context.getProfile(), schema.getId());
+            validationEngine = new SchemaValidationEngine(
+                schema,
+                context.getLintRules(),
+                context.getParserBackend()
+            );
+        }
+
+        // The same content may be valid with one profile (e.g. YAML 1.2) and invalid with another
+        final String resultKey = yamlFile.getContentId() != null ? profile + ":" + yamlFile.getContentId() : null;
+
+        final ValidationResultCache.Result knownResult = this.validationResultCache.get(resultKey);
+
+        if (knownResult != null) {
+            this.log.debug(
+                String.format(
+                    "Content %s of %s was already validated. Using the known result.",
+                    yamlFile.getContentId(),
+                    yamlFile.getPath()
+                )
+            );
+
+            if (knownResult.isValid()) {
+                return;
+            }
+
+            throw new InvalidYamlFileException(knownResult.getFailure().forFile(yamlFile.getPath()));
+        }
+
+        if (this.knownValidBlobStore.isKnownValid(yamlFile.getContentId(), profile)) {
+            this.log.debug(
+                String.format(
+                    "Content %s of %s is known to be valid.",
+                    yamlFile.getContentId(),
+                    yamlFile.getPath()
+                )
+            );
+            this.validationResultCache.putValid(resultKey);
+            return;
+        }
 
-                    throw (
-                        new InvalidYamlFileException(
-                            change.getPath().toString(),
-                            e.getMessage()
-                        )
+        final long start = System.nanoTime();
+        this.metricsRegistry.counter(MetricsRegistry.FILES_FETCHED).increment();
+
+        try {
+
+            context.getBudget().checkDeadline();
+            this.streamAndValidate(
+                yamlFile,
+                validationEngine,
+                schema == null && this.isPrescanned(context),
+                context
+            );
+
+        } catch (final BudgetExceededException e) {
+
+            if (this.pluginConfiguration.isBudgetPolicySkip()) {
+                this.log.warn(
+                    String.format(
+                        "Skipping the validation of %s: %s",
+                        yamlFile.getPath(),
+                        e.getMessage()
+                    )
+                );
+                return;
+            }
+
+            this.log.warn(
+                String.format(
+                    "Rejecting %s: %s",
+                    yamlFile.getPath(),
+                    e.getMessage()
+                )
+            );
+
+            throw (
+                new InvalidYamlFileException(
+                    yamlFile.getPath(),
+                    yamlFile.getContentId(),
+                    e.getMessage()
+                )
+            );
+
+        } catch (final InvalidDocumentException e) {
+
+            if (e.getCause().getCause() instanceof IOException) {
+                // Reading the content failed, which says nothing about the content
+                throw e.getCause();
+            }
+
+            this.log.error(
+                String.format(
+                    "File %s is not a valid yaml file. " +
+                        "Rejecting.",
+                    yamlFile.getPath()
+                ),
+                e
+            );
+
+            final ValidationFailure failure = ValidationFailure.fromException(
+                yamlFile.getPath(),
+                yamlFile.getContentId(),
+                e
+            );
+
+            this.validationResultCache.putInvalid(resultKey, failure);
+
+            throw new InvalidYamlFileException(failure);
+
+        } finally {
+            this.metricsRegistry.recordFile(yamlFile.getPath(), System.nanoTime() - start);
+        }
+
+        this.validationResultCache.putValid(resultKey);
+        this.knownValidBlobStore.putValid(yamlFile.getContentId(), profile);
+    }
+
+    /**
+     * Get the compiled schema a file has to match
+     *
+     * @param yamlFile The yaml file
+     * @param context  The context of the validation run
+     * @return The schema or null, if the file has none
+     * @throws InvalidYamlFileException The schema of the file can't be loaded
+     */
+    private CompiledSchema getSchema(
+        final YamlFile yamlFile,
+        final ValidationContext context
+    ) throws InvalidYamlFileException
+    {
+        if (yamlFile.getSchemaPath() == null) {
+            return null;
+        }
+
+        try {
+            return this.schemaCache.getSchema(
+                context.getRepository(),
+                yamlFile.getCommitId(),
+                yamlFile.getSchemaPath()
+            );
+        } catch (final InvalidSchemaException e) {
+            this.log.warn(
+                String.format(
+                    "Can not validate %s: %s",
+                    yamlFile.getPath(),
+                    e.getMessage()
+                )
+            );
+            throw new InvalidYamlFileException(yamlFile.getPath(), yamlFile.getContentId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Get the parser backend selected in the options
+     *
+     * @param options The options of the validation
+     * @return The selected parser backend or the default one, if the options select none
+     */
+    private ParserBackend getParserBackend(final ValidationOptions options) {
+        return options.getParserBackend() != null ?
+            options.getParserBackend() :
+            this.parserBackendFactory.getDefaultParserBackend();
+    }
+
+    /**
+     * Get the profile of the engine, that decides, whether a file is valid
+     *
+     * @param parserBackend The parser backend of the engine
+     * @param lintRules     The lint rules to check in addition to the syntax
+     * @return The profile the known valid blobs are stored with
+     */
+    private String getEngineProfile(final ParserBackend parserBackend, final LintRules lintRules) {
+        // Files valid with YAML 1.1 keep the profile they had before the parser backend could be selected
+        final String engineProfile = "1.1".equals(parserBackend.getYamlVersion()) ?
+            this.pluginConfiguration.getEngine() :
+            String.format("%s:yaml-%s", this.pluginConfiguration.getEngine(), parserBackend.getYamlVersion());
+
+        return lintRules.isEmpty() ? engineProfile : String.format("%s:lint:%s", engineProfile, lintRules);
+    }
+
+    /**
+     * Get the validation engine selected in the plugin configuration
+     *
+     * @param lintRules     The lint rules to check in addition to the syntax
+     * @param parserBackend The parser backend of the engine
+     * @return The engine to use
+     */
+    private ValidationEngine getValidationEngine(final LintRules lintRules, final ParserBackend parserBackend) {
+        if (PluginConfiguration.ENGINE_LOAD.equals(this.pluginConfiguration.getEngine())) {
+            return new LoadValidationEngine(lintRules, parserBackend);
+        }
+        return new EventStreamValidationEngine(lintRules, parserBackend);
+    }
+
+    /**
+     * Whether files may be accepted by the pre-scanner, which is only the case, if nothing but their syntax matters
+     *
+     * @param context The context of the validation run
+     * @return true, if the pre-scanner should be used
+     */
+    private boolean isPrescanned(final ValidationContext context) {
+        return this.pluginConfiguration.isPrescan() && context.getLintRules().isEmpty() &&
+            PluginConfiguration.ENGINE_EVENTS.equals(this.pluginConfiguration.getEngine());
+    }
+
+    /**
+     * Check if the content of a file is known to be valid by the pre-scanner
+     *
+     * @param content The content
+     * @param length  The length of the content
+     * @param context The context of the validation run
+     * @return true, if the file doesn't need to be parsed
+     */
+    private boolean isKnownValid(final byte[] content, final int length, final ValidationContext context) {
+        if (!this.prescanners.get().isValid(content, 0, length, context.getBudget().getMaxDepth())) {
+            return false;
+        }
+        this.metricsRegistry.counter(MetricsRegistry.FILES_PRESCANNED).increment();
+        return true;
+    }
+
+    /**
+     * Let the given engine validate a file in parallel segments, if it is known to be large enough to be split
+     *
+     * @param validationEngine The engine to validate the file or its segments with
+     * @param contentLength    The length of the file in bytes or -1, if it is unknown
+     * @param context          The context of the validation run
+     * @return The engine to use
+     */
+    private ValidationEngine splitLargeFile(
+        final ValidationEngine validationEngine,
+        final long contentLength,
+        final ValidationContext context
+    )
+    {
+        final int threshold = this.pluginConfiguration.getSplitThreshold();
+        if (threshold <= 0 || contentLength < threshold) {
+            return validationEngine;
+        }
+        return new SplittingValidationEngine(
+            validationEngine,
+            context.getLintRules(),
+            this.pluginConfiguration.getSplitSegmentSize(),
+            this.validationExecutor.getSegmentPool()
+        );
+    }
+
+    /**
+     * Stream a file from the repository into the validation engine.
+     *
+     * The content is handed to a parser thread through a {@link ContentPipe}, so only a few pooled buffers of the
+     * file are held in memory at once. If no parser thread is available, the file is buffered and parsed on the
+     * current thread instead.
+     *
+     * Files fitting into a single buffer are pre-scanned in the buffer first, if requested, and only parsed, if the
+     * pre-scanner can't tell that they are valid.
+     *
+     * Files read through the batch of the run announce their size before their content, so files reaching the split
+     * threshold are validated in segments. All other files are parsed while they arrive.
+     *
+     * @param yamlFile         The yaml file
+     * @param validationEngine The engine to validate the file with
+     * @param prescan          Whether the file may be accepted by the pre-scanner
+     * @param context          The context of the validation run
+     * @throws InvalidDocumentException The content is not valid
+     * @throws BudgetExceededException The content exceeded the budget of the run
+     */
+    private void streamAndValidate(
+        final YamlFile yamlFile,
+        final ValidationEngine validationEngine,
+        final boolean prescan,
+        final ValidationContext context
+    ) throws InvalidDocumentException, BudgetExceededException
+    {
+        final ContentPipe contentPipe = new ContentPipe(
+            this.bufferPool,
+            this.pluginConfiguration.getStreamBuffersInFlight()
+        );
+
+        final Future<Void> parserResult;
+
+        try {
+            parserResult = this.validationExecutor.submitParser(() -> {
+                final long start = System.nanoTime();
+                final byte[] head = prescan ? this.bufferPool.acquire() : null;
+                try (
+                    final InputStream content = new BudgetedInputStream(
+                        contentPipe.getInputStream(),
+                        context.getBudget()
+                    )
+                ) {
+                    InputStream remainingContent = content;
+                    if (head != null) {
+                        int length = 0;
+                        int read = 0;
+                        while (length < head.length && (read = content.read(head, length, head.length - length)) >= 0) {
+                            length += read;
+                        }
+                        if (read < 0 && this.isKnownValid(head, length, context)) {
+                            return null;
+                        }
+                        remainingContent = new SequenceInputStream(new ByteArrayInputStream(head, 0, length), content);
+                    } else {
+                        // Wait for the content, so its length is known, if it was announced
+                        final PushbackInputStream pushback = new PushbackInputStream(content);
+                        final int first = pushback.read();
+                        if (first >= 0) {
+                            pushback.unread(first);
+                        }
+                        remainingContent = pushback;
+                    }
+                    this.splitLargeFile(validationEngine, contentPipe.getContentLength(), context).validate(
+                        new UnicodeReader(remainingContent),
+                        context.getBudget()
                     );
+                } finally {
+                    if (head != null) {
+                        this.bufferPool.release(head);
+                    }
+                    this.metricsRegistry.histogram(MetricsRegistry.PARSE_TIME).record(System.nanoTime() - start);
+                }
+                return null;
+            });
+        } catch (final RejectedExecutionException e) {
+            this.log.debug("No parser thread available. Buffering the file and parsing it on the current thread.");
+            this.bufferAndValidate(yamlFile, validationEngine, prescan, context);
+            return;
+        }
+
+        try {
+            this.streamFile(yamlFile, context, contentPipe.getOutputStream(), contentPipe::setContentLength);
+        } catch (final RuntimeException e) {
+            if (!contentPipe.isReaderClosed()) {
+                parserResult.cancel(true);
+                throw e;
+            }
+            this.log.debug("The parser stopped reading early, streaming the file was aborted.");
+        } finally {
+            try {
+                contentPipe.getOutputStream().close();
+            } catch (final IOException e) {
+                this.log.debug("Can not close the content pipe", e);
+            }
+            this.metricsRegistry.counter(MetricsRegistry.BYTES_READ).add(contentPipe.getBytesWritten());
+        }
 
+        try {
+            parserResult.get();
+        } catch (final InterruptedException e) {
+            parserResult.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while validating %s", yamlFile.getPath()), e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(String.format("Can not validate %s", yamlFile.getPath()), e.getCause());
+        }
+    }
+
+    /**
+     * Copy the content of a file from the repository to the given stream.
+     *
+     * The blob is read through the batch of the run, if it has one, and from the content service otherwise or if
+     * the batch can't read it.
+     *
+     * @param yamlFile     The yaml file
+     * @param context      The context of the validation run
+     * @param sink         The stream to copy the content to
+     * @param sizeListener Receives the size of the file before its content, if the size is known
+     */
+    private void streamFile(
+        final YamlFile yamlFile,
+        final ValidationContext context,
+        final OutputStream sink,
+        final LongConsumer sizeListener
+    )
+    {
+        final CatFileBatch blobBatch = context.getBlobBatch();
+        if (blobBatch != null && yamlFile.getContentId() != null) {
+            try {
+                if (blobBatch.streamBlob(yamlFile.getContentId(), sink, sizeListener)) {
+                    this.metricsRegistry.counter(MetricsRegistry.FILES_BATCH_FETCHED).increment();
+                    return;
                 }
+            } catch (final IOException e) {
+                throw new IllegalStateException(String.format("Can not read %s", yamlFile.getPath()), e);
+            }
+        }
 
+        this.contentService.streamFile(
+            context.getRepository(),
+            yamlFile.getCommitId(),
+            yamlFile.getPath(),
+            s -> sink
+        );
+    }
+
+    /**
+     * Read a file from the repository completely and validate it on the current thread
+     *
+     * @param yamlFile         The yaml file
+     * @param validationEngine The engine to validate the file with
+     * @param prescan          Whether the file may be accepted by the pre-scanner
+     * @param context          The context of the validation run
+     * @throws InvalidDocumentException The content is not valid
+     * @throws BudgetExceededException The content exceeded the budget of the run
+     */
+    private void bufferAndValidate(
+        final YamlFile yamlFile,
+        final ValidationEngine validationEngine,
+        final boolean prescan,
+        final ValidationContext context
+    ) throws InvalidDocumentException, BudgetExceededException
+    {
+        final ByteArrayOutputStream fileContentStream =
+            new ByteArrayOutputStream();
+
+        // Account the bytes while they arrive, so an oversized file is never buffered completely
+        final OutputStream budgetedStream = new FilterOutputStream(fileContentStream) {
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                context.getBudget().addBytes(fileContentStream.size() + len, len);
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void write(final int b) throws IOException {
+                context.getBudget().addBytes(fileContentStream.size() + 1, 1);
+                this.out.write(b);
+            }
+        };
+
+        try {
+            this.streamFile(yamlFile, context, budgetedStream, size -> {});
+        } catch (final RuntimeException e) {
+            // The exception may be wrapped by the content service
+            final int budgetExceeded = ExceptionUtils.indexOfThrowable(e, BudgetExceededException.class);
+            if (budgetExceeded >= 0) {
+                throw (BudgetExceededException) ExceptionUtils.getThrowableList(e).get(budgetExceeded);
             }
+            throw e;
+        }
+
+        this.metricsRegistry.counter(MetricsRegistry.BYTES_READ).add(fileContentStream.size());
+
+        final byte[] fileContent = fileContentStream.toByteArray();
 
+        final long start = System.nanoTime();
+        try {
+            if (prescan && this.isKnownValid(fileContent, fileContent.length, context)) {
+                return;
+            }
+            this.splitLargeFile(validationEngine, fileContent.length, context).validate(
+                new UnicodeReader(new ByteArrayInputStream(fileContent)),
+                context.getBudget()
+            );
+        } finally {
+            this.metricsRegistry.histogram(MetricsRegistry.PARSE_TIME).record(System.nanoTime() - start);
         }
     }
 
@@ -0,0 +1,104 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.setting.SettingsValidationErrors;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.HookSettings;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ParserBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.PooledSnakeYamlBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlEngineBackend;
+import org.apache.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Selects the parser backend of the hook settings.
+ *
+ * Every backend is created once and shared by all repositories selecting it.
+ */
+@Named
+public class ParserBackendFactory {
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final Map<String, ParserBackend> parserBackends = new LinkedHashMap<>();
+
+    private final Logger log = Logger.getLogger(ParserBackendFactory.class);
+
+    @Inject
+    public ParserBackendFactory(final PluginConfiguration pluginConfiguration) {
+        this.pluginConfiguration = pluginConfiguration;
+
+        for (final ParserBackend parserBackend : new ParserBackend[]{
+            new SnakeYamlBackend(),
+            new PooledSnakeYamlBackend(),
+            new SnakeYamlEngineBackend()
+        }) {
+            this.parserBackends.put(parserBackend.getName(), parserBackend);
+        }
+    }
+
+    /**
+     * Get the parser backend of the hook settings
+     *
+     * @param settings The hook settings or null, if the hook has none
+     * @return The backend selected by the settings or the one of the plugin configuration, if they select none
+     */
+    public ParserBackend getParserBackend(final Settings settings) {
+        final String name = settings != null ? settings.getString(HookSettings.PARSER) : null;
+        if (name == null || name.trim().isEmpty()) {
+            return this.getDefaultParserBackend();
+        }
+
+        final ParserBackend parserBackend = this.parserBackends.get(name.trim());
+        if (parserBackend == null) {
+            this.log.warn(String.format("Ignoring the unknown parser backend %s of the hook settings", name));
+            return this.getDefaultParserBackend();
+        }
+        return parserBackend;
+    }
+
+    /**
+     * Get the parser backend of the plugin configuration
+     *
+     * @return The backend
+     */
+    public ParserBackend getDefaultParserBackend() {
+        final ParserBackend parserBackend = this.parserBackends.get(this.pluginConfiguration.getParser().trim());
+        if (parserBackend == null) {
+            this.log.warn(
+                String.format(
+                    "Ignoring the unknown parser backend %s of %s",
+                    this.pluginConfiguration.getParser(),
+                    PluginConfiguration.PARSER
+                )
+            );
+            return this.parserBackends.get(SnakeYamlBackend.NAME);
+        }
+        return parserBackend;
+    }
+
+    /**
+     * Validate the parser backend setting, when it is saved
+     *
+     * @param settings The hook settings
+     * @param errors   The errors to report problems to
+     */
+    public void validate(final Settings settings, final SettingsValidationErrors errors) {
+        final String name = settings.getString(HookSettings.PARSER);
+        if (name != null && !name.trim().isEmpty() && !this.parserBackends.containsKey(name.trim())) {
+            errors.addFieldError(
+                HookSettings.PARSER,
+                String.format(
+                    "\"%s\" is not a known parser backend. Use one of %s.",
+                    name,
+                    this.parserBackends.keySet()
+                )
+            );
+        }
+    }
+}
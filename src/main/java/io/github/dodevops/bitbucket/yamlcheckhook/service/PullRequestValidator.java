@@ -0,0 +1,195 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import com.atlassian.bitbucket.commit.Commit;
+import com.atlassian.bitbucket.commit.CommitService;
+import com.atlassian.bitbucket.commit.CommonAncestorCommitRequest;
+import com.atlassian.bitbucket.content.Change;
+import com.atlassian.bitbucket.content.ChangesRequest;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestRef;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.util.PageRequest;
+import com.atlassian.bitbucket.util.PagedIterable;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.PullRequestCheckpointStore;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.NotAdmittedException;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import org.apache.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Validates the changed yaml files of a pull request. Used by the merge check and to pre-warm its results.
+ */
+@Named
+public class PullRequestValidator {
+
+    @ComponentImport
+    private final CommitService commitService;
+
+    private final ValidationServiceInterface validationService;
+
+    private final PathFilterFactory pathFilterFactory;
+
+    private final ParserBackendFactory parserBackendFactory;
+
+    private final PullRequestCheckpointStore pullRequestCheckpointStore;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final Logger log = Logger.getLogger(PullRequestValidator.class);
+
+    @Inject
+    public PullRequestValidator(
+        final CommitService commitService,
+        final ValidationServiceInterface validationService,
+        final PathFilterFactory pathFilterFactory,
+        final ParserBackendFactory parserBackendFactory,
+        final PullRequestCheckpointStore pullRequestCheckpointStore,
+        final PluginConfiguration pluginConfiguration
+    )
+    {
+        this.commitService = commitService;
+        this.validationService = validationService;
+        this.pathFilterFactory = pathFilterFactory;
+        this.parserBackendFactory = parserBackendFactory;
+        this.pullRequestCheckpointStore = pullRequestCheckpointStore;
+        this.pluginConfiguration = pluginConfiguration;
+    }
+
+    /**
+     * Validate all changed yaml files of the pull request
+     *
+     * If an earlier state of the pull request passed the check, only the files changed since then are validated.
+     *
+     * @param pullRequest The pull request
+     * @param settings    The hook settings
+     * @param admission   Takes the permit to validate the files in the target repository of the pull request.
+     *                    Returns null, if the validation isn't admitted.
+     * @throws InvalidYamlFileException One YAML file had an invalid content
+     * @throws NotAdmittedException     The pull request changes yaml files, but their validation wasn't admitted
+     */
+    public void validate(
+        final PullRequest pullRequest,
+        final Settings settings,
+        final Function<Repository, AdmissionController.Permit> admission
+    ) throws InvalidYamlFileException, NotAdmittedException
+    {
+        this.log.debug(
+            String.format(
+                "Fetching all changes from pull request %s by %s",
+                pullRequest.getTitle(),
+                pullRequest.getAuthor().getUser().getDisplayName()
+            )
+        );
+
+        final PullRequestRef fromRef = pullRequest.getFromRef();
+        final ValidationOptions options = new ValidationOptions(
+            this.pathFilterFactory.getPathFilter(settings),
+            this.pathFilterFactory.getSchemaMapping(settings),
+            this.parserBackendFactory.getParserBackend(settings)
+        );
+        final String profile = this.pluginConfiguration.isIncremental() ?
+            this.validationService.getProfile(fromRef.getRepository(), fromRef.getLatestCommit(), options) :
+            null;
+
+        final ChangesRequest changesRequest =
+            new ChangesRequest.Builder(
+                fromRef.getRepository(),
+                fromRef.getLatestCommit()
+            )
+                .sinceId(this.getSinceId(pullRequest, settings, profile))
+                .build();
+
+        final Iterable<Change> changes = new PagedIterable<>(
+            pageRequest -> this.commitService.getChanges(
+                changesRequest,
+                pageRequest
+            ),
+            PageRequest.MAX_PAGE_LIMIT
+        );
+
+        final List<YamlFile> yamlFiles = this.validationService.getYamlFiles(
+            changes,
+            fromRef.getLatestCommit(),
+            options
+        );
+
+        // Only the validation of the files takes the CPU, fetching the changes doesn't
+        if (!yamlFiles.isEmpty()) {
+            try (final AdmissionController.Permit permit = admission.apply(pullRequest.getToRef().getRepository())) {
+                if (permit == null) {
+                    throw new NotAdmittedException(
+                        String.format("The validation of pull request %s wasn't admitted", pullRequest.getTitle())
+                    );
+                }
+                this.validationService.areFilesValid(yamlFiles, fromRef.getRepository(), options);
+            }
+        }
+
+        if (this.pluginConfiguration.isIncremental()) {
+            this.pullRequestCheckpointStore.putPassed(pullRequest, settings, profile);
+        }
+    }
+
+    /**
+     * Get the commit to validate the changes of the pull request since
+     *
+     * This is the commit of the source branch, that passed the last check, as long as the target branch, the
+     * settings and the validation profile are still the same and the source branch only got new commits on top of
+     * it. Otherwise it's the latest commit of the target branch.
+     *
+     * @param pullRequest The pull request
+     * @param settings    The hook settings
+     * @param profile     The validation profile
+     * @return The commit id
+     */
+    private String getSinceId(final PullRequest pullRequest, final Settings settings, final String profile) {
+        final PullRequestRef fromRef = pullRequest.getFromRef();
+        final String targetCommit = pullRequest.getToRef().getLatestCommit();
+
+        if (!this.pluginConfiguration.isIncremental()) {
+            return targetCommit;
+        }
+
+        final String passedCommit = this.pullRequestCheckpointStore.getPassedCommit(pullRequest, settings, profile);
+
+        if (passedCommit == null || passedCommit.equals(fromRef.getLatestCommit())) {
+            return passedCommit != null ? passedCommit : targetCommit;
+        }
+
+        final Commit mergeBase = this.commitService.getCommonAncestor(
+            new CommonAncestorCommitRequest.Builder(fromRef.getRepository())
+                .commitId(fromRef.getLatestCommit())
+                .otherCommitId(passedCommit)
+                .build()
+        );
+
+        if (mergeBase == null || !passedCommit.equals(mergeBase.getId())) {
+            this.log.debug(
+                String.format(
+                    "The history of pull request %s was rewritten. Checking all changes.",
+                    pullRequest.getTitle()
+                )
+            );
+            return targetCommit;
+        }
+
+        this.log.debug(
+            String.format(
+                "Checking the changes of pull request %s since %s",
+                pullRequest.getTitle(),
+                passedCommit
+            )
+        );
+
+        return passedCommit;
+    }
+}
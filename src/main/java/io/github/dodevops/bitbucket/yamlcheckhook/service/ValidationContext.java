@@ -0,0 +1,99 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import com.atlassian.bitbucket.repository.Repository;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ParserBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.CatFileBatch;
+
+/**
+ * Everything shared by the validation of all files of one run (e.g. all files of a push)
+ */
+class ValidationContext {
+
+    private final Repository repository;
+
+    private final ValidationEngine validationEngine;
+
+    private final ParserBackend parserBackend;
+
+    private final LintRules lintRules;
+
+    private final String profile;
+
+    private final ValidationBudget budget;
+
+    private final boolean collectAll;
+
+    private final CatFileBatch blobBatch;
+
+    ValidationContext(
+        final Repository repository,
+        final ValidationEngine validationEngine,
+        final ParserBackend parserBackend,
+        final LintRules lintRules,
+        final String profile,
+        final ValidationBudget budget,
+        final boolean collectAll,
+        final CatFileBatch blobBatch
+    )
+    {
+        this.repository = repository;
+        this.validationEngine = validationEngine;
+        this.parserBackend = parserBackend;
+        this.lintRules = lintRules;
+        this.profile = profile;
+        this.budget = budget;
+        this.collectAll = collectAll;
+        this.blobBatch = blobBatch;
+    }
+
+    Repository getRepository() {
+        return repository;
+    }
+
+    ValidationEngine getValidationEngine() {
+        return validationEngine;
+    }
+
+    ParserBackend getParserBackend() {
+        return parserBackend;
+    }
+
+    LintRules getLintRules() {
+        return lintRules;
+    }
+
+    /**
+     * Get a string identifying the rules the files are validated with. A file valid with one profile may be invalid
+     * with another.
+     *
+     * @return The profile
+     */
+    String getProfile() {
+        return profile;
+    }
+
+    ValidationBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Whether to validate all files instead of stopping at the first invalid one
+     *
+     * @return true, if all files should be validated
+     */
+    boolean isCollectAll() {
+        return collectAll;
+    }
+
+    /**
+     * Get the batch reading the files of the run
+     *
+     * @return The batch or null, if every file is read from the content service
+     */
+    CatFileBatch getBlobBatch() {
+        return blobBatch;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import org.apache.commons.lang3.StringUtils;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+
+/**
+ * A problem found in a yaml file
+ */
+public class ValidationFailure {
+
+    private final String filePath;
+
+    private final String contentId;
+
+    private final int line;
+
+    private final int column;
+
+    private final int document;
+
+    private final String problem;
+
+    private final String message;
+
+    /**
+     * Create a new failure
+     *
+     * @param filePath  The path of the file
+     * @param contentId The id of the file content (blob) or null, if unknown
+     * @param line      The line of the problem (starting at 1) or 0, if unknown
+     * @param column    The column of the problem (starting at 1) or 0, if unknown
+     * @param problem   A short description of the problem
+     * @param message   The complete message of the parser
+     */
+    public ValidationFailure(
+        final String filePath,
+        final String contentId,
+        final int line,
+        final int column,
+        final String problem,
+        final String message
+    )
+    {
+        this(filePath, contentId, line, column, 0, problem, message);
+    }
+
+    /**
+     * Create a new failure in a document of a multi-document file
+     *
+     * @param filePath  The path of the file
+     * @param contentId The id of the file content (blob) or null, if unknown
+     * @param line      The line of the problem (starting at 1) or 0, if unknown
+     * @param column    The column of the problem (starting at 1) or 0, if unknown
+     * @param document  The document of the problem (starting at 1) or 0, if unknown
+     * @param problem   A short description of the problem
+     * @param message   The complete message of the parser
+     */
+    public ValidationFailure(
+        final String filePath,
+        final String contentId,
+        final int line,
+        final int column,
+        final int document,
+        final String problem,
+        final String message
+    )
+    {
+        this.filePath = filePath;
+        this.contentId = contentId;
+        this.line = line;
+        this.column = column;
+        this.document = document;
+        this.problem = problem;
+        this.message = message;
+    }
+
+    /**
+     * Create a failure without a known location
+     *
+     * @param filePath  The path of the file
+     * @param contentId The id of the file content (blob) or null, if unknown
+     * @param message   The message describing the problem
+     */
+    public ValidationFailure(final String filePath, final String contentId, final String message) {
+        this(filePath, contentId, 0, 0, message, message);
+    }
+
+    /**
+     * Create a failure from a parser exception, using its problem mark as the location
+     *
+     * @param filePath  The path of the file
+     * @param contentId The id of the file content (blob) or null, if unknown
+     * @param e         The parser exception
+     * @return The failure
+     */
+    public static ValidationFailure fromException(
+        final String filePath,
+        final String contentId,
+        final MarkedYAMLException e
+    )
+    {
+        final Mark mark = e.getProblemMark() != null ? e.getProblemMark() : e.getContextMark();
+        return new ValidationFailure(
+            filePath,
+            contentId,
+            mark != null ? mark.getLine() + 1 : 0,
+            mark != null ? mark.getColumn() + 1 : 0,
+            StringUtils.defaultIfEmpty(e.getProblem(), e.getMessage()),
+            e.getMessage()
+        );
+    }
+
+    /**
+     * Create a failure from an invalid document, using the problem mark of its cause (if any) as the location
+     *
+     * @param filePath  The path of the file
+     * @param contentId The id of the file content (blob) or null, if unknown
+     * @param e         The exception of the invalid document
+     * @return The failure
+     */
+    public static ValidationFailure fromException(
+        final String filePath,
+        final String contentId,
+        final InvalidDocumentException e
+    )
+    {
+        final ValidationFailure failure = e.getCause() instanceof MarkedYAMLException ?
+            fromException(filePath, contentId, (MarkedYAMLException) e.getCause()) :
+            new ValidationFailure(filePath, contentId, e.getCause().getMessage());
+
+        // Only name the document, if there is more than one
+        return new ValidationFailure(
+            filePath,
+            contentId,
+            failure.getLine(),
+            failure.getColumn(),
+            e.getDocument(),
+            failure.getProblem(),
+            e.getDocument() > 1 ?
+                String.format("in document %d:\n%s", e.getDocument(), failure.getMessage()) :
+                failure.getMessage()
+        );
+    }
+
+    /**
+     * Get the same failure for another file with the same content
+     *
+     * @param path The path of the other file
+     * @return The failure
+     */
+    public ValidationFailure forFile(final String path) {
+        return new ValidationFailure(
+            path,
+            this.contentId,
+            this.line,
+            this.column,
+            this.document,
+            this.problem,
+            this.message
+        );
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getContentId() {
+        return contentId;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getDocument() {
+        return document;
+    }
+
+    public String getProblem() {
+        return problem;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Get the location of the problem in the usual "path:line:column" notation
+     *
+     * @return The location
+     */
+    public String getLocation() {
+        if (this.line == 0) {
+            return this.filePath;
+        }
+        return String.format("%s:%d:%d", this.filePath, this.line, this.column);
+    }
+
+    @Override
+    public String toString() {
+        if (this.document > 1) {
+            return String.format("%s (document %d): %s", this.getLocation(), this.document, this.problem);
+        }
+        return String.format("%s: %s", this.getLocation(), this.problem);
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ParserBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilter;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.SchemaMapping;
+
+/**
+ * The options of a validation run taken from the hook settings of a repository
+ */
+public class ValidationOptions {
+
+    /**
+     * The options of a hook without settings: the default file extensions, no schemas and the parser backend of
+     * the plugin configuration
+     */
+    public static final ValidationOptions DEFAULT = new ValidationOptions(PathFilter.DEFAULT, SchemaMapping.NONE, null);
+
+    private final PathFilter pathFilter;
+
+    private final SchemaMapping schemaMapping;
+
+    private final ParserBackend parserBackend;
+
+    /**
+     * Create new options
+     *
+     * @param pathFilter    The filter selecting the files to validate
+     * @param schemaMapping The mapping selecting the schemas of the files
+     * @param parserBackend The parser backend or null to use the one of the plugin configuration
+     */
+    public ValidationOptions(
+        final PathFilter pathFilter,
+        final SchemaMapping schemaMapping,
+        final ParserBackend parserBackend
+    )
+    {
+        this.pathFilter = pathFilter;
+        this.schemaMapping = schemaMapping;
+        this.parserBackend = parserBackend;
+    }
+
+    public PathFilter getPathFilter() {
+        return pathFilter;
+    }
+
+    public SchemaMapping getSchemaMapping() {
+        return schemaMapping;
+    }
+
+    public ParserBackend getParserBackend() {
+        return parserBackend;
+    }
+}
@@ -4,21 +4,88 @@ import com.atlassian.bitbucket.content.Change;
 import com.atlassian.bitbucket.repository.Repository;
 import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * A service to validate added or modified yaml files in a number of changes
  */
 public interface ValidationServiceInterface {
     /**
-     * Check all changes for added or modified yaml files and validate them
+     * Check all changes for added or modified yaml files and validate them with the default options
      *
      * @param changes The changes to check
      * @param repository The repository to check in
      * @param currentHash The current hash of the repository to fetch the yaml files
      * @throws InvalidYamlFileException One YAML file had an invalid content
      */
-    void areChangesValid(
+    default void areChangesValid(
         final Iterable<Change> changes,
         final Repository repository,
         final String currentHash
+    ) throws InvalidYamlFileException
+    {
+        this.areChangesValid(changes, repository, currentHash, ValidationOptions.DEFAULT);
+    }
+
+    /**
+     * Check all changes for added or modified yaml files and validate them
+     *
+     * @param changes The changes to check
+     * @param repository The repository to check in
+     * @param currentHash The current hash of the repository to fetch the yaml files and schemas
+     * @param options The options selecting the files, their schemas and the parser backend
+     * @throws InvalidYamlFileException One YAML file had an invalid content
+     */
+    void areChangesValid(
+        final Iterable<Change> changes,
+        final Repository repository,
+        final String currentHash,
+        final ValidationOptions options
+    ) throws InvalidYamlFileException;
+
+    /**
+     * Select the added or modified yaml files from a number of changes
+     *
+     * @param changes The changes to check
+     * @param currentHash The current hash of the repository to fetch the yaml files and schemas
+     * @param options The options selecting the files and their schemas
+     * @return The yaml files to validate
+     */
+    List<YamlFile> getYamlFiles(
+        final Iterable<Change> changes,
+        final String currentHash,
+        final ValidationOptions options
+    );
+
+    /**
+     * Describe everything besides the file contents, that decides whether a file is valid
+     *
+     * Two validations with the same profile accept the same files. The profile covers the engine, the YAML version
+     * of the parser backend, the lint rules and the schemas mapped in the options.
+     *
+     * @param repository The repository to load the schemas from
+     * @param currentHash The current hash of the repository to fetch the schemas
+     * @param options The options selecting the schemas and the parser backend
+     * @return The validation profile
+     */
+    String getProfile(
+        final Repository repository,
+        final String currentHash,
+        final ValidationOptions options
+    );
+
+    /**
+     * Validate the given yaml files
+     *
+     * @param yamlFiles The files to validate
+     * @param repository The repository to check in
+     * @param options The options selecting the parser backend
+     * @throws InvalidYamlFileException One YAML file had an invalid content
+     */
+    void areFilesValid(
+        final Collection<YamlFile> yamlFiles,
+        final Repository repository,
+        final ValidationOptions options
     ) throws InvalidYamlFileException;
 }
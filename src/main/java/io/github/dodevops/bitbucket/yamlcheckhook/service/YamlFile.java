@@ -0,0 +1,71 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+/**
+ * An added or modified yaml file, that should be validated
+ */
+public class YamlFile {
+
+    private final String path;
+
+    private final String contentId;
+
+    private final String commitId;
+
+    private final String schemaPath;
+
+    /**
+     * Create a new yaml file reference
+     *
+     * @param path      The path of the file
+     * @param contentId The id of the file content (blob) or null, if unknown
+     * @param commitId  The commit to read the file at
+     */
+    public YamlFile(final String path, final String contentId, final String commitId) {
+        this(path, contentId, commitId, null);
+    }
+
+    /**
+     * Create a new yaml file reference
+     *
+     * @param path       The path of the file
+     * @param contentId  The id of the file content (blob) or null, if unknown
+     * @param commitId   The commit to read the file (and its schema) at
+     * @param schemaPath The path of the schema the file has to match or null, if it has none
+     */
+    public YamlFile(final String path, final String contentId, final String commitId, final String schemaPath) {
+        this.path = path;
+        this.contentId = contentId;
+        this.commitId = commitId;
+        this.schemaPath = schemaPath;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getContentId() {
+        return contentId;
+    }
+
+    public String getCommitId() {
+        return commitId;
+    }
+
+    public String getSchemaPath() {
+        return schemaPath;
+    }
+
+    /**
+     * Get a key identifying the content at this path. Files with the same key only need to be validated once.
+     *
+     * @return The path combined with the content id (or the commit, if the content id is unknown)
+     */
+    public String getKey() {
+        return String.format("%s@%s", this.path, this.contentId != null ? this.contentId : this.commitId);
+    }
+
+    @Override
+    public String toString() {
+        return this.getKey();
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.stream;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Accounts all bytes read from a file against a {@link ValidationBudget} and stops reading as soon as the budget is
+ * exceeded or its deadline passed
+ */
+public class BudgetedInputStream extends FilterInputStream {
+
+    private final ValidationBudget budget;
+
+    private long bytesRead = 0;
+
+    public BudgetedInputStream(final InputStream in, final ValidationBudget budget) {
+        super(in);
+        this.budget = budget;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b >= 0) {
+            this.account(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int count = super.read(b, off, len);
+        if (count > 0) {
+            this.account(count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long count = super.skip(n);
+        this.account(count);
+        return count;
+    }
+
+    private void account(final long count) {
+        this.bytesRead += count;
+        this.budget.addBytes(this.bytesRead, count);
+        this.budget.checkDeadline();
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.stream;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of reusable byte buffers of a fixed size used to stream file contents
+ */
+@Named
+public class BufferPool {
+
+    private final int bufferSize;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    @Inject
+    public BufferPool(final PluginConfiguration pluginConfiguration) {
+        this(pluginConfiguration.getStreamBufferSize(), pluginConfiguration.getStreamPooledBuffers());
+    }
+
+    /**
+     * Create a new pool
+     *
+     * @param bufferSize    The size of each buffer in bytes
+     * @param pooledBuffers The maximum number of idle buffers to keep
+     */
+    public BufferPool(final int bufferSize, final int pooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, pooledBuffers));
+    }
+
+    /**
+     * Take a buffer from the pool or allocate a new one, if the pool is empty
+     *
+     * @return A buffer of {@link #getBufferSize()} bytes
+     */
+    public byte[] acquire() {
+        final byte[] buffer = this.buffers.poll();
+        if (buffer == null) {
+            return new byte[this.bufferSize];
+        }
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. It is dropped, if the pool is full.
+     *
+     * @param buffer The buffer to return
+     */
+    public void release(final byte[] buffer) {
+        if (buffer != null && buffer.length == this.bufferSize) {
+            this.buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,319 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.stream;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads blobs from one running "git cat-file --batch" command, which answers any number of requests one after the
+ * other. Reading all blobs of a validation run through one command saves starting a git process for every file.
+ *
+ * The command is started on the first request. Requests are answered one at a time and the content of each blob is
+ * copied to the given sink while it arrives, so it can be parsed on another thread in the meantime.
+ *
+ * If the command can't be started or fails before any content of a blob was copied, the batch is closed and the
+ * request is declined, so the caller can read the blob in another way.
+ */
+public class CatFileBatch implements Closeable {
+
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final long MAX_SKIPPED_REMAINS = 1024 * 1024;
+
+    private final Callable<Command> starter;
+
+    private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+
+    private Command command = null;
+
+    private InputStream responses = null;
+
+    private boolean closed = false;
+
+    private final Logger log = Logger.getLogger(CatFileBatch.class);
+
+    /**
+     * Create a new batch
+     *
+     * @param starter Starts the command on the first request. It may return null, if no command can be started.
+     */
+    public CatFileBatch(final Callable<Command> starter) {
+        this.starter = starter;
+    }
+
+    /**
+     * Copy the content of a blob to the given sink
+     *
+     * @param objectId The id of the blob
+     * @param sink     The stream to copy the content to. It is not closed.
+     * @return true, if the content was copied, false, if the blob is unknown or the batch can't be used (anymore)
+     * @throws IOException The content could only be copied partially, because the command or the sink failed
+     */
+    public boolean streamBlob(final String objectId, final OutputStream sink) throws IOException {
+        return this.streamBlob(objectId, sink, size -> {});
+    }
+
+    /**
+     * Copy the content of a blob to the given sink, announcing its size before the content
+     *
+     * @param objectId     The id of the blob
+     * @param sink         The stream to copy the content to. It is not closed.
+     * @param sizeListener Receives the size of the blob in bytes before any content is copied
+     * @return true, if the content was copied, false, if the blob is unknown or the batch can't be used (anymore)
+     * @throws IOException The content could only be copied partially, because the command or the sink failed
+     */
+    public synchronized boolean streamBlob(
+        final String objectId,
+        final OutputStream sink,
+        final LongConsumer sizeListener
+    ) throws IOException
+    {
+        if (objectId.isEmpty() || objectId.indexOf('\n') >= 0 || this.getCommand() == null) {
+            return false;
+        }
+
+        final long size;
+        try {
+            this.command.getRequests().write((objectId + "\n").getBytes(StandardCharsets.UTF_8));
+            this.command.getRequests().flush();
+            size = this.readHeader(objectId);
+        } catch (final IOException e) {
+            this.log.debug(String.format("Can not read blob %s, closing the batch", objectId), e);
+            this.close();
+            return false;
+        }
+
+        if (size < 0) {
+            return false;
+        }
+        sizeListener.accept(size);
+
+        long remaining = size;
+        while (remaining > 0) {
+            final int read;
+            try {
+                read = this.readContent(objectId, size, remaining);
+            } catch (final IOException e) {
+                this.close();
+                throw e;
+            }
+            remaining -= read;
+            try {
+                sink.write(this.copyBuffer, 0, read);
+            } catch (final IOException | RuntimeException e) {
+                // E.g. the parser stopped reading: skip the rest, so the batch can answer further requests
+                this.skipRemains(objectId, remaining);
+                throw e;
+            }
+        }
+
+        try {
+            this.readTerminator(objectId);
+        } catch (final IOException e) {
+            this.close();
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the batch was closed. A closed batch declines all requests.
+     *
+     * @return true, if the batch was closed
+     */
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * End the command, if it was started
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        if (this.command != null) {
+            try {
+                this.command.close();
+            } catch (final IOException e) {
+                this.log.debug("Can not end the cat-file command", e);
+            }
+            this.command = null;
+            this.responses = null;
+        }
+    }
+
+    /**
+     * Get the running command, starting it if needed
+     *
+     * @return The command or null, if it can't be started
+     */
+    private Command getCommand() {
+        if (this.closed || this.command != null) {
+            return this.command;
+        }
+
+        try {
+            this.command = this.starter.call();
+        } catch (final Exception e) {
+            this.log.debug("Can not start the cat-file command", e);
+        }
+
+        if (this.command == null) {
+            this.closed = true;
+            return null;
+        }
+        this.responses = new BufferedInputStream(this.command.getResponses(), COPY_BUFFER_SIZE);
+        return this.command;
+    }
+
+    /**
+     * Read the header the command answers a request with
+     *
+     * @param objectId The requested id
+     * @return The size of the following content or -1, if the object is missing or no blob
+     * @throws IOException The command gave no valid answer
+     */
+    private long readHeader(final String objectId) throws IOException {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int b;
+        while ((b = this.responses.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException(String.format("The command ended before answering the request of %s", objectId));
+            }
+            if (header.size() == MAX_HEADER_LENGTH) {
+                throw new IOException(String.format("The answer to the request of %s is too long", objectId));
+            }
+            header.write(b);
+        }
+
+        // <id> <type> <size> or <id> missing (or ambiguous)
+        final String[] fields = new String(header.toByteArray(), StandardCharsets.UTF_8).split(" ");
+        if (fields.length == 2) {
+            this.log.debug(String.format("Blob %s is %s", objectId, fields[1]));
+            return -1;
+        }
+
+        final long size;
+        try {
+            size = fields.length == 3 ? Long.parseLong(fields[2]) : -1;
+        } catch (final NumberFormatException e) {
+            throw new IOException(String.format("Unexpected answer to the request of %s: %s", objectId, header), e);
+        }
+        if (size < 0) {
+            throw new IOException(String.format("Unexpected answer to the request of %s: %s", objectId, header));
+        }
+
+        if (!"blob".equals(fields[1])) {
+            this.log.debug(String.format("Object %s is a %s, not a blob", objectId, fields[1]));
+            this.skip(objectId, size);
+            this.readTerminator(objectId);
+            return -1;
+        }
+        return size;
+    }
+
+    /**
+     * Read the next part of the content of a blob into the copy buffer
+     *
+     * @param objectId  The id of the blob
+     * @param size      The size of the content
+     * @param remaining The number of bytes not read yet
+     * @return The number of bytes read
+     * @throws IOException The content ended early
+     */
+    private int readContent(final String objectId, final long size, final long remaining) throws IOException {
+        final int read = this.responses.read(this.copyBuffer, 0, (int) Math.min(this.copyBuffer.length, remaining));
+        if (read < 0) {
+            throw new EOFException(
+                String.format(
+                    "Content of blob %s ended after %d of %d bytes",
+                    objectId,
+                    size - remaining,
+                    size
+                )
+            );
+        }
+        return read;
+    }
+
+    /**
+     * Skip the rest of a blob the sink didn't accept. Large rests are not read, the batch is closed instead.
+     *
+     * @param objectId  The id of the blob
+     * @param remaining The number of bytes not read yet
+     */
+    private void skipRemains(final String objectId, final long remaining) {
+        if (remaining > MAX_SKIPPED_REMAINS) {
+            this.close();
+            return;
+        }
+        try {
+            this.skip(objectId, remaining);
+            this.readTerminator(objectId);
+        } catch (final IOException e) {
+            this.log.debug(String.format("Can not skip the rest of blob %s, closing the batch", objectId), e);
+            this.close();
+        }
+    }
+
+    /**
+     * Skip content not needed
+     *
+     * @param objectId The id of the object
+     * @param size     The size of the content
+     * @throws IOException The content ended early
+     */
+    private void skip(final String objectId, final long size) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            final long skipped = this.responses.skip(remaining);
+            if (skipped <= 0) {
+                if (this.responses.read() < 0) {
+                    throw new EOFException(String.format("Content of object %s ended early", objectId));
+                }
+                remaining--;
+            } else {
+                remaining -= skipped;
+            }
+        }
+    }
+
+    /**
+     * Read the line feed the command ends every content with
+     *
+     * @param objectId The id of the object
+     * @throws IOException The line feed is missing
+     */
+    private void readTerminator(final String objectId) throws IOException {
+        if (this.responses.read() != '\n') {
+            throw new IOException(String.format("Content of object %s wasn't terminated", objectId));
+        }
+    }
+
+    /**
+     * A started "git cat-file --batch" command. Closing it ends the command.
+     */
+    public interface Command extends Closeable {
+
+        /**
+         * @return The standard input of the command, which receives the requested ids
+         */
+        OutputStream getRequests();
+
+        /**
+         * @return The standard output of the command, which answers the requests
+         */
+        InputStream getResponses();
+    }
+}
@@ -0,0 +1,272 @@
+package io.github.dodevops.bitbucket.yamlcheckhook.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands the content written by one thread to another thread reading it, using a bounded number of pooled
+ * buffers. The memory used is therefore limited by the number of buffers in flight, regardless of the size of the
+ * content.
+ *
+ * If the reading side is closed early (e.g. because the parser found an error), further writes fail with an
+ * IOException, so the producer stops as well.
+ *
+ * The producer may announce the length of the content before writing it, so the reader can prepare for it.
+ */
+public class ContentPipe {
+
+    private static final Chunk END = new Chunk(new byte[0], 0);
+
+    private final BufferPool bufferPool;
+
+    private final BlockingQueue<Chunk> chunks;
+
+    private final PipeOutputStream outputStream = new PipeOutputStream();
+
+    private final PipeInputStream inputStream = new PipeInputStream();
+
+    private volatile boolean readerClosed = false;
+
+    private volatile long bytesWritten = 0;
+
+    private volatile long contentLength = -1;
+
+    /**
+     * Create a new pipe
+     *
+     * @param bufferPool      The pool to take the buffers from
+     * @param buffersInFlight The maximum number of filled buffers waiting for the reader
+     */
+    public ContentPipe(final BufferPool bufferPool, final int buffersInFlight) {
+        this.bufferPool = bufferPool;
+        this.chunks = new ArrayBlockingQueue<>(Math.max(1, buffersInFlight));
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * @return Whether the reading side stopped consuming the content
+     */
+    public boolean isReaderClosed() {
+        return readerClosed;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Get the length of the content announced by the producer. It is known to the reader once the first byte or
+     * the end of the content was read.
+     *
+     * @return The length in bytes or -1, if it wasn't announced
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Announce the length of the content. This has to be done before writing any content.
+     *
+     * @param contentLength The length in bytes
+     */
+    public void setContentLength(final long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Return all queued buffers to the pool
+     */
+    private void drain() {
+        Chunk chunk;
+        while ((chunk = this.chunks.poll()) != null) {
+            if (chunk != END) {
+                this.bufferPool.release(chunk.data);
+            }
+        }
+    }
+
+    /**
+     * A filled buffer
+     */
+    private static final class Chunk {
+        private final byte[] data;
+
+        private final int length;
+
+        private Chunk(final byte[] data, final int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+
+        private byte[] buffer;
+
+        private int position;
+
+        private boolean closed = false;
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.ensureBuffer();
+            this.buffer[this.position++] = (byte) b;
+            this.flushIfFull();
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                this.ensureBuffer();
+                final int count = Math.min(remaining, this.buffer.length - this.position);
+                System.arraycopy(b, offset, this.buffer, this.position, count);
+                this.position += count;
+                offset += count;
+                remaining -= count;
+                this.flushIfFull();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                if (this.buffer != null && this.position > 0) {
+                    this.put(new Chunk(this.buffer, this.position));
+                } else if (this.buffer != null) {
+                    ContentPipe.this.bufferPool.release(this.buffer);
+                }
+                this.buffer = null;
+                this.put(END);
+            } catch (final IOException e) {
+                // The reader is gone already, nobody is waiting for the end marker
+            }
+        }
+
+        private void ensureBuffer() throws IOException {
+            if (this.closed) {
+                throw new IOException("Pipe was closed");
+            }
+            if (ContentPipe.this.readerClosed) {
+                throw new IOException("Reader of the pipe was closed");
+            }
+            if (this.buffer == null) {
+                this.buffer = ContentPipe.this.bufferPool.acquire();
+                this.position = 0;
+            }
+        }
+
+        private void flushIfFull() throws IOException {
+            if (this.position == this.buffer.length) {
+                final Chunk chunk = new Chunk(this.buffer, this.position);
+                this.buffer = null;
+                this.put(chunk);
+            }
+        }
+
+        private void put(final Chunk chunk) throws IOException {
+            try {
+                ContentPipe.this.chunks.put(chunk);
+                ContentPipe.this.bytesWritten += chunk.length;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing to the pipe");
+            }
+            if (ContentPipe.this.readerClosed) {
+                ContentPipe.this.drain();
+                throw new IOException("Reader of the pipe was closed");
+            }
+        }
+    }
+
+    private class PipeInputStream extends InputStream {
+
+        private Chunk current;
+
+        private int position;
+
+        private boolean ended = false;
+
+        @Override
+        public int read() throws IOException {
+            if (!this.ensureChunk()) {
+                return -1;
+            }
+            return this.current.data[this.position++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.ensureChunk()) {
+                return -1;
+            }
+            final int count = Math.min(len, this.current.length - this.position);
+            System.arraycopy(this.current.data, this.position, b, off, count);
+            this.position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (ContentPipe.this.readerClosed) {
+                return;
+            }
+            ContentPipe.this.readerClosed = true;
+            if (this.current != null) {
+                ContentPipe.this.bufferPool.release(this.current.data);
+                this.current = null;
+            }
+            ContentPipe.this.drain();
+        }
+
+        /**
+         * Make sure, there's unread data in the current chunk
+         *
+         * @return false, if the end of the content was reached
+         */
+        private boolean ensureChunk() throws IOException {
+            if (ContentPipe.this.readerClosed) {
+                throw new IOException("Pipe was closed");
+            }
+            while (!this.ended && (this.current == null || this.position == this.current.length)) {
+                if (this.current != null) {
+                    ContentPipe.this.bufferPool.release(this.current.data);
+                    this.current = null;
+                }
+                final Chunk chunk;
+                try {
+                    chunk = ContentPipe.this.chunks.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading from the pipe");
+                }
+                if (chunk == END) {
+                    this.ended = true;
+                } else {
+                    this.current = chunk;
+                    this.position = 0;
+                }
+            }
+            return !this.ended;
+        }
+    }
+}
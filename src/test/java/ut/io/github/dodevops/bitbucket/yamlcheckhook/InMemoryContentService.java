@@ -0,0 +1,130 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook;
+
+import com.atlassian.bitbucket.content.ContentService;
+import com.atlassian.bitbucket.io.TypeAwareOutputSupplier;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ContentService} stand-in serving file contents from memory, independent of the requested commit
+ */
+public class InMemoryContentService {
+
+    private static final int WRITE_SIZE = 8192;
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> delays = new ConcurrentHashMap<>();
+
+    private final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+
+    private final AtomicLong streamedFiles = new AtomicLong();
+
+    private final ContentService contentService = StandIns.proxy(
+        ContentService.class,
+        "contentService",
+        (proxy, method, args) -> {
+            if (!method.getName().equals("streamFile")) {
+                throw StandIns.unsupported(method);
+            }
+            this.streamFile((String) args[2], (TypeAwareOutputSupplier) args[3]);
+            return null;
+        }
+    );
+
+    /**
+     * Add a file, which is served at every commit
+     *
+     * @param path    The path of the file
+     * @param content The content of the file
+     */
+    public void putFile(final String path, final String content) {
+        this.putFile(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add a file in any encoding, which is served at every commit
+     *
+     * @param path    The path of the file
+     * @param content The raw content of the file
+     */
+    public void putFile(final String path, final byte[] content) {
+        this.files.put(path, content);
+    }
+
+    /**
+     * Fail after serving the content of a file
+     *
+     * @param path    The path of the file
+     * @param failure The exception to throw
+     */
+    public void setFailure(final String path, final RuntimeException failure) {
+        this.failures.put(path, failure);
+    }
+
+    /**
+     * Take a while before serving a file
+     *
+     * @param path   The path of the file
+     * @param millis The delay in milliseconds
+     */
+    public void setDelay(final String path, final long millis) {
+        this.delays.put(path, millis);
+    }
+
+    /**
+     * Get how often a file was streamed
+     *
+     * @param path The path of the file
+     * @return The number of fetches
+     */
+    public int getFetches(final String path) {
+        final AtomicInteger count = this.fetches.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    public ContentService getContentService() {
+        return contentService;
+    }
+
+    public long getStreamedFiles() {
+        return streamedFiles.get();
+    }
+
+    private void streamFile(final String path, final TypeAwareOutputSupplier outputSupplier) throws IOException {
+        final byte[] content = this.files.get(path);
+        if (content == null) {
+            throw new IllegalArgumentException(String.format("No file at %s", path));
+        }
+        this.streamedFiles.incrementAndGet();
+        this.fetches.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        final Long delay = this.delays.get(path);
+        if (delay != null) {
+            try {
+                Thread.sleep(delay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("Interrupted while serving %s", path));
+            }
+        }
+        // Write in chunks like the git process output would arrive
+        try (final OutputStream output = outputSupplier.getStream("text/plain")) {
+            for (int offset = 0; offset < content.length; offset += WRITE_SIZE) {
+                output.write(content, offset, Math.min(WRITE_SIZE, content.length - offset));
+            }
+            final RuntimeException failure = this.failures.get(path);
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook;
+
+import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.commit.Commit;
+import com.atlassian.bitbucket.content.Change;
+import com.atlassian.bitbucket.content.ChangeType;
+import com.atlassian.bitbucket.content.Path;
+import com.atlassian.bitbucket.hook.repository.PreRepositoryHookContext;
+import com.atlassian.bitbucket.hook.repository.PullRequestMergeHookRequest;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookRequest;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestParticipant;
+import com.atlassian.bitbucket.pull.PullRequestRef;
+import com.atlassian.bitbucket.pull.PullRequestState;
+import com.atlassian.bitbucket.repository.Branch;
+import com.atlassian.bitbucket.repository.MinimalRef;
+import com.atlassian.bitbucket.repository.RefChange;
+import com.atlassian.bitbucket.repository.RefChangeType;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.repository.StandardRefType;
+import com.atlassian.bitbucket.scm.ScmService;
+import com.atlassian.bitbucket.server.ApplicationPropertiesService;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.user.ApplicationUser;
+import com.atlassian.bitbucket.user.EscalatedSecurityContext;
+import com.atlassian.bitbucket.user.SecurityService;
+import com.atlassian.bitbucket.util.Operation;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Minimal stand-ins of the Bitbucket API for the unit tests and the benchmarks.
+ *
+ * The stand-ins are dynamic proxies implementing only the methods the tested classes call. Every other method
+ * throws an {@link UnsupportedOperationException}.
+ */
+public final class StandIns {
+
+    private StandIns() {
+    }
+
+    /**
+     * Create a proxy of the given interface
+     *
+     * @param type    The interface to implement
+     * @param name    The name returned by toString
+     * @param handler The handler for all methods except equals, hashCode and toString
+     * @param <T>     The interface type
+     * @return The proxy
+     */
+    public static <T> T proxy(final Class<T> type, final String name, final InvocationHandler handler) {
+        return type.cast(
+            Proxy.newProxyInstance(
+                StandIns.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "toString":
+                            return name;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return handler.invoke(proxy, method, args);
+                    }
+                }
+            )
+        );
+    }
+
+    public static Repository repository(final int id) {
+        return repository(id, "repository-" + id);
+    }
+
+    public static Repository repository(final int id, final String slug) {
+        return proxy(Repository.class, slug, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getSlug":
+                case "getName":
+                    return slug;
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    public static Path path(final String path) {
+        final String name = path.substring(path.lastIndexOf('/') + 1);
+        final int dot = name.lastIndexOf('.');
+        final String extension = dot > 0 ? name.substring(dot + 1) : "";
+        return proxy(Path.class, path, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getExtension":
+                    return extension;
+                case "getComponents":
+                    return path.split("/");
+                case "getParent":
+                    return path.contains("/") ? path.substring(0, path.lastIndexOf('/')) : "";
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    public static Change change(final String path, final String contentId, final ChangeType type) {
+        final Path changePath = path(path);
+        return proxy(Change.class, path, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getPath":
+                    return changePath;
+                case "getContentId":
+                    return contentId;
+                case "getType":
+                    return type;
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    public static Commit commit(final String id) {
+        return proxy(Commit.class, id, (proxy, method, args) -> {
+            if (method.getName().equals("getId")) {
+                return id;
+            }
+            throw unsupported(method);
+        });
+    }
+
+    /**
+     * A branch, like the default branch returned by the ref service
+     *
+     * @param name         The name of the branch
+     * @param latestCommit The commit the branch points to
+     * @return The stand-in
+     */
+    public static Branch branch(final String name, final String latestCommit) {
+        return proxy(Branch.class, name, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return "refs/heads/" + name;
+                case "getDisplayId":
+                    return name;
+                case "getType":
+                    return StandardRefType.BRANCH;
+                case "getLatestCommit":
+                    return latestCommit;
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    /**
+     * The update of a branch by a push
+     *
+     * @param branch   The name of the branch
+     * @param fromHash The commit the branch pointed to before the push
+     * @param toHash   The pushed commit
+     * @param type     The type of the update
+     * @return The stand-in
+     */
+    public static RefChange refChange(
+        final String branch,
+        final String fromHash,
+        final String toHash,
+        final RefChangeType type
+    )
+    {
+        final MinimalRef ref = branch(branch, toHash);
+        return proxy(RefChange.class, branch, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRef":
+                    return ref;
+                case "getFromHash":
+                    return fromHash;
+                case "getToHash":
+                    return toHash;
+                case "getType":
+                    return type;
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    /**
+     * The request of the push hook
+     *
+     * @param repository The repository pushed to
+     * @param refChanges The updated refs
+     * @return The stand-in
+     */
+    public static RepositoryHookRequest pushRequest(
+        final Repository repository,
+        final Collection<RefChange> refChanges
+    )
+    {
+        return proxy(RepositoryHookRequest.class, "push", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRepository":
+                    return repository;
+                case "getRefChanges":
+                    return refChanges;
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    /**
+     * An open pull request from one commit of a repository into another one
+     *
+     * @param repository The source and target repository
+     * @param id         The id of the pull request
+     * @param fromCommit The latest commit of the source branch
+     * @param toCommit   The latest commit of the target branch
+     * @return The stand-in
+     */
+    public static PullRequest pullRequest(
+        final Repository repository,
+        final long id,
+        final String fromCommit,
+        final String toCommit
+    )
+    {
+        final String title = String.format("Pull request %d", id);
+        final PullRequestRef fromRef = pullRequestRef(repository, "refs/heads/feature/" + id, fromCommit);
+        final PullRequestRef toRef = pullRequestRef(repository, "refs/heads/master", toCommit);
+        final ApplicationUser author = proxy(ApplicationUser.class, "author", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "getDisplayName":
+                    return "author";
+                default:
+                    throw unsupported(method);
+            }
+        });
+        final PullRequestParticipant participant = proxy(
+            PullRequestParticipant.class,
+            "author",
+            (proxy, method, args) -> {
+                if (method.getName().equals("getUser")) {
+                    return author;
+                }
+                throw unsupported(method);
+            }
+        );
+        return proxy(PullRequest.class, title, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getVersion":
+                    return 0;
+                case "getTitle":
+                    return title;
+                case "getFromRef":
+                    return fromRef;
+                case "getToRef":
+                    return toRef;
+                case "getAuthor":
+                    return participant;
+                case "getState":
+                    return PullRequestState.OPEN;
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    /**
+     * The request of the merge check
+     *
+     * @param pullRequest The checked pull request
+     * @return The stand-in
+     */
+    public static PullRequestMergeHookRequest mergeRequest(final PullRequest pullRequest) {
+        return proxy(PullRequestMergeHookRequest.class, pullRequest.getTitle(), (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getPullRequest":
+                    return pullRequest;
+                case "getRepository":
+                    return pullRequest.getToRef().getRepository();
+                case "getRefChanges":
+                    return Collections.emptyList();
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    /**
+     * The context of a hook invocation with the given settings
+     *
+     * @param settings The hook settings
+     * @return The stand-in
+     */
+    public static PreRepositoryHookContext hookContext(final Settings settings) {
+        return proxy(PreRepositoryHookContext.class, "context", (proxy, method, args) -> {
+            if (method.getName().equals("getSettings")) {
+                return settings;
+            }
+            throw unsupported(method);
+        });
+    }
+
+    /**
+     * A properties service returning the given plugin properties or the requested defaults
+     *
+     * @param properties The plugin properties
+     * @return The stand-in
+     */
+    public static ApplicationPropertiesService applicationProperties(final Map<String, String> properties) {
+        return proxy(ApplicationPropertiesService.class, "properties", (proxy, method, args) -> {
+            if (!method.getName().equals("getPluginProperty")) {
+                throw unsupported(method);
+            }
+            final String value = properties.get((String) args[0]);
+            if (args.length == 1 || value == null) {
+                return args.length == 1 ? value : args[1];
+            }
+            final Class<?> returnType = method.getReturnType();
+            if (returnType == int.class) {
+                return Integer.parseInt(value);
+            }
+            if (returnType == long.class) {
+                return Long.parseLong(value);
+            }
+            if (returnType == boolean.class) {
+                return Boolean.parseBoolean(value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Hook settings holding the given values
+     *
+     * @param values The values of the settings
+     * @return The stand-in
+     */
+    public static Settings settings(final Map<String, String> values) {
+        return proxy(Settings.class, "settings", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getString":
+                    return values.getOrDefault((String) args[0], args.length == 1 ? null : (String) args[1]);
+                case "asMap":
+                    return new HashMap<String, Object>(values);
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    /**
+     * A plugin settings factory keeping the global settings in memory
+     *
+     * @return The stand-in
+     */
+    public static PluginSettingsFactory pluginSettingsFactory() {
+        final Map<String, Object> values = new ConcurrentHashMap<>();
+        final PluginSettings pluginSettings = proxy(PluginSettings.class, "pluginSettings", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "get":
+                    return values.get((String) args[0]);
+                case "put":
+                    return values.put((String) args[0], args[1]);
+                case "remove":
+                    return values.remove((String) args[0]);
+                default:
+                    throw unsupported(method);
+            }
+        });
+        return proxy(PluginSettingsFactory.class, "pluginSettingsFactory", (proxy, method, args) -> {
+            if (method.getName().equals("createGlobalSettings")) {
+                return pluginSettings;
+            }
+            throw unsupported(method);
+        });
+    }
+
+    /**
+     * A security service running all operations directly
+     *
+     * @return The stand-in
+     */
+    public static SecurityService securityService() {
+        final EscalatedSecurityContext context = proxy(
+            EscalatedSecurityContext.class,
+            "escalated",
+            (proxy, method, args) -> {
+                if (method.getName().equals("call")) {
+                    return ((Operation<?, ?>) args[0]).perform();
+                }
+                if (method.getReturnType() == EscalatedSecurityContext.class) {
+                    return proxy;
+                }
+                throw unsupported(method);
+            }
+        );
+        return proxy(SecurityService.class, "security", (proxy, method, args) -> {
+            if (method.getReturnType() == EscalatedSecurityContext.class) {
+                return context;
+            }
+            throw unsupported(method);
+        });
+    }
+
+    /**
+     * The stand-ins have no git directory to run commands in, so the SCM runs none
+     *
+     * @return The SCM service
+     */
+    public static ScmService scmService() {
+        return proxy(ScmService.class, "scm", (proxy, method, args) -> {
+            if (method.getName().equals("createBuilder")) {
+                return null;
+            }
+            throw unsupported(method);
+        });
+    }
+
+    /**
+     * Hooks run without an authenticated user, like for pushes by the system
+     *
+     * @return The stand-in
+     */
+    public static AuthenticationContext anonymousContext() {
+        return proxy(AuthenticationContext.class, "authentication", (proxy, method, args) -> {
+            if (method.getName().equals("getCurrentUser")) {
+                return null;
+            }
+            throw unsupported(method);
+        });
+    }
+
+    private static PullRequestRef pullRequestRef(
+        final Repository repository,
+        final String id,
+        final String latestCommit
+    )
+    {
+        return proxy(PullRequestRef.class, id, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRepository":
+                    return repository;
+                case "getId":
+                    return id;
+                case "getLatestCommit":
+                    return latestCommit;
+                default:
+                    throw unsupported(method);
+            }
+        });
+    }
+
+    public static UnsupportedOperationException unsupported(final Method method) {
+        return new UnsupportedOperationException(
+            String.format(
+                "%s.%s isn't supported by the stand-in",
+                method.getDeclaringClass().getSimpleName(),
+                method.getName()
+            )
+        );
+    }
+}
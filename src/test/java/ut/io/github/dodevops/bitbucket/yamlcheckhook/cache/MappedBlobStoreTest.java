@@ -0,0 +1,115 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.BlobStore;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.MappedBlobStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+public class MappedBlobStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test()
+    public void testAddAndContains() throws IOException {
+        final MappedBlobStore store = new MappedBlobStore(this.getFile(), 1024);
+
+        final byte[] key = key(1);
+
+        Assert.assertFalse("Empty store contains a key", store.contains(key));
+
+        store.add(key);
+        store.add(key);
+
+        Assert.assertTrue("Added key is missing", store.contains(key));
+        Assert.assertFalse("Store contains a key never added", store.contains(key(2)));
+        Assert.assertEquals("Duplicate key was counted", 1, store.size());
+
+        store.close();
+    }
+
+    @Test()
+    public void testSurvivesReopen() throws IOException {
+        final File file = this.getFile();
+
+        final MappedBlobStore store = new MappedBlobStore(file, 1024);
+        for (int i = 1; i <= 100; i++) {
+            store.add(key(i));
+        }
+        store.close();
+
+        final MappedBlobStore reopened = new MappedBlobStore(file, 1024);
+        for (int i = 1; i <= 100; i++) {
+            Assert.assertTrue(String.format("Key %d is missing after reopening", i), reopened.contains(key(i)));
+        }
+        Assert.assertEquals("Size wasn't restored", 100, reopened.size());
+        reopened.close();
+    }
+
+    @Test()
+    public void testResizeClearsStore() throws IOException {
+        final File file = this.getFile();
+
+        final MappedBlobStore store = new MappedBlobStore(file, 1024);
+        store.add(key(1));
+        store.close();
+
+        final MappedBlobStore resized = new MappedBlobStore(file, 2048);
+        Assert.assertFalse("Key of the old layout was kept", resized.contains(key(1)));
+        Assert.assertEquals("Resized store isn't empty", 0, resized.size());
+        resized.close();
+    }
+
+    @Test()
+    public void testStaysBounded() throws IOException {
+        final File file = this.getFile();
+        final MappedBlobStore store = new MappedBlobStore(file, 64);
+        final long length = file.length();
+
+        for (int i = 1; i <= 10000; i++) {
+            store.add(key(i));
+        }
+
+        Assert.assertEquals("File grew", length, file.length());
+        Assert.assertTrue("More keys than slots", store.size() <= 64);
+        Assert.assertTrue("Latest key was forgotten", store.contains(key(10000)));
+        store.close();
+    }
+
+    @Test()
+    public void testCorruptFileIsCleared() throws IOException {
+        final File file = this.getFile();
+        final byte[] garbage = new byte[16 + 1024 * BlobStore.KEY_LENGTH];
+        new Random(1).nextBytes(garbage);
+        Assert.assertTrue("Can not create the directory", file.getParentFile().mkdirs());
+        Files.write(file.toPath(), garbage);
+
+        final MappedBlobStore store = new MappedBlobStore(file, 1024);
+        Assert.assertFalse("Corrupt file was used", store.contains(key(1)));
+        Assert.assertEquals("Corrupt file was used", 0, store.size());
+        store.close();
+    }
+
+    private File getFile() {
+        return new File(this.temporaryFolder.getRoot(), "blobs/known-valid-blobs");
+    }
+
+    private static byte[] key(final int seed) {
+        // The keys of the store are SHA-1 digests
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(Integer.toString(seed).getBytes(StandardCharsets.UTF_8));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
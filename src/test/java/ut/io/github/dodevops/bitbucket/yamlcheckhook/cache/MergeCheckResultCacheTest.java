@@ -0,0 +1,142 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestRef;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.setting.Settings;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.MergeCheckResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.HookSettings;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.util.Collections;
+
+public class MergeCheckResultCacheTest {
+
+    private static final Repository REPOSITORY = StandIns.repository(1);
+
+    private static final Settings SETTINGS = StandIns.settings(Collections.emptyMap());
+
+    private static final RepositoryHookResult RESULT = RepositoryHookResult.accepted();
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    @Test()
+    public void testReturnsResultOfSameState() {
+        final MergeCheckResultCache cache = this.cache(10);
+
+        Assert.assertNull(
+            "Unchecked pull request has a result",
+            cache.get(pullRequest(1, "from-1", "to-1"), SETTINGS)
+        );
+        cache.put(pullRequest(1, "from-1", "to-1"), SETTINGS, RESULT);
+
+        Assert.assertSame(
+            "Result wasn't remembered",
+            RESULT,
+            cache.get(pullRequest(1, "from-1", "to-1"), SETTINGS)
+        );
+        Assert.assertNull("Result of another pull request", cache.get(pullRequest(2, "from-1", "to-1"), SETTINGS));
+        Assert.assertEquals("Wrong number of hits", 1, cache.getHits());
+        Assert.assertEquals("Wrong number of misses", 2, cache.getMisses());
+    }
+
+    @Test()
+    public void testOutdatedWhenSourceMoves() {
+        final MergeCheckResultCache cache = this.cache(10);
+
+        cache.put(pullRequest(1, "from-1", "to-1"), SETTINGS, RESULT);
+
+        Assert.assertNull("Result survived a new commit", cache.get(pullRequest(1, "from-2", "to-1"), SETTINGS));
+    }
+
+    @Test()
+    public void testOutdatedWhenTargetMoves() {
+        final MergeCheckResultCache cache = this.cache(10);
+
+        cache.put(pullRequest(1, "from-1", "to-1"), SETTINGS, RESULT);
+
+        Assert.assertNull("Result survived a new target", cache.get(pullRequest(1, "from-1", "to-2"), SETTINGS));
+    }
+
+    @Test()
+    public void testOutdatedWhenSettingsChange() {
+        final MergeCheckResultCache cache = this.cache(10);
+
+        cache.put(pullRequest(1, "from-1", "to-1"), SETTINGS, RESULT);
+
+        Assert.assertNull(
+            "Result survived changed settings",
+            cache.get(
+                pullRequest(1, "from-1", "to-1"),
+                StandIns.settings(Collections.singletonMap(HookSettings.EXCLUDES, "generated/**"))
+            )
+        );
+    }
+
+    @Test()
+    public void testEvictsLeastRecentlyUsed() {
+        final MergeCheckResultCache cache = this.cache(1);
+
+        cache.put(pullRequest(1, "from-1", "to-1"), SETTINGS, RESULT);
+        cache.put(pullRequest(2, "from-1", "to-1"), SETTINGS, RESULT);
+
+        Assert.assertNull("Evicted result was kept", cache.get(pullRequest(1, "from-1", "to-1"), SETTINGS));
+        Assert.assertSame(
+            "Latest result was evicted",
+            RESULT,
+            cache.get(pullRequest(2, "from-1", "to-1"), SETTINGS)
+        );
+        Assert.assertEquals("Wrong number of evictions", 1, cache.getEvictions());
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("merge-check-cache.size").getAsLong());
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("merge-check-cache.hits").getAsLong());
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("merge-check-cache.misses").getAsLong());
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("merge-check-cache.evictions").getAsLong());
+    }
+
+    private MergeCheckResultCache cache(final int size) {
+        return new MergeCheckResultCache(
+            new PluginConfiguration(
+                StandIns.applicationProperties(
+                    Collections.singletonMap(PluginConfiguration.MERGE_CHECK_CACHE_SIZE, Integer.toString(size))
+                )
+            ),
+            this.metricsRegistry
+        );
+    }
+
+    private static PullRequest pullRequest(final long id, final String fromCommit, final String toCommit) {
+        final PullRequestRef fromRef = ref(fromCommit);
+        final PullRequestRef toRef = ref(toCommit);
+        return StandIns.proxy(PullRequest.class, "pull-request-" + id, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getFromRef":
+                    return fromRef;
+                case "getToRef":
+                    return toRef;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private static PullRequestRef ref(final String latestCommit) {
+        return StandIns.proxy(PullRequestRef.class, latestCommit, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRepository":
+                    return REPOSITORY;
+                case "getLatestCommit":
+                    return latestCommit;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+}
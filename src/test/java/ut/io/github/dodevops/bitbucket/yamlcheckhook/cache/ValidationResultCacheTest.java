@@ -0,0 +1,122 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.cache;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.ValidationResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.util.Collections;
+
+public class ValidationResultCacheTest {
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    @Test()
+    public void testCountsHitsAndMisses() {
+        final ValidationResultCache cache = this.cache(10);
+
+        Assert.assertNull("Unknown blob has a result", cache.get("profile:blob-1"));
+        cache.putValid("profile:blob-1");
+
+        final ValidationResultCache.Result result = cache.get("profile:blob-1");
+        Assert.assertNotNull("Valid blob was forgotten", result);
+        Assert.assertTrue("Valid blob isn't valid", result.isValid());
+        Assert.assertNull("Valid blob has a failure", result.getFailure());
+        Assert.assertNull("Another profile has the result", cache.get("other:blob-1"));
+
+        Assert.assertEquals("Wrong number of hits", 1, cache.getHits());
+        Assert.assertEquals("Wrong number of misses", 2, cache.getMisses());
+        Assert.assertEquals("Wrong size", 1, cache.size());
+    }
+
+    @Test()
+    public void testIgnoresUnknownContentIds() {
+        final ValidationResultCache cache = this.cache(10);
+
+        cache.putValid(null);
+
+        Assert.assertNull("A file without content id has a result", cache.get(null));
+        Assert.assertEquals("A file without content id was stored", 0, cache.size());
+    }
+
+    @Test()
+    public void testEvictsLeastRecentlyUsed() {
+        final ValidationResultCache cache = this.cache(2);
+
+        cache.putValid("profile:blob-1");
+        cache.putValid("profile:blob-2");
+        cache.get("profile:blob-1");
+        cache.putValid("profile:blob-3");
+
+        Assert.assertNotNull("Recently used blob was evicted", cache.get("profile:blob-1"));
+        Assert.assertNull("Least recently used blob was kept", cache.get("profile:blob-2"));
+        Assert.assertEquals("Wrong number of evictions", 1, cache.getEvictions());
+        Assert.assertEquals("Wrong size", 2, cache.size());
+    }
+
+    @Test()
+    public void testSizeZeroDisablesCache() {
+        final ValidationResultCache cache = this.cache(0);
+
+        cache.putValid("profile:blob-1");
+
+        Assert.assertNull("Disabled cache kept a result", cache.get("profile:blob-1"));
+        Assert.assertEquals("Disabled cache has entries", 0, cache.size());
+    }
+
+    @Test()
+    public void testKeepsFailureForOtherFiles() {
+        final ValidationResultCache cache = this.cache(10);
+
+        cache.putInvalid(
+            "profile:blob-1",
+            new ValidationFailure("first.yaml", "blob-1", 2, 4, 3, "mapping values are not allowed", "message")
+        );
+
+        final ValidationResultCache.Result result = cache.get("profile:blob-1");
+        Assert.assertFalse("Invalid blob is valid", result.isValid());
+
+        final ValidationFailure failure = result.getFailure().forFile("second.yaml");
+        Assert.assertEquals("Failure wasn't moved to the other file", "second.yaml", failure.getFilePath());
+        Assert.assertEquals("Content id changed", "blob-1", failure.getContentId());
+        Assert.assertEquals("Location changed", "second.yaml:2:4", failure.getLocation());
+        Assert.assertEquals("Document changed", 3, failure.getDocument());
+        Assert.assertEquals("Problem changed", "mapping values are not allowed", failure.getProblem());
+        Assert.assertEquals("Message changed", "message", failure.getMessage());
+        Assert.assertEquals(
+            "The cached failure was changed",
+            "first.yaml",
+            cache.get("profile:blob-1").getFailure().getFilePath()
+        );
+    }
+
+    @Test()
+    public void testExportsStatistics() {
+        final ValidationResultCache cache = this.cache(1);
+
+        cache.putValid("profile:blob-1");
+        cache.putValid("profile:blob-2");
+        cache.get("profile:blob-1");
+        cache.get("profile:blob-2");
+
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("validation-cache.size").getAsLong());
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("validation-cache.hits").getAsLong());
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("validation-cache.misses").getAsLong());
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("validation-cache.evictions").getAsLong());
+    }
+
+    private ValidationResultCache cache(final int size) {
+        return new ValidationResultCache(
+            new PluginConfiguration(
+                StandIns.applicationProperties(
+                    Collections.singletonMap(PluginConfiguration.CACHE_SIZE, Integer.toString(size))
+                )
+            ),
+            this.metricsRegistry
+        );
+    }
+}
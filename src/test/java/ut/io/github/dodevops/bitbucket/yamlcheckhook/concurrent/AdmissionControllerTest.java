@@ -0,0 +1,202 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.concurrent;
+
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.server.ApplicationPropertiesService;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControllerTest {
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    @Test()
+    public void testLimitsConcurrentValidations() {
+        final AdmissionController admissionController = this.createAdmissionController(2, 50);
+        final Repository repository = repository(1);
+
+        final AdmissionController.Permit first = admissionController.tryAcquire(repository);
+        final AdmissionController.Permit second = admissionController.tryAcquire(repository);
+        Assert.assertNotNull("First validation wasn't admitted", first);
+        Assert.assertNotNull("Second validation wasn't admitted", second);
+        Assert.assertEquals(2, admissionController.getActive());
+
+        Assert.assertNull("Validation beyond the limit was admitted", admissionController.tryAcquire(repository));
+        Assert.assertEquals(1, this.metricsRegistry.counter(MetricsRegistry.ADMISSION_TIMEOUTS).getCount());
+        Assert.assertEquals("Timed out validation is still queued", 0, admissionController.getQueued());
+
+        first.close();
+        first.close();
+        Assert.assertEquals("Closing a permit twice freed two slots", 1, admissionController.getActive());
+
+        final AdmissionController.Permit third = admissionController.tryAcquire(repository(2));
+        Assert.assertNotNull("Validation wasn't admitted after a slot was freed", third);
+        third.close();
+        second.close();
+        Assert.assertEquals(0, admissionController.getActive());
+    }
+
+    @Test()
+    public void testTakesRepositoriesInTurns() throws InterruptedException {
+        final AdmissionController admissionController = this.createAdmissionController(1, 10000);
+        final AdmissionController.Permit running = admissionController.tryAcquire(repository(0));
+
+        final List<Integer> admitted = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> waiting = new ArrayList<>();
+        for (final int repositoryId : new int[]{1, 1, 1, 2, 2, 3}) {
+            final Thread thread = new Thread(() -> {
+                final AdmissionController.Permit permit = admissionController.tryAcquire(repository(repositoryId));
+                admitted.add(permit != null ? repositoryId : -1);
+                if (permit != null) {
+                    permit.close();
+                }
+            });
+            thread.start();
+            waiting.add(thread);
+            // Queue the validations in a known order
+            while (admissionController.getQueued() < waiting.size()) {
+                Thread.sleep(1);
+            }
+        }
+        Assert.assertEquals(3, admissionController.getQueuedRepositories());
+
+        running.close();
+        for (final Thread thread : waiting) {
+            thread.join(10000);
+        }
+
+        Assert.assertEquals(
+            "Repositories weren't admitted in turns",
+            Arrays.asList(1, 2, 3, 1, 2, 1),
+            admitted
+        );
+        Assert.assertEquals(0, admissionController.getQueued());
+        Assert.assertEquals(0, admissionController.getActive());
+    }
+
+    @Test()
+    public void testBackgroundValidationsTakeOnlyIdleSlots() throws InterruptedException {
+        final AdmissionController admissionController = this.createAdmissionController(2, 10000);
+
+        final AdmissionController.Permit background = admissionController.tryAcquireIdle();
+        Assert.assertNotNull("Background validation didn't take a free slot", background);
+        final AdmissionController.Permit push = admissionController.tryAcquire(repository(1));
+        Assert.assertNull("Background validation took a slot beyond the limit", admissionController.tryAcquireIdle());
+
+        final Thread waiting = new Thread(() -> admissionController.tryAcquire(repository(2)).close());
+        waiting.start();
+        while (admissionController.getQueued() < 1) {
+            Thread.sleep(1);
+        }
+
+        background.close();
+        waiting.join(10000);
+        Assert.assertEquals("The waiting push wasn't admitted", 0, admissionController.getQueued());
+        Assert.assertEquals(0, this.metricsRegistry.counter(MetricsRegistry.ADMISSION_TIMEOUTS).getCount());
+
+        push.close();
+        Assert.assertEquals(0, admissionController.getActive());
+    }
+
+    @Test()
+    public void testBackgroundValidationsLeaveSlotsToWaitingOnes() throws InterruptedException {
+        final AdmissionController admissionController = this.createAdmissionController(1, 10000);
+        final AdmissionController.Permit running = admissionController.tryAcquire(repository(1));
+
+        final CountDownLatch admitted = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final Thread waiting = new Thread(() -> {
+            try (final AdmissionController.Permit permit = admissionController.tryAcquire(repository(2))) {
+                admitted.countDown();
+                finish.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+        while (admissionController.getQueued() < 1) {
+            Thread.sleep(1);
+        }
+
+        // The slot of the finished validation goes to the waiting one
+        running.close();
+        Assert.assertTrue("The waiting validation wasn't admitted", admitted.await(10, TimeUnit.SECONDS));
+        Assert.assertNull("Background validation took a busy slot", admissionController.tryAcquireIdle());
+
+        finish.countDown();
+        waiting.join(10000);
+        final AdmissionController.Permit background = admissionController.tryAcquireIdle();
+        Assert.assertNotNull("Background validation didn't take the idle slot", background);
+        background.close();
+        Assert.assertEquals(0, admissionController.getActive());
+    }
+
+    @Test()
+    public void testDisabledByDefault() {
+        final AdmissionController admissionController = new AdmissionController(
+            new PluginConfiguration(StandIns.applicationProperties(Collections.emptyMap())),
+            this.metricsRegistry
+        );
+
+        Assert.assertNotNull(admissionController.tryAcquire(repository(1)));
+        Assert.assertNotNull(admissionController.tryAcquireIdle());
+        Assert.assertEquals("The validations were limited by default", 0, admissionController.getActive());
+    }
+
+    @Test()
+    public void testUnlimited() {
+        final AdmissionController admissionController = this.createAdmissionController(0, 0);
+
+        final List<AdmissionController.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            permits.add(admissionController.tryAcquire(repository(1)));
+        }
+        Assert.assertFalse("Validation wasn't admitted without a limit", permits.contains(null));
+        Assert.assertEquals(0, admissionController.getActive());
+    }
+
+    private AdmissionController createAdmissionController(final int maxConcurrent, final long queueTimeout) {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(PluginConfiguration.ADMISSION_MAX_CONCURRENT, maxConcurrent);
+        properties.put(PluginConfiguration.ADMISSION_QUEUE_TIMEOUT, queueTimeout);
+
+        final ApplicationPropertiesService applicationPropertiesService = (ApplicationPropertiesService)
+            Proxy.newProxyInstance(
+                AdmissionControllerTest.class.getClassLoader(),
+                new Class<?>[]{ApplicationPropertiesService.class},
+                (proxy, method, args) -> {
+                    final Object value = properties.get((String) args[0]);
+                    return value != null || args.length == 1 ? value : args[1];
+                }
+            );
+
+        return new AdmissionController(new PluginConfiguration(applicationPropertiesService), this.metricsRegistry);
+    }
+
+    private static Repository repository(final int id) {
+        return (Repository) Proxy.newProxyInstance(
+            AdmissionControllerTest.class.getClassLoader(),
+            new Class<?>[]{Repository.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("getId")) {
+                    return id;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        );
+    }
+}
@@ -0,0 +1,244 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.EventStreamValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LoadValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlEngineBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class LintRulesTest {
+
+    @Test()
+    public void testDuplicateKeys() {
+        this.assertRule(
+            LintRules.DUPLICATE_KEYS,
+            new String[]{
+                "a: 1\nb: 2\n",
+                "a:\n  a: 1\nb:\n  a: 2\n",
+                "- a: 1\n- a: 2\n",
+                "{a: 1, b: 2}\n",
+                "a: 1\n---\na: 2\n",
+                // Keys of different types are different keys
+                "1: a\n'1': b\n",
+                "true: a\n\"true\": b\n",
+                "1: a\n!!str 1: b\n",
+                "1: a\n1.0: b\n",
+            },
+            new String[]{
+                "a: 1\na: 2\n",
+                "a:\n  b: 1\n  b: 2\n",
+                "{a: 1, a: 2}\n",
+                "a:\n  b: 1\nc: 2\na: 3\n",
+                // Keys of the same type and value are duplicates, however they are written
+                "1: a\n0x1: b\n",
+                "1: a\n!!int '1': b\n",
+                "~: a\nnull: b\n",
+                "yes: a\ntrue: b\n",
+                "'a': 1\na: 2\n",
+            }
+        );
+    }
+
+    @Test()
+    public void testDuplicateKeysOfYaml12() {
+        final LintRules lintRules = new LintRules(Collections.singletonList(LintRules.DUPLICATE_KEYS));
+        final ValidationEngine validationEngine =
+            new EventStreamValidationEngine(lintRules, new SnakeYamlEngineBackend());
+
+        // YAML 1.2 has no yes booleans
+        Assert.assertNull(
+            "Keys of different types were duplicates",
+            this.validate(validationEngine, "yes: a\ntrue: b\n")
+        );
+        Assert.assertNotNull(
+            "Keys of the same type weren't duplicates",
+            this.validate(validationEngine, "True: a\ntrue: b\n")
+        );
+    }
+
+    @Test()
+    public void testNoTabs() {
+        this.assertRule(
+            LintRules.NO_TABS,
+            new String[]{
+                "a: b c\n",
+                "a: \"\\t\"\n",
+            },
+            new String[]{
+                "a: b\tc\n",
+                "a: 1 \t# comment\n",
+            }
+        );
+    }
+
+    @Test()
+    public void testNoTrailingSpaces() {
+        this.assertRule(
+            LintRules.NO_TRAILING_SPACES,
+            new String[]{
+                "a: 1\nb: 2\n",
+                "a: 1\r\nb: 2\r\n",
+                "a: |\n  text\n",
+            },
+            new String[]{
+                "a: 1 \nb: 2\n",
+                "a: 1\r\nb: 2 \r\n",
+                "a: 1\nb: 2  ",
+            }
+        );
+    }
+
+    @Test()
+    public void testNoAnchors() {
+        this.assertRule(
+            LintRules.NO_ANCHORS,
+            new String[]{
+                "a: '&a'\n",
+            },
+            new String[]{
+                "a: &a 1\n",
+                "a: &a [1]\n",
+            }
+        );
+    }
+
+    @Test()
+    public void testNoAliases() {
+        this.assertRule(
+            LintRules.NO_ALIASES,
+            new String[]{
+                "a: &a 1\n",
+                "a: '*a'\n",
+            },
+            new String[]{
+                "a: &a 1\nb: *a\n",
+            }
+        );
+    }
+
+    @Test()
+    public void testMaxDepth() {
+        this.assertRule(
+            "max-depth=2",
+            new String[]{
+                "a:\n  b: 1\n",
+                "- [1, 2]\n",
+            },
+            new String[]{
+                "a:\n  b:\n    c: 1\n",
+                "- [1, [2]]\n",
+            }
+        );
+    }
+
+    @Test()
+    public void testMaxDocuments() {
+        this.assertRule(
+            "max-documents=2",
+            new String[]{
+                "a: 1\n",
+                "a: 1\n---\nb: 2\n",
+            },
+            new String[]{
+                "a: 1\n---\nb: 2\n---\nc: 3\n",
+            }
+        );
+    }
+
+    @Test()
+    public void testReportsPositionOfViolation() {
+        final ValidationFailure failure = this.validate(
+            new LoadValidationEngine(new LintRules(Collections.singletonList(LintRules.DUPLICATE_KEYS))),
+            "a: 1\n---\nb: 1\nc:\n  d: 2\n  d: 3\n"
+        );
+
+        Assert.assertNotNull("The duplicate key wasn't found", failure);
+        Assert.assertEquals("Wrong document", 2, failure.getDocument());
+        Assert.assertEquals("Wrong line", 6, failure.getLine());
+        Assert.assertEquals("Wrong column", 3, failure.getColumn());
+    }
+
+    @Test()
+    public void testParsesRules() {
+        final LintRules lintRules = new LintRules(Arrays.asList(" No-Tabs ", "max-depth = 3", "duplicate-keys"));
+
+        Assert.assertEquals("The rules aren't canonical", "duplicate-keys,max-depth=3,no-tabs", lintRules.toString());
+        Assert.assertFalse("The rules are empty", lintRules.isEmpty());
+        Assert.assertTrue("No rules aren't empty", LintRules.NONE.isEmpty());
+    }
+
+    @Test()
+    public void testRejectsInvalidRules() {
+        final String[] rules = {"no-such-rule", "max-depth", "max-depth=0", "max-documents=x", "no-tabs=1"};
+
+        for (final String rule : rules) {
+            try {
+                new LintRules(Collections.singletonList(rule));
+                Assert.fail(String.format("The invalid rule %s was accepted", rule));
+            } catch (final IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains(rule));
+            }
+        }
+    }
+
+    /**
+     * Check a rule with both validation engines
+     *
+     * @param rule       The rule
+     * @param compliant  Files keeping the rule
+     * @param violations Files breaking the rule
+     */
+    private void assertRule(final String rule, final String[] compliant, final String[] violations) {
+        final LintRules lintRules = new LintRules(Collections.singletonList(rule));
+        final ValidationEngine[] validationEngines = {
+            new EventStreamValidationEngine(lintRules),
+            new LoadValidationEngine(lintRules),
+        };
+
+        for (final ValidationEngine validationEngine : validationEngines) {
+            final String engineName = validationEngine.getClass().getSimpleName();
+
+            for (final String file : compliant) {
+                Assert.assertNull(
+                    String.format("%s rejected a file keeping %s:%n%s", engineName, rule, file),
+                    this.validate(validationEngine, file)
+                );
+            }
+
+            for (final String file : violations) {
+                final ValidationFailure failure = this.validate(validationEngine, file);
+                Assert.assertNotNull(
+                    String.format("%s accepted a file breaking %s:%n%s", engineName, rule, file),
+                    failure
+                );
+                Assert.assertTrue(
+                    String.format("%s rejected a file breaking %s for another reason: %s", engineName, rule, failure),
+                    failure.getProblem().contains(String.format("(%s)", rule.replaceAll("=.*", "")))
+                );
+                // A file breaking a rule is still well-formed
+                Assert.assertNull(
+                    String.format("A file breaking %s is not valid YAML:%n%s", rule, file),
+                    this.validate(new EventStreamValidationEngine(LintRules.NONE), file)
+                );
+            }
+        }
+    }
+
+    private ValidationFailure validate(final ValidationEngine validationEngine, final String file) {
+        try {
+            validationEngine.validate(new StringReader(file), ValidationBudget.unlimited());
+            return null;
+        } catch (final InvalidDocumentException e) {
+            return ValidationFailure.fromException("file.yaml", null, e);
+        }
+    }
+}
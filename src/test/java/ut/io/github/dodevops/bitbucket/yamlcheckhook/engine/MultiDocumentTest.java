@@ -0,0 +1,126 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.EventStreamValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LoadValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlEngineBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+public class MultiDocumentTest {
+
+    private final ValidationEngine[] validationEngines = {
+        new EventStreamValidationEngine(LintRules.NONE),
+        new LoadValidationEngine(LintRules.NONE),
+        new EventStreamValidationEngine(LintRules.NONE, new SnakeYamlEngineBackend()),
+        new LoadValidationEngine(LintRules.NONE, new SnakeYamlEngineBackend()),
+    };
+
+    @Test()
+    public void testAcceptsSeveralDocuments() {
+        final String[] files = {
+            "a: 1\n---\nb: 2\n",
+            "---\na: 1\n...\n---\n- b\n- c\n",
+            "a: &x 1\n---\nb: &x 2\nc: *x\n",
+            "--- text\n--- [1, 2]\n--- {a: b}\n",
+        };
+        for (final ValidationEngine validationEngine : this.validationEngines) {
+            for (final String file : files) {
+                Assert.assertNull(
+                    String.format("%s rejected a valid file:%n%s", this.getName(validationEngine), file),
+                    this.validate(validationEngine, file)
+                );
+            }
+        }
+    }
+
+    @Test()
+    public void testLocatesErrorInFirstDocument() {
+        this.assertFailure("a: [1\nb: 2\n---\nc: 3\n", 1, 2, 2);
+    }
+
+    @Test()
+    public void testLocatesErrorInLaterDocument() {
+        // Parser error
+        this.assertFailure("a: 1\n---\nb: 2\n---\nc: [1\nd: 2\n", 3, 6, 2);
+        // Scanner error
+        this.assertFailure("a: 1\n---\nb: 2\n  c: 3\n", 2, 4, 4);
+        // Composer error: anchors don't reach into the next document
+        this.assertFailure("a: &x 1\n---\nb: *x\n", 2, 3, 4);
+    }
+
+    @Test()
+    public void testNamesDocumentInMessage() {
+        final ValidationFailure failure = this.validate(this.validationEngines[0], "a: 1\n---\nb: [1\nc: 2\n");
+
+        Assert.assertNotNull("The invalid file was accepted", failure);
+        Assert.assertTrue(failure.getMessage(), failure.getMessage().startsWith("in document 2:"));
+        Assert.assertEquals("file.yaml:4:2 (document 2): " + failure.getProblem(), failure.toString());
+    }
+
+    @Test()
+    public void testOmitsDocumentOfSingleDocument() {
+        final ValidationFailure failure = this.validate(this.validationEngines[0], "b: [1\nc: 2\n");
+
+        Assert.assertNotNull("The invalid file was accepted", failure);
+        Assert.assertFalse(failure.getMessage(), failure.getMessage().contains("document"));
+        Assert.assertEquals("file.yaml:2:2: " + failure.getProblem(), failure.toString());
+    }
+
+    @Test()
+    public void testRejectsConstructorErrorInLaterDocument() {
+        final String[] files = {
+            "a: 1\n---\nb: !!int x\n",
+            "a: 1\n---\nb: !!float x\n",
+            "a: 1\n---\nb: !!binary '%'\n",
+            "a: 1\n---\nb: !!map x\n",
+            "a: 1\n---\nb: !!timestamp x\n",
+            "a: 1\n---\nb: !!unknown x\n",
+        };
+        for (final String file : files) {
+            final ValidationFailure failure = this.validate(new LoadValidationEngine(LintRules.NONE), file);
+
+            Assert.assertNotNull(String.format("The invalid value was accepted:%n%s", file), failure);
+            Assert.assertEquals(String.format("Wrong document:%n%s", file), 2, failure.getDocument());
+        }
+    }
+
+    /**
+     * Check that every engine rejects the file at the given location
+     *
+     * @param file     The invalid file
+     * @param document The number of the invalid document
+     * @param line     The line of the problem
+     * @param column   The column of the problem
+     */
+    private void assertFailure(final String file, final int document, final int line, final int column) {
+        for (final ValidationEngine validationEngine : this.validationEngines) {
+            final String name = this.getName(validationEngine);
+            final ValidationFailure failure = this.validate(validationEngine, file);
+
+            Assert.assertNotNull(String.format("%s accepted an invalid file:%n%s", name, file), failure);
+            Assert.assertEquals(String.format("Wrong document from %s", name), document, failure.getDocument());
+            Assert.assertEquals(String.format("Wrong line from %s", name), line, failure.getLine());
+            Assert.assertEquals(String.format("Wrong column from %s", name), column, failure.getColumn());
+        }
+    }
+
+    private String getName(final ValidationEngine validationEngine) {
+        return validationEngine.getClass().getSimpleName() + "@" + System.identityHashCode(validationEngine);
+    }
+
+    private ValidationFailure validate(final ValidationEngine validationEngine, final String file) {
+        try {
+            validationEngine.validate(new StringReader(file), ValidationBudget.unlimited());
+            return null;
+        } catch (final InvalidDocumentException e) {
+            return ValidationFailure.fromException("file.yaml", null, e);
+        }
+    }
+}
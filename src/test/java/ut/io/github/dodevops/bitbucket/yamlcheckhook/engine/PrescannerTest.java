@@ -0,0 +1,216 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.EventStreamValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.Prescanner;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class PrescannerTest {
+
+    private static final String[] SCALARS = {
+        "value", "some text here", "8080", "-3", "true", "~", "'quoted'", "'it''s'", "\"tab\\tand \\u00e9\"",
+        "http://example.com:8080/path", "a#b", "Grüße", "a  # comment", "", "x: y", "-", ":x", "'x' y", "[a]",
+        "{a: b}", "|", "&anchor", "*alias", "!tag", "\"bad \\q\"", "'open", "a\tb", "\u2028", "\u00a0x"
+    };
+
+    private static final String[] KEYS = {
+        "name", "port", "my key", "'quoted key'", "\"double\"", "x-y", "a.b", "ключ", "k:v", "- k", "? k", "#k", "",
+        "<<", "..."
+    };
+
+    private final Prescanner prescanner = new Prescanner();
+
+    private final ValidationEngine parser = new EventStreamValidationEngine(LintRules.NONE);
+
+    @Test()
+    public void testAcceptsSimpleFiles() {
+        final String[] files = {
+            "",
+            "# only a comment\n",
+            "server:\n  port: 8080\n  context-path: /app\nlogging:\n  level:\n    root: INFO\n",
+            "features:\n  - name: search\n    enabled: true\n  - name: 'export'\n    enabled: false\n",
+            "items:\n- a\n- b\nother: \"c\" # comment\n",
+            "\ufeffkey: value\r\nlist:\r\n  -\r\n  - - nested\r\n",
+            "  indented: root\n  second: key\n",
+            "description: Grüße aus Köln\n",
+        };
+        for (final String file : files) {
+            Assert.assertTrue(String.format("Simple file not accepted:%n%s", file), this.isAccepted(file, 0));
+            Assert.assertTrue(String.format("Accepted file is invalid:%n%s", file), this.isParsed(file, 0));
+        }
+    }
+
+    @Test()
+    public void testDefersOtherSyntax() {
+        final String[] files = {
+            "list: [a, b]\n",
+            "map: {a: b}\n",
+            "text: |\n  block\n",
+            "base: &base\n  a: 1\nderived: *base\n",
+            "value: !!str 1\n",
+            "a: 1\n---\nb: 2\n",
+            "%YAML 1.1\n---\na: 1\n",
+            "multi: line\n  plain scalar\n",
+            "quoted: 'multi\n  line'\n",
+            "tab:\tvalue\n",
+            "? complex\n: key\n",
+            "emoji: \uD83D\uDE00\n",
+        };
+        for (final String file : files) {
+            Assert.assertFalse(String.format("File with other syntax accepted:%n%s", file), this.isAccepted(file, 0));
+        }
+    }
+
+    @Test()
+    public void testNeverAcceptsInvalidFiles() {
+        final String[] files = {
+            "a: b: c\n",
+            "a: 1\n b: 2\n",
+            "- a\nb: c\n",
+            "a:\n  - b\n c: d\n",
+            "a: 'unterminated\n",
+            "a: \"bad \\q escape\"\n",
+            "a: 'x' y\n",
+            "a: 1\r",
+            "a: \u0001\n",
+            "a: \u0085\n",
+            "key: -\n",
+        };
+        for (final String file : files) {
+            Assert.assertFalse(String.format("Invalid file accepted:%n%s", file), this.isAccepted(file, 0));
+        }
+    }
+
+    @Test()
+    public void testRespectsMaxDepth() {
+        final String file = "a:\n  b:\n    c: d\n";
+        Assert.assertTrue("File within the depth limit not accepted", this.isAccepted(file, 3));
+        Assert.assertFalse("File beyond the depth limit accepted", this.isAccepted(file, 2));
+    }
+
+    /**
+     * Generate random block-style files, partly with a mutated byte, and check that every file accepted by the
+     * pre-scanner is accepted by the parser as well
+     */
+    @Test()
+    public void testDifferentialAgainstParser() {
+        final Random random = new Random(4711);
+        int accepted = 0;
+
+        for (int i = 0; i < 50000; i++) {
+            final StringBuilder content = new StringBuilder();
+            this.appendNode(content, random, random.nextInt(4) == 0 ? random.nextInt(3) : 0, 0, false);
+
+            byte[] file = content.toString().getBytes(StandardCharsets.UTF_8);
+            if (random.nextInt(3) == 0) {
+                file = mutate(file, random);
+            }
+            final int maxDepth = random.nextInt(4) == 0 ? 1 + random.nextInt(4) : 0;
+
+            if (this.prescanner.isValid(file, 0, file.length, maxDepth)) {
+                accepted++;
+                Assert.assertTrue(
+                    String.format("Accepted file is invalid:%n%s", new String(file, StandardCharsets.UTF_8)),
+                    this.isParsed(file, maxDepth)
+                );
+            }
+        }
+
+        Assert.assertTrue(String.format("Only %d files were accepted", accepted), accepted > 5000);
+    }
+
+    private void appendNode(
+        final StringBuilder content,
+        final Random random,
+        final int indent,
+        final int depth,
+        final boolean afterDash
+    )
+    {
+        final int kind = depth > 5 ? 2 : random.nextInt(3);
+        final int entries = 1 + random.nextInt(4);
+
+        for (int i = 0; i < (kind == 2 ? 1 : entries); i++) {
+            if (!afterDash || i > 0) {
+                indent(content, indent);
+            }
+            if (kind == 2) {
+                content.append(SCALARS[random.nextInt(SCALARS.length)]).append('\n');
+                break;
+            }
+
+            content.append(kind == 0 ? KEYS[random.nextInt(KEYS.length)] + ":" : "-");
+            if (random.nextBoolean()) {
+                content.append(' ').append(SCALARS[random.nextInt(SCALARS.length)]).append('\n');
+            } else if (kind == 1 && random.nextBoolean()) {
+                content.append(' ');
+                this.appendNode(content, random, indent + 2, depth + 1, true);
+            } else {
+                content.append('\n');
+                final int childIndent = random.nextInt(5) == 0 ? indent : indent + 1 + random.nextInt(3);
+                this.appendNode(content, random, childIndent, depth + 1, false);
+            }
+        }
+
+        if (random.nextInt(6) == 0) {
+            indent(content, random.nextInt(6));
+            content.append("# comment\n");
+        }
+    }
+
+    private static byte[] mutate(final byte[] file, final Random random) {
+        if (file.length < 2) {
+            return file;
+        }
+        final byte[] replacements = {' ', '\n', '\r', '\t', ':', '-', '#', '\'', '"', 'x', (byte) 0xc3};
+        final int position = random.nextInt(file.length);
+
+        if (random.nextBoolean()) {
+            final byte[] mutated = file.clone();
+            mutated[position] = replacements[random.nextInt(replacements.length)];
+            return mutated;
+        }
+
+        final byte[] shortened = new byte[file.length - 1];
+        System.arraycopy(file, 0, shortened, 0, position);
+        System.arraycopy(file, position + 1, shortened, position, file.length - position - 1);
+        return shortened;
+    }
+
+    private static void indent(final StringBuilder content, final int indent) {
+        for (int i = 0; i < indent; i++) {
+            content.append(' ');
+        }
+    }
+
+    private boolean isAccepted(final String file, final int maxDepth) {
+        final byte[] content = file.getBytes(StandardCharsets.UTF_8);
+        return this.prescanner.isValid(content, 0, content.length, maxDepth);
+    }
+
+    private boolean isParsed(final String file, final int maxDepth) {
+        return this.isParsed(file.getBytes(StandardCharsets.UTF_8), maxDepth);
+    }
+
+    private boolean isParsed(final byte[] file, final int maxDepth) {
+        try {
+            this.parser.validate(
+                new UnicodeReader(new ByteArrayInputStream(file)),
+                new ValidationBudget(0, 0, maxDepth, 0, 0)
+            );
+            return true;
+        } catch (final YAMLException | BudgetExceededException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SchemaValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.SchemaViolationException;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.CompiledSchema;
+import org.junit.Assert;
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.StringReader;
+
+public class SchemaValidationEngineTest {
+
+    private static final String SCHEMA = "type: object\n" +
+        "required: [name, spec]\n" +
+        "properties:\n" +
+        "  name:\n" +
+        "    type: string\n" +
+        "  spec:\n" +
+        "    type: object\n" +
+        "    properties:\n" +
+        "      port:\n" +
+        "        $ref: '#/definitions/port'\n" +
+        "definitions:\n" +
+        "  port:\n" +
+        "    type: integer\n" +
+        "    minimum: 1\n" +
+        "    maximum: 65535\n";
+
+    private final SchemaValidationEngine engine = new SchemaValidationEngine(
+        CompiledSchema.compile("blob-1", "schema.yaml", new Yaml().load(SCHEMA)),
+        LintRules.NONE
+    );
+
+    @Test()
+    public void testAcceptsMatchingDocument() throws InvalidDocumentException {
+        this.engine.validate(
+            new StringReader("name: web\nspec:\n  port: 8080\n"),
+            ValidationBudget.unlimited()
+        );
+    }
+
+    @Test()
+    public void testRejectsWrongType() {
+        final SchemaViolationException violation = this.assertViolation("name: [web]\nspec: {}\n");
+
+        Assert.assertEquals("$.name: expected string, but found array", violation.getProblem());
+        Assert.assertEquals("Wrong line of the violation", 0, violation.getProblemMark().getLine());
+    }
+
+    @Test()
+    public void testRejectsMissingRequiredProperty() {
+        final SchemaViolationException violation = this.assertViolation("name: web\n");
+
+        Assert.assertEquals("$: is missing the required property spec", violation.getProblem());
+    }
+
+    @Test()
+    public void testFollowsLocalReference() {
+        final SchemaViolationException violation = this.assertViolation("name: web\nspec:\n  port: 70000\n");
+
+        Assert.assertEquals("$.spec.port: must be at most 65535", violation.getProblem());
+        Assert.assertEquals("Wrong line of the violation", 2, violation.getProblemMark().getLine());
+        Assert.assertTrue(
+            "The message doesn't show the line",
+            violation.getMessage().contains("line 3")
+        );
+    }
+
+    @Test()
+    public void testChecksEveryDocument() {
+        final InvalidDocumentException e = this.assertInvalid(
+            "name: web\nspec: {}\n---\nname: db\nspec:\n  port: web\n"
+        );
+
+        Assert.assertEquals("Wrong document reported", 2, e.getDocument());
+        Assert.assertEquals(
+            "$.spec.port: expected integer, but found string",
+            ((SchemaViolationException) e.getCause()).getProblem()
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnresolvableReference() {
+        CompiledSchema.compile("blob-2", "schema.yaml", new Yaml().load("$ref: '#/definitions/missing'\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsRemoteReference() {
+        CompiledSchema.compile("blob-3", "schema.yaml", new Yaml().load("$ref: 'https://example.com/schema.json'\n"));
+    }
+
+    private SchemaViolationException assertViolation(final String content) {
+        final InvalidDocumentException e = this.assertInvalid(content);
+        Assert.assertTrue(
+            String.format("The document was rejected for another reason: %s", e.getMessage()),
+            e.getCause() instanceof SchemaViolationException
+        );
+        return (SchemaViolationException) e.getCause();
+    }
+
+    private InvalidDocumentException assertInvalid(final String content) {
+        try {
+            this.engine.validate(new StringReader(content), ValidationBudget.unlimited());
+        } catch (final InvalidDocumentException e) {
+            return e;
+        }
+        Assert.fail("The document not matching the schema was accepted");
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.EventStreamValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SplittingValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidDocumentException;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+public class SplittingValidationEngineTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private final ValidationEngine parser = new EventStreamValidationEngine(LintRules.NONE);
+
+    // Split at every document marker
+    private final ValidationEngine splittingParser = new SplittingValidationEngine(
+        this.parser,
+        LintRules.NONE,
+        1,
+        this.pool
+    );
+
+    @After
+    public void destroy() {
+        this.pool.shutdownNow();
+    }
+
+    @Test()
+    public void testAcceptsValidFiles() {
+        final String[] files = {
+            "a: 1\n---\nb: 2\n---\nc: 3\n",
+            "---\na: 1\n---\nb: 2\n...\n",
+            "a: |\n  ---\n  text\n---\nb: 1\n",
+            "a: >\n  folded\n---\nb: \"---\"\n",
+            "a: 1\n...\n%YAML 1.1\n---\nb: 2\n",
+            "a: &x 1\nb: *x\n---\nc: &x 2\nd: *x\n",
+            "a: 1\r\n---\r\nb: 2\r\n",
+            "# comment\n---\n--- \n---\n",
+        };
+        for (final String file : files) {
+            Assert.assertNull(String.format("Valid file rejected:%n%s", file), this.validate(this.parser, file));
+            Assert.assertNull(
+                String.format("Valid file rejected after splitting:%n%s", file),
+                this.validate(this.splittingParser, file)
+            );
+        }
+    }
+
+    @Test()
+    public void testReportsTheSameFailures() {
+        final String[] files = {
+            "a: 1\n---\nb: 2\n---\nc: d: e\n",
+            "a: |\n  text\n---\nb: [1\n",
+            "a: [1,\n---\n]\n",
+            "a: {b: 1,\n---\nc: 2}\n",
+            "a: \"open\n---\nb: 1\"\n",
+            "a: 'open\n---\nb: 1'\n",
+            "a: &x 1\n---\nb: *x\n",
+            "a: b: c\n---\nd: e: f\n",
+            "a: 1\r\n---\r\nb: [\r\n",
+            "%YAML 1.1\n---\na: 1\n---\n%TAG ! tag:example.com,2000:\n",
+        };
+        for (final String file : files) {
+            final ValidationFailure expected = this.validate(this.parser, file);
+            final ValidationFailure actual = this.validate(this.splittingParser, file);
+            Assert.assertNotNull(String.format("Invalid file accepted:%n%s", file), expected);
+            Assert.assertNotNull(String.format("Invalid file accepted after splitting:%n%s", file), actual);
+            Assert.assertEquals(
+                String.format("Different failure after splitting:%n%s", file),
+                expected.toString(),
+                actual.toString()
+            );
+        }
+    }
+
+    private ValidationFailure validate(final ValidationEngine validationEngine, final String file) {
+        try {
+            validationEngine.validate(new StringReader(file), ValidationBudget.unlimited());
+            return null;
+        } catch (final InvalidDocumentException e) {
+            return ValidationFailure.fromException("file.yaml", null, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.engine;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.EventStreamValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LintRules;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.LoadValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationEngine;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.concurrent.CancellationException;
+
+public class ValidationBudgetTest {
+
+    private final ValidationEngine[] validationEngines = {
+        new EventStreamValidationEngine(LintRules.NONE),
+        new LoadValidationEngine(LintRules.NONE)
+    };
+
+    @Test()
+    public void testLimitsFileSize() {
+        final ValidationBudget budget = new ValidationBudget(10, 0, 0, 0, 0);
+
+        budget.addBytes(10, 10);
+        try {
+            budget.addBytes(11, 1);
+            Assert.fail("A file larger than the limit was accepted");
+        } catch (final BudgetExceededException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("10 bytes"));
+        }
+    }
+
+    @Test()
+    public void testLimitsTotalSizeOfAllFiles() {
+        final ValidationBudget budget = new ValidationBudget(0, 15, 0, 0, 0);
+
+        budget.addBytes(10, 10);
+        try {
+            budget.addBytes(10, 10);
+            Assert.fail("Files larger than the limit together were accepted");
+        } catch (final BudgetExceededException e) {
+            Assert.assertEquals("The bytes of both files weren't counted", 20, budget.getTotalBytes());
+        }
+    }
+
+    @Test()
+    public void testLimitsDepth() {
+        final String file = "a:\n  b:\n    c: [1, {d: 2}]\n";
+
+        for (final ValidationEngine validationEngine : this.validationEngines) {
+            Assert.assertTrue(
+                String.format("Depth within the limit rejected by %s", validationEngine.getClass().getSimpleName()),
+                this.isWithinBudget(validationEngine, file, new ValidationBudget(0, 0, 5, 0, 0))
+            );
+            Assert.assertFalse(
+                String.format("Depth over the limit accepted by %s", validationEngine.getClass().getSimpleName()),
+                this.isWithinBudget(validationEngine, file, new ValidationBudget(0, 0, 4, 0, 0))
+            );
+        }
+    }
+
+    @Test()
+    public void testLimitsAliasesToCollections() {
+        // The classic billion laughs, which only needs a few aliases per level
+        final String file = "a: &a [x, x]\nb: &b [*a, *a]\nc: &c [*b, *b]\n";
+
+        for (final ValidationEngine validationEngine : this.validationEngines) {
+            Assert.assertTrue(
+                String.format("Aliases within the limit rejected by %s", validationEngine.getClass().getSimpleName()),
+                this.isWithinBudget(validationEngine, file, new ValidationBudget(0, 0, 0, 4, 0))
+            );
+            Assert.assertFalse(
+                String.format("Aliases over the limit accepted by %s", validationEngine.getClass().getSimpleName()),
+                this.isWithinBudget(validationEngine, file, new ValidationBudget(0, 0, 0, 3, 0))
+            );
+        }
+    }
+
+    @Test()
+    public void testDoesNotCountAliasesToScalars() {
+        final String file = "a: &a x\nb: [*a, *a, *a, *a]\n";
+
+        for (final ValidationEngine validationEngine : this.validationEngines) {
+            Assert.assertTrue(
+                String.format("Aliases to a scalar counted by %s", validationEngine.getClass().getSimpleName()),
+                this.isWithinBudget(validationEngine, file, new ValidationBudget(0, 0, 0, 1, 0))
+            );
+        }
+    }
+
+    @Test()
+    public void testLimitsDuration() throws InterruptedException {
+        final ValidationBudget budget = new ValidationBudget(0, 0, 0, 0, 1);
+
+        Thread.sleep(10);
+        try {
+            budget.checkDeadline();
+            Assert.fail("The passed deadline wasn't noticed");
+        } catch (final BudgetExceededException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("longer than allowed"));
+        }
+    }
+
+    @Test()
+    public void testStopsWhenInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            ValidationBudget.unlimited().checkDeadline();
+            Assert.fail("The interruption wasn't noticed");
+        } catch (final CancellationException e) {
+            Assert.assertTrue("The interruption was cleared", Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private boolean isWithinBudget(
+        final ValidationEngine validationEngine,
+        final String file,
+        final ValidationBudget budget
+    )
+    {
+        try {
+            validationEngine.validate(new StringReader(file), budget);
+            return true;
+        } catch (final BudgetExceededException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.filter;
+
+import com.atlassian.bitbucket.setting.SettingsValidationErrors;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.HookSettings;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilter;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PathFilterTest {
+
+    @Test()
+    public void testDefaultFilterSelectsYamlFiles() {
+        this.assertMatches(PathFilter.DEFAULT, "a.yaml", "deep/dir/a.yml", "UPPER.YAML");
+        this.assertDoesNotMatch(PathFilter.DEFAULT, "a.json", "yaml", "a.yaml.bak", "dir.yaml/a.txt");
+    }
+
+    @Test()
+    public void testNormalizesExtensions() {
+        final PathFilter pathFilter = filter(
+            Collections.emptyList(),
+            Collections.emptyList(),
+            Arrays.asList(" .EYAML ", "yaml.tpl", "..clang-format")
+        );
+
+        this.assertMatches(pathFilter, "a.yaml", "keys.eyaml", "KEYS.EYaml", "chart/values.yaml.tpl", ".clang-format");
+        this.assertDoesNotMatch(pathFilter, "a.tpl", "a.eyaml.bak");
+    }
+
+    @Test()
+    public void testExtensionIsAlwaysRequired() {
+        final PathFilter pathFilter = filter(
+            Collections.singletonList("config/**"),
+            Collections.emptyList(),
+            Collections.emptyList()
+        );
+
+        this.assertMatches(pathFilter, "config/a.yaml");
+        this.assertDoesNotMatch(pathFilter, "config/a.json", "config/README");
+    }
+
+    @Test()
+    public void testSingleSegmentWildcards() {
+        final PathFilter pathFilter = filter(
+            Arrays.asList("config/*.yaml", "env-?/values.yaml"),
+            Collections.emptyList(),
+            Collections.emptyList()
+        );
+
+        this.assertMatches(pathFilter, "config/a.yaml", "config/.yaml", "env-1/values.yaml", "env-x/values.yaml");
+        this.assertDoesNotMatch(
+            pathFilter,
+            "config/sub/a.yaml",
+            "other/config/a.yaml",
+            "env-10/values.yaml",
+            "env-/values.yaml"
+        );
+    }
+
+    @Test()
+    public void testAnySegments() {
+        final PathFilter pathFilter = filter(
+            Arrays.asList("k8s/**/deployment.yaml", "**/helm/*.yaml"),
+            Collections.emptyList(),
+            Collections.emptyList()
+        );
+
+        this.assertMatches(
+            pathFilter,
+            "k8s/deployment.yaml",
+            "k8s/a/b/c/deployment.yaml",
+            "helm/values.yaml",
+            "a/b/helm/values.yaml"
+        );
+        this.assertDoesNotMatch(pathFilter, "k8s/a/service.yaml", "x/k8s/deployment.yaml", "helm/a/values.yaml");
+    }
+
+    @Test()
+    public void testGlobsWithoutSlashMatchAtAnyDepth() {
+        final PathFilter pathFilter = filter(
+            Collections.emptyList(),
+            Arrays.asList("*.gen.yaml", "/root-only.yaml"),
+            Collections.emptyList()
+        );
+
+        this.assertDoesNotMatch(pathFilter, "a.gen.yaml", "deep/dir/a.gen.yaml", "root-only.yaml");
+        this.assertMatches(pathFilter, "a.yaml", "dir/root-only.yaml");
+    }
+
+    @Test()
+    public void testDirectoriesMatchEverythingBelow() {
+        final PathFilter pathFilter = filter(
+            Collections.emptyList(),
+            Arrays.asList("vendor/", "/build"),
+            Collections.emptyList()
+        );
+
+        this.assertDoesNotMatch(pathFilter, "vendor/a.yaml", "src/vendor/lib/a.yaml", "build/out/a.yaml");
+        this.assertMatches(pathFilter, "vendors/a.yaml", "src/build/a.yaml", "vendor.yaml");
+    }
+
+    @Test()
+    public void testExcludesOverrideIncludes() {
+        final PathFilter pathFilter = filter(
+            Collections.singletonList("config/**"),
+            Arrays.asList("config/generated/", "broken-*.yaml"),
+            Collections.emptyList()
+        );
+
+        this.assertMatches(pathFilter, "config/a.yaml", "config/sub/b.yaml");
+        this.assertDoesNotMatch(
+            pathFilter,
+            "config/generated/a.yaml",
+            "config/sub/broken-1.yaml",
+            "other/a.yaml"
+        );
+    }
+
+    @Test()
+    public void testValidateRejectsInvalidSettings() {
+        final Map<String, String> values = new HashMap<>();
+        values.put(HookSettings.INCLUDES, "config/**\nconfig/a**b/*.yaml");
+        values.put(HookSettings.EXCLUDES, "/\n# a comment\nvendor/");
+        values.put(HookSettings.EXTENSIONS, "eyaml, a/b");
+        final Map<String, String> errors = new HashMap<>();
+
+        new PathFilterFactory().validate(StandIns.settings(values), errors(errors));
+
+        Assert.assertTrue(errors.toString(), errors.get(HookSettings.INCLUDES).contains("a**b"));
+        Assert.assertTrue(errors.toString(), errors.get(HookSettings.EXCLUDES).contains("matches nothing"));
+        Assert.assertTrue(errors.toString(), errors.get(HookSettings.EXTENSIONS).contains("a/b"));
+    }
+
+    @Test()
+    public void testValidateAcceptsValidSettings() {
+        final Map<String, String> values = new HashMap<>();
+        values.put(HookSettings.INCLUDES, "config/**\n*.yaml\nenv-?/");
+        values.put(HookSettings.EXCLUDES, "vendor/");
+        values.put(HookSettings.EXTENSIONS, "eyaml, .yaml.tpl");
+        final Map<String, String> errors = new HashMap<>();
+
+        new PathFilterFactory().validate(StandIns.settings(values), errors(errors));
+
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    private void assertMatches(final PathFilter pathFilter, final String... paths) {
+        for (final String path : paths) {
+            Assert.assertTrue(String.format("%s wasn't selected", path), pathFilter.matches(path));
+        }
+    }
+
+    private void assertDoesNotMatch(final PathFilter pathFilter, final String... paths) {
+        for (final String path : paths) {
+            Assert.assertFalse(String.format("%s was selected", path), pathFilter.matches(path));
+        }
+    }
+
+    private static PathFilter filter(
+        final List<String> includes,
+        final List<String> excludes,
+        final List<String> extensions
+    )
+    {
+        return new PathFilter(includes, excludes, extensions);
+    }
+
+    private static SettingsValidationErrors errors(final Map<String, String> errors) {
+        return StandIns.proxy(SettingsValidationErrors.class, "errors", (proxy, method, args) -> {
+            if (method.getName().equals("addFieldError")) {
+                errors.merge((String) args[0], (String) args[1], (first, second) -> first + "\n" + second);
+                return null;
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+}
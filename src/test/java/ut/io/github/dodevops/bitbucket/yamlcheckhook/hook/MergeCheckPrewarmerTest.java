@@ -0,0 +1,355 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.hook;
+
+import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.commit.CommitService;
+import com.atlassian.bitbucket.event.pull.PullRequestOpenedEvent;
+import com.atlassian.bitbucket.hook.repository.PreRepositoryHookContext;
+import com.atlassian.bitbucket.hook.repository.PullRequestMergeHookRequest;
+import com.atlassian.bitbucket.hook.repository.RepositoryHook;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookService;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookSettings;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestParticipant;
+import com.atlassian.bitbucket.pull.PullRequestRef;
+import com.atlassian.bitbucket.pull.PullRequestService;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.user.ApplicationUser;
+import com.atlassian.bitbucket.util.PageImpl;
+import com.atlassian.bitbucket.util.PageRequest;
+import com.atlassian.event.api.EventPublisher;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.MergeCheckResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.PullRequestCheckpointStore;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.ValidationExecutor;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.MergeCheckPrewarmer;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.PullRequestDecliner;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.PullRequestHook;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ParserBackendFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.PullRequestValidator;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationServiceInterface;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.YamlFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MergeCheckPrewarmerTest {
+
+    private static final Repository REPOSITORY = StandIns.repository(1);
+
+    private static final Settings SETTINGS = StandIns.settings(Collections.emptyMap());
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    private final AtomicInteger validations = new AtomicInteger();
+
+    // Validations wait for this latch, so the background thread can be kept busy
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private boolean invalid = false;
+
+    private PluginConfiguration pluginConfiguration = null;
+
+    private ValidationExecutor validationExecutor = null;
+
+    private MergeCheckResultCache mergeCheckResultCache = null;
+
+    private PullRequestValidator pullRequestValidator = null;
+
+    private AdmissionController admissionController = null;
+
+    private MergeCheckPrewarmer mergeCheckPrewarmer = null;
+
+    @After
+    public void destroy() {
+        this.released.countDown();
+        if (this.validationExecutor != null) {
+            this.validationExecutor.destroy();
+        }
+    }
+
+    @Test()
+    public void testMergeCheckUsesPrewarmedResult() throws InterruptedException {
+        this.createPrewarmer(Collections.emptyMap());
+        this.released.countDown();
+
+        this.prewarm(this.pullRequest(1));
+
+        Assert.assertEquals("The pull request wasn't validated", 1, this.validations.get());
+        Assert.assertEquals(1, this.metricsRegistry.counter(MetricsRegistry.PREWARM_COMPLETED).getCount());
+
+        final RepositoryHookResult result = this.createPullRequestHook().preUpdate(
+            this.hookContext(SETTINGS),
+            this.mergeHookRequest(this.pullRequest(1))
+        );
+
+        Assert.assertTrue("The pull request wasn't accepted", result.isAccepted());
+        Assert.assertEquals("The merge check validated the pull request again", 1, this.validations.get());
+        Assert.assertEquals("The prewarmed result wasn't hit", 1, this.mergeCheckResultCache.getHits());
+    }
+
+    @Test()
+    public void testDoesNotCacheInvalidPullRequest() throws InterruptedException {
+        this.createPrewarmer(Collections.emptyMap());
+        this.released.countDown();
+        this.invalid = true;
+
+        this.prewarm(this.pullRequest(1));
+
+        Assert.assertEquals("The pull request wasn't validated", 1, this.validations.get());
+        Assert.assertNull(
+            "The result of an invalid pull request was prepared",
+            this.mergeCheckResultCache.get(this.pullRequest(1), SETTINGS)
+        );
+        Assert.assertEquals(0, this.metricsRegistry.counter(MetricsRegistry.PREWARM_COMPLETED).getCount());
+    }
+
+    @Test()
+    public void testDropsPullRequestWhenQueueIsFull() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(PluginConfiguration.PREWARM_THREADS, "1");
+        properties.put(PluginConfiguration.PREWARM_QUEUE_SIZE, "1");
+        this.createPrewarmer(properties);
+
+        // The first pull request keeps the only thread busy, the second one fills the queue
+        this.mergeCheckPrewarmer.onPullRequestOpened(new PullRequestOpenedEvent(this, this.pullRequest(1)));
+        this.mergeCheckPrewarmer.onPullRequestOpened(new PullRequestOpenedEvent(this, this.pullRequest(2)));
+        this.mergeCheckPrewarmer.onPullRequestOpened(new PullRequestOpenedEvent(this, this.pullRequest(3)));
+
+        Assert.assertEquals(2, this.metricsRegistry.counter(MetricsRegistry.PREWARM_SCHEDULED).getCount());
+        Assert.assertEquals(
+            "The pull request wasn't dropped",
+            1,
+            this.metricsRegistry.counter(MetricsRegistry.PREWARM_DROPPED).getCount()
+        );
+    }
+
+    @Test()
+    public void testLeavesPullRequestToMergeCheckWhenBusy() throws InterruptedException {
+        this.createPrewarmer(Collections.singletonMap(PluginConfiguration.ADMISSION_MAX_CONCURRENT, "1"));
+        this.released.countDown();
+
+        // A push takes the only slot
+        try (final AdmissionController.Permit push = this.admissionController.tryAcquire(REPOSITORY)) {
+            Assert.assertNotNull(push);
+            this.prewarm(this.pullRequest(1));
+        }
+
+        Assert.assertEquals("The pull request was validated without a free slot", 0, this.validations.get());
+        Assert.assertEquals(1, this.metricsRegistry.counter(MetricsRegistry.PREWARM_DROPPED).getCount());
+        Assert.assertEquals("The background validation waited for a slot", 0, this.admissionController.getQueued());
+        Assert.assertNull(
+            "The result of a pull request, that wasn't validated, was prepared",
+            this.mergeCheckResultCache.get(this.pullRequest(1), SETTINGS)
+        );
+    }
+
+    /**
+     * Open a pull request and wait until the background thread prepared it
+     *
+     * @param pullRequest The pull request
+     * @throws InterruptedException The test was interrupted
+     */
+    private void prewarm(final PullRequest pullRequest) throws InterruptedException {
+        this.mergeCheckPrewarmer.onPullRequestOpened(new PullRequestOpenedEvent(this, pullRequest));
+
+        // The background tasks run one after the other
+        final CountDownLatch done = new CountDownLatch(1);
+        this.validationExecutor.submitBackground(done::countDown);
+        Assert.assertTrue("The pull request wasn't prepared in time", done.await(10, TimeUnit.SECONDS));
+    }
+
+    private void createPrewarmer(final Map<String, String> properties) {
+        final Map<String, String> pluginProperties = new HashMap<>();
+        pluginProperties.put(PluginConfiguration.PREWARM_THREADS, "1");
+        pluginProperties.putAll(properties);
+
+        this.pluginConfiguration = new PluginConfiguration(StandIns.applicationProperties(pluginProperties));
+        this.validationExecutor = new ValidationExecutor(this.pluginConfiguration);
+        this.mergeCheckResultCache = new MergeCheckResultCache(this.pluginConfiguration, this.metricsRegistry);
+        this.admissionController = new AdmissionController(this.pluginConfiguration, this.metricsRegistry);
+        this.pullRequestValidator = new PullRequestValidator(
+            this.commitService(),
+            this.validationService(),
+            new PathFilterFactory(),
+            new ParserBackendFactory(this.pluginConfiguration),
+            new PullRequestCheckpointStore(StandIns.pluginSettingsFactory()),
+            this.pluginConfiguration
+        );
+        this.mergeCheckPrewarmer = new MergeCheckPrewarmer(
+            StandIns.proxy(EventPublisher.class, "eventPublisher", (proxy, method, args) -> null),
+            this.repositoryHookService(),
+            StandIns.securityService(),
+            this.pullRequestValidator,
+            this.mergeCheckResultCache,
+            this.validationExecutor,
+            this.pluginConfiguration,
+            this.metricsRegistry,
+            this.admissionController
+        );
+    }
+
+    private PullRequestHook createPullRequestHook() {
+        return new PullRequestHook(
+            new PullRequestDecliner(
+                StandIns.proxy(PullRequestService.class, "pullRequestService", (proxy, method, args) -> {
+                    throw StandIns.unsupported(method);
+                }),
+                StandIns.securityService(),
+                StandIns.proxy(AuthenticationContext.class, "authenticationContext", (proxy, method, args) -> {
+                    throw StandIns.unsupported(method);
+                }),
+                this.validationExecutor,
+                this.metricsRegistry
+            ),
+            this.pullRequestValidator,
+            this.mergeCheckResultCache,
+            this.metricsRegistry,
+            new PathFilterFactory(),
+            new ParserBackendFactory(this.pluginConfiguration),
+            this.admissionController
+        );
+    }
+
+    private ValidationServiceInterface validationService() {
+        return StandIns.proxy(ValidationServiceInterface.class, "validationService", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getProfile":
+                    return "events";
+                case "getYamlFiles":
+                    return Collections.singletonList(new YamlFile("config.yaml", "blob-1", "from-1"));
+                case "areFilesValid":
+                    this.validations.incrementAndGet();
+                    this.released.await();
+                    if (this.invalid) {
+                        throw new InvalidYamlFileException("invalid.yaml", "blob-1", "mapping values are not allowed");
+                    }
+                    return null;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private CommitService commitService() {
+        return StandIns.proxy(CommitService.class, "commitService", (proxy, method, args) -> {
+            if (method.getName().equals("getChanges")) {
+                return new PageImpl<>((PageRequest) args[1], Collections.emptyList(), true);
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+
+    private RepositoryHookService repositoryHookService() {
+        final RepositoryHook hook = StandIns.proxy(RepositoryHook.class, "hook", (proxy, method, args) -> {
+            if (method.getName().equals("isEnabled")) {
+                return true;
+            }
+            throw StandIns.unsupported(method);
+        });
+        final RepositoryHookSettings hookSettings = StandIns.proxy(
+            RepositoryHookSettings.class,
+            "hookSettings",
+            (proxy, method, args) -> {
+                if (method.getName().equals("getSettings")) {
+                    return SETTINGS;
+                }
+                throw StandIns.unsupported(method);
+            }
+        );
+        return StandIns.proxy(RepositoryHookService.class, "repositoryHookService", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getByKey":
+                    return hook;
+                case "getSettings":
+                    return hookSettings;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private PreRepositoryHookContext hookContext(final Settings settings) {
+        return StandIns.proxy(PreRepositoryHookContext.class, "hookContext", (proxy, method, args) -> {
+            if (method.getName().equals("getSettings")) {
+                return settings;
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+
+    private PullRequestMergeHookRequest mergeHookRequest(final PullRequest pullRequest) {
+        return StandIns.proxy(PullRequestMergeHookRequest.class, "mergeHookRequest", (proxy, method, args) -> {
+            if (method.getName().equals("getPullRequest")) {
+                return pullRequest;
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+
+    private PullRequest pullRequest(final long id) {
+        final ApplicationUser user = StandIns.proxy(ApplicationUser.class, "user", (proxy, method, args) -> {
+            if (method.getName().equals("getDisplayName")) {
+                return "User";
+            }
+            throw StandIns.unsupported(method);
+        });
+        final PullRequestParticipant author = StandIns.proxy(
+            PullRequestParticipant.class,
+            "author",
+            (proxy, method, args) -> {
+                if (method.getName().equals("getUser")) {
+                    return user;
+                }
+                throw StandIns.unsupported(method);
+            }
+        );
+        final PullRequestRef fromRef = this.ref("feature-" + id, "from-" + id);
+        final PullRequestRef toRef = this.ref("master", "to-1");
+        return StandIns.proxy(PullRequest.class, "pull-request-" + id, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getTitle":
+                    return "Pull request " + id;
+                case "getAuthor":
+                    return author;
+                case "getFromRef":
+                    return fromRef;
+                case "getToRef":
+                    return toRef;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private PullRequestRef ref(final String branch, final String latestCommit) {
+        return StandIns.proxy(PullRequestRef.class, branch, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return "refs/heads/" + branch;
+                case "getRepository":
+                    return REPOSITORY;
+                case "getLatestCommit":
+                    return latestCommit;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+}
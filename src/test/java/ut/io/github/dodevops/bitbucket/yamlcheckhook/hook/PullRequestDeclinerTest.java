@@ -0,0 +1,174 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.hook;
+
+import com.atlassian.bitbucket.auth.AuthenticationContext;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestRef;
+import com.atlassian.bitbucket.pull.PullRequestService;
+import com.atlassian.bitbucket.pull.PullRequestState;
+import com.atlassian.bitbucket.repository.Repository;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.ValidationExecutor;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.PullRequestDecliner;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PullRequestDeclinerTest {
+
+    private static final Repository REPOSITORY = StandIns.repository(1);
+
+    private static final String COMMENT = "Invalid YAML content detected";
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    private final ValidationExecutor validationExecutor =
+        new ValidationExecutor(new PluginConfiguration(StandIns.applicationProperties(Collections.emptyMap())));
+
+    private final AtomicInteger declines = new AtomicInteger();
+
+    // The state of the pull request when the decline runs
+    private PullRequest currentPullRequest = pullRequest(1, PullRequestState.OPEN);
+
+    private boolean failing = false;
+
+    private final PullRequestDecliner pullRequestDecliner = new PullRequestDecliner(
+        this.pullRequestService(),
+        StandIns.securityService(),
+        StandIns.proxy(AuthenticationContext.class, "authenticationContext", (proxy, method, args) -> null),
+        this.validationExecutor,
+        this.metricsRegistry
+    );
+
+    @After
+    public void destroy() {
+        this.validationExecutor.destroy();
+    }
+
+    @Test()
+    public void testDeclinesOnlyOncePerVersionAndFiles() throws InterruptedException {
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-1"));
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-1"));
+
+        Assert.assertEquals("The pull request wasn't declined once", 1, this.declines.get());
+        Assert.assertEquals(1, this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_DECLINES).getCount());
+        Assert.assertEquals(
+            "The second decline wasn't deduplicated",
+            1,
+            this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_DECLINES_DEDUPLICATED).getCount()
+        );
+    }
+
+    @Test()
+    public void testDeclinesAgainForOtherFiles() throws InterruptedException {
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-1"));
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-2"));
+
+        Assert.assertEquals("The pull request wasn't declined for new failures", 2, this.declines.get());
+    }
+
+    @Test()
+    public void testSkipsUpdatedPullRequest() throws InterruptedException {
+        this.currentPullRequest = pullRequest(2, PullRequestState.OPEN);
+
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-1"));
+
+        Assert.assertEquals("A newer version was declined", 0, this.declines.get());
+        Assert.assertEquals(0, this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_DECLINES).getCount());
+    }
+
+    @Test()
+    public void testSkipsClosedPullRequest() throws InterruptedException {
+        this.currentPullRequest = pullRequest(1, PullRequestState.MERGED);
+
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-1"));
+
+        Assert.assertEquals("A closed pull request was declined", 0, this.declines.get());
+    }
+
+    @Test()
+    public void testRetriesFailedDecline() throws InterruptedException {
+        this.failing = true;
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-1"));
+
+        this.failing = false;
+        this.decline(pullRequest(1, PullRequestState.OPEN), invalidFile("blob-1"));
+
+        Assert.assertEquals("The failed decline wasn't retried", 2, this.declines.get());
+        Assert.assertEquals(1, this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_DECLINES).getCount());
+        Assert.assertEquals(
+            0,
+            this.metricsRegistry.counter(MetricsRegistry.PULL_REQUEST_DECLINES_DEDUPLICATED).getCount()
+        );
+    }
+
+    /**
+     * Decline a pull request and wait until the action ran
+     *
+     * @param pullRequest The checked pull request
+     * @param e           The failures found in the pull request
+     * @throws InterruptedException The test was interrupted
+     */
+    private void decline(final PullRequest pullRequest, final InvalidYamlFileException e) throws InterruptedException {
+        this.pullRequestDecliner.decline(pullRequest, e, COMMENT);
+
+        // The actions run one after the other
+        final CountDownLatch done = new CountDownLatch(1);
+        this.validationExecutor.submitAction(done::countDown);
+        Assert.assertTrue("The decline didn't run in time", done.await(10, TimeUnit.SECONDS));
+    }
+
+    private PullRequestService pullRequestService() {
+        return StandIns.proxy(PullRequestService.class, "pullRequestService", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getById":
+                    return this.currentPullRequest;
+                case "decline":
+                    this.declines.incrementAndGet();
+                    if (this.failing) {
+                        throw new IllegalStateException("The pull request is being merged");
+                    }
+                    return this.currentPullRequest;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private static InvalidYamlFileException invalidFile(final String contentId) {
+        return new InvalidYamlFileException("invalid.yaml", contentId, "mapping values are not allowed here");
+    }
+
+    private static PullRequest pullRequest(final int version, final PullRequestState state) {
+        final PullRequestRef toRef = StandIns.proxy(PullRequestRef.class, "master", (proxy, method, args) -> {
+            if (method.getName().equals("getRepository")) {
+                return REPOSITORY;
+            }
+            throw StandIns.unsupported(method);
+        });
+        return StandIns.proxy(PullRequest.class, "pull-request", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return 1L;
+                case "getVersion":
+                    return version;
+                case "getState":
+                    return state;
+                case "getTitle":
+                    return "Pull request";
+                case "getToRef":
+                    return toRef;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+}
@@ -0,0 +1,467 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.hook;
+
+import com.atlassian.bitbucket.commit.Commit;
+import com.atlassian.bitbucket.commit.CommitService;
+import com.atlassian.bitbucket.commit.CommonAncestorCommitRequest;
+import com.atlassian.bitbucket.content.Change;
+import com.atlassian.bitbucket.content.ChangeType;
+import com.atlassian.bitbucket.content.ChangesRequest;
+import com.atlassian.bitbucket.hook.repository.PreRepositoryHookContext;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookRequest;
+import com.atlassian.bitbucket.hook.repository.RepositoryHookResult;
+import com.atlassian.bitbucket.repository.Branch;
+import com.atlassian.bitbucket.repository.MinimalRef;
+import com.atlassian.bitbucket.repository.NoDefaultBranchException;
+import com.atlassian.bitbucket.repository.RefChange;
+import com.atlassian.bitbucket.repository.RefChangeType;
+import com.atlassian.bitbucket.repository.RefService;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.repository.StandardRefType;
+import com.atlassian.bitbucket.util.PageImpl;
+import com.atlassian.bitbucket.util.PageRequest;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.hook.PushHook;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationServiceFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PushHookTest {
+
+    private static final Repository REPOSITORY = StandIns.repository(1);
+
+    private static final String VALID = "a: 1\n";
+
+    private static final String INVALID = "a: 1\nb: c: d\n";
+
+    private static final String NULL_COMMIT = "0000000000000000000000000000000000000000";
+
+    private static final Map<String, String> PROPERTIES = new HashMap<>();
+
+    static {
+        // Without the result cache only the deduplication of the push keeps a content from being validated twice
+        PROPERTIES.put(PluginConfiguration.CACHE_SIZE, "0");
+        PROPERTIES.put(PluginConfiguration.LIMITS_MAX_ORPHAN_CHANGES, "2");
+    }
+
+    private ValidationServiceFactory validationServiceFactory;
+
+    private AdmissionController admissionController;
+
+    private PushHook pushHook;
+
+    // The parent and changes of each commit
+    private final Map<String, String> parents = new HashMap<>();
+
+    private final Map<String, List<Change>> changes = new HashMap<>();
+
+    // The commit the changes until each commit were requested since
+    private final Map<String, String> sinceIds = new HashMap<>();
+
+    private String defaultBranchCommit = null;
+
+    @Before
+    public void setUp() {
+        this.createPushHook(Collections.emptyMap());
+    }
+
+    @After
+    public void destroy() {
+        this.validationServiceFactory.destroy();
+    }
+
+    @Test()
+    public void testValidatesContentIntroducedBySeveralRefsOnce() {
+        this.validationServiceFactory.putFile("config.yaml", VALID);
+        this.commit("feature-a", null, StandIns.change("config.yaml", "blob-1", ChangeType.MODIFY));
+        this.commit("feature-b", null, StandIns.change("config.yaml", "blob-1", ChangeType.MODIFY));
+
+        final RepositoryHookResult result = this.push(
+            this.refChange("feature-a", RefChangeType.UPDATE, "feature-a"),
+            this.refChange("feature-b", RefChangeType.UPDATE, "feature-b")
+        );
+
+        Assert.assertTrue("The valid push was rejected", result.isAccepted());
+        Assert.assertEquals(
+            "The content introduced by two refs was validated twice",
+            1,
+            this.validationServiceFactory.getFetches("config.yaml")
+        );
+    }
+
+    @Test()
+    public void testValidatesDifferentContentsOfSamePath() {
+        this.validationServiceFactory.putFile("config.yaml", VALID);
+        this.commit("feature-a", null, StandIns.change("config.yaml", "blob-1", ChangeType.MODIFY));
+        this.commit("feature-b", null, StandIns.change("config.yaml", "blob-2", ChangeType.MODIFY));
+
+        this.push(
+            this.refChange("feature-a", RefChangeType.UPDATE, "feature-a"),
+            this.refChange("feature-b", RefChangeType.UPDATE, "feature-b")
+        );
+
+        Assert.assertEquals(
+            "Not every content of the path was validated",
+            2,
+            this.validationServiceFactory.getFetches("config.yaml")
+        );
+    }
+
+    @Test()
+    public void testNamesEveryRefIntroducingInvalidContent() {
+        this.validationServiceFactory.putFile("config.yaml", INVALID);
+        this.commit("feature-a", null, StandIns.change("config.yaml", "blob-1", ChangeType.MODIFY));
+        this.commit("feature-b", null, StandIns.change("config.yaml", "blob-1", ChangeType.MODIFY));
+
+        final RepositoryHookResult result = this.push(
+            this.refChange("feature-a", RefChangeType.UPDATE, "feature-a"),
+            this.refChange("feature-b", RefChangeType.UPDATE, "feature-b")
+        );
+
+        Assert.assertTrue("The invalid push was accepted", result.isRejected());
+        final String details = result.getVetoes().get(0).getDetailedMessage();
+        Assert.assertTrue(details, details.contains("config.yaml (in feature-a, feature-b)"));
+    }
+
+    @Test()
+    public void testValidatesNewBranchSinceMergeBase() {
+        this.validationServiceFactory.putFile("config.yaml", VALID);
+        this.defaultBranchCommit = "master-2";
+        this.commit("master-1", null);
+        this.commit("master-2", "master-1");
+        this.commit("feature-1", "master-1", StandIns.change("config.yaml", "blob-1", ChangeType.ADD));
+        this.commit("feature-2", "feature-1");
+
+        final RepositoryHookResult result = this.push(this.refChange("feature", RefChangeType.ADD, "feature-2"));
+
+        Assert.assertTrue("The valid push was rejected", result.isAccepted());
+        Assert.assertEquals(
+            "The new branch wasn't validated since its merge base",
+            "master-1",
+            this.sinceIds.get("feature-2")
+        );
+    }
+
+    @Test()
+    public void testSkipsNewBranchWithoutNewCommits() {
+        this.defaultBranchCommit = "master-2";
+        this.commit("master-1", null);
+        this.commit("master-2", "master-1");
+
+        final RepositoryHookResult result = this.push(this.refChange("feature", RefChangeType.ADD, "master-1"));
+
+        Assert.assertTrue("The push without new commits was rejected", result.isAccepted());
+        Assert.assertTrue("The changes of a branch without new commits were read", this.sinceIds.isEmpty());
+    }
+
+    @Test()
+    public void testValidatesAllChangesOfOrphanBranch() {
+        this.validationServiceFactory.putFile("config.yaml", INVALID);
+        this.defaultBranchCommit = "master-1";
+        this.commit("master-1", null);
+        this.commit("orphan-1", null, StandIns.change("config.yaml", "blob-1", ChangeType.ADD));
+
+        final RepositoryHookResult result = this.push(this.refChange("orphan", RefChangeType.ADD, "orphan-1"));
+
+        Assert.assertTrue("The invalid orphan branch was accepted", result.isRejected());
+        Assert.assertEquals("The orphan branch wasn't validated entirely", NULL_COMMIT, this.sinceIds.get("orphan-1"));
+    }
+
+    @Test()
+    public void testValidatesAllChangesWithoutDefaultBranch() {
+        this.validationServiceFactory.putFile("config.yaml", INVALID);
+        this.commit("master-1", null, StandIns.change("config.yaml", "blob-1", ChangeType.ADD));
+
+        final RepositoryHookResult result = this.push(this.refChange("master", RefChangeType.ADD, "master-1"));
+
+        Assert.assertTrue("The invalid first branch was accepted", result.isRejected());
+        Assert.assertEquals("The first branch wasn't validated entirely", NULL_COMMIT, this.sinceIds.get("master-1"));
+    }
+
+    @Test()
+    public void testValidatesInitialPushOfLargeRepository() {
+        this.validationServiceFactory.putFile("a.yaml", VALID);
+        this.validationServiceFactory.putFile("b.yaml", INVALID);
+        final List<Change> commitChanges = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            commitChanges.add(StandIns.change(String.format("src/File%d.java", i), "java-" + i, ChangeType.ADD));
+        }
+        commitChanges.add(StandIns.change("a.yaml", "blob-1", ChangeType.ADD));
+        commitChanges.add(StandIns.change("b.yaml", "blob-2", ChangeType.ADD));
+        this.commit("master-1", null, commitChanges.toArray(new Change[0]));
+
+        final RepositoryHookResult result = this.push(this.refChange("master", RefChangeType.ADD, "master-1"));
+
+        Assert.assertTrue("The invalid initial push was accepted", result.isRejected());
+        Assert.assertEquals("The YAML files weren't validated", 1, this.validationServiceFactory.getFetches("a.yaml"));
+    }
+
+    @Test()
+    public void testSkipsOrphanBranchWithTooManyYamlFiles() {
+        this.putOrphanBranchWithTooManyYamlFiles();
+
+        final RepositoryHookResult result = this.push(this.refChange("orphan", RefChangeType.ADD, "orphan-1"));
+
+        Assert.assertTrue("The orphan branch with too many YAML files wasn't skipped", result.isAccepted());
+        Assert.assertEquals(
+            "Files of the orphan branch were validated",
+            0,
+            this.validationServiceFactory.getFetches("a.yaml")
+        );
+    }
+
+    @Test()
+    public void testRejectsOrphanBranchWithTooManyYamlFiles() {
+        this.validationServiceFactory.destroy();
+        this.createPushHook(
+            Collections.singletonMap(PluginConfiguration.LIMITS_ORPHAN_POLICY, PluginConfiguration.LIMITS_POLICY_REJECT)
+        );
+        this.putOrphanBranchWithTooManyYamlFiles();
+
+        final RepositoryHookResult result = this.push(this.refChange("orphan", RefChangeType.ADD, "orphan-1"));
+
+        Assert.assertTrue("The orphan branch with too many YAML files was accepted", result.isRejected());
+        Assert.assertEquals(
+            "Files of the orphan branch were validated",
+            0,
+            this.validationServiceFactory.getFetches("a.yaml")
+        );
+    }
+
+    @Test()
+    public void testSkipsDeletesAndTags() {
+        this.validationServiceFactory.putFile("config.yaml", INVALID);
+        this.defaultBranchCommit = "master-1";
+        this.commit("master-1", null);
+        this.commit("release-1", "master-1", StandIns.change("config.yaml", "blob-1", ChangeType.ADD));
+
+        final RepositoryHookResult result = this.push(
+            this.refChange("old-feature", RefChangeType.DELETE, NULL_COMMIT),
+            this.refChange("v1.0", StandardRefType.TAG, RefChangeType.ADD, "release-1")
+        );
+
+        Assert.assertTrue("A deletion or a tag was validated", result.isAccepted());
+        Assert.assertTrue("The changes of a deletion or a tag were read", this.sinceIds.isEmpty());
+    }
+
+    @Test()
+    public void testWaitsForAdmissionOnlyToValidateYamlFiles() {
+        this.validationServiceFactory.destroy();
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(PluginConfiguration.ADMISSION_MAX_CONCURRENT, "1");
+        properties.put(PluginConfiguration.ADMISSION_QUEUE_TIMEOUT, "0");
+        this.createPushHook(properties);
+        this.validationServiceFactory.putFile("config.yaml", VALID);
+        this.commit("docs-1", null, StandIns.change("README.md", "blob-1", ChangeType.MODIFY));
+        this.commit("feature-1", null, StandIns.change("config.yaml", "blob-2", ChangeType.MODIFY));
+
+        try (final AdmissionController.Permit running = this.admissionController.tryAcquire(REPOSITORY)) {
+            Assert.assertNotNull(running);
+
+            Assert.assertTrue(
+                "A push without YAML files waited for admission",
+                this.push(this.refChange("docs", RefChangeType.UPDATE, "docs-1")).isAccepted()
+            );
+            Assert.assertTrue(
+                "A push with YAML files was validated beyond the limit",
+                this.push(this.refChange("feature", RefChangeType.UPDATE, "feature-1")).isRejected()
+            );
+        }
+
+        Assert.assertTrue(
+            "The push wasn't validated after the slot was freed",
+            this.push(this.refChange("feature", RefChangeType.UPDATE, "feature-1")).isAccepted()
+        );
+        Assert.assertEquals(0, this.admissionController.getActive());
+    }
+
+    private void createPushHook(final Map<String, String> properties) {
+        final Map<String, String> pluginProperties = new HashMap<>(PROPERTIES);
+        pluginProperties.putAll(properties);
+        this.validationServiceFactory = new ValidationServiceFactory(pluginProperties);
+        this.admissionController = new AdmissionController(
+            this.validationServiceFactory.getPluginConfiguration(),
+            this.validationServiceFactory.getMetricsRegistry()
+        );
+        this.pushHook = new PushHook(
+            this.validationServiceFactory.getValidationService(),
+            this.commitService(),
+            this.refService(),
+            this.validationServiceFactory.getMetricsRegistry(),
+            new PathFilterFactory(),
+            this.validationServiceFactory.getParserBackendFactory(),
+            this.validationServiceFactory.getPluginConfiguration(),
+            this.admissionController
+        );
+    }
+
+    /**
+     * Add a branch without a merge base, that adds more YAML files than allowed
+     */
+    private void putOrphanBranchWithTooManyYamlFiles() {
+        this.validationServiceFactory.putFile("a.yaml", VALID);
+        this.validationServiceFactory.putFile("b.yaml", VALID);
+        this.validationServiceFactory.putFile("c.yaml", VALID);
+        this.defaultBranchCommit = "master-1";
+        this.commit("master-1", null);
+        this.commit(
+            "orphan-1",
+            null,
+            StandIns.change("a.yaml", "blob-1", ChangeType.ADD),
+            StandIns.change("b.yaml", "blob-2", ChangeType.ADD),
+            StandIns.change("c.yaml", "blob-3", ChangeType.ADD)
+        );
+    }
+
+    private RepositoryHookResult push(final RefChange... refChanges) {
+        final PreRepositoryHookContext context = StandIns.proxy(
+            PreRepositoryHookContext.class,
+            "context",
+            (proxy, method, args) -> {
+                if (method.getName().equals("getSettings")) {
+                    return null;
+                }
+                throw StandIns.unsupported(method);
+            }
+        );
+        final RepositoryHookRequest request = StandIns.proxy(
+            RepositoryHookRequest.class,
+            "request",
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getRepository":
+                        return REPOSITORY;
+                    case "getRefChanges":
+                        return Arrays.asList(refChanges);
+                    default:
+                        throw StandIns.unsupported(method);
+                }
+            }
+        );
+        return this.pushHook.preUpdate(context, request);
+    }
+
+    /**
+     * Add a commit
+     *
+     * @param id            The id of the commit
+     * @param parent        The parent or null, if the commit has none
+     * @param commitChanges The changes since the merge base with the default branch
+     */
+    private void commit(final String id, final String parent, final Change... commitChanges) {
+        this.parents.put(id, parent);
+        this.changes.put(id, new ArrayList<>(Arrays.asList(commitChanges)));
+    }
+
+    private RefChange refChange(final String branch, final RefChangeType type, final String toHash) {
+        return this.refChange(branch, StandardRefType.BRANCH, type, toHash);
+    }
+
+    private RefChange refChange(
+        final String name,
+        final StandardRefType refType,
+        final RefChangeType type,
+        final String toHash
+    )
+    {
+        final MinimalRef ref = StandIns.proxy(MinimalRef.class, name, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return (refType == StandardRefType.TAG ? "refs/tags/" : "refs/heads/") + name;
+                case "getDisplayId":
+                    return name;
+                case "getType":
+                    return refType;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+        return StandIns.proxy(RefChange.class, name, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRef":
+                    return ref;
+                case "getType":
+                    return type;
+                case "getFromHash":
+                    return type == RefChangeType.ADD ? NULL_COMMIT : this.parents.get(toHash);
+                case "getToHash":
+                    return toHash;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private CommitService commitService() {
+        return StandIns.proxy(CommitService.class, "commitService", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getChanges":
+                    final ChangesRequest changesRequest = (ChangesRequest) args[0];
+                    this.sinceIds.put(changesRequest.getUntilId(), changesRequest.getSinceId());
+                    return new PageImpl<>((PageRequest) args[1], this.changes.get(changesRequest.getUntilId()), true);
+                case "getCommonAncestor":
+                    final CommonAncestorCommitRequest request = (CommonAncestorCommitRequest) args[0];
+                    final String mergeBase = this.getMergeBase(request.getCommitId(), request.getOtherCommitId());
+                    return mergeBase != null ? this.commit(mergeBase) : null;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private Commit commit(final String id) {
+        return StandIns.proxy(Commit.class, id, (proxy, method, args) -> {
+            if (method.getName().equals("getId")) {
+                return id;
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+
+    private String getMergeBase(final String commit, final String otherCommit) {
+        final Set<String> ancestors = new HashSet<>();
+        for (String ancestor = otherCommit; ancestor != null; ancestor = this.parents.get(ancestor)) {
+            ancestors.add(ancestor);
+        }
+        for (String ancestor = commit; ancestor != null; ancestor = this.parents.get(ancestor)) {
+            if (ancestors.contains(ancestor)) {
+                return ancestor;
+            }
+        }
+        return null;
+    }
+
+    private RefService refService() {
+        return StandIns.proxy(RefService.class, "refService", (proxy, method, args) -> {
+            if (!method.getName().equals("getDefaultBranch")) {
+                throw StandIns.unsupported(method);
+            }
+            if (this.defaultBranchCommit == null) {
+                throw new NoDefaultBranchException();
+            }
+            return StandIns.proxy(Branch.class, "master", (branch, getter, none) -> {
+                switch (getter.getName()) {
+                    case "getId":
+                        return "refs/heads/master";
+                    case "getLatestCommit":
+                        return this.defaultBranchCommit;
+                    default:
+                        throw StandIns.unsupported(getter);
+                }
+            });
+        });
+    }
+}
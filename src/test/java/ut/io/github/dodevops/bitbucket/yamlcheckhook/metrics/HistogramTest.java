@@ -0,0 +1,66 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.Histogram;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.SlowestFiles;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class HistogramTest {
+
+    private static final double DELTA = 0.0001;
+
+    @Test()
+    public void testEmptyHistogram() {
+        final Histogram histogram = new Histogram();
+
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMeanMillis(), DELTA);
+        Assert.assertEquals(0, histogram.getMaxMillis(), DELTA);
+        Assert.assertEquals(0, histogram.getPercentileMillis(50), DELTA);
+    }
+
+    @Test()
+    public void testMeanAndMax() {
+        final Histogram histogram = new Histogram();
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(2, histogram.getMeanMillis(), DELTA);
+        Assert.assertEquals(3, histogram.getMaxMillis(), DELTA);
+    }
+
+    @Test()
+    public void testPercentilesAreBucketBounds() {
+        final Histogram histogram = new Histogram();
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        // 100 µs are counted in the bucket up to 128 µs
+        Assert.assertEquals(0.128, histogram.getPercentileMillis(50), DELTA);
+        Assert.assertEquals(0.128, histogram.getPercentileMillis(99), DELTA);
+        // The estimate never exceeds the maximum
+        Assert.assertEquals(50, histogram.getPercentileMillis(100), DELTA);
+    }
+
+    @Test()
+    public void testSlowestFilesKeepsTheSlowest() {
+        final SlowestFiles slowestFiles = new SlowestFiles(2);
+
+        slowestFiles.record("fast.yaml", TimeUnit.MILLISECONDS.toNanos(1));
+        slowestFiles.record("slow.yaml", TimeUnit.MILLISECONDS.toNanos(30));
+        slowestFiles.record("slower.yaml", TimeUnit.MILLISECONDS.toNanos(40));
+        slowestFiles.record("medium.yaml", TimeUnit.MILLISECONDS.toNanos(10));
+
+        Assert.assertArrayEquals(
+            new String[]{"40 ms slower.yaml", "30 ms slow.yaml"},
+            slowestFiles.getEntries()
+        );
+    }
+}
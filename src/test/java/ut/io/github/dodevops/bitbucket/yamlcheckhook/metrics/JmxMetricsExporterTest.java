@@ -0,0 +1,88 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.metrics;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.JmxMetricsExporter;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class JmxMetricsExporterTest {
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    private final JmxMetricsExporter exporter = new JmxMetricsExporter(this.metricsRegistry);
+
+    @Test()
+    public void testExportsKnownMetricsFromStart() throws JMException {
+        final Set<String> attributes = new HashSet<>();
+        for (final MBeanAttributeInfo attribute : this.exporter.getMBeanInfo().getAttributes()) {
+            attributes.add(attribute.getName());
+        }
+
+        Assert.assertTrue(attributes.contains(MetricsRegistry.PUSH_INVOCATIONS));
+        Assert.assertTrue(attributes.contains(MetricsRegistry.PREWARM_DROPPED));
+        Assert.assertTrue(attributes.contains(MetricsRegistry.PUSH_LATENCY + ".p95Millis"));
+        Assert.assertTrue(attributes.contains("slowestFiles"));
+        Assert.assertEquals(0L, this.exporter.getAttribute(MetricsRegistry.PUSH_INVOCATIONS));
+    }
+
+    @Test()
+    public void testExportsValues() throws JMException {
+        this.metricsRegistry.counter(MetricsRegistry.PUSH_INVOCATIONS).increment();
+        this.metricsRegistry.counter(MetricsRegistry.BYTES_READ).add(1024);
+        this.metricsRegistry.gauge("validation-cache.size", () -> 42);
+        this.metricsRegistry.recordFile("slow.yaml", TimeUnit.MILLISECONDS.toNanos(20));
+
+        Assert.assertEquals(1L, this.exporter.getAttribute(MetricsRegistry.PUSH_INVOCATIONS));
+        Assert.assertEquals(1024L, this.exporter.getAttribute(MetricsRegistry.BYTES_READ));
+        Assert.assertEquals(42L, this.exporter.getAttribute("validation-cache.size"));
+        Assert.assertEquals(1L, this.exporter.getAttribute(MetricsRegistry.FILE_LATENCY + ".count"));
+        Assert.assertEquals(20.0, this.exporter.getAttribute(MetricsRegistry.FILE_LATENCY + ".maxMillis"));
+        Assert.assertArrayEquals(
+            new String[]{"20 ms slow.yaml"},
+            (String[]) this.exporter.getAttribute("slowestFiles")
+        );
+
+        final AttributeList attributes = this.exporter.getAttributes(
+            new String[]{MetricsRegistry.PUSH_INVOCATIONS, "unknown"}
+        );
+        Assert.assertEquals("Unknown attribute was returned", 1, attributes.size());
+    }
+
+    @Test(expected = AttributeNotFoundException.class)
+    public void testRejectsUnknownAttribute() throws JMException {
+        this.exporter.getAttribute("unknown");
+    }
+
+    @Test()
+    public void testRegistersMBean() throws JMException {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(JmxMetricsExporter.OBJECT_NAME);
+
+        this.exporter.afterPropertiesSet();
+        try {
+            this.metricsRegistry.counter(MetricsRegistry.PUSH_REJECTIONS).increment();
+            Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, MetricsRegistry.PUSH_REJECTIONS));
+            Assert.assertTrue(
+                "Attribute of the histogram is missing",
+                Arrays.stream(mBeanServer.getMBeanInfo(objectName).getAttributes())
+                    .anyMatch(attribute -> attribute.getName().equals(MetricsRegistry.PARSE_TIME + ".p99Millis"))
+            );
+        } finally {
+            this.exporter.destroy();
+        }
+        Assert.assertFalse("MBean wasn't unregistered", mBeanServer.isRegistered(objectName));
+    }
+}
@@ -0,0 +1,139 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.schema;
+
+import com.atlassian.bitbucket.content.ContentService;
+import com.atlassian.bitbucket.io.TypeAwareOutputSupplier;
+import com.atlassian.bitbucket.repository.Repository;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidSchemaException;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.CompiledSchema;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.SchemaCache;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SchemaCacheTest {
+
+    private static final String COMMIT = "0123456789012345678901234567890123456789";
+
+    private static final String OTHER_COMMIT = "9876543210987654321098765432109876543210";
+
+    private static final Repository REPOSITORY = StandIns.repository(1);
+
+    private static final String SCHEMA = "type: object\nproperties:\n  name:\n    type: string\n";
+
+    private final Map<String, String> files = new HashMap<>();
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    private final SchemaCache schemaCache;
+
+    public SchemaCacheTest() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(PluginConfiguration.LIMITS_MAX_DEPTH, "4");
+        properties.put(PluginConfiguration.LIMITS_MAX_ALIASES, "2");
+
+        final ContentService contentService = StandIns.proxy(
+            ContentService.class,
+            "contentService",
+            (proxy, method, args) -> {
+                if (!method.getName().equals("streamFile")) {
+                    throw StandIns.unsupported(method);
+                }
+                try (final OutputStream output = ((TypeAwareOutputSupplier) args[3]).getStream("text/plain")) {
+                    output.write(this.files.get((String) args[2]).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            }
+        );
+        this.schemaCache = new SchemaCache(
+            contentService,
+            new PluginConfiguration(StandIns.applicationProperties(properties)),
+            this.metricsRegistry
+        );
+    }
+
+    @Test()
+    public void testCompilesSchema() throws InvalidSchemaException {
+        this.files.put("schema.yaml", SCHEMA);
+
+        Assert.assertNotNull(
+            "The schema wasn't compiled",
+            this.schemaCache.getSchema(REPOSITORY, COMMIT, "schema.yaml")
+        );
+    }
+
+    @Test()
+    public void testCompilesSameBlobOnce() throws InvalidSchemaException {
+        this.files.put("schema.yaml", SCHEMA);
+        this.files.put("copy/schema.yaml", SCHEMA);
+
+        final CompiledSchema schema = this.schemaCache.getSchema(REPOSITORY, COMMIT, "schema.yaml");
+
+        Assert.assertSame(
+            "The schema was compiled again for the next file",
+            schema,
+            this.schemaCache.getSchema(REPOSITORY, COMMIT, "schema.yaml")
+        );
+        Assert.assertSame(
+            "The schema was compiled again for the next push",
+            schema,
+            this.schemaCache.getSchema(REPOSITORY, OTHER_COMMIT, "schema.yaml")
+        );
+        Assert.assertSame(
+            "The same blob at another path was compiled again",
+            schema,
+            this.schemaCache.getSchema(REPOSITORY, COMMIT, "copy/schema.yaml")
+        );
+        Assert.assertEquals(1, this.metricsRegistry.getGauges().get("schema-cache.size").getAsLong());
+        Assert.assertEquals(
+            "The schema wasn't compiled once",
+            1,
+            this.metricsRegistry.getGauges().get("schema-cache.misses").getAsLong()
+        );
+    }
+
+    @Test()
+    public void testCompilesChangedSchema() throws InvalidSchemaException {
+        this.files.put("schema.yaml", SCHEMA);
+        final CompiledSchema schema = this.schemaCache.getSchema(REPOSITORY, COMMIT, "schema.yaml");
+
+        this.files.put("schema.yaml", "type: array\n");
+        final CompiledSchema changedSchema = this.schemaCache.getSchema(REPOSITORY, OTHER_COMMIT, "schema.yaml");
+
+        Assert.assertNotSame("The schema of the previous push was used", schema, changedSchema);
+        Assert.assertFalse("The changed schema has the same id", schema.getId().equals(changedSchema.getId()));
+    }
+
+    @Test()
+    public void testRejectsDeeplyNestedSchema() {
+        this.files.put("schema.yaml", "a:\n b:\n  c:\n   d:\n    e:\n     f: 1\n");
+
+        this.assertRejected("nested deeper");
+    }
+
+    @Test()
+    public void testRejectsSchemaWithManyAliases() {
+        this.files.put("schema.yaml", "a: &a [1, 2]\nb: [*a, *a, *a]\n");
+
+        this.assertRejected("aliases");
+    }
+
+    private void assertRejected(final String reason) {
+        try {
+            this.schemaCache.getSchema(REPOSITORY, COMMIT, "schema.yaml");
+            Assert.fail("The schema exceeding the budget was compiled");
+        } catch (final InvalidSchemaException e) {
+            Assert.assertTrue(
+                String.format("The schema was rejected for another reason: %s", e.getMessage()),
+                e.getMessage().contains(reason)
+            );
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import com.atlassian.bitbucket.repository.Repository;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ParserBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.SnakeYamlEngineBackend;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilter;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.SchemaMapping;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationFailure;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationOptions;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.YamlFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class DefaultValidationServiceTest {
+
+    private static final String COMMIT = "0123456789012345678901234567890123456789";
+
+    private static final String OTHER_COMMIT = "9876543210987654321098765432109876543210";
+
+    private static final Repository REPOSITORY = StandIns.repository(1);
+
+    private static final Map<String, String> PARALLEL = new HashMap<>();
+
+    static {
+        PARALLEL.put(PluginConfiguration.PARALLEL_THREADS, "4");
+        PARALLEL.put(PluginConfiguration.PARALLEL_THRESHOLD, "2");
+    }
+
+    private ValidationServiceFactory validationServiceFactory = null;
+
+    @After
+    public void destroy() {
+        if (this.validationServiceFactory != null) {
+            this.validationServiceFactory.destroy();
+        }
+    }
+
+    @Test()
+    public void testResultDependsOnParserBackend() throws InvalidYamlFileException {
+        this.validationServiceFactory = new ValidationServiceFactory(Collections.emptyMap());
+        // The escaped slash is only allowed by YAML 1.2
+        this.validationServiceFactory.putFile("escaped.yaml", "url: \"https:\\/\\/example.com\"\n");
+        final List<YamlFile> files = Collections.singletonList(new YamlFile("escaped.yaml", "blob-1", COMMIT));
+
+        this.validate(files, new SnakeYamlEngineBackend());
+        Assert.assertFalse(
+            "The result of the YAML 1.2 backend was used for the YAML 1.1 backend",
+            this.isValid(files, new SnakeYamlBackend())
+        );
+        Assert.assertTrue(
+            "The result of the YAML 1.1 backend was used for the YAML 1.2 backend",
+            this.isValid(files, new SnakeYamlEngineBackend())
+        );
+        Assert.assertEquals(
+            "A known result wasn't reused",
+            2,
+            this.validationServiceFactory.getFetches("escaped.yaml")
+        );
+    }
+
+    @Test()
+    public void testProfileCoversSchemasAndParserBackend() {
+        this.validationServiceFactory = new ValidationServiceFactory(Collections.emptyMap());
+        final ValidationOptions options = new ValidationOptions(
+            PathFilter.DEFAULT,
+            new SchemaMapping(Collections.singletonList("**/*.yaml=schema.json")),
+            null
+        );
+
+        this.validationServiceFactory.putFile("schema.json", "{\"type\": \"object\"}");
+        final String profile = this.validationServiceFactory.getValidationService().getProfile(
+            REPOSITORY,
+            COMMIT,
+            options
+        );
+        this.validationServiceFactory.putFile("schema.json", "{\"type\": \"array\"}");
+
+        Assert.assertEquals(
+            "The profile of the same commit changed",
+            profile,
+            this.validationServiceFactory.getValidationService().getProfile(REPOSITORY, COMMIT, options)
+        );
+        Assert.assertFalse(
+            "The profile didn't change with the schema",
+            profile.equals(
+                this.validationServiceFactory.getValidationService().getProfile(REPOSITORY, OTHER_COMMIT, options)
+            )
+        );
+        Assert.assertFalse(
+            "The profile didn't change with the parser backend",
+            this.validationServiceFactory.getValidationService().getProfile(
+                REPOSITORY,
+                COMMIT,
+                ValidationOptions.DEFAULT
+            ).equals(
+                this.validationServiceFactory.getValidationService().getProfile(
+                    REPOSITORY,
+                    COMMIT,
+                    new ValidationOptions(PathFilter.DEFAULT, SchemaMapping.NONE, new SnakeYamlEngineBackend())
+                )
+            )
+        );
+    }
+
+    @Test()
+    public void testReportsKnownFailureForEachFile() {
+        this.validationServiceFactory = new ValidationServiceFactory(Collections.emptyMap());
+        this.validationServiceFactory.putFile("first.yaml", "a: 1\nb: c: d\n");
+
+        this.getFailures(Collections.singletonList(new YamlFile("first.yaml", "blob-1", COMMIT)));
+        final List<ValidationFailure> failures = this.getFailures(
+            Collections.singletonList(new YamlFile("copy.yaml", "blob-1", COMMIT))
+        );
+
+        Assert.assertEquals(
+            "The known failure wasn't reused",
+            1,
+            this.validationServiceFactory.getFetches("first.yaml")
+        );
+        Assert.assertEquals("The failure names the wrong file", "copy.yaml", failures.get(0).getFilePath());
+        Assert.assertEquals("The failure lost its location", 2, failures.get(0).getLine());
+    }
+
+    @Test()
+    public void testReadsUtf16WithByteOrderMark() throws IOException {
+        this.validationServiceFactory = new ValidationServiceFactory(Collections.emptyMap());
+        this.validationServiceFactory.putFile("valid.yaml", utf16("key: äöü €\nlist:\n  - 1\n"));
+        this.validationServiceFactory.putFile("invalid.yaml", utf16("key: äöü €\nb: c: d\n"));
+
+        Assert.assertTrue(
+            "A valid UTF-16 file was rejected",
+            this.isValid(Collections.singletonList(new YamlFile("valid.yaml", "blob-1", COMMIT)), null)
+        );
+        final List<ValidationFailure> failures = this.getFailures(
+            Collections.singletonList(new YamlFile("invalid.yaml", "blob-2", COMMIT))
+        );
+        Assert.assertEquals("The failure isn't located at the problem", 2, failures.get(0).getLine());
+    }
+
+    @Test()
+    public void testFailsWhenReadingFails() {
+        this.validationServiceFactory = new ValidationServiceFactory(Collections.emptyMap());
+        // The content read so far is valid, but incomplete
+        this.validationServiceFactory.putFile("broken.yaml", "a: 1\n");
+        this.validationServiceFactory.setFailure("broken.yaml", new IllegalStateException("Connection lost"));
+        final List<YamlFile> files = Collections.singletonList(new YamlFile("broken.yaml", "blob-1", COMMIT));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                this.validate(files, null);
+                Assert.fail("A file that couldn't be read was accepted");
+            } catch (final InvalidYamlFileException e) {
+                Assert.fail("A file that couldn't be read was rejected as invalid");
+            } catch (final IllegalStateException e) {
+                Assert.assertEquals("The failure of the reader was lost", "Connection lost", e.getMessage());
+            }
+        }
+        Assert.assertEquals(
+            "The incomplete content was remembered",
+            2,
+            this.validationServiceFactory.getFetches("broken.yaml")
+        );
+    }
+
+    @Test()
+    public void testRejectsFilesExceedingTheBudget() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(PluginConfiguration.LIMITS_MAX_TOTAL_SIZE, "20");
+        this.validationServiceFactory = new ValidationServiceFactory(properties);
+        this.validationServiceFactory.putFile("first.yaml", "key: first value\n");
+        this.validationServiceFactory.putFile("second.yaml", "key: second value\n");
+
+        try {
+            this.validate(
+                Arrays.asList(
+                    new YamlFile("first.yaml", "blob-1", COMMIT),
+                    new YamlFile("second.yaml", "blob-2", COMMIT)
+                ),
+                null
+            );
+            Assert.fail("Files exceeding the budget together were accepted");
+        } catch (final InvalidYamlFileException e) {
+            Assert.assertEquals("The wrong file was rejected", "second.yaml", e.getFilePath());
+            Assert.assertTrue(e.getScannerMessage(), e.getScannerMessage().contains("20 bytes"));
+        }
+    }
+
+    @Test()
+    public void testSkipsFilesExceedingTheBudget() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(PluginConfiguration.LIMITS_MAX_DEPTH, "2");
+        properties.put(PluginConfiguration.LIMITS_POLICY, PluginConfiguration.LIMITS_POLICY_SKIP);
+        this.validationServiceFactory = new ValidationServiceFactory(properties);
+        this.validationServiceFactory.putFile("deep.yaml", "a:\n  b:\n    c: [1\n");
+
+        Assert.assertTrue(
+            "A file exceeding the budget wasn't skipped",
+            this.isValid(Collections.singletonList(new YamlFile("deep.yaml", "blob-1", COMMIT)), null)
+        );
+    }
+
+    @Test()
+    public void testStopsAtFirstFailure() {
+        this.validationServiceFactory = new ValidationServiceFactory(Collections.emptyMap());
+        final List<YamlFile> files = this.putFiles("valid", "invalid", "invalid");
+
+        final List<ValidationFailure> failures = this.getFailures(files);
+
+        Assert.assertEquals("Not only the first failure was reported", 1, failures.size());
+        Assert.assertEquals("The wrong failure was reported", "file-1.yaml", failures.get(0).getFilePath());
+        Assert.assertEquals(
+            "A file after the first failure was validated",
+            0,
+            this.validationServiceFactory.getFetches("file-2.yaml")
+        );
+    }
+
+    @Test()
+    public void testCollectsAllFailures() {
+        this.validationServiceFactory = new ValidationServiceFactory(
+            Collections.singletonMap(PluginConfiguration.COLLECT_ALL, "true")
+        );
+        this.assertCollectsAllFailures();
+    }
+
+    @Test()
+    public void testCollectsAllFailuresInParallel() {
+        final Map<String, String> properties = new HashMap<>(PARALLEL);
+        properties.put(PluginConfiguration.COLLECT_ALL, "true");
+        this.validationServiceFactory = new ValidationServiceFactory(properties);
+        this.assertCollectsAllFailures();
+    }
+
+    @Test()
+    public void testReportsFirstFailureInOrderOfFiles() {
+        this.validationServiceFactory = new ValidationServiceFactory(PARALLEL);
+        final List<YamlFile> files = this.putFiles("valid", "invalid", "valid", "invalid");
+        // The later failure is found first
+        this.validationServiceFactory.setDelay("file-1.yaml", 200);
+
+        final List<ValidationFailure> failures = this.getFailures(files);
+
+        Assert.assertEquals("Not only the first failure was reported", 1, failures.size());
+        Assert.assertEquals("The failure found first was reported", "file-1.yaml", failures.get(0).getFilePath());
+    }
+
+    @Test()
+    public void testCancelsFilesAfterFirstFailure() {
+        this.validationServiceFactory = new ValidationServiceFactory(PARALLEL);
+        final List<YamlFile> files = this.putFiles("invalid", "valid", "valid", "valid", "valid", "valid", "valid");
+        for (int i = 1; i < files.size(); i++) {
+            this.validationServiceFactory.setDelay(files.get(i).getPath(), 10000);
+        }
+
+        final long start = System.nanoTime();
+        final List<ValidationFailure> failures = this.getFailures(files);
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertEquals("The wrong failure was reported", "file-0.yaml", failures.get(0).getFilePath());
+        Assert.assertTrue(
+            String.format("The validation waited %d ms for the files after the failure", millis),
+            millis < 5000
+        );
+        int fetched = 0;
+        for (final YamlFile file : files) {
+            fetched += this.validationServiceFactory.getFetches(file.getPath());
+        }
+        // The four workers and the next file the worker of the failure picks up, before the failure is noticed
+        Assert.assertTrue(
+            String.format("%d files were read before the queued files were cancelled", fetched),
+            fetched <= 5
+        );
+    }
+
+    private void assertCollectsAllFailures() {
+        final List<YamlFile> files = this.putFiles("invalid", "valid", "invalid", "valid", "invalid");
+
+        final List<ValidationFailure> failures = this.getFailures(files);
+
+        Assert.assertEquals("Not every failure was reported", 3, failures.size());
+        final String[] paths = {"file-0.yaml", "file-2.yaml", "file-4.yaml"};
+        for (int i = 0; i < paths.length; i++) {
+            Assert.assertEquals(
+                "The failures aren't in the order of the files",
+                paths[i],
+                failures.get(i).getFilePath()
+            );
+            Assert.assertEquals("The failure isn't located at the problem", 2, failures.get(i).getLine());
+        }
+    }
+
+    /**
+     * Add a valid or invalid file for each of the given kinds
+     *
+     * @param kinds "valid" or "invalid" for each file
+     * @return The files
+     */
+    private List<YamlFile> putFiles(final String... kinds) {
+        final List<YamlFile> files = new ArrayList<>();
+        for (int i = 0; i < kinds.length; i++) {
+            final String path = String.format("file-%d.yaml", i);
+            this.validationServiceFactory.putFile(path, kinds[i].equals("valid") ? "a: 1\n" : "a: 1\nb: c: d\n");
+            files.add(new YamlFile(path, "blob-" + i, COMMIT));
+        }
+        return files;
+    }
+
+    private List<ValidationFailure> getFailures(final List<YamlFile> files) {
+        try {
+            this.validate(files, null);
+            Assert.fail("Invalid files were accepted");
+            return null;
+        } catch (final InvalidYamlFileException e) {
+            return e.getFailures();
+        }
+    }
+
+    private void validate(final List<YamlFile> files, final ParserBackend parserBackend)
+        throws InvalidYamlFileException
+    {
+        this.validationServiceFactory.getValidationService().areFilesValid(
+            files,
+            REPOSITORY,
+            new ValidationOptions(PathFilter.DEFAULT, SchemaMapping.NONE, parserBackend)
+        );
+    }
+
+    private static byte[] utf16(final String content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[]{(byte) 0xff, (byte) 0xfe});
+        bytes.write(content.getBytes(StandardCharsets.UTF_16LE));
+        return bytes.toByteArray();
+    }
+
+    private boolean isValid(final List<YamlFile> files, final ParserBackend parserBackend) {
+        try {
+            this.validate(files, parserBackend);
+            return true;
+        } catch (final InvalidYamlFileException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import com.atlassian.bitbucket.commit.Commit;
+import com.atlassian.bitbucket.commit.CommitService;
+import com.atlassian.bitbucket.commit.CommonAncestorCommitRequest;
+import com.atlassian.bitbucket.content.ChangesRequest;
+import com.atlassian.bitbucket.pull.PullRequest;
+import com.atlassian.bitbucket.pull.PullRequestParticipant;
+import com.atlassian.bitbucket.pull.PullRequestRef;
+import com.atlassian.bitbucket.repository.Repository;
+import com.atlassian.bitbucket.setting.Settings;
+import com.atlassian.bitbucket.user.ApplicationUser;
+import com.atlassian.bitbucket.util.PageImpl;
+import com.atlassian.bitbucket.util.PageRequest;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.PullRequestCheckpointStore;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.AdmissionController;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.HookSettings;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.InvalidYamlFileException;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.NotAdmittedException;
+import io.github.dodevops.bitbucket.yamlcheckhook.filter.PathFilterFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ParserBackendFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.PullRequestValidator;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ValidationServiceInterface;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.YamlFile;
+import org.junit.Assert;
+import org.junit.Test;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PullRequestValidatorTest {
+
+    private static final Repository REPOSITORY = StandIns.repository(1);
+
+    private static final Settings SETTINGS = StandIns.settings(Collections.emptyMap());
+
+    // The parent of each commit
+    private final Map<String, String> parents = new HashMap<>();
+
+    private final List<String> sinceIds = new ArrayList<>();
+
+    private int checkpointWrites = 0;
+
+    private String profile = "events";
+
+    // The yaml files among the changes
+    private List<YamlFile> yamlFiles = Collections.emptyList();
+
+    private int validations = 0;
+
+    private final PluginConfiguration pluginConfiguration =
+        new PluginConfiguration(StandIns.applicationProperties(Collections.emptyMap()));
+
+    private final AdmissionController admissionController = new AdmissionController(
+        new PluginConfiguration(
+            StandIns.applicationProperties(
+                Collections.singletonMap(PluginConfiguration.ADMISSION_MAX_CONCURRENT, "1")
+            )
+        ),
+        new DefaultMetricsRegistry()
+    );
+
+    private final PullRequestCheckpointStore pullRequestCheckpointStore =
+        new PullRequestCheckpointStore(this.pluginSettingsFactory());
+
+    private final PullRequestValidator pullRequestValidator = new PullRequestValidator(
+        this.commitService(),
+        this.validationService(),
+        new PathFilterFactory(),
+        new ParserBackendFactory(this.pluginConfiguration),
+        this.pullRequestCheckpointStore,
+        this.pluginConfiguration
+    );
+
+    private String fromCommit = null;
+
+    private String toCommit = null;
+
+    @Test()
+    public void testChecksAllChangesWithoutCheckpoint() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+
+        this.validate("feature-1", "target");
+
+        Assert.assertEquals("The changes weren't taken since the target", "target", this.getSinceId());
+    }
+
+    @Test()
+    public void testChecksNewCommitsSinceCheckpoint() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+        this.commit("feature-2", "feature-1");
+        this.commit("feature-3", "feature-2");
+
+        this.validate("feature-1", "target");
+        this.validate("feature-3", "target");
+
+        Assert.assertEquals("The changes weren't taken since the checkpoint", "feature-1", this.getSinceId());
+    }
+
+    @Test()
+    public void testChecksAllChangesAfterRewrite() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+        // feature-1 was amended and force pushed
+        this.commit("feature-1-amended", "target");
+
+        this.validate("feature-1", "target");
+        this.validate("feature-1-amended", "target");
+
+        Assert.assertEquals("The changes of a rewritten history weren't all checked", "target", this.getSinceId());
+    }
+
+    @Test()
+    public void testChecksAllChangesAfterTargetMoved() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target-1", null);
+        this.commit("target-2", "target-1");
+        this.commit("feature-1", "target-1");
+        this.commit("feature-2", "feature-1");
+
+        this.validate("feature-1", "target-1");
+        this.validate("feature-2", "target-2");
+
+        Assert.assertEquals("The changes against a moved target weren't all checked", "target-2", this.getSinceId());
+    }
+
+    @Test()
+    public void testChecksAllChangesAfterSettingsChanged() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+        this.commit("feature-2", "feature-1");
+
+        this.validate("feature-1", "target");
+        this.pullRequestValidator.validate(
+            this.pullRequest(),
+            StandIns.settings(Collections.singletonMap(HookSettings.EXTENSIONS, "yml")),
+            this.admissionController::tryAcquire
+        );
+
+        Assert.assertEquals("The changes weren't all checked with new settings", "target", this.getSinceId());
+    }
+
+    @Test()
+    public void testChecksAllChangesAfterProfileChanged() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+        this.commit("feature-2", "feature-1");
+
+        this.validate("feature-1", "target");
+        // e.g. the mapped schema was changed on the source branch
+        this.profile = "events:schema:schema.json=changed";
+        this.validate("feature-2", "target");
+
+        Assert.assertEquals("The changes weren't all checked with a new profile", "target", this.getSinceId());
+    }
+
+    @Test()
+    public void testKeepsUnchangedCheckpoint() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+        this.commit("feature-2", "feature-1");
+
+        this.validate("feature-1", "target");
+        this.validate("feature-1", "target");
+
+        Assert.assertEquals("An unchanged checkpoint was written again", 1, this.checkpointWrites);
+
+        this.validate("feature-2", "target");
+
+        Assert.assertEquals("A changed checkpoint wasn't written", 2, this.checkpointWrites);
+    }
+
+    @Test()
+    public void testTakesPermitOnlyToValidateFiles() throws InvalidYamlFileException, NotAdmittedException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+        this.commit("feature-2", "feature-1");
+
+        try (final AdmissionController.Permit running = this.admissionController.tryAcquire(REPOSITORY)) {
+            Assert.assertNotNull(running);
+            // Without yaml files there is nothing to wait for
+            this.validate("feature-1", "target");
+        }
+        Assert.assertEquals("Files were validated without yaml files", 0, this.validations);
+
+        this.yamlFiles = Collections.singletonList(new YamlFile("config.yaml", "blob-1", "feature-2"));
+        this.validate("feature-2", "target");
+
+        Assert.assertEquals("The yaml files weren't validated", 1, this.validations);
+        Assert.assertEquals("The permit wasn't returned", 0, this.admissionController.getActive());
+    }
+
+    @Test()
+    public void testKeepsCheckpointWhenNotAdmitted() throws InvalidYamlFileException {
+        this.commit("target", null);
+        this.commit("feature-1", "target");
+        this.commit("feature-2", "feature-1");
+        this.yamlFiles = Collections.singletonList(new YamlFile("config.yaml", "blob-1", "feature-1"));
+
+        try {
+            this.fromCommit = "feature-1";
+            this.toCommit = "target";
+            this.pullRequestValidator.validate(this.pullRequest(), SETTINGS, repository -> null);
+            Assert.fail("The validation ran without a permit");
+        } catch (final NotAdmittedException e) {
+            // The validation wasn't admitted
+        }
+        Assert.assertEquals("Files were validated without a permit", 0, this.validations);
+        Assert.assertEquals("A checkpoint was written without a validation", 0, this.checkpointWrites);
+    }
+
+    private void validate(final String fromCommit, final String toCommit)
+        throws InvalidYamlFileException, NotAdmittedException
+    {
+        this.fromCommit = fromCommit;
+        this.toCommit = toCommit;
+        this.pullRequestValidator.validate(this.pullRequest(), SETTINGS, this.admissionController::tryAcquire);
+    }
+
+    private String getSinceId() {
+        return this.sinceIds.get(this.sinceIds.size() - 1);
+    }
+
+    private void commit(final String id, final String parent) {
+        this.parents.put(id, parent);
+    }
+
+    private PullRequest pullRequest() {
+        final ApplicationUser user = StandIns.proxy(ApplicationUser.class, "user", (proxy, method, args) -> {
+            if (method.getName().equals("getDisplayName")) {
+                return "User";
+            }
+            throw StandIns.unsupported(method);
+        });
+        final PullRequestParticipant author = StandIns.proxy(
+            PullRequestParticipant.class,
+            "author",
+            (proxy, method, args) -> {
+                if (method.getName().equals("getUser")) {
+                    return user;
+                }
+                throw StandIns.unsupported(method);
+            }
+        );
+        final PullRequestRef fromRef = this.ref("feature", this.fromCommit);
+        final PullRequestRef toRef = this.ref("master", this.toCommit);
+        return StandIns.proxy(PullRequest.class, "pull-request", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return 1L;
+                case "getTitle":
+                    return "Pull request";
+                case "getAuthor":
+                    return author;
+                case "getFromRef":
+                    return fromRef;
+                case "getToRef":
+                    return toRef;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private PullRequestRef ref(final String branch, final String latestCommit) {
+        return StandIns.proxy(PullRequestRef.class, branch, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return "refs/heads/" + branch;
+                case "getRepository":
+                    return REPOSITORY;
+                case "getLatestCommit":
+                    return latestCommit;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private CommitService commitService() {
+        return StandIns.proxy(CommitService.class, "commitService", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getChanges":
+                    this.sinceIds.add(((ChangesRequest) args[0]).getSinceId());
+                    return new PageImpl<>((PageRequest) args[1], Collections.emptyList(), true);
+                case "getCommonAncestor":
+                    final CommonAncestorCommitRequest request = (CommonAncestorCommitRequest) args[0];
+                    final String mergeBase = this.getMergeBase(request.getCommitId(), request.getOtherCommitId());
+                    return mergeBase != null ? this.commit(mergeBase) : null;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+
+    private Commit commit(final String id) {
+        return StandIns.proxy(Commit.class, id, (proxy, method, args) -> {
+            if (method.getName().equals("getId")) {
+                return id;
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+
+    private String getMergeBase(final String commit, final String otherCommit) {
+        final Set<String> ancestors = new HashSet<>();
+        for (String ancestor = otherCommit; ancestor != null; ancestor = this.parents.get(ancestor)) {
+            ancestors.add(ancestor);
+        }
+        for (String ancestor = commit; ancestor != null; ancestor = this.parents.get(ancestor)) {
+            if (ancestors.contains(ancestor)) {
+                return ancestor;
+            }
+        }
+        return null;
+    }
+
+    private PluginSettingsFactory pluginSettingsFactory() {
+        final PluginSettings pluginSettings = StandIns.pluginSettingsFactory().createGlobalSettings();
+        final PluginSettings countingPluginSettings = StandIns.proxy(
+            PluginSettings.class,
+            "pluginSettings",
+            (proxy, method, args) -> {
+                if (method.getName().equals("put")) {
+                    this.checkpointWrites++;
+                }
+                return method.invoke(pluginSettings, args);
+            }
+        );
+        return StandIns.proxy(PluginSettingsFactory.class, "pluginSettingsFactory", (proxy, method, args) -> {
+            if (method.getName().equals("createGlobalSettings")) {
+                return countingPluginSettings;
+            }
+            throw StandIns.unsupported(method);
+        });
+    }
+
+    private ValidationServiceInterface validationService() {
+        return StandIns.proxy(ValidationServiceInterface.class, "validationService", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getProfile":
+                    return this.profile;
+                case "getYamlFiles":
+                    // Fetch the changes like the real service
+                    ((Iterable<?>) args[0]).forEach(change -> {
+                    });
+                    return this.yamlFiles;
+                case "areFilesValid":
+                    this.validations++;
+                    return null;
+                default:
+                    throw StandIns.unsupported(method);
+            }
+        });
+    }
+}
@@ -0,0 +1,191 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.service;
+
+import com.atlassian.bitbucket.content.ContentService;
+import com.atlassian.bitbucket.scm.ScmService;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.KnownValidBlobStore;
+import io.github.dodevops.bitbucket.yamlcheckhook.cache.ValidationResultCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.concurrent.ValidationExecutor;
+import io.github.dodevops.bitbucket.yamlcheckhook.config.PluginConfiguration;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.DefaultMetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.metrics.MetricsRegistry;
+import io.github.dodevops.bitbucket.yamlcheckhook.schema.SchemaCache;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.CatFileBatchFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.DefaultValidationService;
+import io.github.dodevops.bitbucket.yamlcheckhook.service.ParserBackendFactory;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.BufferPool;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.InMemoryContentService;
+import ut.io.github.dodevops.bitbucket.yamlcheckhook.StandIns;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wires a {@link DefaultValidationService} the way the plugin's Spring context does, using stand-ins for the
+ * Bitbucket services. The benchmarks use it too.
+ */
+public class ValidationServiceFactory {
+
+    private final MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
+    private final InMemoryContentService files;
+
+    private final PluginConfiguration pluginConfiguration;
+
+    private final ParserBackendFactory parserBackendFactory;
+
+    private final ValidationExecutor validationExecutor;
+
+    private final DefaultValidationService validationService;
+
+    /**
+     * Create the service reading the files from memory
+     *
+     * @param properties The plugin properties to use besides the defaults of the tests
+     */
+    public ValidationServiceFactory(final Map<String, String> properties) {
+        this(new InMemoryContentService(), properties);
+    }
+
+    /**
+     * Create the service reading the files from memory
+     *
+     * @param files      The files to serve
+     * @param properties The plugin properties to use besides the defaults of the tests
+     */
+    public ValidationServiceFactory(final InMemoryContentService files, final Map<String, String> properties) {
+        this(files, files.getContentService(), StandIns.scmService(), withTestDefaults(properties));
+    }
+
+    /**
+     * Create the service reading the files from the given services
+     *
+     * @param contentService The content service to read files from
+     * @param scmService     The SCM running the commands of the batch fetch
+     * @param properties     The plugin properties to use
+     */
+    public ValidationServiceFactory(
+        final ContentService contentService,
+        final ScmService scmService,
+        final Map<String, String> properties
+    )
+    {
+        this(null, contentService, scmService, properties);
+    }
+
+    private ValidationServiceFactory(
+        final InMemoryContentService files,
+        final ContentService contentService,
+        final ScmService scmService,
+        final Map<String, String> properties
+    )
+    {
+        this.files = files;
+        this.pluginConfiguration = new PluginConfiguration(StandIns.applicationProperties(properties));
+        this.parserBackendFactory = new ParserBackendFactory(this.pluginConfiguration);
+        this.validationExecutor = new ValidationExecutor(this.pluginConfiguration);
+        this.validationService = new DefaultValidationService(
+            contentService,
+            StandIns.securityService(),
+            new ValidationResultCache(this.pluginConfiguration, this.metricsRegistry),
+            new KnownValidBlobStore(this.pluginConfiguration, null, null, this.metricsRegistry),
+            new SchemaCache(contentService, this.pluginConfiguration, this.metricsRegistry),
+            this.pluginConfiguration,
+            new BufferPool(this.pluginConfiguration),
+            this.validationExecutor,
+            this.metricsRegistry,
+            this.parserBackendFactory,
+            new CatFileBatchFactory(
+                scmService,
+                this.pluginConfiguration,
+                this.validationExecutor,
+                this.metricsRegistry
+            )
+        );
+    }
+
+    /**
+     * Add a file, which is served at every commit
+     *
+     * @param path    The path of the file
+     * @param content The content of the file
+     */
+    public void putFile(final String path, final String content) {
+        this.files.putFile(path, content);
+    }
+
+    /**
+     * Add a file in any encoding, which is served at every commit
+     *
+     * @param path    The path of the file
+     * @param content The raw content of the file
+     */
+    public void putFile(final String path, final byte[] content) {
+        this.files.putFile(path, content);
+    }
+
+    /**
+     * Let the content service fail after serving the content of a file
+     *
+     * @param path    The path of the file
+     * @param failure The exception to throw
+     */
+    public void setFailure(final String path, final RuntimeException failure) {
+        this.files.setFailure(path, failure);
+    }
+
+    /**
+     * Let the content service take a while before serving a file
+     *
+     * @param path   The path of the file
+     * @param millis The delay in milliseconds
+     */
+    public void setDelay(final String path, final long millis) {
+        this.files.setDelay(path, millis);
+    }
+
+    /**
+     * Get how often the content service was asked for a file
+     *
+     * @param path The path of the file
+     * @return The number of fetches
+     */
+    public int getFetches(final String path) {
+        return this.files.getFetches(path);
+    }
+
+    public PluginConfiguration getPluginConfiguration() {
+        return pluginConfiguration;
+    }
+
+    public ParserBackendFactory getParserBackendFactory() {
+        return parserBackendFactory;
+    }
+
+    public ValidationExecutor getValidationExecutor() {
+        return validationExecutor;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public DefaultValidationService getValidationService() {
+        return validationService;
+    }
+
+    /**
+     * Shut down the thread pools of the service
+     */
+    public void destroy() {
+        this.validationExecutor.destroy();
+    }
+
+    private static Map<String, String> withTestDefaults(final Map<String, String> properties) {
+        // The stand-ins have no home directory to keep the known valid blobs in and no git directory
+        final Map<String, String> pluginProperties = new HashMap<>();
+        pluginProperties.put(PluginConfiguration.BLOB_STORE, PluginConfiguration.BLOB_STORE_NONE);
+        pluginProperties.put(PluginConfiguration.BATCH_FETCH_COMMANDS, "0");
+        pluginProperties.putAll(properties);
+        return pluginProperties;
+    }
+}
@@ -0,0 +1,74 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.stream;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.engine.ValidationBudget;
+import io.github.dodevops.bitbucket.yamlcheckhook.exceptions.BudgetExceededException;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.BudgetedInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+
+public class BudgetedInputStreamTest {
+
+    @Test()
+    public void testAccountsAllReads() throws IOException {
+        final ValidationBudget budget = ValidationBudget.unlimited();
+        final InputStream inputStream = new BudgetedInputStream(new ByteArrayInputStream(new byte[100]), budget);
+
+        Assert.assertEquals(0, inputStream.read());
+        Assert.assertEquals(10, inputStream.read(new byte[10]));
+        Assert.assertEquals(20, inputStream.skip(20));
+        Assert.assertEquals(69, inputStream.read(new byte[200]));
+        Assert.assertEquals(-1, inputStream.read());
+
+        Assert.assertEquals("Not every byte was accounted", 100, budget.getTotalBytes());
+    }
+
+    @Test()
+    public void testStopsAtFileLimit() throws IOException {
+        final ValidationBudget budget = new ValidationBudget(50, 0, 0, 0, 0);
+        final InputStream inputStream = new BudgetedInputStream(new ByteArrayInputStream(new byte[100]), budget);
+
+        Assert.assertEquals(50, inputStream.read(new byte[50]));
+        try {
+            inputStream.read();
+            Assert.fail("A file larger than the limit was read");
+        } catch (final BudgetExceededException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("50 bytes"));
+        }
+    }
+
+    @Test()
+    public void testSharesTotalLimitBetweenFiles() throws IOException {
+        final ValidationBudget budget = new ValidationBudget(0, 150, 0, 0, 0);
+
+        final InputStream first = new BudgetedInputStream(new ByteArrayInputStream(new byte[100]), budget);
+        Assert.assertEquals(100, first.read(new byte[100]));
+
+        final InputStream second = new BudgetedInputStream(new ByteArrayInputStream(new byte[100]), budget);
+        try {
+            second.read(new byte[100]);
+            Assert.fail("Files larger than the limit together were read");
+        } catch (final BudgetExceededException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("150 bytes"));
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testStopsWhenInterrupted() throws IOException {
+        final InputStream inputStream = new BudgetedInputStream(
+            new ByteArrayInputStream(new byte[100]),
+            ValidationBudget.unlimited()
+        );
+
+        Thread.currentThread().interrupt();
+        try {
+            inputStream.read();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.stream;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.CatFileBatch;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads blobs of a repository created with JGit through a local "git cat-file --batch" process
+ */
+public class CatFileBatchTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Repository repository;
+
+    private final AtomicInteger startedCommands = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(isGitInstalled());
+
+        this.repository = FileRepositoryBuilder.create(this.temporaryFolder.newFolder("repository.git"));
+        this.repository.create(true);
+    }
+
+    @After
+    public void tearDown() {
+        if (this.repository != null) {
+            this.repository.close();
+        }
+    }
+
+    @Test()
+    public void testStreamsBlobsWithOneCommand() throws IOException {
+        final byte[] large = new byte[300 * 1024];
+        new Random(42).nextBytes(large);
+
+        final byte[][] contents = {
+            "key: value\n".getBytes(StandardCharsets.UTF_8),
+            new byte[0],
+            "- a\n\n- b\n\n\n".getBytes(StandardCharsets.UTF_8),
+            large
+        };
+
+        final ObjectId[] ids = new ObjectId[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            ids[i] = this.insert(Constants.OBJ_BLOB, contents[i]);
+        }
+
+        final CatFileBatch batch = this.createBatch();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < contents.length; i++) {
+                final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+                Assert.assertTrue(String.format("Blob %d wasn't read", i), batch.streamBlob(ids[i].name(), sink));
+                Assert.assertArrayEquals(
+                    String.format("Blob %d has a wrong content", i),
+                    contents[i],
+                    sink.toByteArray()
+                );
+            }
+        }
+        batch.close();
+
+        Assert.assertEquals("Not all blobs were read by the same command", 1, this.startedCommands.get());
+    }
+
+    @Test()
+    public void testDeclinesMissingObjectsAndTrees() throws IOException {
+        final ObjectId blob = this.insert(Constants.OBJ_BLOB, "a: b\n".getBytes(StandardCharsets.UTF_8));
+        final TreeFormatter treeFormatter = new TreeFormatter();
+        treeFormatter.append("a.yaml", FileMode.REGULAR_FILE, blob);
+        final ObjectId tree = this.insert(Constants.OBJ_TREE, treeFormatter.toByteArray());
+
+        final CatFileBatch batch = this.createBatch();
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        Assert.assertFalse("Missing blob was read", batch.streamBlob(ObjectId.zeroId().name(), sink));
+        Assert.assertFalse("Tree was read as a blob", batch.streamBlob(tree.name(), sink));
+        Assert.assertFalse("Invalid id was read", batch.streamBlob("a\nb", sink));
+        Assert.assertEquals("Content of a declined object was copied", 0, sink.size());
+
+        Assert.assertTrue("Blob after declined requests wasn't read", batch.streamBlob(blob.name(), sink));
+        Assert.assertEquals("a: b\n", new String(sink.toByteArray(), StandardCharsets.UTF_8));
+        batch.close();
+    }
+
+    @Test()
+    public void testContinuesAfterFailingSink() throws IOException {
+        final byte[] content = new byte[64 * 1024];
+        new Random(7).nextBytes(content);
+        final ObjectId first = this.insert(Constants.OBJ_BLOB, content);
+        final ObjectId second = this.insert(Constants.OBJ_BLOB, "next: file\n".getBytes(StandardCharsets.UTF_8));
+
+        final CatFileBatch batch = this.createBatch();
+
+        try {
+            batch.streamBlob(first.name(), new OutputStream() {
+                @Override
+                public void write(final int b) throws IOException {
+                    throw new IOException("Reader was closed");
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    throw new IOException("Reader was closed");
+                }
+            });
+            Assert.fail("Failure of the sink wasn't reported");
+        } catch (final IOException e) {
+            Assert.assertEquals("Reader was closed", e.getMessage());
+        }
+
+        Assert.assertFalse("Batch was closed after a failing sink", batch.isClosed());
+
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        Assert.assertTrue("Blob after a failing sink wasn't read", batch.streamBlob(second.name(), sink));
+        Assert.assertEquals("next: file\n", new String(sink.toByteArray(), StandardCharsets.UTF_8));
+        batch.close();
+
+        Assert.assertEquals("Command was restarted", 1, this.startedCommands.get());
+    }
+
+    @Test()
+    public void testDeclinesWithoutCommand() throws IOException {
+        final CatFileBatch batch = new CatFileBatch(() -> null);
+
+        Assert.assertFalse(
+            "Blob was read without a command",
+            batch.streamBlob(ObjectId.zeroId().name(), new ByteArrayOutputStream())
+        );
+        Assert.assertTrue("Batch without a command wasn't closed", batch.isClosed());
+    }
+
+    @Test()
+    public void testClosedBatchDeclines() throws IOException {
+        final ObjectId blob = this.insert(Constants.OBJ_BLOB, "a: b\n".getBytes(StandardCharsets.UTF_8));
+        final CatFileBatch batch = this.createBatch();
+        batch.close();
+
+        Assert.assertFalse("Closed batch read a blob", batch.streamBlob(blob.name(), new ByteArrayOutputStream()));
+        Assert.assertEquals("Closed batch started a command", 0, this.startedCommands.get());
+    }
+
+    private ObjectId insert(final int type, final byte[] content) throws IOException {
+        final ObjectInserter inserter = this.repository.newObjectInserter();
+        try {
+            final ObjectId id = inserter.insert(type, content);
+            inserter.flush();
+            return id;
+        } finally {
+            inserter.release();
+        }
+    }
+
+    private CatFileBatch createBatch() {
+        return new CatFileBatch(() -> {
+            this.startedCommands.incrementAndGet();
+            return new GitCommand(
+                new ProcessBuilder(
+                    "git",
+                    "--git-dir=" + this.repository.getDirectory().getAbsolutePath(),
+                    "cat-file",
+                    "--batch"
+                ).start()
+            );
+        });
+    }
+
+    private static boolean isGitInstalled() {
+        try {
+            return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (final IOException e) {
+            return false;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A local git process, like the SCM of Bitbucket would run it
+     */
+    private static final class GitCommand implements CatFileBatch.Command {
+
+        private final Process process;
+
+        private GitCommand(final Process process) {
+            this.process = process;
+        }
+
+        @Override
+        public OutputStream getRequests() {
+            return this.process.getOutputStream();
+        }
+
+        @Override
+        public InputStream getResponses() {
+            return this.process.getInputStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.process.getOutputStream().close();
+            try {
+                if (!this.process.waitFor(10, TimeUnit.SECONDS)) {
+                    this.process.destroy();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.process.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ut.io.github.dodevops.bitbucket.yamlcheckhook.stream;
+
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.BufferPool;
+import io.github.dodevops.bitbucket.yamlcheckhook.stream.ContentPipe;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class ContentPipeTest {
+
+    private static final int BUFFER_SIZE = 64;
+
+    private static final int POOLED_BUFFERS = 4;
+
+    private final BufferPool bufferPool = new BufferPool(BUFFER_SIZE, POOLED_BUFFERS);
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    @After
+    public void destroy() {
+        this.writer.shutdownNow();
+    }
+
+    @Test()
+    public void testTransfersContent() throws Exception {
+        final byte[] content = new byte[10000];
+        new Random(42).nextBytes(content);
+        final ContentPipe contentPipe = new ContentPipe(this.bufferPool, 2);
+
+        final Future<Void> written = this.write(contentPipe, content);
+        final byte[] read = readAll(contentPipe.getInputStream());
+        written.get(10, TimeUnit.SECONDS);
+
+        Assert.assertArrayEquals("Content was changed in the pipe", content, read);
+        Assert.assertEquals("Wrong number of bytes written", content.length, contentPipe.getBytesWritten());
+    }
+
+    @Test()
+    public void testReaderClosingEarlyStopsWriter() throws Exception {
+        final ContentPipe contentPipe = new ContentPipe(this.bufferPool, 1);
+
+        // Far more content than fits into the buffers in flight, so the writer blocks until the reader is closed
+        final Future<Void> written = this.write(contentPipe, new byte[1024 * 1024]);
+        final InputStream inputStream = contentPipe.getInputStream();
+        Assert.assertTrue("Nothing was written", inputStream.read(new byte[10]) > 0);
+        inputStream.close();
+
+        try {
+            written.get(10, TimeUnit.SECONDS);
+            Assert.fail("The writer didn't notice that the reader was closed");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue("The writer failed for another reason", e.getCause() instanceof IOException);
+        } catch (final TimeoutException e) {
+            Assert.fail("The writer is still blocked after the reader was closed");
+        }
+        Assert.assertTrue("The pipe doesn't know that the reader was closed", contentPipe.isReaderClosed());
+        Assert.assertTrue("The writer didn't stop early", contentPipe.getBytesWritten() < 1024 * 1024);
+    }
+
+    @Test()
+    public void testReturnsBuffersToPool() throws Exception {
+        // Fill the pool with known buffers
+        final Set<byte[]> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < POOLED_BUFFERS; i++) {
+            buffers.add(this.bufferPool.acquire());
+        }
+        buffers.forEach(this.bufferPool::release);
+
+        // Read one pipe completely and close another one early
+        final ContentPipe completed = new ContentPipe(this.bufferPool, 2);
+        final Future<Void> written = this.write(completed, new byte[BUFFER_SIZE * 10 + 1]);
+        readAll(completed.getInputStream());
+        written.get(10, TimeUnit.SECONDS);
+
+        final ContentPipe abandoned = new ContentPipe(this.bufferPool, 2);
+        final Future<Void> abandonedWrite = this.write(abandoned, new byte[BUFFER_SIZE * 10]);
+        abandoned.getInputStream().read();
+        abandoned.getInputStream().close();
+        try {
+            abandonedWrite.get(10, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            // The writer is expected to fail
+        }
+
+        final Set<byte[]> returned = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < POOLED_BUFFERS; i++) {
+            returned.add(this.bufferPool.acquire());
+        }
+        Assert.assertEquals("Buffers weren't returned to the pool", buffers, returned);
+    }
+
+    @Test()
+    public void testKeepsByteOrderMark() throws Exception {
+        final String text = "key: äöü €\n";
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[]{(byte) 0xfe, (byte) 0xff});
+        content.write(text.getBytes(StandardCharsets.UTF_16BE));
+
+        // Tiny buffers split the characters, but the byte order mark is read in one go and has to fit into the first
+        final ContentPipe contentPipe = new ContentPipe(new BufferPool(5, 2), 1);
+        final Future<Void> written = this.write(contentPipe, content.toByteArray());
+
+        final StringBuilder read = new StringBuilder();
+        try (final Reader reader = new UnicodeReader(contentPipe.getInputStream())) {
+            int c;
+            while ((c = reader.read()) >= 0) {
+                read.append((char) c);
+            }
+        }
+        written.get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals("The content wasn't decoded as UTF-16", text, read.toString());
+    }
+
+    private Future<Void> write(final ContentPipe contentPipe, final byte[] content) {
+        return this.writer.submit(() -> {
+            final Random random = new Random(1);
+            try (final OutputStream outputStream = contentPipe.getOutputStream()) {
+                int offset = 0;
+                while (offset < content.length) {
+                    final int length = Math.min(content.length - offset, 1 + random.nextInt(BUFFER_SIZE * 2));
+                    outputStream.write(content, offset, length);
+                    offset += length;
+                }
+            }
+            return null;
+        });
+    }
+
+    private static byte[] readAll(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[100];
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            content.write(buffer, 0, read);
+        }
+        inputStream.close();
+        return content.toByteArray();
+    }
+}